@@ -0,0 +1,27 @@
+package rit.eyeTrackingAPI.Analysis;
+
+import rit.eyeTrackingAPI.EventDetection.GazeEventDetector;
+import rit.eyeTrackingAPI.SmoothingFilters.Filter;
+
+/**
+ * Creates the filter and event detector each piece of a batch analysis runs
+ * its samples through. Pieces run in parallel and filters and detectors keep
+ * state, so every piece gets new instances.
+ *
+ * @author Mark Hazlewood
+ *
+ * @see BatchAnalyzer
+ */
+public interface AnalysisPipeline
+{
+   /**
+    * @return A new filter, or null to analyse the raw samples. It is used
+    * offline, with an output buffer, so it never waits for a reader.
+    */
+   Filter createFilter();
+
+   /**
+    * @return A new event detector.
+    */
+   GazeEventDetector createDetector();
+}
@@ -0,0 +1,49 @@
+package rit.eyeTrackingAPI.Analysis;
+
+import java.awt.Shape;
+
+/**
+ * A named region of the screen whose fixations are measured separately, such
+ * as a button or a map feature participants are asked to find.
+ *
+ * @author Mark Hazlewood
+ */
+public class AreaOfInterest
+{
+   private final String mName;
+   private final Shape mShape;
+
+   /**
+    * @param name Name used in reports.
+    * @param shape Region in screen pixels.
+    */
+   public AreaOfInterest(String name, Shape shape)
+   {
+      mName = name;
+      mShape = shape;
+   }
+
+   /**
+    * @return True if a fixation centred on the given point falls in the area.
+    */
+   public boolean contains(double x, double y)
+   {
+      return mShape.contains(x, y);
+   }
+
+   public String getName()
+   {
+      return mName;
+   }
+
+   public Shape getShape()
+   {
+      return mShape;
+   }
+
+   @Override
+   public String toString()
+   {
+      return mName;
+   }
+}
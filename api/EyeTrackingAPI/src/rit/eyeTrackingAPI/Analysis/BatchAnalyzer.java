@@ -0,0 +1,551 @@
+package rit.eyeTrackingAPI.Analysis;
+
+import java.awt.Rectangle;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import rit.eyeTrackingAPI.DataConstructs.GazeSample;
+import rit.eyeTrackingAPI.EventDetection.GazeEventDetector;
+import rit.eyeTrackingAPI.EventDetection.VelocityThresholdDetector;
+import rit.eyeTrackingAPI.EyeTrackerUtilities.replay.CsvReplaySource;
+import rit.eyeTrackingAPI.EyeTrackerUtilities.replay.ReplaySource;
+import rit.eyeTrackingAPI.Recording.GazeLogReader;
+import rit.eyeTrackingAPI.Recording.SessionRecorder;
+import rit.eyeTrackingAPI.SmoothingFilters.Filter;
+import rit.eyeTrackingAPI.SmoothingFilters.OneEuroFilter;
+
+/**
+ * Computes eye movement metrics for recorded sessions without running them
+ * through the live applications. Each session is run through an
+ * {@link AnalysisPipeline} offline and measured per task, see
+ * {@link TaskMetrics}.
+ *
+ * Sessions can be binary gaze logs or gaze path files in the simulator's
+ * text format (".csv"). A session's tasks are taken from, in order of
+ * preference, the markers in the gaze log's events file, a task times file
+ * given with {@link #setTaskTimes(Path, Path)}, or else the whole session is
+ * treated as one task.
+ *
+ * The work is split on a {@link ForkJoinPool}: sessions run in parallel, the
+ * tasks within a gaze log run in parallel, and long tasks are split further
+ * into time ranges. Each range is processed with its own filter and detector,
+ * started a short warm-up before the range so both have settled by the time
+ * it begins, and run on past its end until the events that started within it
+ * are complete. Results therefore match a single pass except, rarely, for an
+ * event right at a split point. Text files cannot be read from the middle, so
+ * each one is processed in a single pass.
+ *
+ * @author Mark Hazlewood
+ */
+public class BatchAnalyzer
+{
+   // <editor-fold defaultstate="expanded" desc="Constants">
+
+   /**
+    * Ranges of more samples than this are split in two.
+    */
+   public static final int SPLIT_SAMPLES = 1 << 16;
+
+   /**
+    * How long before its range each split-off range starts processing.
+    */
+   public static final long WARMUP_NANOS = TimeUnit.SECONDS.toNanos(2);
+
+   /**
+    * A 1 Euro filter at its default settings followed by velocity-threshold
+    * event detection.
+    */
+   public static final AnalysisPipeline DEFAULT_PIPELINE = new AnalysisPipeline()
+   {
+      @Override
+      public Filter createFilter()
+      {
+         return new OneEuroFilter();
+      }
+
+      @Override
+      public GazeEventDetector createDetector()
+      {
+         return new VelocityThresholdDetector();
+      }
+   };
+
+   private static final String WHOLE_SESSION = "session";
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Private Members">
+
+   private final ForkJoinPool mPool;
+   private final AnalysisPipeline mPipeline;
+   private final List<AreaOfInterest> mAreas;
+   private final Map<Path, Path> mTaskTimes = new ConcurrentHashMap<>();
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Constructor(s)">
+
+   /**
+    * Creates an analyser using every processor.
+    *
+    * @param pipeline Filter and detector to run the samples through.
+    * @param areas Areas of interest to measure.
+    */
+   public BatchAnalyzer(AnalysisPipeline pipeline, List<AreaOfInterest> areas)
+   {
+      this(pipeline, areas, Runtime.getRuntime().availableProcessors());
+   }
+
+   /**
+    * @param pipeline Filter and detector to run the samples through.
+    * @param areas Areas of interest to measure.
+    * @param parallelism Number of worker threads.
+    */
+   public BatchAnalyzer(AnalysisPipeline pipeline, List<AreaOfInterest> areas, int parallelism)
+   {
+      mPipeline = pipeline;
+      mAreas = Collections.unmodifiableList(new ArrayList<>(areas));
+      mPool = new ForkJoinPool(parallelism);
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Analysis">
+
+   /**
+    * Sets the task times file to divide a session into tasks by, for when the
+    * session has no task markers recorded with it.
+    *
+    * @param session The session's gaze log or gaze path file.
+    * @param taskTimes Its task times file, see
+    * {@link TaskWindow#fromTaskTimes(Path, long)}.
+    */
+   public void setTaskTimes(Path session, Path taskTimes)
+   {
+      mTaskTimes.put(session, taskTimes);
+   }
+
+   /**
+    * Analyses sessions in parallel.
+    *
+    * @param sessions Gaze logs and gaze path files.
+    *
+    * @return A report for each session, in the same order. Sessions that
+    * could not be read have a report with the error.
+    */
+   public List<SessionReport> analyze(List<Path> sessions)
+   {
+      final List<SessionTask> tasks = new ArrayList<>(sessions.size());
+      for (Path session : sessions)
+      {
+         tasks.add(new SessionTask(session));
+      }
+
+      return mPool.invoke(new RecursiveTask<List<SessionReport>>()
+      {
+         @Override
+         protected List<SessionReport> compute()
+         {
+            invokeAll(tasks);
+
+            List<SessionReport> reports = new ArrayList<>(tasks.size());
+            for (SessionTask task : tasks)
+            {
+               reports.add(task.join());
+            }
+            return reports;
+         }
+      });
+   }
+
+   /**
+    * Analyses one session, splitting its tasks across the worker threads.
+    *
+    * @param session A gaze log or gaze path file.
+    *
+    * @return The session's report.
+    */
+   public SessionReport analyze(Path session)
+   {
+      return mPool.invoke(new SessionTask(session));
+   }
+
+   /**
+    * Stops the worker threads once running analyses finish.
+    */
+   public void shutdown()
+   {
+      mPool.shutdown();
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Sessions">
+
+   private class SessionTask extends RecursiveTask<SessionReport>
+   {
+      private static final long serialVersionUID = 1L;
+
+      private final Path mPath;
+
+      SessionTask(Path path)
+      {
+         mPath = path;
+      }
+
+      @Override
+      protected SessionReport compute()
+      {
+         try
+         {
+            if (mPath.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".csv"))
+            {
+               return new SessionReport(mPath, analyzeGazePath());
+            }
+            return new SessionReport(mPath, analyzeGazeLog());
+         }
+         catch (IOException | RuntimeException ex)
+         {
+            System.err.println("Could not analyse " + mPath + ": " + ex);
+            return new SessionReport(mPath, ex);
+         }
+      }
+
+      /*
+       * The task markers recorded with the session give when each task
+       * really started and ended, so they are preferred to a task times file.
+       */
+      private List<TaskWindow> findTasks(long startNanos, long endNanos, boolean markers) throws IOException
+      {
+         Path events = SessionRecorder.eventPathFor(mPath);
+         if (markers && Files.exists(events))
+         {
+            List<TaskWindow> tasks = TaskWindow.fromMarkers(events, endNanos);
+            if (!tasks.isEmpty())
+            {
+               return tasks;
+            }
+         }
+
+         Path taskTimes = mTaskTimes.get(mPath);
+         if (taskTimes != null)
+         {
+            return TaskWindow.fromTaskTimes(taskTimes, startNanos);
+         }
+
+         return Collections.singletonList(new TaskWindow(WHOLE_SESSION, startNanos, endNanos));
+      }
+
+      /*
+       * Every task in a gaze log is measured in parallel, and may be split
+       * further.
+       */
+      private List<TaskMetrics> analyzeGazeLog() throws IOException
+      {
+         try (GazeLogReader reader = new GazeLogReader(mPath))
+         {
+            List<TaskWindow> windows = findTasks(reader.getStartNanos(), reader.getEndNanos() + 1, true);
+
+            List<RangeTask> ranges = new ArrayList<>(windows.size());
+            for (TaskWindow window : windows)
+            {
+               long first = reader.indexOfTime(window.getStartNanos());
+               long end = Math.max(first, reader.indexOfTime(window.getEndNanos()));
+               ranges.add(new RangeTask(reader, window, first, end, first, end));
+            }
+
+            invokeAll(ranges);
+
+            List<TaskMetrics> metrics = new ArrayList<>(ranges.size());
+            for (RangeTask range : ranges)
+            {
+               metrics.add(range.join());
+            }
+            return metrics;
+         }
+      }
+
+      /*
+       * A text file is read in one pass, each task in turn.
+       */
+      private List<TaskMetrics> analyzeGazePath() throws IOException
+      {
+         List<TaskWindow> windows = findTasks(0, Long.MAX_VALUE, false);
+         List<TaskMetrics> metrics = new ArrayList<>(windows.size());
+         for (TaskWindow window : windows)
+         {
+            metrics.add(new TaskMetrics(window, mAreas));
+         }
+
+         try (CsvReplaySource source = new CsvReplaySource(mPath))
+         {
+            GazeSample sample = new GazeSample();
+            TaskProcessor processor = null;
+            int task = 0;
+            long time;
+
+            while (task < windows.size() && (time = source.next(sample)) != ReplaySource.END)
+            {
+               while (task < windows.size() && time >= windows.get(task).getEndNanos())
+               {
+                  if (processor != null)
+                  {
+                     processor.finish();
+                     processor = null;
+                  }
+                  task++;
+               }
+
+               if (task == windows.size() || time < windows.get(task).getStartNanos())
+               {
+                  continue;
+               }
+
+               if (processor == null)
+               {
+                  processor = new TaskProcessor(mPipeline, metrics.get(task), windows.get(task).getStartNanos(), Long.MAX_VALUE);
+               }
+
+               sample.setReceiveNanos(time);
+               processor.add(sample, true);
+            }
+
+            if (processor != null)
+            {
+               processor.finish();
+            }
+         }
+
+         return metrics;
+      }
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Time Ranges">
+
+   /*
+    * Measures the records [mFrom, mTo) of the task spanning records
+    * [mTaskFrom, mTaskTo), splitting the range while it is long.
+    */
+   private class RangeTask extends RecursiveTask<TaskMetrics>
+   {
+      private static final long serialVersionUID = 1L;
+
+      private final GazeLogReader mReader;
+      private final TaskWindow mWindow;
+      private final long mTaskFrom;
+      private final long mTaskTo;
+      private final long mFrom;
+      private final long mTo;
+
+      RangeTask(GazeLogReader reader, TaskWindow window, long taskFrom, long taskTo, long from, long to)
+      {
+         mReader = reader;
+         mWindow = window;
+         mTaskFrom = taskFrom;
+         mTaskTo = taskTo;
+         mFrom = from;
+         mTo = to;
+      }
+
+      @Override
+      protected TaskMetrics compute()
+      {
+         if (mTo - mFrom > SPLIT_SAMPLES)
+         {
+            long middle = (mFrom + mTo) >>> 1;
+            RangeTask second = new RangeTask(mReader, mWindow, mTaskFrom, mTaskTo, middle, mTo);
+            second.fork();
+
+            TaskMetrics metrics = new RangeTask(mReader, mWindow, mTaskFrom, mTaskTo, mFrom, middle).compute();
+            metrics.merge(second.join());
+            return metrics;
+         }
+
+         TaskMetrics metrics = new TaskMetrics(mWindow, mAreas);
+
+         long fromNanos = (mFrom == mTaskFrom) ? mWindow.getStartNanos() : mReader.getReceiveNanos(mFrom);
+         long toNanos = (mTo == mTaskTo) ? Long.MAX_VALUE : mReader.getReceiveNanos(mTo);
+         long first = (mFrom == mTaskFrom) ? mFrom : Math.max(mTaskFrom, mReader.indexOfTime(fromNanos - WARMUP_NANOS));
+
+         TaskProcessor processor = new TaskProcessor(mPipeline, metrics, fromNanos, toNanos);
+         GazeSample sample = new GazeSample();
+
+         for (long index = first; index < mTaskTo; index++)
+         {
+            mReader.read(index, sample);
+            if (!processor.add(sample, index >= mFrom && index < mTo))
+            {
+               break;
+            }
+         }
+
+         processor.finish();
+         return metrics;
+      }
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Command Line">
+
+   /**
+    * Analyses the sessions given on the command line with the default
+    * pipeline and prints one comma separated line per task.
+    *
+    *    BatchAnalyzer [--aoi name=x,y,width,height]... [[--tasks file] session]...
+    *
+    * A session is a gaze log, a gaze path file, or a directory of them.
+    * "--tasks" gives the task times file for the session that follows it.
+    */
+   public static void main(String[] args) throws IOException
+   {
+      List<AreaOfInterest> areas = new ArrayList<>();
+      List<Path> sessions = new ArrayList<>();
+      Map<Path, Path> taskTimes = new ConcurrentHashMap<>();
+      Path nextTaskTimes = null;
+
+      for (int i = 0; i < args.length; i++)
+      {
+         if (args[i].equals("--aoi") && i + 1 < args.length)
+         {
+            areas.add(parseArea(args[++i]));
+         }
+         else if (args[i].equals("--tasks") && i + 1 < args.length)
+         {
+            nextTaskTimes = Paths.get(args[++i]);
+         }
+         else
+         {
+            Path path = Paths.get(args[i]);
+            if (Files.isDirectory(path))
+            {
+               addSessions(path, sessions);
+            }
+            else
+            {
+               sessions.add(path);
+               if (nextTaskTimes != null)
+               {
+                  taskTimes.put(path, nextTaskTimes);
+               }
+            }
+            nextTaskTimes = null;
+         }
+      }
+
+      if (sessions.isEmpty())
+      {
+         System.err.println("Usage: BatchAnalyzer [--aoi name=x,y,width,height]... [[--tasks file] session]...");
+         return;
+      }
+
+      BatchAnalyzer analyzer = new BatchAnalyzer(DEFAULT_PIPELINE, areas);
+      for (Map.Entry<Path, Path> entry : taskTimes.entrySet())
+      {
+         analyzer.setTaskTimes(entry.getKey(), entry.getValue());
+      }
+
+      long start = System.nanoTime();
+      List<SessionReport> reports = analyzer.analyze(sessions);
+      long elapsed = System.nanoTime() - start;
+      analyzer.shutdown();
+
+      printHeader(areas);
+      for (SessionReport report : reports)
+      {
+         for (TaskMetrics task : report.getTasks())
+         {
+            printTask(report.getPath(), task);
+         }
+      }
+
+      System.err.printf(Locale.ROOT, "Analysed %d sessions in %.1f s%n", reports.size(), elapsed / 1.0e9);
+   }
+
+   private static AreaOfInterest parseArea(String text)
+   {
+      String[] nameAndBounds = text.split("=", 2);
+      String[] bounds = nameAndBounds[1].split(",");
+      return new AreaOfInterest(nameAndBounds[0],
+                                new Rectangle(Integer.parseInt(bounds[0].trim()),
+                                              Integer.parseInt(bounds[1].trim()),
+                                              Integer.parseInt(bounds[2].trim()),
+                                              Integer.parseInt(bounds[3].trim())));
+   }
+
+   private static void addSessions(Path directory, List<Path> sessions) throws IOException
+   {
+      List<Path> found = new ArrayList<>();
+      try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory, "*.{gazelog,csv}"))
+      {
+         for (Path entry : entries)
+         {
+            if (!entry.getFileName().toString().endsWith(".events.csv"))
+            {
+               found.add(entry);
+            }
+         }
+      }
+
+      Collections.sort(found);
+      sessions.addAll(found);
+   }
+
+   private static void printHeader(List<AreaOfInterest> areas)
+   {
+      StringBuilder header = new StringBuilder("session,task,duration_ms,samples,lost_samples,"
+                                               + "fixations,fixation_total_ms,fixation_mean_ms,fixation_longest_ms,"
+                                               + "saccades,saccade_mean_px,saccade_largest_px,blinks");
+      for (AreaOfInterest area : areas)
+      {
+         header.append(',').append(area.getName()).append("_fixations");
+         header.append(',').append(area.getName()).append("_dwell_ms");
+         header.append(',').append(area.getName()).append("_first_fixation_ms");
+      }
+      System.out.println(header);
+   }
+
+   private static void printTask(Path session, TaskMetrics task)
+   {
+      StringBuilder line = new StringBuilder();
+      line.append(session.getFileName()).append(',').append(task.getTask().getName());
+
+      long duration = task.getTask().getDurationNanos();
+      line.append(String.format(Locale.ROOT, ",%.1f,%d,%d,%d,%.1f,%.1f,%.1f,%d,%.1f,%.1f,%d",
+                                (duration < Long.MAX_VALUE / 2) ? duration / 1.0e6 : -1.0,
+                                task.getSampleCount(),
+                                task.getLostSampleCount(),
+                                task.getFixationCount(),
+                                task.getTotalFixationMillis(),
+                                task.getMeanFixationMillis(),
+                                task.getLongestFixationMillis(),
+                                task.getSaccadeCount(),
+                                task.getMeanSaccadeAmplitude(),
+                                task.getLargestSaccadeAmplitude(),
+                                task.getBlinkCount()));
+
+      for (int i = 0; i < task.getAreas().size(); i++)
+      {
+         line.append(String.format(Locale.ROOT, ",%d,%.1f,%.1f",
+                                   task.getFixationCount(i),
+                                   task.getDwellMillis(i),
+                                   task.getTimeToFirstFixationMillis(i)));
+      }
+      System.out.println(line);
+   }
+
+   // </editor-fold>
+}
@@ -0,0 +1,64 @@
+package rit.eyeTrackingAPI.Analysis;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The metrics of every task in one recorded session, or the reason the
+ * session could not be analysed.
+ *
+ * @author Mark Hazlewood
+ */
+public class SessionReport
+{
+   private final Path mPath;
+   private final List<TaskMetrics> mTasks;
+   private final Exception mError;
+
+   SessionReport(Path path, List<TaskMetrics> tasks)
+   {
+      mPath = path;
+      mTasks = Collections.unmodifiableList(tasks);
+      mError = null;
+   }
+
+   SessionReport(Path path, Exception error)
+   {
+      mPath = path;
+      mTasks = Collections.emptyList();
+      mError = error;
+   }
+
+   /**
+    * @return The session's gaze log or gaze path file.
+    */
+   public Path getPath()
+   {
+      return mPath;
+   }
+
+   /**
+    * @return Metrics for each task, in order.
+    */
+   public List<TaskMetrics> getTasks()
+   {
+      return mTasks;
+   }
+
+   /**
+    * @return True if the session was analysed.
+    */
+   public boolean isSuccessful()
+   {
+      return mError == null;
+   }
+
+   /**
+    * @return Why the session could not be analysed, or null.
+    */
+   public Exception getError()
+   {
+      return mError;
+   }
+}
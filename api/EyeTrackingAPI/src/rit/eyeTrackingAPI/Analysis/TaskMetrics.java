@@ -0,0 +1,260 @@
+package rit.eyeTrackingAPI.Analysis;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import rit.eyeTrackingAPI.EventDetection.GazeEvent;
+
+/**
+ * Eye movement measures for one task of one session: fixation counts and
+ * durations, saccade amplitudes, blinks, and for each area of interest the
+ * dwell time and the time to the first fixation on it.
+ *
+ * Metrics for parts of a task measured separately are combined with
+ * {@link #merge(TaskMetrics)}.
+ *
+ * @author Mark Hazlewood
+ */
+public class TaskMetrics
+{
+   // <editor-fold defaultstate="expanded" desc="Private Members">
+
+   private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+   private final TaskWindow mTask;
+   private final List<AreaOfInterest> mAreas;
+
+   private long mSampleCount = 0;
+   private long mLostSampleCount = 0;
+
+   private long mFixationCount = 0;
+   private long mFixationNanos = 0;
+   private long mLongestFixationNanos = 0;
+
+   private long mSaccadeCount = 0;
+   private double mSaccadeAmplitudeSum = 0;
+   private double mLargestSaccadeAmplitude = 0;
+
+   private long mBlinkCount = 0;
+
+   private final long[] mAreaFixationCounts;
+   private final long[] mAreaDwellNanos;
+   private final long[] mAreaFirstFixationNanos;
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Constructor(s)">
+
+   /**
+    * @param task The task measured.
+    * @param areas Areas of interest to measure fixations on.
+    */
+   public TaskMetrics(TaskWindow task, List<AreaOfInterest> areas)
+   {
+      mTask = task;
+      mAreas = areas;
+      mAreaFixationCounts = new long[areas.size()];
+      mAreaDwellNanos = new long[areas.size()];
+      mAreaFirstFixationNanos = new long[areas.size()];
+      Arrays.fill(mAreaFirstFixationNanos, -1);
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Accumulation">
+
+   void addSample(boolean lost)
+   {
+      mSampleCount++;
+      if (lost)
+      {
+         mLostSampleCount++;
+      }
+   }
+
+   /**
+    * Counts a completed event. Fixations are counted when they end, so their
+    * full duration is known.
+    */
+   void addEvent(GazeEvent event)
+   {
+      switch (event.getType())
+      {
+         case FIXATION_END:
+            addFixation(event);
+            break;
+
+         case SACCADE:
+            mSaccadeCount++;
+            mSaccadeAmplitudeSum += event.getAmplitude();
+            mLargestSaccadeAmplitude = Math.max(mLargestSaccadeAmplitude, event.getAmplitude());
+            break;
+
+         case BLINK:
+            mBlinkCount++;
+            break;
+
+         default:
+            break;
+      }
+   }
+
+   private void addFixation(GazeEvent fixation)
+   {
+      long duration = fixation.getDurationNanos();
+      mFixationCount++;
+      mFixationNanos += duration;
+      mLongestFixationNanos = Math.max(mLongestFixationNanos, duration);
+
+      for (int i = 0; i < mAreas.size(); i++)
+      {
+         if (mAreas.get(i).contains(fixation.getX(), fixation.getY()))
+         {
+            mAreaFixationCounts[i]++;
+            mAreaDwellNanos[i] += duration;
+
+            long sinceStart = Math.max(0, fixation.getStartNanos() - mTask.getStartNanos());
+            if (mAreaFirstFixationNanos[i] < 0 || sinceStart < mAreaFirstFixationNanos[i])
+            {
+               mAreaFirstFixationNanos[i] = sinceStart;
+            }
+         }
+      }
+   }
+
+   /**
+    * Adds the metrics of another part of the same task.
+    *
+    * @param other Metrics over the same task and areas.
+    */
+   public void merge(TaskMetrics other)
+   {
+      mSampleCount += other.mSampleCount;
+      mLostSampleCount += other.mLostSampleCount;
+
+      mFixationCount += other.mFixationCount;
+      mFixationNanos += other.mFixationNanos;
+      mLongestFixationNanos = Math.max(mLongestFixationNanos, other.mLongestFixationNanos);
+
+      mSaccadeCount += other.mSaccadeCount;
+      mSaccadeAmplitudeSum += other.mSaccadeAmplitudeSum;
+      mLargestSaccadeAmplitude = Math.max(mLargestSaccadeAmplitude, other.mLargestSaccadeAmplitude);
+
+      mBlinkCount += other.mBlinkCount;
+
+      for (int i = 0; i < mAreas.size(); i++)
+      {
+         mAreaFixationCounts[i] += other.mAreaFixationCounts[i];
+         mAreaDwellNanos[i] += other.mAreaDwellNanos[i];
+
+         long first = other.mAreaFirstFixationNanos[i];
+         if (first >= 0 && (mAreaFirstFixationNanos[i] < 0 || first < mAreaFirstFixationNanos[i]))
+         {
+            mAreaFirstFixationNanos[i] = first;
+         }
+      }
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Properties">
+
+   public TaskWindow getTask()
+   {
+      return mTask;
+   }
+
+   public List<AreaOfInterest> getAreas()
+   {
+      return Collections.unmodifiableList(mAreas);
+   }
+
+   public long getSampleCount()
+   {
+      return mSampleCount;
+   }
+
+   public long getLostSampleCount()
+   {
+      return mLostSampleCount;
+   }
+
+   public long getFixationCount()
+   {
+      return mFixationCount;
+   }
+
+   public double getTotalFixationMillis()
+   {
+      return mFixationNanos / NANOS_PER_MILLI;
+   }
+
+   public double getMeanFixationMillis()
+   {
+      return (mFixationCount > 0) ? getTotalFixationMillis() / mFixationCount : 0;
+   }
+
+   public double getLongestFixationMillis()
+   {
+      return mLongestFixationNanos / NANOS_PER_MILLI;
+   }
+
+   public long getSaccadeCount()
+   {
+      return mSaccadeCount;
+   }
+
+   /**
+    * @return Mean saccade amplitude in pixels.
+    */
+   public double getMeanSaccadeAmplitude()
+   {
+      return (mSaccadeCount > 0) ? mSaccadeAmplitudeSum / mSaccadeCount : 0;
+   }
+
+   /**
+    * @return Largest saccade amplitude in pixels.
+    */
+   public double getLargestSaccadeAmplitude()
+   {
+      return mLargestSaccadeAmplitude;
+   }
+
+   public long getBlinkCount()
+   {
+      return mBlinkCount;
+   }
+
+   /**
+    * @param area Index of the area in {@link #getAreas()}.
+    */
+   public long getFixationCount(int area)
+   {
+      return mAreaFixationCounts[area];
+   }
+
+   /**
+    * @param area Index of the area in {@link #getAreas()}.
+    *
+    * @return Total duration of the fixations on the area.
+    */
+   public double getDwellMillis(int area)
+   {
+      return mAreaDwellNanos[area] / NANOS_PER_MILLI;
+   }
+
+   /**
+    * @param area Index of the area in {@link #getAreas()}.
+    *
+    * @return Time from the start of the task to the first fixation on the
+    * area, or -1 if it was never fixated.
+    */
+   public double getTimeToFirstFixationMillis(int area)
+   {
+      long first = mAreaFirstFixationNanos[area];
+      return (first >= 0) ? first / NANOS_PER_MILLI : -1;
+   }
+
+   // </editor-fold>
+}
@@ -0,0 +1,122 @@
+package rit.eyeTrackingAPI.Analysis;
+
+import rit.eyeTrackingAPI.DataConstructs.GazeSample;
+import rit.eyeTrackingAPI.DataConstructs.GazeSampleRingBuffer;
+import rit.eyeTrackingAPI.EventDetection.GazeEvent;
+import rit.eyeTrackingAPI.EventDetection.GazeEventDetector;
+import rit.eyeTrackingAPI.EventDetection.GazeEventListener;
+import rit.eyeTrackingAPI.SmoothingFilters.Filter;
+
+/**
+ * Runs samples through one pipeline's filter and detector and counts the
+ * events that start within a time range.
+ *
+ * The filter is given an output buffer, so it hands each filtered sample
+ * straight back instead of waiting for a reader; the buffer is drained into
+ * the detector after every sample. Lost samples bypass the filter.
+ *
+ * Samples are timed by the detector, so by their tracker timestamps where they
+ * have them.
+ *
+ * Samples before the range warm the filter and detector up. Samples after it
+ * are still processed until the detector reports an event that starts after
+ * the range, so the events that started within it are complete.
+ *
+ * @author Mark Hazlewood
+ */
+class TaskProcessor implements GazeEventListener
+{
+   private static final int OUTPUT_CAPACITY = 64;
+
+   private final Filter mFilter;
+   private final GazeSampleRingBuffer mFiltered;
+   private final GazeEventDetector mDetector;
+   private final GazeSample mFilteredSample = new GazeSample();
+   private final TaskMetrics mMetrics;
+   private final long mFromNanos;
+   private final long mToNanos;
+   private boolean mDone = false;
+
+   /**
+    * @param pipeline Creates the filter and detector.
+    * @param metrics Where events are counted.
+    * @param fromNanos Start of the range events are counted in.
+    * @param toNanos End of the range, exclusive.
+    */
+   TaskProcessor(AnalysisPipeline pipeline, TaskMetrics metrics, long fromNanos, long toNanos)
+   {
+      mFilter = pipeline.createFilter();
+      mDetector = pipeline.createDetector();
+      mDetector.addGazeEventListener(this);
+      mMetrics = metrics;
+      mFromNanos = fromNanos;
+      mToNanos = toNanos;
+
+      if (mFilter != null)
+      {
+         mFiltered = new GazeSampleRingBuffer(OUTPUT_CAPACITY, GazeSampleRingBuffer.OverflowPolicy.DROP_OLDEST);
+         mFilter.setOutputBuffer(mFiltered);
+      }
+      else
+      {
+         mFiltered = null;
+      }
+   }
+
+   /**
+    * @param sample Next sample, stamped with its time.
+    * @param counted True if the sample itself lies within the range.
+    *
+    * @return False once later samples can no longer change the result.
+    */
+   boolean add(GazeSample sample, boolean counted)
+   {
+      boolean lost = sample.getX() == 0 && sample.getY() == 0;
+      if (counted)
+      {
+         mMetrics.addSample(lost);
+      }
+
+      if (lost)
+      {
+         mDetector.addLostSample(mDetector.sampleNanos(sample));
+      }
+      else if (mFilter == null)
+      {
+         mDetector.addSample(sample.getX(), sample.getY(), mDetector.sampleNanos(sample));
+      }
+      else
+      {
+         mFilter.filter(sample);
+         while (mFiltered.poll(mFilteredSample))
+         {
+            mDetector.addSample(mFilteredSample.getX(), mFilteredSample.getY(),
+                                mDetector.sampleNanos(mFilteredSample));
+         }
+      }
+
+      return !mDone;
+   }
+
+   /**
+    * Ends any fixation still in progress, so it is counted.
+    */
+   void finish()
+   {
+      mDetector.reset();
+   }
+
+   @Override
+   public void gazeEventDetected(GazeEvent event)
+   {
+      long start = event.getStartNanos();
+      if (start >= mToNanos)
+      {
+         mDone = true;
+      }
+      else if (start >= mFromNanos)
+      {
+         mMetrics.addEvent(event);
+      }
+   }
+}
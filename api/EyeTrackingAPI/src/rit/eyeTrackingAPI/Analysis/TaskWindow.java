@@ -0,0 +1,206 @@
+package rit.eyeTrackingAPI.Analysis;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The stretch of a session spent on one task. Times are on the same clock as
+ * the session's samples.
+ *
+ * @author Mark Hazlewood
+ */
+public class TaskWindow
+{
+   // <editor-fold defaultstate="expanded" desc="Constants">
+
+   /**
+    * Marker label that ends the current task without starting another.
+    */
+   public static final String END_MARKER = "end";
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Private Members">
+
+   private final String mName;
+   private final long mStartNanos;
+   private final long mEndNanos;
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Constructor(s)">
+
+   /**
+    * @param name Name used in reports.
+    * @param startNanos Time of the first sample in the task.
+    * @param endNanos Time just after the last sample in the task.
+    */
+   public TaskWindow(String name, long startNanos, long endNanos)
+   {
+      mName = name;
+      mStartNanos = startNanos;
+      mEndNanos = endNanos;
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Loading">
+
+   /**
+    * Reads the task markers from a {@link rit.eyeTrackingAPI.Recording.SessionRecorder}
+    * events file. Each marker starts a task named by its label that runs until
+    * the next marker or the end of the session; a marker labelled
+    * {@link #END_MARKER} only ends the current task.
+    *
+    * @param eventsPath The events file.
+    * @param sessionEndNanos Time at which the last task ends if no marker
+    * ends it.
+    *
+    * @return The tasks in order, empty if the file has no markers.
+    *
+    * @throws IOException If the file could not be read.
+    */
+   public static List<TaskWindow> fromMarkers(Path eventsPath, long sessionEndNanos) throws IOException
+   {
+      List<TaskWindow> tasks = new ArrayList<>();
+      String openName = null;
+      long openStart = 0;
+
+      try (BufferedReader reader = Files.newBufferedReader(eventsPath, StandardCharsets.UTF_8))
+      {
+         String line;
+         while ((line = reader.readLine()) != null)
+         {
+            if (!line.startsWith("MARK,"))
+            {
+               continue;
+            }
+
+            String[] values = line.split(",", 3);
+            long nanos;
+            try
+            {
+               nanos = Long.parseLong(values[1].trim());
+            }
+            catch (NumberFormatException | ArrayIndexOutOfBoundsException ex)
+            {
+               System.err.println("Skipping marker: " + line);
+               continue;
+            }
+            String label = (values.length > 2) ? values[2].trim() : "";
+
+            if (openName != null)
+            {
+               tasks.add(new TaskWindow(openName, openStart, nanos));
+               openName = null;
+            }
+
+            if (!label.equalsIgnoreCase(END_MARKER))
+            {
+               openName = label;
+               openStart = nanos;
+            }
+         }
+      }
+
+      if (openName != null)
+      {
+         tasks.add(new TaskWindow(openName, openStart, Math.max(sessionEndNanos, openStart)));
+      }
+
+      return tasks;
+   }
+
+   /**
+    * Reads a task times file as written by the WorldWind gaze input
+    * application, one "Task n, milliseconds, start, end" line per task, the
+    * start and end being System.nanoTime() stamps like the samples'. Files
+    * from before the stamps were written only hold durations; their tasks are
+    * laid end to end from the start of the session, so any time between tasks
+    * is counted in the tasks after it. Recorded task markers, see
+    * {@link #fromMarkers(Path, long)}, do not have that problem.
+    *
+    * @param taskTimesPath The task times file.
+    * @param sessionStartNanos Time at which the first task starts, for lines
+    * without stamps.
+    *
+    * @return The tasks in order.
+    *
+    * @throws IOException If the file could not be read.
+    */
+   public static List<TaskWindow> fromTaskTimes(Path taskTimesPath, long sessionStartNanos) throws IOException
+   {
+      List<TaskWindow> tasks = new ArrayList<>();
+      long start = sessionStartNanos;
+
+      for (String line : Files.readAllLines(taskTimesPath, StandardCharsets.UTF_8))
+      {
+         String[] values = line.split(",");
+         if (values.length < 2)
+         {
+            continue;
+         }
+
+         try
+         {
+            long end;
+            if (values.length >= 4)
+            {
+               start = Long.parseLong(values[2].trim());
+               end = Math.max(Long.parseLong(values[3].trim()), start);
+            }
+            else
+            {
+               long millis = Long.parseLong(values[1].trim());
+               end = start + TimeUnit.MILLISECONDS.toNanos(Math.max(millis, 0));
+            }
+            tasks.add(new TaskWindow(values[0].trim(), start, end));
+            start = end;
+         }
+         catch (NumberFormatException ex)
+         {
+            System.err.println("Skipping task time: " + line);
+         }
+      }
+
+      return tasks;
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Properties">
+
+   public String getName()
+   {
+      return mName;
+   }
+
+   public long getStartNanos()
+   {
+      return mStartNanos;
+   }
+
+   public long getEndNanos()
+   {
+      return mEndNanos;
+   }
+
+   public long getDurationNanos()
+   {
+      return mEndNanos - mStartNanos;
+   }
+
+   // </editor-fold>
+
+   @Override
+   public String toString()
+   {
+      return mName;
+   }
+}
@@ -5,13 +5,31 @@ import java.awt.GraphicsDevice;
 import java.awt.GraphicsEnvironment;
 import java.awt.Point;
 import java.awt.event.ActionListener;
-
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import rit.eyeTrackingAPI.DataConstructs.GazeSample;
+import rit.eyeTrackingAPI.DataConstructs.GazeSampleRingBuffer;
+import rit.eyeTrackingAPI.Diagnostics.GazeLatencyRecorder;
+import rit.eyeTrackingAPI.EventDetection.GazeEventDetector;
 import rit.eyeTrackingAPI.SmoothingFilters.Filter;
 
 /**
  * A thread-based class that continuously polls a {@link Filter} for its latest
  * filtered gaze point on a dedicated thread. When a new filtered point is 
  * discovered the {@link #newPoint(Point)} method is called.
+ * 
+ * If the filter has an output buffer set (see 
+ * {@link Filter#setOutputBuffer(GazeSampleRingBuffer)}) the polling thread
+ * drains that buffer instead of taking part in the blocking read handshake, so
+ * a slow {@link #newPoint(Point)} never holds up the tracker thread.
+ *
+ * The poller runs on a thread of its own unless an executor is set through
+ * {@link #setExecutor(Executor)}, in which case it runs as a task on that
+ * executor; see {@link GazeExecutors} for virtual threads and shared pools.
+ * Either way {@link #stop()} interrupts the poller and waits for it to finish;
+ * a poller task still queued on a busy executor is abandoned instead.
  *
  * @author Corey Engelman
  * 
@@ -21,6 +39,12 @@ import rit.eyeTrackingAPI.SmoothingFilters.Filter;
  */
 public abstract class EyeTrackingFilterListener
 {
+   /*
+    * Upper bound on how long the poller parks on an empty output buffer before
+    * re-checking the stop flag.
+    */
+   private static final long OUTPUT_BUFFER_PARK_MILLIS = 50;
+
    protected Thread mPollingThread;
    
    protected boolean mCursorVisible = true;
@@ -32,13 +56,31 @@ public abstract class EyeTrackingFilterListener
    protected int canvasHeight;
    protected final Filter mFilter;
    protected Point pointOnCanvas;
-   protected boolean shouldStop;
+   protected volatile boolean shouldStop;
    protected boolean mDrawGazePoints = false;
    protected boolean printExceptions = true;
    protected boolean ignoreExceptions = true;
    protected ActionListener mActionListener;
    protected Boolean eyeTracking = false;
    protected boolean testMode = false;
+   protected volatile GazeLatencyRecorder mLatencyRecorder = null;
+   protected volatile GazeEventDetector mEventDetector = null;
+   protected volatile GazeEventBus mEventBus = null;
+   protected volatile Executor mExecutor = null;
+
+   /*
+    * True from start() until the poller has finished, the poller started last
+    * and the executor it was handed to, if any. Guarded by this.
+    */
+   private boolean mPollerActive = false;
+   private FilterPoller mActivePoller = null;
+   private Executor mPollerExecutor = null;
+
+   /*
+    * Handed to newPoint() for every sample by the default newSample(), so
+    * dispatch does not allocate. Only touched by the polling thread.
+    */
+   private final Point mDispatchPoint = new Point();
 
    /**
     * Takes in the MTApplication, the filter, the ActionListener that will be
@@ -126,6 +168,23 @@ public abstract class EyeTrackingFilterListener
     */
    protected abstract void newPoint(Point newGazePoint);
 
+   /**
+    * Called on the polling thread for every new filtered sample, before
+    * {@link #newPoint(Point)}. The default implementation simply forwards the
+    * sample's screen position to {@link #newPoint(Point)}; override it to get
+    * at the timestamp and per-eye data as well.
+    * 
+    * The sample and the point passed on are reused for the next sample, so 
+    * copy anything that needs to be kept.
+    *
+    * @param newGazeSample - the new filtered sample
+    */
+   protected void newSample(GazeSample newGazeSample)
+   {
+      mDispatchPoint.setLocation(newGazeSample.getX(), newGazeSample.getY());
+      newPoint(mDispatchPoint);
+   }
+
    /**
     * A Runnable object that will loop until told to stop, calling its display
     * method when a new coordinate is available and paint fixations if the
@@ -139,32 +198,103 @@ public abstract class EyeTrackingFilterListener
       @Override
       public void run()
       {
-         if (!testMode)
+         try
          {
-            mFilter.waitForNewCoordinate();
+            if (!pollerStarted(this))
+            {
+               return;
+            }
+
+            GazeSampleRingBuffer outputBuffer = mFilter.getOutputBuffer();
+            if (!testMode && outputBuffer != null)
+            {
+               drainOutputBuffer(outputBuffer);
+            }
+            else if (!testMode)
+            {
+               readFilter();
+            }
+            else
+            {
+               while (!shouldStop && !Thread.currentThread().isInterrupted())
+               {
+                  newPoint(null);
+               }
+            }
          }
+         catch (InterruptedException ex)
+         {
+            // Stopped while waiting for a coordinate
+         }
+         finally
+         {
+            pollerFinished(this);
+         }
+      }
+
+      /*
+       * Consumer side of the blocking read handshake.
+       */
+      private void readFilter() throws InterruptedException
+      {
+         mFilter.awaitNewCoordinate();
 
          while (!shouldStop)
          {
-            if (!testMode)
+            synchronized (mFilter)
             {
-               synchronized (mFilter)
-               {
-                  Point lastGazePoint = mFilter.getLastFilteredCoordinate();
-                  newPoint(lastGazePoint);
+               dispatch(mFilter.getLastFilteredSample());
 
-                  mFilter.notifyCoordinateRead();
-                  mFilter.waitForNewCoordinate();
-               }
+               mFilter.notifyCoordinateRead();
+               mFilter.awaitNewCoordinate();
+            }
+         }
+      }
 
+      /*
+       * Consumer side of the non-blocking pipeline. The same sample instance
+       * is handed to newSample() every time, so no allocation happens per
+       * sample.
+       */
+      private void drainOutputBuffer(GazeSampleRingBuffer outputBuffer)
+      {
+         GazeSample gazeSample = new GazeSample();
+         long parkNanos = TimeUnit.MILLISECONDS.toNanos(OUTPUT_BUFFER_PARK_MILLIS);
+
+         while (!shouldStop && !Thread.currentThread().isInterrupted())
+         {
+            if (outputBuffer.poll(gazeSample))
+            {
+               dispatch(gazeSample);
             }
             else
             {
-               newPoint(null);
+               outputBuffer.awaitSample(parkNanos);
             }
+         }
+      }
+
+      private void dispatch(GazeSample gazeSample)
+      {
+         newSample(gazeSample);
 
+         GazeLatencyRecorder latencyRecorder = mLatencyRecorder;
+         if (latencyRecorder != null)
+         {
+            latencyRecorder.recordDispatch(gazeSample, System.nanoTime());
+         }
+
+         GazeEventDetector eventDetector = mEventDetector;
+         if (eventDetector != null)
+         {
+            eventDetector.addSample(gazeSample);
          }
 
+         GazeEventBus eventBus = mEventBus;
+         if (eventBus != null)
+         {
+            eventBus.publish(gazeSample);
+         }
       }
 
    }
@@ -176,19 +306,86 @@ public abstract class EyeTrackingFilterListener
     */
    public synchronized boolean isAnimating()
    {
-      return (mPollingThread != null);
+      return mPollerActive;
    }
 
    /**
-    * Creates a new thread and renderingLoop object and then starts the thread.
+    * Starts polling the filter, on a new thread or, if one has been set, on
+    * the executor. Does nothing if the poller is already running.
     */
    public synchronized void start()
    {
-      mPollingThread = new Thread(new FilterPoller());
-      mPollingThread.setName("Filter Polling Thread");
+      if (mPollerActive)
+      {
+         return;
+      }
 
-      mPollingThread.start();
+      mPollerActive = true;
+      shouldStop = false;
+      mActivePoller = new FilterPoller();
 
+      Executor executor = mExecutor;
+      if (executor == null)
+      {
+         mPollingThread = new Thread(mActivePoller);
+         mPollingThread.setName("Filter Polling Thread");
+
+         mPollingThread.start();
+         return;
+      }
+
+      try
+      {
+         mPollerExecutor = executor;
+         executor.execute(mActivePoller);
+      }
+      catch (RuntimeException ex)
+      {
+         abandonPoller();
+         throw ex;
+      }
+   }
+
+   /*
+    * Called by the poller as it begins. Returns false if the poller has been
+    * stopped or abandoned before it got going.
+    */
+   private synchronized boolean pollerStarted(FilterPoller poller)
+   {
+      if (shouldStop || poller != mActivePoller)
+      {
+         return false;
+      }
+
+      mPollingThread = Thread.currentThread();
+      return true;
+   }
+
+   /*
+    * Called by the poller as it ends, however it ends.
+    */
+   private void pollerFinished(FilterPoller poller)
+   {
+      synchronized (this)
+      {
+         if (poller != mActivePoller)
+         {
+            // Abandoned before it started; a newer poller may be running
+            return;
+         }
+
+         mPollingThread = null;
+         mPollerActive = false;
+         mActivePoller = null;
+         mPollerExecutor = null;
+         notifyAll();
+      }
+
+      // Let a tracker thread blocked in the read handshake carry on
+      mFilter.notifyCoordinateRead();
+
+      // Don't hand a pooled thread back with our interrupt still pending
+      Thread.interrupted();
    }
 
    public synchronized boolean isEyeTracking()
@@ -202,16 +399,39 @@ public abstract class EyeTrackingFilterListener
    }
 
    /**
-    * Request a stop for the animation thread. Essentially sets a flag so that
-    * the next time through its animation loop, it exits the loop and stops on
-    * its own.
+    * Stops the poller and waits for it to finish. The poller is interrupted,
+    * so this returns promptly even while no samples are arriving. Called from
+    * the poller itself, for example from {@link #newPoint(Point)}, it only
+    * asks the poller to stop once the current sample has been handled.
     */
    public synchronized void stop()
    {
+      if (!mPollerActive)
+      {
+         return;
+      }
+
       shouldStop = true;
-      notifyAll();
 
-      while (shouldStop && mPollingThread != null)
+      Thread pollingThread = mPollingThread;
+      if (pollingThread == Thread.currentThread())
+      {
+         return;
+      }
+
+      if (pollingThread == null)
+      {
+         // Still queued on the executor, which may be too busy to ever get
+         // to it, so there is nothing to wait for; if it runs after all it
+         // finds it is no longer the active poller and returns at once
+         abandonPoller();
+         return;
+      }
+
+      pollingThread.interrupt();
+
+      boolean interrupted = false;
+      while (mPollerActive)
       {
          try
          {
@@ -219,10 +439,31 @@ public abstract class EyeTrackingFilterListener
          }
          catch (InterruptedException ex)
          {
-            //do nothing
+            interrupted = true;
          }
       }
 
+      if (interrupted)
+      {
+         Thread.currentThread().interrupt();
+      }
+   }
+
+   /*
+    * Forgets a poller task that has not started, taking it off its executor's
+    * queue where the executor allows that.
+    */
+   private synchronized void abandonPoller()
+   {
+      if (mPollerExecutor instanceof ThreadPoolExecutor)
+      {
+         ((ThreadPoolExecutor) mPollerExecutor).remove(mActivePoller);
+      }
+
+      mPollerActive = false;
+      mActivePoller = null;
+      mPollerExecutor = null;
+      notifyAll();
    }
 
    /**
@@ -251,4 +492,83 @@ public abstract class EyeTrackingFilterListener
       this.testMode = testMode;
    }
 
+   /**
+    * Runs the poller on the given executor from the next {@link #start()}
+    * on, instead of on a thread of its own. The poller occupies one of the
+    * executor's threads for as long as it runs.
+    *
+    * @param executor Executor to run the poller on, or null for a dedicated
+    * thread.
+    */
+   public void setExecutor(Executor executor)
+   {
+      mExecutor = executor;
+   }
+
+   public Executor getExecutor()
+   {
+      return mExecutor;
+   }
+
+   /**
+    * Starts (or, given null, stops) measuring how long each sample takes to
+    * get from the network to {@link #newPoint(Point)}. Values are recorded on
+    * the polling thread once newPoint() returns, and can be read from the
+    * recorder at any time.
+    *
+    * @param latencyRecorder Recorder to add measurements to, or null.
+    */
+   public void setLatencyRecorder(GazeLatencyRecorder latencyRecorder)
+   {
+      mLatencyRecorder = latencyRecorder;
+   }
+
+   public GazeLatencyRecorder getLatencyRecorder()
+   {
+      return mLatencyRecorder;
+   }
+
+   /**
+    * Feeds every dispatched sample to a fixation, saccade and blink detector
+    * (or, given null, stops doing so). The detector is fed on the polling
+    * thread after {@link #newPoint(Point)} returns, and its listeners are
+    * called on that thread too.
+    * 
+    * Detection works best on lightly filtered data, such as the output of a
+    * {@link rit.eyeTrackingAPI.SmoothingFilters.PassthroughFilter}.
+    *
+    * @param eventDetector Detector to feed, or null.
+    */
+   public void setEventDetector(GazeEventDetector eventDetector)
+   {
+      mEventDetector = eventDetector;
+   }
+
+   public GazeEventDetector getEventDetector()
+   {
+      return mEventDetector;
+   }
+
+   /**
+    * Publishes every dispatched sample to a bus (or, given null, stops doing
+    * so), so that any number of other subscribers, such as recorders, can
+    * receive the same samples without polling the filter themselves. Samples
+    * are published on the polling thread after {@link #newPoint(Point)}
+    * returns; publishing never waits on the subscribers.
+    * 
+    * To pass gaze events on as well, add the bus to the event detector as a
+    * listener.
+    *
+    * @param eventBus Bus to publish to, or null.
+    */
+   public void setEventBus(GazeEventBus eventBus)
+   {
+      mEventBus = eventBus;
+   }
+
+   public GazeEventBus getEventBus()
+   {
+      return mEventBus;
+   }
+
 }
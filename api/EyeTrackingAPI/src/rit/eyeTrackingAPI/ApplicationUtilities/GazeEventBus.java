@@ -0,0 +1,480 @@
+package rit.eyeTrackingAPI.ApplicationUtilities;
+
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import rit.eyeTrackingAPI.DataConstructs.GazeSample;
+import rit.eyeTrackingAPI.DataConstructs.GazeSampleRingBuffer;
+import rit.eyeTrackingAPI.DataConstructs.GazeSampleRingBuffer.OverflowPolicy;
+import rit.eyeTrackingAPI.EventDetection.GazeEvent;
+import rit.eyeTrackingAPI.EventDetection.GazeEventListener;
+
+/**
+ * Fans filtered gaze samples and gaze events out to any number of
+ * subscribers. A {@link rit.eyeTrackingAPI.SmoothingFilters.Filter} can only be read by one poller, so the bus is
+ * fed by that poller (see
+ * {@link EyeTrackingFilterListener#setEventBus(GazeEventBus)}) and passes
+ * everything on from there.
+ *
+ * Every subscriber has its own bounded queue and is delivered to on its own
+ * {@link Executor}. Publishing only copies the sample into each queue and
+ * never waits, so a slow subscriber, such as one writing to disk, can only
+ * fall behind itself: when its queue fills up its overflow policy decides
+ * what it misses, and nobody else is delayed. Executors can be shared, see
+ * {@link GazeExecutors}; a subscriber delivers a limited batch of samples
+ * per task before giving its thread up to others.
+ *
+ * Samples must be published from one thread at a time. Events may be
+ * published from any thread; the bus is a {@link GazeEventListener} so it can
+ * be added straight to a
+ * {@link rit.eyeTrackingAPI.EventDetection.GazeEventDetector}.
+ *
+ * @author Mark Hazlewood
+ *
+ * @see GazeExecutors
+ */
+public class GazeEventBus implements GazeEventListener
+{
+   // <editor-fold defaultstate="expanded" desc="Constants">
+
+   /**
+    * Default number of samples queued per subscriber; about a second at
+    * 250 Hz.
+    */
+   public static final int DEFAULT_QUEUE_CAPACITY = 256;
+
+   /*
+    * Most samples or events delivered by one task before it is resubmitted,
+    * so subscribers sharing a pool take turns.
+    */
+   private static final int DELIVERY_BATCH = 64;
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Private Members">
+
+   // Replaced, never changed, so publishing can walk it without an iterator
+   private final Object mSampleSubscriptionsLock = new Object();
+   private volatile SampleSubscription[] mSampleSubscriptions = new SampleSubscription[0];
+   private final CopyOnWriteArrayList<EventSubscription> mEventSubscriptions = new CopyOnWriteArrayList<>();
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Subscription">
+
+   /**
+    * A subscriber's registration with the bus.
+    */
+   public abstract static class Subscription
+   {
+      private final Executor mExecutor;
+      private final AtomicBoolean mScheduled = new AtomicBoolean(false);
+      private volatile boolean mCancelled = false;
+      private volatile long mDeliveredCount = 0;
+
+      private final Runnable mDeliveryTask = new Runnable()
+      {
+         @Override
+         public void run()
+         {
+            deliver();
+         }
+      };
+
+      Subscription(Executor executor)
+      {
+         if (executor == null)
+         {
+            throw new IllegalArgumentException("A delivery executor is required");
+         }
+         mExecutor = executor;
+      }
+
+      /*
+       * Makes sure a delivery task is pending. Called after every enqueue.
+       */
+      final void schedule()
+      {
+         if (!mCancelled && mScheduled.compareAndSet(false, true))
+         {
+            submit();
+         }
+      }
+
+      private void submit()
+      {
+         try
+         {
+            mExecutor.execute(mDeliveryTask);
+         }
+         catch (RejectedExecutionException ex)
+         {
+            // The executor has been shut down; nothing more can be delivered
+            mCancelled = true;
+         }
+      }
+
+      private void deliver()
+      {
+         while (!mCancelled)
+         {
+            int delivered = deliverQueued(DELIVERY_BATCH);
+            mDeliveredCount += delivered;
+
+            if (delivered == DELIVERY_BATCH)
+            {
+               // Give other subscribers on the same executor a turn
+               submit();
+               return;
+            }
+
+            mScheduled.set(false);
+
+            // Anything published after the last poll but before the flag was
+            // cleared would otherwise wait for the next publish
+            if (!hasQueued() || !mScheduled.compareAndSet(false, true))
+            {
+               return;
+            }
+         }
+
+         // Cancelled while this task was pending. The flag stays set, so no
+         // other delivery can start.
+         discardQueued();
+      }
+
+      /*
+       * Empties the queue after cancelling, unless a delivery task is pending,
+       * in which case that task does so. Only the thread holding the scheduled
+       * flag may take from a sample queue.
+       */
+      final void discardWhenIdle()
+      {
+         if (mScheduled.compareAndSet(false, true))
+         {
+            discardQueued();
+         }
+      }
+
+      /*
+       * Delivers up to the given number of queued items, on the executor.
+       */
+      abstract int deliverQueued(int limit);
+
+      abstract boolean hasQueued();
+
+      abstract void discardQueued();
+
+      /**
+       * Stops delivery. Anything still queued is discarded.
+       */
+      public abstract void cancel();
+
+      final void markCancelled()
+      {
+         mCancelled = true;
+      }
+
+      public boolean isCancelled()
+      {
+         return mCancelled;
+      }
+
+      /**
+       * @return Number of samples or events handed to the subscriber so far.
+       */
+      public long getDeliveredCount()
+      {
+         return mDeliveredCount;
+      }
+
+      /**
+       * @return Number of samples or events the subscriber missed because its
+       * queue was full.
+       */
+      public abstract long getDroppedCount();
+   }
+
+   private final class SampleSubscription extends Subscription
+   {
+      private final GazeSampleSubscriber mSubscriber;
+      private final GazeSampleRingBuffer mQueue;
+      private final GazeSample mDeliverySample = new GazeSample();
+
+      SampleSubscription(GazeSampleSubscriber subscriber, int capacity, OverflowPolicy overflowPolicy, Executor executor)
+      {
+         super(executor);
+         mSubscriber = subscriber;
+         mQueue = new GazeSampleRingBuffer(capacity, overflowPolicy);
+      }
+
+      @Override
+      int deliverQueued(int limit)
+      {
+         int delivered = 0;
+         while (delivered < limit && !isCancelled() && mQueue.poll(mDeliverySample))
+         {
+            try
+            {
+               mSubscriber.sampleReceived(mDeliverySample);
+            }
+            catch (RuntimeException ex)
+            {
+               ex.printStackTrace();
+            }
+            delivered++;
+         }
+         return delivered;
+      }
+
+      @Override
+      boolean hasQueued()
+      {
+         return !mQueue.isEmpty();
+      }
+
+      @Override
+      void discardQueued()
+      {
+         while (mQueue.poll(mDeliverySample))
+         {
+            // Dropped
+         }
+      }
+
+      @Override
+      public void cancel()
+      {
+         markCancelled();
+         removeSampleSubscription(this);
+         discardWhenIdle();
+      }
+
+      @Override
+      public long getDroppedCount()
+      {
+         return mQueue.getDroppedCount();
+      }
+   }
+
+   private final class EventSubscription extends Subscription
+   {
+      private final GazeEventListener mListener;
+      private final ArrayBlockingQueue<GazeEvent> mQueue;
+      private final AtomicLong mDroppedCount = new AtomicLong(0);
+
+      EventSubscription(GazeEventListener listener, int capacity, Executor executor)
+      {
+         super(executor);
+         mListener = listener;
+         mQueue = new ArrayBlockingQueue<>(capacity);
+      }
+
+      /*
+       * Events are few and each one matters, so a full queue drops the
+       * newest rather than overwriting.
+       */
+      void enqueue(GazeEvent event)
+      {
+         if (mQueue.offer(event))
+         {
+            schedule();
+         }
+         else
+         {
+            mDroppedCount.incrementAndGet();
+         }
+      }
+
+      @Override
+      int deliverQueued(int limit)
+      {
+         int delivered = 0;
+         GazeEvent event;
+         while (delivered < limit && !isCancelled() && (event = mQueue.poll()) != null)
+         {
+            try
+            {
+               mListener.gazeEventDetected(event);
+            }
+            catch (RuntimeException ex)
+            {
+               ex.printStackTrace();
+            }
+            delivered++;
+         }
+         return delivered;
+      }
+
+      @Override
+      boolean hasQueued()
+      {
+         return !mQueue.isEmpty();
+      }
+
+      @Override
+      void discardQueued()
+      {
+         mQueue.clear();
+      }
+
+      @Override
+      public void cancel()
+      {
+         markCancelled();
+         mEventSubscriptions.remove(this);
+         mQueue.clear();
+      }
+
+      @Override
+      public long getDroppedCount()
+      {
+         return mDroppedCount.get();
+      }
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Subscribing">
+
+   /**
+    * Subscribes to filtered samples with a queue of
+    * {@link #DEFAULT_QUEUE_CAPACITY} that drops the oldest samples when full.
+    */
+   public Subscription subscribeSamples(GazeSampleSubscriber subscriber, Executor executor)
+   {
+      return subscribeSamples(subscriber, DEFAULT_QUEUE_CAPACITY, OverflowPolicy.DROP_OLDEST, executor);
+   }
+
+   /**
+    * Subscribes to filtered samples.
+    *
+    * @param subscriber Receives the samples.
+    * @param capacity Samples queued before the overflow policy applies.
+    * @param overflowPolicy What the subscriber misses when it falls behind.
+    * A cursor wants {@link OverflowPolicy#COALESCE_TO_LATEST}; a recorder
+    * wants a large queue that drops as little as possible.
+    * @param executor Runs the deliveries.
+    *
+    * @return The subscription, to cancel it or to read its counters.
+    */
+   public Subscription subscribeSamples(GazeSampleSubscriber subscriber, int capacity, OverflowPolicy overflowPolicy, Executor executor)
+   {
+      SampleSubscription subscription = new SampleSubscription(subscriber, capacity, overflowPolicy, executor);
+      synchronized (mSampleSubscriptionsLock)
+      {
+         SampleSubscription[] subscriptions = Arrays.copyOf(mSampleSubscriptions, mSampleSubscriptions.length + 1);
+         subscriptions[subscriptions.length - 1] = subscription;
+         mSampleSubscriptions = subscriptions;
+      }
+      return subscription;
+   }
+
+   private void removeSampleSubscription(SampleSubscription subscription)
+   {
+      synchronized (mSampleSubscriptionsLock)
+      {
+         SampleSubscription[] subscriptions = mSampleSubscriptions;
+         for (int i = 0; i < subscriptions.length; i++)
+         {
+            if (subscriptions[i] == subscription)
+            {
+               SampleSubscription[] remaining = new SampleSubscription[subscriptions.length - 1];
+               System.arraycopy(subscriptions, 0, remaining, 0, i);
+               System.arraycopy(subscriptions, i + 1, remaining, i, remaining.length - i);
+               mSampleSubscriptions = remaining;
+               return;
+            }
+         }
+      }
+   }
+
+   /**
+    * Subscribes to gaze events with a queue of
+    * {@link #DEFAULT_QUEUE_CAPACITY}.
+    */
+   public Subscription subscribeEvents(GazeEventListener listener, Executor executor)
+   {
+      return subscribeEvents(listener, DEFAULT_QUEUE_CAPACITY, executor);
+   }
+
+   /**
+    * Subscribes to gaze events. Events arriving while the queue is full are
+    * dropped.
+    *
+    * @param listener Receives the events.
+    * @param capacity Events queued before new ones are dropped.
+    * @param executor Runs the deliveries.
+    *
+    * @return The subscription, to cancel it or to read its counters.
+    */
+   public Subscription subscribeEvents(GazeEventListener listener, int capacity, Executor executor)
+   {
+      EventSubscription subscription = new EventSubscription(listener, capacity, executor);
+      mEventSubscriptions.add(subscription);
+      return subscription;
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Publishing">
+
+   /**
+    * Queues a sample for every sample subscriber. Never blocks, and allocates
+    * nothing itself; only a subscriber's executor may, when a delivery task
+    * is handed to it. Must only be called from one thread at a time.
+    *
+    * @param sample The sample, copied so the caller may reuse it.
+    */
+   public void publish(GazeSample sample)
+   {
+      SampleSubscription[] subscriptions = mSampleSubscriptions;
+      for (int i = 0; i < subscriptions.length; i++)
+      {
+         SampleSubscription subscription = subscriptions[i];
+         subscription.mQueue.offer(sample);
+         subscription.schedule();
+      }
+   }
+
+   /**
+    * Queues an event for every event subscriber. May be called from any
+    * thread.
+    *
+    * @param event The event. Events are immutable and shared by all
+    * subscribers.
+    */
+   public void publish(GazeEvent event)
+   {
+      for (EventSubscription subscription : mEventSubscriptions)
+      {
+         subscription.enqueue(event);
+      }
+   }
+
+   @Override
+   public void gazeEventDetected(GazeEvent event)
+   {
+      publish(event);
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Properties">
+
+   public int getSampleSubscriberCount()
+   {
+      return mSampleSubscriptions.length;
+   }
+
+   public int getEventSubscriberCount()
+   {
+      return mEventSubscriptions.size();
+   }
+
+   // </editor-fold>
+}
@@ -0,0 +1,125 @@
+package rit.eyeTrackingAPI.ApplicationUtilities;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Factory methods for the executors that gaze delivery work is run on, such as
+ * the subscribers of a {@link GazeEventBus}.
+ *
+ * Virtual threads are used when the running JVM has them (Java 21 and later).
+ * The API itself is built for older JVMs, so they are looked up reflectively
+ * once, and a pool of daemon platform threads is used in their place when
+ * they are not available.
+ *
+ * @author Mark Hazlewood
+ */
+public final class GazeExecutors
+{
+   private GazeExecutors()
+   {
+   }
+
+   /**
+    * @return An executor that runs every task on a new virtual thread, or on a
+    * cached pool of daemon threads on JVMs without virtual threads. Suited to
+    * many subscribers that mostly wait, such as recorders.
+    */
+   public static ExecutorService virtualThreadPerTask(String namePrefix)
+   {
+      ExecutorService executor = newVirtualThreadPerTaskExecutor();
+      if (executor != null)
+      {
+         return executor;
+      }
+
+      return Executors.newCachedThreadPool(daemonThreadFactory(namePrefix));
+   }
+
+   /**
+    * @return An executor with a single daemon thread of its own. Suited to a
+    * latency sensitive subscriber, such as one moving the cursor, that should
+    * never queue behind anyone else's work.
+    */
+   public static ExecutorService dedicatedThread(String name)
+   {
+      return Executors.newSingleThreadExecutor(daemonThreadFactory(name));
+   }
+
+   /**
+    * @return A fixed pool of daemon threads to be shared between several
+    * subscribers.
+    */
+   public static ExecutorService sharedPool(int threads, String namePrefix)
+   {
+      return Executors.newFixedThreadPool(threads, daemonThreadFactory(namePrefix));
+   }
+
+   /**
+    * @return True if {@link #virtualThreadPerTask(String)} really uses
+    * virtual threads on this JVM.
+    */
+   public static boolean virtualThreadsAvailable()
+   {
+      return VIRTUAL_EXECUTOR_FACTORY != null;
+   }
+
+   /**
+    * @return A factory for daemon threads named after the prefix and a
+    * sequence number.
+    */
+   public static ThreadFactory daemonThreadFactory(final String namePrefix)
+   {
+      return new ThreadFactory()
+      {
+         private final AtomicInteger mCount = new AtomicInteger(0);
+
+         @Override
+         public Thread newThread(Runnable task)
+         {
+            Thread thread = new Thread(task, namePrefix + "-" + mCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+         }
+      };
+   }
+
+   // <editor-fold defaultstate="expanded" desc="Virtual Threads">
+
+   private static final Method VIRTUAL_EXECUTOR_FACTORY = findVirtualExecutorFactory();
+
+   private static Method findVirtualExecutorFactory()
+   {
+      try
+      {
+         return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+      }
+      catch (NoSuchMethodException ex)
+      {
+         return null;
+      }
+   }
+
+   private static ExecutorService newVirtualThreadPerTaskExecutor()
+   {
+      if (VIRTUAL_EXECUTOR_FACTORY == null)
+      {
+         return null;
+      }
+
+      try
+      {
+         return (ExecutorService) VIRTUAL_EXECUTOR_FACTORY.invoke(null);
+      }
+      catch (ReflectiveOperationException ex)
+      {
+         ex.printStackTrace();
+         return null;
+      }
+   }
+
+   // </editor-fold>
+}
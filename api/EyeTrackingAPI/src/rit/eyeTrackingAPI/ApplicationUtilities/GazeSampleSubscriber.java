@@ -0,0 +1,20 @@
+package rit.eyeTrackingAPI.ApplicationUtilities;
+
+import rit.eyeTrackingAPI.DataConstructs.GazeSample;
+
+/**
+ * Receives filtered gaze samples from a {@link GazeEventBus}.
+ *
+ * @author Mark Hazlewood
+ */
+public interface GazeSampleSubscriber
+{
+   /**
+    * Called on the subscriber's own executor for every sample it receives,
+    * one at a time and in order. The sample is reused for the next one, so
+    * copy anything that needs to be kept.
+    *
+    * @param sample The filtered sample.
+    */
+   void sampleReceived(GazeSample sample);
+}
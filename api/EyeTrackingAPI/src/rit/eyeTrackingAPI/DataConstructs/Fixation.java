@@ -15,7 +15,12 @@ public class Fixation
    /**
     * how many samples the user was "fixated" at this point
     */
-   private int cycles;
+   private volatile int cycles;
+
+   /**
+    * System.nanoTime() of the last sample counted towards this fixation
+    */
+   private volatile long lastUpdatedNanos;
 
    /**
     * the coordinates of the fixation
@@ -24,7 +29,8 @@ public class Fixation
 
    /**
     * Constructs a new fixation with the specified coordinates and increments
-    * cycles to 1.
+    * cycles to 1. Only the filtering thread should construct or increment a
+    * fixation; any thread may read it.
     *
     * @param coordinates
     */
@@ -32,6 +38,7 @@ public class Fixation
    {
       this.coordinates = coordinates;
       cycles = 1;
+      lastUpdatedNanos = System.nanoTime();
    }
 
    /**
@@ -40,6 +47,7 @@ public class Fixation
    public void incrementCycles()
    {
       cycles++;
+      lastUpdatedNanos = System.nanoTime();
    }
 
    /**
@@ -63,4 +71,15 @@ public class Fixation
       return this.cycles;
    }
 
+   /**
+    * Accessor for the field "lastUpdatedNanos"
+    *
+    * @return the System.nanoTime() at which a sample was last counted towards
+    * this fixation
+    */
+   public long getLastUpdatedNanos()
+   {
+      return this.lastUpdatedNanos;
+   }
+
 }
@@ -0,0 +1,352 @@
+package rit.eyeTrackingAPI.DataConstructs;
+
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A spatial index over the fixations recorded during a session.
+ *
+ * Fixations are hashed into a uniform grid of square cells, one match radius
+ * wide, keyed on their screen coordinates. Finding the fixation nearest to a
+ * point therefore only looks at the 3x3 block of cells around it, however
+ * long the session has run, instead of scanning every fixation ever seen.
+ *
+ * Retention is bounded. Fixations are kept in the order they were last
+ * visited, and the least recently visited ones are evicted once the index
+ * holds more than {@link #getMaxFixations()} of them or, if a maximum age is
+ * set, once they have not been visited for that long. Samples should be
+ * counted towards a fixation through {@link #countSample(Fixation)}, so the
+ * order stays that of each fixation's last update and a fixation that is
+ * being extended is never the one evicted as old.
+ *
+ * The index itself is not thread safe; it is meant to be updated by the
+ * filtering thread. Other threads read it through {@link #snapshot()}, which
+ * returns an unmodifiable copy that is only rebuilt after the index changes.
+ *
+ * @author Mark Hazlewood
+ *
+ * @see Fixation
+ */
+public class FixationIndex
+{
+   // <editor-fold defaultstate="expanded" desc="Constants">
+
+   /**
+    * Default number of fixations retained, enough for well over an hour of
+    * typical viewing.
+    */
+   public static final int DEFAULT_MAX_FIXATIONS = 8192;
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Private Members">
+
+   private final int mMatchRadius;
+   private final int mCellSize;
+   private final HashMap<Long, ArrayList<Fixation>> mCells = new HashMap<>();
+
+   // Least recently visited first
+   private final LinkedHashSet<Fixation> mRecency = new LinkedHashSet<>();
+   private Fixation mMostRecent = null;
+
+   private int mMaxFixations = DEFAULT_MAX_FIXATIONS;
+   private long mMaxAgeNanos = 0;
+   private long mEvictedCount = 0;
+
+   private volatile List<Fixation> mSnapshot = Collections.emptyList();
+   private boolean mSnapshotStale = false;
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Constructor(s)">
+
+   /**
+    * @param matchRadius Largest distance, in pixels, at which a point is
+    * considered to be at an existing fixation. Zero matches exact coordinates
+    * only.
+    */
+   public FixationIndex(int matchRadius)
+   {
+      if (matchRadius < 0)
+      {
+         throw new IllegalArgumentException("Match radius must not be negative");
+      }
+
+      mMatchRadius = matchRadius;
+      mCellSize = Math.max(matchRadius, 1);
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Lookup and Update">
+
+   /**
+    * Finds the fixation closest to a point, within the match radius.
+    *
+    * @param x Screen x coordinate.
+    * @param y Screen y coordinate.
+    *
+    * @return The nearest fixation, or null if none is within range.
+    */
+   public Fixation findNearest(int x, int y)
+   {
+      long radiusSquared = (long) mMatchRadius * mMatchRadius;
+      int cellX = cellOf(x);
+      int cellY = cellOf(y);
+
+      Fixation nearest = null;
+      long nearestDistance = Long.MAX_VALUE;
+
+      for (int cx = cellX - 1; cx <= cellX + 1; cx++)
+      {
+         for (int cy = cellY - 1; cy <= cellY + 1; cy++)
+         {
+            ArrayList<Fixation> cell = mCells.get(cellKey(cx, cy));
+            if (cell == null)
+            {
+               continue;
+            }
+
+            for (int i = 0; i < cell.size(); i++)
+            {
+               Fixation candidate = cell.get(i);
+               Point p = candidate.getCoordinates();
+               long dx = p.x - x;
+               long dy = p.y - y;
+               long distance = dx * dx + dy * dy;
+
+               if (distance <= radiusSquared && distance < nearestDistance)
+               {
+                  nearest = candidate;
+                  nearestDistance = distance;
+               }
+            }
+         }
+      }
+
+      return nearest;
+   }
+
+   /**
+    * Adds a new fixation at the given point and marks it as the most recently
+    * visited.
+    *
+    * @param x Screen x coordinate.
+    * @param y Screen y coordinate.
+    *
+    * @return The new fixation.
+    */
+   public Fixation add(int x, int y)
+   {
+      Fixation fixation = new Fixation(new Point(x, y));
+
+      long key = cellKey(cellOf(x), cellOf(y));
+      ArrayList<Fixation> cell = mCells.get(key);
+      if (cell == null)
+      {
+         cell = new ArrayList<>(4);
+         mCells.put(key, cell);
+      }
+      cell.add(fixation);
+      mRecency.add(fixation);
+      mMostRecent = fixation;
+
+      mSnapshotStale = true;
+      evict(fixation);
+
+      return fixation;
+   }
+
+   /**
+    * Marks a fixation as the most recently visited, protecting it from
+    * eviction for longest.
+    *
+    * @param fixation A fixation held by this index.
+    */
+   public void touch(Fixation fixation)
+   {
+      // Consecutive samples usually extend the same fixation
+      if (fixation != mMostRecent && mRecency.remove(fixation))
+      {
+         mRecency.add(fixation);
+         mMostRecent = fixation;
+         mSnapshotStale = true;
+      }
+   }
+
+   /**
+    * Counts another sample towards a fixation and marks it as the most
+    * recently visited.
+    *
+    * @param fixation A fixation held by this index.
+    */
+   public void countSample(Fixation fixation)
+   {
+      fixation.incrementCycles();
+      touch(fixation);
+   }
+
+   /**
+    * Removes every fixation.
+    */
+   public void clear()
+   {
+      mCells.clear();
+      mRecency.clear();
+      mMostRecent = null;
+      mSnapshotStale = true;
+   }
+
+   /*
+    * Drops least recently visited fixations until the index is within its
+    * size and age limits. The fixation being kept is never dropped.
+    */
+   private void evict(Fixation keep)
+   {
+      long cutoff = mMaxAgeNanos > 0 ? System.nanoTime() - mMaxAgeNanos : 0;
+
+      Iterator<Fixation> oldestFirst = mRecency.iterator();
+      while (oldestFirst.hasNext())
+      {
+         Fixation oldest = oldestFirst.next();
+         boolean tooMany = mRecency.size() > mMaxFixations;
+         boolean tooOld = mMaxAgeNanos > 0 && oldest.getLastUpdatedNanos() - cutoff < 0;
+
+         if (oldest == keep || !(tooMany || tooOld))
+         {
+            break;
+         }
+
+         oldestFirst.remove();
+         removeFromCell(oldest);
+         if (oldest == mMostRecent)
+         {
+            mMostRecent = null;
+         }
+         mEvictedCount++;
+         mSnapshotStale = true;
+      }
+   }
+
+   private void removeFromCell(Fixation fixation)
+   {
+      Point p = fixation.getCoordinates();
+      long key = cellKey(cellOf(p.x), cellOf(p.y));
+      ArrayList<Fixation> cell = mCells.get(key);
+
+      if (cell != null)
+      {
+         cell.remove(fixation);
+         if (cell.isEmpty())
+         {
+            mCells.remove(key);
+         }
+      }
+   }
+
+   /*
+    * Cell a coordinate falls in, rounding towards negative infinity so cells
+    * left of or above the primary screen are the same size as the rest.
+    */
+   private int cellOf(int coordinate)
+   {
+      int cell = coordinate / mCellSize;
+      if (coordinate < 0 && cell * mCellSize != coordinate)
+      {
+         cell--;
+      }
+      return cell;
+   }
+
+   private static long cellKey(int cellX, int cellY)
+   {
+      return ((long) cellX << 32) | (cellY & 0xFFFFFFFFL);
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Snapshots">
+
+   /**
+    * Returns an unmodifiable view of the retained fixations, least recently
+    * visited first. The view does not change as the index does; call again
+    * for an up to date one. Cycle counts of the fixations themselves keep
+    * updating.
+    *
+    * Must be called under the same lock as the methods that update the
+    * index. The returned list may then be used freely on any thread.
+    *
+    * @return The retained fixations.
+    */
+   public List<Fixation> snapshot()
+   {
+      if (mSnapshotStale)
+      {
+         mSnapshot = Collections.unmodifiableList(new ArrayList<>(mRecency));
+         mSnapshotStale = false;
+      }
+
+      return mSnapshot;
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Properties">
+
+   public int size()
+   {
+      return mRecency.size();
+   }
+
+   public int getMatchRadius()
+   {
+      return mMatchRadius;
+   }
+
+   public int getMaxFixations()
+   {
+      return mMaxFixations;
+   }
+
+   /**
+    * @param maxFixations Most fixations to retain. Takes effect the next time
+    * a fixation is added.
+    */
+   public void setMaxFixations(int maxFixations)
+   {
+      if (maxFixations < 1)
+      {
+         throw new IllegalArgumentException("At least one fixation must be retained");
+      }
+
+      mMaxFixations = maxFixations;
+   }
+
+   /**
+    * @param maxAge How long a fixation is kept after it was last visited, or
+    * zero to keep fixations regardless of age. Takes effect the next time a
+    * fixation is added.
+    * @param unit Unit of the age.
+    */
+   public void setMaxAge(long maxAge, TimeUnit unit)
+   {
+      mMaxAgeNanos = Math.max(0, unit.toNanos(maxAge));
+   }
+
+   /**
+    * @return Number of fixations dropped so far to stay within the retention
+    * limits.
+    */
+   public long getEvictedCount()
+   {
+      return mEvictedCount;
+   }
+
+   // </editor-fold>
+}
@@ -16,6 +16,17 @@ public class GazePoint
 
    private Filter filter;
 
+   /*
+    * Reused for coordinate-only updates so they take the same path as full
+    * samples without allocating.
+    */
+   private final GazeSample coordinateSample = new GazeSample();
+
+   /*
+    * Copy of the most recent raw sample, including its timestamps.
+    */
+   private final GazeSample latestSample = new GazeSample();
+
    /**
     * The constructor for the cursor class. Creates a cursor with coordinates
     * (0,0)
@@ -50,8 +61,36 @@ public class GazePoint
 
    public void setCoordinates(int x, int y)
    {
-      this.x = x;
-      this.y = y;
-      filter.filter(x, y);
+      long now = System.nanoTime();
+      coordinateSample.set(x, y);
+      coordinateSample.setReceiveNanos(now);
+      coordinateSample.setParsedNanos(now);
+      setCoordinates(coordinateSample);
+   }
+
+   /**
+    * Passes a full sample from the eye tracker on to the filter. The sample is
+    * not retained, so the caller may refill and reuse it for the next datagram.
+    *
+    * @param sample The latest raw sample.
+    */
+   public void setCoordinates(GazeSample sample)
+   {
+      this.x = sample.getX();
+      this.y = sample.getY();
+      latestSample.copyFrom(sample);
+      filter.filter(sample);
+   }
+
+   /**
+    * Accessor for the most recent raw sample, with its tracker timestamp and
+    * receive time. The same instance is refilled for every sample and is only
+    * consistent when read from the eye tracker client's thread.
+    *
+    * @return the latest raw sample
+    */
+   public GazeSample getLatestSample()
+   {
+      return latestSample;
    }
 }
@@ -0,0 +1,242 @@
+package rit.eyeTrackingAPI.DataConstructs;
+
+/**
+ * A single, mutable gaze sample as reported by an eye tracker. Holds the
+ * combined screen position, the per-eye screen positions and the tracker's own
+ * timestamp in primitive fields.
+ *
+ * Alongside the tracker timestamp each sample carries {@link System#nanoTime()}
+ * stamps taken as it passes through the pipeline: when its datagram was
+ * received, when it was parsed and when the filter published it. A stamp of
+ * zero means the stage has not stamped the sample.
+ *
+ * Instances are meant to be reused: an eye tracker client owns one sample that
+ * it refills for every datagram, and each stage that needs to keep a sample
+ * around copies it into a sample of its own with {@link #copyFrom(GazeSample)}.
+ * Nothing in the gaze path should need to allocate a new sample per datagram.
+ *
+ * @author Mark Hazlewood
+ */
+public class GazeSample
+{
+   // <editor-fold defaultstate="expanded" desc="Constants">
+
+   /**
+    * Eye type codes, matching the characters iViewX reports in the %ET field.
+    */
+   public static final char EYE_UNKNOWN = '?';
+   public static final char EYE_LEFT = 'l';
+   public static final char EYE_RIGHT = 'r';
+   public static final char EYE_BINOCULAR = 'b';
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Private Members">
+
+   private int mX = 0;
+   private int mY = 0;
+
+   private int mLeftX = 0;
+   private int mLeftY = 0;
+   private int mRightX = 0;
+   private int mRightY = 0;
+   private char mEyeType = EYE_UNKNOWN;
+
+   private long mTrackerTimestamp = 0;
+
+   private long mReceiveNanos = 0;
+   private long mParsedNanos = 0;
+   private long mFilteredNanos = 0;
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Working Functions">
+
+   /**
+    * Sets the combined screen position for a sample with no per-eye data. Both
+    * eyes are set to the same position.
+    *
+    * @param x X screen coordinate.
+    * @param y Y screen coordinate.
+    */
+   public void set(int x, int y)
+   {
+      mX = x;
+      mY = y;
+      mLeftX = x;
+      mLeftY = y;
+      mRightX = x;
+      mRightY = y;
+   }
+
+   /**
+    * Sets both per-eye positions. The combined position is the average of the
+    * two eyes.
+    */
+   public void setBinocular(int leftX, int leftY, int rightX, int rightY)
+   {
+      mLeftX = leftX;
+      mLeftY = leftY;
+      mRightX = rightX;
+      mRightY = rightY;
+      mX = (leftX + rightX) / 2;
+      mY = (leftY + rightY) / 2;
+      mEyeType = EYE_BINOCULAR;
+   }
+
+   /**
+    * Copies every field of another sample into this one.
+    *
+    * @param other Sample to copy from.
+    */
+   public void copyFrom(GazeSample other)
+   {
+      mX = other.mX;
+      mY = other.mY;
+      mLeftX = other.mLeftX;
+      mLeftY = other.mLeftY;
+      mRightX = other.mRightX;
+      mRightY = other.mRightY;
+      mEyeType = other.mEyeType;
+      mTrackerTimestamp = other.mTrackerTimestamp;
+      mReceiveNanos = other.mReceiveNanos;
+      mParsedNanos = other.mParsedNanos;
+      mFilteredNanos = other.mFilteredNanos;
+   }
+
+   /**
+    * Returns every field to its default value.
+    */
+   public void clear()
+   {
+      set(0, 0);
+      mEyeType = EYE_UNKNOWN;
+      mTrackerTimestamp = 0;
+      mReceiveNanos = 0;
+      mParsedNanos = 0;
+      mFilteredNanos = 0;
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Properties">
+
+   public int getX()
+   {
+      return mX;
+   }
+
+   public int getY()
+   {
+      return mY;
+   }
+
+   /**
+    * Overwrites only the combined screen position, leaving per-eye data and
+    * timing untouched. Used by filters to replace the raw position with a
+    * filtered one.
+    */
+   public void setPosition(int x, int y)
+   {
+      mX = x;
+      mY = y;
+   }
+
+   public int getLeftX()
+   {
+      return mLeftX;
+   }
+
+   public int getLeftY()
+   {
+      return mLeftY;
+   }
+
+   public int getRightX()
+   {
+      return mRightX;
+   }
+
+   public int getRightY()
+   {
+      return mRightY;
+   }
+
+   /**
+    * @return One of {@link #EYE_LEFT}, {@link #EYE_RIGHT},
+    * {@link #EYE_BINOCULAR} or {@link #EYE_UNKNOWN}.
+    */
+   public char getEyeType()
+   {
+      return mEyeType;
+   }
+
+   public void setEyeType(char eyeType)
+   {
+      mEyeType = eyeType;
+   }
+
+   /**
+    * @return The timestamp reported by the tracker itself, in the tracker's
+    * units (microseconds for iViewX). Zero if the tracker did not report one.
+    */
+   public long getTrackerTimestamp()
+   {
+      return mTrackerTimestamp;
+   }
+
+   public void setTrackerTimestamp(long trackerTimestamp)
+   {
+      mTrackerTimestamp = trackerTimestamp;
+   }
+
+   /**
+    * @return {@link System#nanoTime()} when the datagram holding this sample
+    * was received, or zero if unknown.
+    */
+   public long getReceiveNanos()
+   {
+      return mReceiveNanos;
+   }
+
+   public void setReceiveNanos(long receiveNanos)
+   {
+      mReceiveNanos = receiveNanos;
+   }
+
+   /**
+    * @return {@link System#nanoTime()} when this sample was decoded from its
+    * datagram, or zero if unknown.
+    */
+   public long getParsedNanos()
+   {
+      return mParsedNanos;
+   }
+
+   public void setParsedNanos(long parsedNanos)
+   {
+      mParsedNanos = parsedNanos;
+   }
+
+   /**
+    * @return {@link System#nanoTime()} when a filter published this sample,
+    * or zero if it has not been filtered.
+    */
+   public long getFilteredNanos()
+   {
+      return mFilteredNanos;
+   }
+
+   public void setFilteredNanos(long filteredNanos)
+   {
+      mFilteredNanos = filteredNanos;
+   }
+
+   // </editor-fold>
+
+   @Override
+   public String toString()
+   {
+      return "GazeSample[" + mX + "," + mY + " eye=" + mEyeType + " ts=" + mTrackerTimestamp + "]";
+   }
+}
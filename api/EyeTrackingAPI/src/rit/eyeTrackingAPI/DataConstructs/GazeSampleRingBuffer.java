@@ -0,0 +1,376 @@
+package rit.eyeTrackingAPI.DataConstructs;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A lock-free, single-producer/single-consumer ring of filtered gaze samples.
+ * Storage is preallocated as primitive arrays at construction time, so neither
+ * publishing nor draining a sample allocates.
+ *
+ * The producer (normally the eye tracker client thread running a
+ * {@link rit.eyeTrackingAPI.SmoothingFilters.Filter}) calls
+ * {@link #offer(GazeSample)} and never blocks. The consumer (normally the filter
+ * poller thread) calls {@link #poll(GazeSample)} and may park in
+ * {@link #awaitSample(long)} while the ring is empty. What happens when the consumer falls behind is decided by the
+ * {@link OverflowPolicy} given at construction.
+ *
+ * Positions in the ring are tracked with two monotonically increasing sequence
+ * counters. The head is only written by the producer and the tail is only
+ * written by the consumer; a slot is always written before the head sequence
+ * that covers it is published.
+ *
+ * @author Mark Hazlewood
+ *
+ * @see OverflowPolicy
+ */
+public class GazeSampleRingBuffer
+{
+   // <editor-fold defaultstate="expanded" desc="Overflow Policy">
+
+   /**
+    * Describes how the ring behaves once the producer gets a full ring ahead of
+    * the consumer.
+    */
+   public enum OverflowPolicy
+   {
+      /**
+       * The oldest unread samples are overwritten by new ones. The consumer
+       * skips ahead past anything that was overwritten.
+       */
+      DROP_OLDEST,
+
+      /**
+       * New samples are discarded until the consumer makes room.
+       */
+      DROP_NEWEST,
+
+      /**
+       * Every poll returns only the most recent sample, discarding anything
+       * older that was still waiting. Suited to consumers such as a cursor that
+       * only care about where the user is looking right now.
+       */
+      COALESCE_TO_LATEST
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Private Members">
+
+   private final int mCapacity;
+   private final int mIndexMask;
+   private final OverflowPolicy mOverflowPolicy;
+
+   private final int[] mXValues;
+   private final int[] mYValues;
+   private final int[] mLeftXValues;
+   private final int[] mLeftYValues;
+   private final int[] mRightXValues;
+   private final int[] mRightYValues;
+   private final char[] mEyeTypes;
+   private final long[] mTrackerTimestamps;
+   private final long[] mReceiveNanos;
+   private final long[] mParsedNanos;
+   private final long[] mFilteredNanos;
+
+   // Sequence of the next slot to be written (producer owned)
+   private final AtomicLong mHeadSequence = new AtomicLong(0);
+
+   // Sequence of the next slot to be read (consumer owned)
+   private final AtomicLong mTailSequence = new AtomicLong(0);
+
+   // Single-writer counters, each written by only one side of the ring
+   private volatile long mDroppedByProducer = 0;
+   private volatile long mDroppedByConsumer = 0;
+
+   private volatile Thread mParkedConsumer = null;
+
+   // Written by the consumer only to order its slot reads, never read
+   private volatile long mReadFence = 0;
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Constructor(s)">
+
+   /**
+    * Creates a new ring.
+    *
+    * @param capacity Minimum number of samples the ring should hold. Rounded up
+    * to the next power of two.
+    * @param overflowPolicy What to do when the consumer falls a full ring behind.
+    */
+   public GazeSampleRingBuffer(int capacity, OverflowPolicy overflowPolicy)
+   {
+      if (capacity < 2)
+      {
+         throw new IllegalArgumentException("Ring capacity must be at least 2");
+      }
+      if (overflowPolicy == null)
+      {
+         throw new IllegalArgumentException("An overflow policy is required");
+      }
+
+      mCapacity = Integer.highestOneBit(capacity - 1) << 1;
+      mIndexMask = mCapacity - 1;
+      mOverflowPolicy = overflowPolicy;
+
+      mXValues = new int[mCapacity];
+      mYValues = new int[mCapacity];
+      mLeftXValues = new int[mCapacity];
+      mLeftYValues = new int[mCapacity];
+      mRightXValues = new int[mCapacity];
+      mRightYValues = new int[mCapacity];
+      mEyeTypes = new char[mCapacity];
+      mTrackerTimestamps = new long[mCapacity];
+      mReceiveNanos = new long[mCapacity];
+      mParsedNanos = new long[mCapacity];
+      mFilteredNanos = new long[mCapacity];
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Producer Functions">
+
+   /**
+    * Publishes a sample to the ring. Never blocks and never allocates; the
+    * sample's fields are copied into the ring so the caller may reuse it
+    * immediately. Must only be called from a single producer thread.
+    *
+    * @param sample Filtered sample to publish.
+    *
+    * @return False if the sample was discarded because the ring was full and
+    * the policy is {@link OverflowPolicy#DROP_NEWEST}, otherwise true.
+    */
+   public boolean offer(GazeSample sample)
+   {
+      long head = mHeadSequence.get();
+
+      if (mOverflowPolicy == OverflowPolicy.DROP_NEWEST
+              && head - mTailSequence.get() >= mCapacity)
+      {
+         mDroppedByProducer = mDroppedByProducer + 1;
+         return false;
+      }
+
+      int index = (int) head & mIndexMask;
+      mXValues[index] = sample.getX();
+      mYValues[index] = sample.getY();
+      mLeftXValues[index] = sample.getLeftX();
+      mLeftYValues[index] = sample.getLeftY();
+      mRightXValues[index] = sample.getRightX();
+      mRightYValues[index] = sample.getRightY();
+      mEyeTypes[index] = sample.getEyeType();
+      mTrackerTimestamps[index] = sample.getTrackerTimestamp();
+      mReceiveNanos[index] = sample.getReceiveNanos();
+      mParsedNanos[index] = sample.getParsedNanos();
+      mFilteredNanos[index] = sample.getFilteredNanos();
+
+      // Volatile store, makes the slot contents visible before the new head.
+      // It has to be a full volatile store and not an ordered one: the read
+      // of mParkedConsumer below must not move ahead of it, or a consumer that
+      // advertised itself and then still saw the old head would be missed and
+      // park for its whole timeout with a sample waiting.
+      mHeadSequence.set(head + 1);
+
+      Thread parked = mParkedConsumer;
+      if (parked != null)
+      {
+         LockSupport.unpark(parked);
+      }
+
+      return true;
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Consumer Functions">
+
+   /**
+    * Removes the next sample from the ring, according to the overflow policy,
+    * and copies it into the given sample. Must only be called from a single
+    * consumer thread.
+    *
+    * @param destination Sample to receive the ring contents.
+    *
+    * @return True if a sample was copied into destination, false if the ring
+    * was empty.
+    */
+   public boolean poll(GazeSample destination)
+   {
+      long tail = mTailSequence.get();
+
+      while (true)
+      {
+         long head = mHeadSequence.get();
+         if (tail == head)
+         {
+            return false;
+         }
+
+         tail = skipOverwrittenSamples(tail, head);
+
+         int index = (int) tail & mIndexMask;
+         int x = mXValues[index];
+         int y = mYValues[index];
+         int leftX = mLeftXValues[index];
+         int leftY = mLeftYValues[index];
+         int rightX = mRightXValues[index];
+         int rightY = mRightYValues[index];
+         char eyeType = mEyeTypes[index];
+         long trackerTimestamp = mTrackerTimestamps[index];
+         long receiveNanos = mReceiveNanos[index];
+         long parsedNanos = mParsedNanos[index];
+         long filteredNanos = mFilteredNanos[index];
+
+         // In overwrite modes the producer may have lapped the slot while it
+         // was being read, in which case try again from the new oldest sample.
+         // The slot the producer is currently writing is one past the published
+         // head, so a sample is only safe if it is strictly less than a full
+         // ring behind.
+         //
+         // The slot reads above are plain reads, which may otherwise be moved
+         // after the volatile re-read of the head. The volatile store to
+         // mReadFence keeps them ahead of it (no load is reordered with a
+         // later volatile store, and no volatile load with an earlier one),
+         // standing in for the load fence the language level does not offer.
+         if (mOverflowPolicy != OverflowPolicy.DROP_NEWEST)
+         {
+            mReadFence = tail;
+            if (mHeadSequence.get() - tail >= mCapacity)
+            {
+               continue;
+            }
+         }
+
+         destination.setBinocular(leftX, leftY, rightX, rightY);
+         destination.setPosition(x, y);
+         destination.setEyeType(eyeType);
+         destination.setTrackerTimestamp(trackerTimestamp);
+         destination.setReceiveNanos(receiveNanos);
+         destination.setParsedNanos(parsedNanos);
+         destination.setFilteredNanos(filteredNanos);
+
+         mTailSequence.lazySet(tail + 1);
+         return true;
+      }
+   }
+
+   /**
+    * Advances a tail sequence past samples that can no longer be read safely,
+    * or that the overflow policy says should be skipped, counting them as
+    * dropped.
+    */
+   private long skipOverwrittenSamples(long tail, long head)
+   {
+      long oldestReadable = tail;
+
+      if (mOverflowPolicy == OverflowPolicy.COALESCE_TO_LATEST)
+      {
+         oldestReadable = head - 1;
+      }
+      else if (mOverflowPolicy == OverflowPolicy.DROP_OLDEST
+              && head - tail >= mCapacity)
+      {
+         oldestReadable = head - mCapacity + 1;
+      }
+
+      if (oldestReadable > tail)
+      {
+         mDroppedByConsumer = mDroppedByConsumer + (oldestReadable - tail);
+         return oldestReadable;
+      }
+
+      return tail;
+   }
+
+   /**
+    * Parks the calling consumer thread until a sample is published, the
+    * timeout expires or the thread is interrupted. Returns immediately if the
+    * ring already holds a sample.
+    *
+    * @param timeoutNanos Maximum time to wait, in nanoseconds.
+    *
+    * @return True if the ring holds at least one sample on return.
+    */
+   public boolean awaitSample(long timeoutNanos)
+   {
+      if (!isEmpty())
+      {
+         return true;
+      }
+
+      mParkedConsumer = Thread.currentThread();
+      try
+      {
+         // Re-check after advertising, a sample may have landed in between
+         if (isEmpty())
+         {
+            LockSupport.parkNanos(this, timeoutNanos);
+         }
+      }
+      finally
+      {
+         mParkedConsumer = null;
+      }
+
+      return !isEmpty();
+   }
+
+   /**
+    * Convenience overload of {@link #awaitSample(long)}.
+    */
+   public boolean awaitSample(long timeout, TimeUnit unit)
+   {
+      return awaitSample(unit.toNanos(timeout));
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Properties">
+
+   public boolean isEmpty()
+   {
+      return mHeadSequence.get() == mTailSequence.get();
+   }
+
+   /**
+    * @return Approximate number of samples waiting to be read. Exact when
+    * called from the consumer thread.
+    */
+   public int size()
+   {
+      long size = mHeadSequence.get() - mTailSequence.get();
+      return (int) Math.min(size, mCapacity);
+   }
+
+   public int getCapacity()
+   {
+      return mCapacity;
+   }
+
+   public OverflowPolicy getOverflowPolicy()
+   {
+      return mOverflowPolicy;
+   }
+
+   /**
+    * @return Total number of samples published since construction, including
+    * any that were later overwritten or coalesced.
+    */
+   public long getPublishedCount()
+   {
+      return mHeadSequence.get();
+   }
+
+   /**
+    * @return Total number of samples lost to the overflow policy, whether they
+    * were rejected by the producer or skipped by the consumer.
+    */
+   public long getDroppedCount()
+   {
+      return mDroppedByProducer + mDroppedByConsumer;
+   }
+
+   // </editor-fold>
+}
@@ -0,0 +1,221 @@
+package rit.eyeTrackingAPI.Diagnostics;
+
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+import rit.eyeTrackingAPI.DataConstructs.GazeSample;
+
+/**
+ * Collects per-stage latencies of gaze samples as they leave the pipeline.
+ *
+ * Every {@link GazeSample} is stamped with {@link System#nanoTime()} when its
+ * datagram is received, when it is parsed and when a filter publishes it. When
+ * the sample has been dispatched to the application,
+ * {@link #recordDispatch(GazeSample, long)} turns those stamps into one value
+ * per {@link Stage}, each kept in its own {@link LatencyHistogram}.
+ *
+ * Recording is allocation free and intended to happen on a single thread (the
+ * filter poller). Statistics can be read or dumped from any thread.
+ *
+ * @author Mark Hazlewood
+ *
+ * @see rit.eyeTrackingAPI.ApplicationUtilities.EyeTrackingFilterListener#setLatencyRecorder(GazeLatencyRecorder)
+ */
+public class GazeLatencyRecorder
+{
+   // <editor-fold defaultstate="expanded" desc="Stages">
+
+   /**
+    * The intervals measured for each dispatched sample.
+    */
+   public enum Stage
+   {
+      /**
+       * Time between the receipt of consecutive samples. Shows whether data
+       * arrives at the tracker's rate or in bursts.
+       */
+      RECEIVE_INTERVAL("receive interval"),
+
+      /**
+       * Datagram received to sample decoded.
+       */
+      PARSE("parse"),
+
+      /**
+       * Sample decoded to filtered sample published, including any time spent
+       * waiting on the filter.
+       */
+      FILTER("filter"),
+
+      /**
+       * Filtered sample published to newPoint() returning, including any time
+       * spent queued for the poller.
+       */
+      DISPATCH("dispatch"),
+
+      /**
+       * Datagram received to newPoint() returning: the eye-to-cursor latency
+       * as far as this process can see it.
+       */
+      END_TO_END("end to end");
+
+      private final String mLabel;
+
+      Stage(String label)
+      {
+         mLabel = label;
+      }
+
+      public String getLabel()
+      {
+         return mLabel;
+      }
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Constants">
+
+   /**
+    * Default highest latency tracked with full precision.
+    */
+   public static final long DEFAULT_HIGHEST_TRACKABLE_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Private Members">
+
+   private final LatencyHistogram[] mHistograms;
+   private long mLastReceiveNanos = 0;
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Constructor(s)">
+
+   public GazeLatencyRecorder()
+   {
+      this(DEFAULT_HIGHEST_TRACKABLE_NANOS);
+   }
+
+   /**
+    * @param highestTrackableNanos Largest latency tracked with full precision
+    * in each stage.
+    */
+   public GazeLatencyRecorder(long highestTrackableNanos)
+   {
+      mHistograms = new LatencyHistogram[Stage.values().length];
+      for (int i = 0; i < mHistograms.length; i++)
+      {
+         mHistograms[i] = new LatencyHistogram(highestTrackableNanos);
+      }
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Recording">
+
+   /**
+    * Records every stage of a sample that has just been dispatched. Stages
+    * whose stamps are missing from the sample are skipped.
+    *
+    * @param sample The dispatched sample.
+    * @param dispatchedNanos {@link System#nanoTime()} after dispatch finished.
+    */
+   public void recordDispatch(GazeSample sample, long dispatchedNanos)
+   {
+      long received = sample.getReceiveNanos();
+      long parsed = sample.getParsedNanos();
+      long filtered = sample.getFilteredNanos();
+
+      if (received != 0)
+      {
+         if (mLastReceiveNanos != 0 && received != mLastReceiveNanos)
+         {
+            record(Stage.RECEIVE_INTERVAL, received - mLastReceiveNanos);
+         }
+         mLastReceiveNanos = received;
+
+         record(Stage.END_TO_END, dispatchedNanos - received);
+      }
+
+      if (received != 0 && parsed != 0)
+      {
+         record(Stage.PARSE, parsed - received);
+      }
+
+      if (parsed != 0 && filtered != 0)
+      {
+         record(Stage.FILTER, filtered - parsed);
+      }
+
+      if (filtered != 0)
+      {
+         record(Stage.DISPATCH, dispatchedNanos - filtered);
+      }
+   }
+
+   /**
+    * Records one value for a single stage.
+    *
+    * @param stage The stage measured.
+    * @param latencyNanos The measured latency in nanoseconds.
+    */
+   public void record(Stage stage, long latencyNanos)
+   {
+      mHistograms[stage.ordinal()].recordValue(latencyNanos);
+   }
+
+   /**
+    * Clears every stage.
+    */
+   public void reset()
+   {
+      for (LatencyHistogram histogram : mHistograms)
+      {
+         histogram.reset();
+      }
+      mLastReceiveNanos = 0;
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Queries">
+
+   public LatencyHistogram getHistogram(Stage stage)
+   {
+      return mHistograms[stage.ordinal()];
+   }
+
+   /**
+    * Checks a stage against a latency budget, for example that 99% of samples
+    * reach the cursor within 20 ms:
+    *
+    *    recorder.isWithinBudget(Stage.END_TO_END, 99.0, 20, TimeUnit.MILLISECONDS)
+    *
+    * @param stage Stage to check.
+    * @param percentile Share of samples, 0 to 100, that must meet the budget.
+    * @param budget Latency budget.
+    * @param unit Unit of the budget.
+    *
+    * @return True if at least the given percentage of recorded values were
+    * within budget.
+    */
+   public boolean isWithinBudget(Stage stage, double percentile, long budget, TimeUnit unit)
+   {
+      return getHistogram(stage).getValueAtPercentile(percentile) <= unit.toNanos(budget);
+   }
+
+   /**
+    * Prints a one line summary per stage.
+    *
+    * @param out Stream to print to.
+    */
+   public void outputSummary(PrintStream out)
+   {
+      for (Stage stage : Stage.values())
+      {
+         getHistogram(stage).outputSummary(stage.getLabel(), out);
+      }
+   }
+
+   // </editor-fold>
+}
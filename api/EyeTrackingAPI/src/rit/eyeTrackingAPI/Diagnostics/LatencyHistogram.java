@@ -0,0 +1,288 @@
+package rit.eyeTrackingAPI.Diagnostics;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+
+/**
+ * A fixed-size, log-linear histogram of latencies in nanoseconds, laid out the
+ * same way as an HdrHistogram. Values are grouped into power-of-two buckets,
+ * each split into linear sub-buckets, so every recorded value is kept to
+ * within {@link #getRelativePrecision()} of its true value across the whole
+ * trackable range while the counts array stays a few kilobytes.
+ *
+ * Recording is a handful of shifts and one array increment and never
+ * allocates. It is meant to be called from a single thread; other threads may
+ * read statistics at any time, and will see a consistent enough picture for
+ * monitoring, but should not record.
+ *
+ * @author Mark Hazlewood
+ *
+ * @see GazeLatencyRecorder
+ */
+public class LatencyHistogram
+{
+   // <editor-fold defaultstate="expanded" desc="Constants">
+
+   /*
+    * Each power-of-two bucket is split into 2^SUB_BUCKET_BITS linear steps,
+    * half of which overlap the previous bucket, giving better than 1% precision.
+    */
+   private static final int SUB_BUCKET_BITS = 8;
+   private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+   private static final int SUB_BUCKET_HALF_COUNT = SUB_BUCKET_COUNT / 2;
+   private static final int SUB_BUCKET_HALF_COUNT_MAGNITUDE = SUB_BUCKET_BITS - 1;
+   private static final long SUB_BUCKET_MASK = SUB_BUCKET_COUNT - 1;
+   private static final int LEADING_ZERO_COUNT_BASE = 64 - SUB_BUCKET_HALF_COUNT_MAGNITUDE - 1;
+
+   private static final double NANOS_PER_MILLI = 1000000.0;
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Private Members">
+
+   private final long mHighestTrackableValue;
+   private final long[] mCounts;
+
+   // Written by the recording thread after the counts, so readers see them
+   private volatile long mTotalCount = 0;
+
+   private long mMinValue = Long.MAX_VALUE;
+   private long mMaxValue = 0;
+   private long mTotalValue = 0;
+   private long mClampedCount = 0;
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Constructor(s)">
+
+   /**
+    * Creates an empty histogram.
+    *
+    * @param highestTrackableValue Largest latency, in nanoseconds, that is
+    * tracked with full precision. Larger values are recorded as this value and
+    * counted by {@link #getClampedCount()}.
+    */
+   public LatencyHistogram(long highestTrackableValue)
+   {
+      if (highestTrackableValue < SUB_BUCKET_COUNT)
+      {
+         throw new IllegalArgumentException("Highest trackable value must be at least " + SUB_BUCKET_COUNT);
+      }
+
+      mHighestTrackableValue = highestTrackableValue;
+      mCounts = new long[countsIndexFor(highestTrackableValue) + 1];
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Recording">
+
+   /**
+    * Records a single latency. Negative values, which can only come from a
+    * stage that was not stamped, are ignored.
+    *
+    * @param value Latency in nanoseconds.
+    */
+   public void recordValue(long value)
+   {
+      if (value < 0)
+      {
+         return;
+      }
+
+      if (value > mHighestTrackableValue)
+      {
+         value = mHighestTrackableValue;
+         mClampedCount++;
+      }
+
+      mCounts[countsIndexFor(value)]++;
+      mTotalValue += value;
+      if (value < mMinValue)
+      {
+         mMinValue = value;
+      }
+      if (value > mMaxValue)
+      {
+         mMaxValue = value;
+      }
+
+      mTotalCount = mTotalCount + 1;
+   }
+
+   /**
+    * Clears every recorded value. Should be called from the recording thread,
+    * or while nothing is being recorded.
+    */
+   public void reset()
+   {
+      Arrays.fill(mCounts, 0);
+      mMinValue = Long.MAX_VALUE;
+      mMaxValue = 0;
+      mTotalValue = 0;
+      mClampedCount = 0;
+      mTotalCount = 0;
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Statistics">
+
+   public long getTotalCount()
+   {
+      return mTotalCount;
+   }
+
+   /**
+    * @return Smallest recorded value in nanoseconds, or zero if empty.
+    */
+   public long getMinValue()
+   {
+      return mTotalCount == 0 ? 0 : mMinValue;
+   }
+
+   /**
+    * @return Largest recorded value in nanoseconds, or zero if empty.
+    */
+   public long getMaxValue()
+   {
+      return mMaxValue;
+   }
+
+   /**
+    * @return Mean of the recorded values in nanoseconds, or zero if empty.
+    */
+   public double getMean()
+   {
+      long count = mTotalCount;
+      return count == 0 ? 0 : (double) mTotalValue / count;
+   }
+
+   /**
+    * @return Number of values that exceeded the highest trackable value.
+    */
+   public long getClampedCount()
+   {
+      return mClampedCount;
+   }
+
+   /**
+    * Finds the value at a given percentile, e.g. 99.0 for the 99th percentile.
+    *
+    * @param percentile Percentile between 0 and 100.
+    *
+    * @return The largest value, within the histogram's precision, that at
+    * least the given percentage of recorded values are at or below.
+    */
+   public long getValueAtPercentile(double percentile)
+   {
+      long totalCount = mTotalCount;
+      if (totalCount == 0)
+      {
+         return 0;
+      }
+
+      double clampedPercentile = Math.min(Math.max(percentile, 0.0), 100.0);
+      long countAtPercentile = Math.max(1, (long) Math.ceil(clampedPercentile / 100.0 * totalCount));
+
+      long runningCount = 0;
+      for (int i = 0; i < mCounts.length; i++)
+      {
+         runningCount += mCounts[i];
+         if (runningCount >= countAtPercentile)
+         {
+            return Math.min(highestEquivalentValue(i), mMaxValue);
+         }
+      }
+
+      return mMaxValue;
+   }
+
+   /**
+    * Answers questions such as "what share of samples stayed within the
+    * latency budget".
+    *
+    * @param value Latency in nanoseconds.
+    *
+    * @return Percentage of recorded values at or below the given value.
+    */
+   public double getPercentileAtOrBelowValue(long value)
+   {
+      long totalCount = mTotalCount;
+      if (totalCount == 0)
+      {
+         return 100.0;
+      }
+
+      int targetIndex = countsIndexFor(Math.min(Math.max(value, 0), mHighestTrackableValue));
+      long countAtOrBelow = 0;
+      for (int i = 0; i <= targetIndex; i++)
+      {
+         countAtOrBelow += mCounts[i];
+      }
+
+      return 100.0 * Math.min(countAtOrBelow, totalCount) / totalCount;
+   }
+
+   /**
+    * @return The largest relative error of a recorded value.
+    */
+   public static double getRelativePrecision()
+   {
+      return 1.0 / SUB_BUCKET_HALF_COUNT;
+   }
+
+   /**
+    * Prints count, mean, the common percentiles and max on one line, in
+    * milliseconds.
+    *
+    * @param label Text to start the line with.
+    * @param out Stream to print to.
+    */
+   public void outputSummary(String label, PrintStream out)
+   {
+      out.printf("%-18s n=%-8d mean=%8.3f p50=%8.3f p90=%8.3f p99=%8.3f p99.9=%8.3f max=%8.3f ms%n",
+                 label,
+                 getTotalCount(),
+                 getMean() / NANOS_PER_MILLI,
+                 getValueAtPercentile(50.0) / NANOS_PER_MILLI,
+                 getValueAtPercentile(90.0) / NANOS_PER_MILLI,
+                 getValueAtPercentile(99.0) / NANOS_PER_MILLI,
+                 getValueAtPercentile(99.9) / NANOS_PER_MILLI,
+                 getMaxValue() / NANOS_PER_MILLI);
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Bucket Arithmetic">
+
+   private static int countsIndexFor(long value)
+   {
+      int bucketIndex = LEADING_ZERO_COUNT_BASE - Long.numberOfLeadingZeros(value | SUB_BUCKET_MASK);
+      int subBucketIndex = (int) (value >>> bucketIndex);
+
+      return ((bucketIndex + 1) << SUB_BUCKET_HALF_COUNT_MAGNITUDE) + (subBucketIndex - SUB_BUCKET_HALF_COUNT);
+   }
+
+   private static long lowestEquivalentValue(int countsIndex)
+   {
+      int bucketIndex = (countsIndex >> SUB_BUCKET_HALF_COUNT_MAGNITUDE) - 1;
+      int subBucketIndex = (countsIndex & (SUB_BUCKET_HALF_COUNT - 1)) + SUB_BUCKET_HALF_COUNT;
+
+      if (bucketIndex < 0)
+      {
+         subBucketIndex -= SUB_BUCKET_HALF_COUNT;
+         bucketIndex = 0;
+      }
+
+      return ((long) subBucketIndex) << bucketIndex;
+   }
+
+   private static long highestEquivalentValue(int countsIndex)
+   {
+      int bucketIndex = Math.max((countsIndex >> SUB_BUCKET_HALF_COUNT_MAGNITUDE) - 1, 0);
+      return lowestEquivalentValue(countsIndex) + (1L << bucketIndex) - 1;
+   }
+
+   // </editor-fold>
+}
@@ -0,0 +1,315 @@
+package rit.eyeTrackingAPI.EventDetection;
+
+/**
+ * Dispersion-threshold identification (I-DT). A window of samples spanning the
+ * minimum fixation duration is a fixation if the samples are spread over no
+ * more than a threshold dispersion, measured as the width plus the height of
+ * their bounding box. The fixation then grows with each new sample until
+ * adding one would exceed the threshold.
+ *
+ * This is the streaming form of the classic algorithm. While no fixation is in
+ * progress the detector keeps a sliding window of the most recent samples,
+ * dropping the oldest ones for as long as the window is both long enough and
+ * too spread out. The bounding box of the window is kept up to date with four
+ * monotonic queues, so each sample costs constant amortised time however many
+ * samples the window holds. Once a fixation has started only its bounding box
+ * is kept.
+ *
+ * I-DT is less sensitive to sample to sample noise than
+ * {@link VelocityThresholdDetector}, at the cost of only recognising the end
+ * of a fixation when a sample lands outside it.
+ *
+ * @author Mark Hazlewood
+ */
+public class DispersionThresholdDetector extends GazeEventDetector
+{
+   // <editor-fold defaultstate="expanded" desc="Constants">
+
+   /**
+    * Default threshold, roughly one degree of visual angle at a typical
+    * desktop viewing distance.
+    */
+   public static final int DEFAULT_DISPERSION_THRESHOLD = 50;
+
+   /**
+    * Default most samples held while looking for a fixation; a full minimum
+    * fixation duration at well over the fastest tracker's rate.
+    */
+   public static final int DEFAULT_WINDOW_CAPACITY = 2048;
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Private Members">
+
+   private int mDispersionThreshold;
+
+   // Window of candidate samples, indexed by sequence number
+   private final int mWindowMask;
+   private final int[] mWindowX;
+   private final int[] mWindowY;
+   private final long[] mWindowNanos;
+   private long mWindowHead = 0;
+   private long mWindowTail = 0;
+   private long mWindowSumX = 0;
+   private long mWindowSumY = 0;
+
+   private final ExtremumQueue mMinX;
+   private final ExtremumQueue mMaxX;
+   private final ExtremumQueue mMinY;
+   private final ExtremumQueue mMaxY;
+
+   // Bounding box of the fixation in progress
+   private int mFixationMinX;
+   private int mFixationMaxX;
+   private int mFixationMinY;
+   private int mFixationMaxY;
+
+   private final SampleRun mRun = new SampleRun();
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Constructor(s)">
+
+   public DispersionThresholdDetector()
+   {
+      this(DEFAULT_DISPERSION_THRESHOLD, DEFAULT_WINDOW_CAPACITY);
+   }
+
+   /**
+    * @param dispersionThreshold Largest width plus height, in pixels, of the
+    * box around a fixation's samples.
+    * @param windowCapacity Most samples held while looking for a fixation.
+    * Rounded up to a power of two. Must cover the minimum fixation duration
+    * at the tracker's sampling rate.
+    */
+   public DispersionThresholdDetector(int dispersionThreshold, int windowCapacity)
+   {
+      if (windowCapacity < 2)
+      {
+         throw new IllegalArgumentException("Window capacity must be at least 2");
+      }
+
+      mDispersionThreshold = dispersionThreshold;
+
+      int capacity = Integer.highestOneBit(windowCapacity - 1) << 1;
+      mWindowMask = capacity - 1;
+      mWindowX = new int[capacity];
+      mWindowY = new int[capacity];
+      mWindowNanos = new long[capacity];
+
+      mMinX = new ExtremumQueue(mWindowX, false);
+      mMaxX = new ExtremumQueue(mWindowX, true);
+      mMinY = new ExtremumQueue(mWindowY, false);
+      mMaxY = new ExtremumQueue(mWindowY, true);
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Classification">
+
+   @Override
+   void classify(int x, int y, long timestampNanos, double velocity)
+   {
+      if (isFixating())
+      {
+         int minX = Math.min(mFixationMinX, x);
+         int maxX = Math.max(mFixationMaxX, x);
+         int minY = Math.min(mFixationMinY, y);
+         int maxY = Math.max(mFixationMaxY, y);
+
+         if ((maxX - minX) + (maxY - minY) <= mDispersionThreshold)
+         {
+            mFixationMinX = minX;
+            mFixationMaxX = maxX;
+            mFixationMinY = minY;
+            mFixationMaxY = maxY;
+            fixationContinued(x, y, timestampNanos);
+            return;
+         }
+
+         fixationEnded();
+      }
+
+      pushSample(x, y, timestampNanos);
+
+      // Slide the window along until it is either too short to judge or
+      // compact enough to be a fixation
+      while (windowSpan() >= mMinFixationNanos && windowDispersion() > mDispersionThreshold)
+      {
+         popSample();
+      }
+
+      if (windowSpan() >= mMinFixationNanos)
+      {
+         startFixationFromWindow();
+      }
+   }
+
+   @Override
+   void resetClassifier()
+   {
+      clearWindow();
+   }
+
+   private void startFixationFromWindow()
+   {
+      int first = (int) (mWindowTail & mWindowMask);
+      int last = (int) ((mWindowHead - 1) & mWindowMask);
+
+      mRun.mFirstX = mWindowX[first];
+      mRun.mFirstY = mWindowY[first];
+      mRun.mFirstNanos = mWindowNanos[first];
+      mRun.mLastX = mWindowX[last];
+      mRun.mLastY = mWindowY[last];
+      mRun.mLastNanos = mWindowNanos[last];
+      mRun.mSumX = mWindowSumX;
+      mRun.mSumY = mWindowSumY;
+      mRun.mCount = (int) (mWindowHead - mWindowTail);
+
+      mFixationMinX = mMinX.value();
+      mFixationMaxX = mMaxX.value();
+      mFixationMinY = mMinY.value();
+      mFixationMaxY = mMaxY.value();
+
+      clearWindow();
+      fixationStarted(mRun);
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Sample Window">
+
+   private void pushSample(int x, int y, long timestampNanos)
+   {
+      if (mWindowHead - mWindowTail > mWindowMask)
+      {
+         popSample();
+      }
+
+      int index = (int) (mWindowHead & mWindowMask);
+      mWindowX[index] = x;
+      mWindowY[index] = y;
+      mWindowNanos[index] = timestampNanos;
+      mWindowSumX += x;
+      mWindowSumY += y;
+
+      mMinX.push(mWindowHead);
+      mMaxX.push(mWindowHead);
+      mMinY.push(mWindowHead);
+      mMaxY.push(mWindowHead);
+      mWindowHead++;
+   }
+
+   private void popSample()
+   {
+      int index = (int) (mWindowTail & mWindowMask);
+      mWindowSumX -= mWindowX[index];
+      mWindowSumY -= mWindowY[index];
+      mWindowTail++;
+
+      mMinX.expire(mWindowTail);
+      mMaxX.expire(mWindowTail);
+      mMinY.expire(mWindowTail);
+      mMaxY.expire(mWindowTail);
+   }
+
+   private void clearWindow()
+   {
+      mWindowTail = mWindowHead;
+      mWindowSumX = 0;
+      mWindowSumY = 0;
+
+      mMinX.clear();
+      mMaxX.clear();
+      mMinY.clear();
+      mMaxY.clear();
+   }
+
+   private long windowSpan()
+   {
+      if (mWindowHead - mWindowTail < 2)
+      {
+         return 0;
+      }
+
+      return mWindowNanos[(int) ((mWindowHead - 1) & mWindowMask)]
+             - mWindowNanos[(int) (mWindowTail & mWindowMask)];
+   }
+
+   private int windowDispersion()
+   {
+      return (mMaxX.value() - mMinX.value()) + (mMaxY.value() - mMinY.value());
+   }
+
+   /*
+    * Sequence numbers of the window samples that can still become its minimum
+    * (or maximum), oldest first. The front is always the current extremum.
+    */
+   private final class ExtremumQueue
+   {
+      private final int[] mValues;
+      private final boolean mMaximum;
+      private final long[] mSequences = new long[mWindowMask + 1];
+      private long mFront = 0;
+      private long mBack = 0;
+
+      ExtremumQueue(int[] values, boolean maximum)
+      {
+         mValues = values;
+         mMaximum = maximum;
+      }
+
+      void push(long sequence)
+      {
+         int value = mValues[(int) (sequence & mWindowMask)];
+
+         // Older samples beaten by the new one can never be the extremum again
+         while (mBack > mFront)
+         {
+            int previous = mValues[(int) (mSequences[(int) ((mBack - 1) & mWindowMask)] & mWindowMask)];
+            if (mMaximum ? previous > value : previous < value)
+            {
+               break;
+            }
+            mBack--;
+         }
+
+         mSequences[(int) (mBack & mWindowMask)] = sequence;
+         mBack++;
+      }
+
+      void expire(long oldestSequence)
+      {
+         while (mBack > mFront && mSequences[(int) (mFront & mWindowMask)] < oldestSequence)
+         {
+            mFront++;
+         }
+      }
+
+      void clear()
+      {
+         mFront = mBack;
+      }
+
+      int value()
+      {
+         return mValues[(int) (mSequences[(int) (mFront & mWindowMask)] & mWindowMask)];
+      }
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Properties">
+
+   public int getDispersionThreshold()
+   {
+      return mDispersionThreshold;
+   }
+
+   public void setDispersionThreshold(int dispersionThreshold)
+   {
+      mDispersionThreshold = dispersionThreshold;
+   }
+
+   // </editor-fold>
+}
@@ -0,0 +1,198 @@
+package rit.eyeTrackingAPI.EventDetection;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An eye movement event recognised by a {@link GazeEventDetector}: the start
+ * or end of a fixation, a saccade between two fixations, or a blink.
+ *
+ * Times are {@link System#nanoTime()} values taken from the samples the
+ * event was built from, and positions are screen pixels. Events are
+ * immutable and may be kept or handed to other threads.
+ *
+ * @author Mark Hazlewood
+ *
+ * @see GazeEventListener
+ */
+public class GazeEvent
+{
+   // <editor-fold defaultstate="expanded" desc="Event Types">
+
+   public enum Type
+   {
+      /**
+       * A fixation has lasted the minimum fixation duration. Position is the
+       * centroid of the samples so far and the end time is that of the newest
+       * sample.
+       */
+      FIXATION_START,
+
+      /**
+       * A fixation is over. Position is the centroid of all of its samples.
+       */
+      FIXATION_END,
+
+      /**
+       * The eyes moved from one fixation to the next. The start position is
+       * the last sample of the previous fixation and the position is the first
+       * sample of the new one.
+       */
+      SACCADE,
+
+      /**
+       * The tracker lost the eyes for about as long as a blink takes. Position
+       * is the last sample seen before the blink.
+       */
+      BLINK
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Private Members">
+
+   private final Type mType;
+   private final long mStartNanos;
+   private final long mEndNanos;
+   private final double mX;
+   private final double mY;
+   private final double mStartX;
+   private final double mStartY;
+   private final double mPeakVelocity;
+   private final int mSampleCount;
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Constructor(s)">
+
+   /**
+    * @param type Kind of event.
+    * @param startNanos Time of the first sample in the event.
+    * @param endNanos Time of the last sample in the event.
+    * @param startX X position the event started at.
+    * @param startY Y position the event started at.
+    * @param x X position of the event, see {@link Type}.
+    * @param y Y position of the event, see {@link Type}.
+    * @param peakVelocity Highest sample to sample velocity, in pixels per
+    * second, or zero if not applicable.
+    * @param sampleCount Number of samples the event was built from.
+    */
+   public GazeEvent(Type type,
+                    long startNanos,
+                    long endNanos,
+                    double startX,
+                    double startY,
+                    double x,
+                    double y,
+                    double peakVelocity,
+                    int sampleCount)
+   {
+      mType = type;
+      mStartNanos = startNanos;
+      mEndNanos = endNanos;
+      mStartX = startX;
+      mStartY = startY;
+      mX = x;
+      mY = y;
+      mPeakVelocity = peakVelocity;
+      mSampleCount = sampleCount;
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Properties">
+
+   public Type getType()
+   {
+      return mType;
+   }
+
+   public long getStartNanos()
+   {
+      return mStartNanos;
+   }
+
+   public long getEndNanos()
+   {
+      return mEndNanos;
+   }
+
+   public long getDurationNanos()
+   {
+      return mEndNanos - mStartNanos;
+   }
+
+   public double getDurationMillis()
+   {
+      return getDurationNanos() / (double) TimeUnit.MILLISECONDS.toNanos(1);
+   }
+
+   /**
+    * @return Centroid x for fixations, landing x for saccades, last known x
+    * for blinks.
+    */
+   public double getX()
+   {
+      return mX;
+   }
+
+   /**
+    * @return Centroid y for fixations, landing y for saccades, last known y
+    * for blinks.
+    */
+   public double getY()
+   {
+      return mY;
+   }
+
+   public double getStartX()
+   {
+      return mStartX;
+   }
+
+   public double getStartY()
+   {
+      return mStartY;
+   }
+
+   /**
+    * @return Distance in pixels between the start and end positions. Only
+    * meaningful for saccades.
+    */
+   public double getAmplitude()
+   {
+      double dx = mX - mStartX;
+      double dy = mY - mStartY;
+      return Math.sqrt(dx * dx + dy * dy);
+   }
+
+   /**
+    * @return Highest velocity between consecutive samples, in pixels per
+    * second. Only meaningful for saccades.
+    */
+   public double getPeakVelocity()
+   {
+      return mPeakVelocity;
+   }
+
+   public int getSampleCount()
+   {
+      return mSampleCount;
+   }
+
+   // </editor-fold>
+
+   @Override
+   public String toString()
+   {
+      switch (mType)
+      {
+         case SACCADE:
+            return String.format("%s (%.0f, %.0f) -> (%.0f, %.0f) amplitude=%.1fpx peak=%.0fpx/s %.1fms",
+                                 mType, mStartX, mStartY, mX, mY, getAmplitude(), mPeakVelocity, getDurationMillis());
+
+         default:
+            return String.format("%s (%.1f, %.1f) n=%d %.1fms",
+                                 mType, mX, mY, mSampleCount, getDurationMillis());
+      }
+   }
+}
@@ -0,0 +1,491 @@
+package rit.eyeTrackingAPI.EventDetection;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import rit.eyeTrackingAPI.DataConstructs.GazeSample;
+
+/**
+ * Base class for streaming eye movement classifiers. Samples are fed in one at
+ * a time with their timestamps and the detector reports fixations, saccades
+ * and blinks to its {@link GazeEventListener}s as soon as they are recognised.
+ *
+ * This class takes care of everything the classification algorithms have in
+ * common: tracking lost samples and blinks, measuring sample to sample
+ * velocity, accumulating the current fixation and building the events. The
+ * algorithms, which live in this package, only decide which samples belong to
+ * a fixation.
+ *
+ * All durations are measured with sample timestamps, never sample counts, so
+ * the same settings work at any sampling rate. Samples carrying a tracker
+ * timestamp are timed by it, since receive stamps bunch up when datagrams are
+ * drained in batches; the tracker's clock is anchored to the receive clock at
+ * the first sample, so event times stay comparable with receive stamps. Every
+ * sample is processed in constant amortised time and without allocation,
+ * apart from the events themselves.
+ *
+ * A detector is not thread safe and should be fed from a single thread.
+ *
+ * @author Mark Hazlewood
+ *
+ * @see VelocityThresholdDetector
+ * @see DispersionThresholdDetector
+ */
+public abstract class GazeEventDetector
+{
+   // <editor-fold defaultstate="expanded" desc="Constants">
+
+   public static final long DEFAULT_MIN_FIXATION_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+   public static final long DEFAULT_MIN_BLINK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+   public static final long DEFAULT_MAX_BLINK_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+   public static final long DEFAULT_MAX_SAMPLE_GAP_NANOS = TimeUnit.MILLISECONDS.toNanos(75);
+   public static final long DEFAULT_VELOCITY_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+   private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+   /*
+    * Recent samples kept for measuring velocity; enough to cover the velocity
+    * interval at any common sampling rate.
+    */
+   private static final int RECENT_CAPACITY = 64;
+   private static final int RECENT_MASK = RECENT_CAPACITY - 1;
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Private Members">
+
+   private final CopyOnWriteArrayList<GazeEventListener> mListeners = new CopyOnWriteArrayList<>();
+
+   long mMinFixationNanos = DEFAULT_MIN_FIXATION_NANOS;
+
+   private long mMinBlinkNanos = DEFAULT_MIN_BLINK_NANOS;
+   private long mMaxBlinkNanos = DEFAULT_MAX_BLINK_NANOS;
+   private long mMaxSampleGapNanos = DEFAULT_MAX_SAMPLE_GAP_NANOS;
+   private long mVelocityIntervalNanos = DEFAULT_VELOCITY_INTERVAL_NANOS;
+   private TimeUnit mTrackerTimeUnit = TimeUnit.MICROSECONDS;
+
+   // Difference between the receive clock and tracker time, taken from the
+   // first sample with a tracker timestamp
+   private boolean mHasClockOffset = false;
+   private long mClockOffset;
+   private long mLastTrackerNanos;
+
+   // Last valid sample
+   private boolean mHasPrevious = false;
+   private int mPreviousX;
+   private int mPreviousY;
+   private long mPreviousNanos;
+
+   // Recent valid samples, oldest at the tail sequence
+   private final int[] mRecentX = new int[RECENT_CAPACITY];
+   private final int[] mRecentY = new int[RECENT_CAPACITY];
+   private final long[] mRecentNanos = new long[RECENT_CAPACITY];
+   private long mRecentHead = 0;
+   private long mRecentTail = 0;
+
+   // Whether samples without a position have arrived since the last valid one
+   private boolean mLost = false;
+
+   private boolean mFixating = false;
+   private final SampleRun mFixation = new SampleRun();
+
+   // Where the current saccade left from, if it followed a fixation
+   private boolean mHasSaccadeStart = false;
+   private int mSaccadeStartX;
+   private int mSaccadeStartY;
+   private long mSaccadeStartNanos;
+   private int mSaccadeSamples = 0;
+   private double mPeakVelocity = 0;
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Listeners">
+
+   public void addGazeEventListener(GazeEventListener listener)
+   {
+      mListeners.addIfAbsent(listener);
+   }
+
+   public void removeGazeEventListener(GazeEventListener listener)
+   {
+      mListeners.remove(listener);
+   }
+
+   private void fireEvent(GazeEvent event)
+   {
+      for (GazeEventListener listener : mListeners)
+      {
+         listener.gazeEventDetected(event);
+      }
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Sample Input">
+
+   /**
+    * Classifies a sample, timed by its tracker timestamp or, without one, by
+    * when it was received from the tracker or, if it was never stamped, by the
+    * current time. A sample at (0, 0) is taken to mean the tracker has lost the
+    * eyes.
+    *
+    * @param sample The sample. It is not kept.
+    */
+   public void addSample(GazeSample sample)
+   {
+      long nanos = sampleNanos(sample);
+
+      if (sample.getX() == 0 && sample.getY() == 0)
+      {
+         addLostSample(nanos);
+      }
+      else
+      {
+         addSample(sample.getX(), sample.getY(), nanos);
+      }
+   }
+
+   /**
+    * Works out when a sample was taken, on the receive clock. Tracker time is
+    * mapped onto it by the offset seen at the first sample, and again whenever
+    * tracker time goes backwards, as after the tracker is restarted.
+    *
+    * @param sample The sample.
+    *
+    * @return When the sample was taken, in nanoseconds.
+    */
+   public long sampleNanos(GazeSample sample)
+   {
+      long receiveNanos = sample.getReceiveNanos() != 0 ? sample.getReceiveNanos() : System.nanoTime();
+      if (sample.getTrackerTimestamp() == 0)
+      {
+         return receiveNanos;
+      }
+
+      long trackerNanos = mTrackerTimeUnit.toNanos(sample.getTrackerTimestamp());
+      if (!mHasClockOffset || trackerNanos < mLastTrackerNanos)
+      {
+         mClockOffset = receiveNanos - trackerNanos;
+         mHasClockOffset = true;
+      }
+      mLastTrackerNanos = trackerNanos;
+
+      return trackerNanos + mClockOffset;
+   }
+
+   /**
+    * Classifies a sample.
+    *
+    * @param x Screen x coordinate.
+    * @param y Screen y coordinate.
+    * @param timestampNanos When the sample was taken, on the
+    * {@link System#nanoTime()} clock or any other nanosecond clock used
+    * consistently.
+    */
+   public void addSample(int x, int y, long timestampNanos)
+   {
+      if (mHasPrevious)
+      {
+         long elapsed = timestampNanos - mPreviousNanos;
+
+         if (mLost || elapsed > mMaxSampleGapNanos)
+         {
+            trackingLost(timestampNanos);
+         }
+      }
+
+      double velocity = measureVelocity(x, y, timestampNanos);
+
+      if (!mFixating)
+      {
+         mSaccadeSamples++;
+         if (velocity > mPeakVelocity)
+         {
+            mPeakVelocity = velocity;
+         }
+      }
+
+      mHasPrevious = true;
+      mPreviousX = x;
+      mPreviousY = y;
+      mPreviousNanos = timestampNanos;
+
+      classify(x, y, timestampNanos, velocity);
+   }
+
+   /*
+    * Speed in pixels per second between this sample and the newest sample at
+    * least one velocity interval older, or the oldest one kept if none is. Over
+    * a few samples tracker noise largely cancels out, where between
+    * consecutive samples at high rates it can look as fast as a saccade.
+    */
+   private double measureVelocity(int x, int y, long timestampNanos)
+   {
+      int index = (int) (mRecentHead & RECENT_MASK);
+      mRecentX[index] = x;
+      mRecentY[index] = y;
+      mRecentNanos[index] = timestampNanos;
+      mRecentHead++;
+
+      if (mRecentHead - mRecentTail > RECENT_CAPACITY)
+      {
+         mRecentTail = mRecentHead - RECENT_CAPACITY;
+      }
+
+      while (mRecentHead - mRecentTail > 2
+             && timestampNanos - mRecentNanos[(int) ((mRecentTail + 1) & RECENT_MASK)] >= mVelocityIntervalNanos)
+      {
+         mRecentTail++;
+      }
+
+      if (mRecentHead - mRecentTail < 2)
+      {
+         return 0;
+      }
+
+      int reference = (int) (mRecentTail & RECENT_MASK);
+      long elapsed = timestampNanos - mRecentNanos[reference];
+      if (elapsed <= 0)
+      {
+         return 0;
+      }
+
+      double dx = x - mRecentX[reference];
+      double dy = y - mRecentY[reference];
+      return Math.sqrt(dx * dx + dy * dy) * NANOS_PER_SECOND / elapsed;
+   }
+
+   /**
+    * Records that the tracker delivered a sample without a usable position,
+    * as most trackers do while the eyes are closed or out of view.
+    *
+    * @param timestampNanos When the sample was taken.
+    */
+   public void addLostSample(long timestampNanos)
+   {
+      if (mHasPrevious && !mLost)
+      {
+         // Report the end of the fixation now rather than once the eyes are
+         // found again
+         fixationEnded();
+         mLost = true;
+      }
+   }
+
+   /**
+    * Ends any fixation in progress and forgets all samples, as if the detector
+    * had just been created.
+    */
+   public void reset()
+   {
+      if (mFixating)
+      {
+         fixationEnded();
+      }
+
+      mHasPrevious = false;
+      mLost = false;
+      mRecentTail = mRecentHead;
+      clearSaccade();
+      mHasSaccadeStart = false;
+      resetClassifier();
+   }
+
+   /*
+    * The eyes were lost between the previous valid sample and this one.
+    * Reports a blink if they were lost for about as long as a blink lasts, and
+    * starts classification afresh either way.
+    */
+   private void trackingLost(long resumedNanos)
+   {
+      boolean wasLost = mLost;
+      long lostNanos = resumedNanos - mPreviousNanos;
+      int lastX = mPreviousX;
+      int lastY = mPreviousY;
+      long lastNanos = mPreviousNanos;
+
+      reset();
+
+      if (wasLost && lostNanos >= mMinBlinkNanos && lostNanos <= mMaxBlinkNanos)
+      {
+         fireEvent(new GazeEvent(GazeEvent.Type.BLINK,
+                                 lastNanos, resumedNanos,
+                                 lastX, lastY, lastX, lastY,
+                                 0, 0));
+      }
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Classification">
+
+   /**
+    * Decides whether a valid sample belongs to a fixation. Called once for
+    * every valid sample, after any loss of tracking has been dealt with.
+    *
+    * @param x Screen x coordinate.
+    * @param y Screen y coordinate.
+    * @param timestampNanos When the sample was taken.
+    * @param velocity Speed over the last velocity interval in pixels per
+    * second, or zero for the first sample after a reset.
+    */
+   abstract void classify(int x, int y, long timestampNanos, double velocity);
+
+   /**
+    * Forgets any samples the classifier is holding.
+    */
+   abstract void resetClassifier();
+
+   /**
+    * Starts a fixation made up of the given samples, which must have lasted at
+    * least the minimum fixation duration. Reports the saccade that led to it,
+    * if it followed another fixation, and then the start of the fixation.
+    *
+    * @param run The samples of the fixation so far. Not kept.
+    */
+   final void fixationStarted(SampleRun run)
+   {
+      if (mFixating)
+      {
+         fixationEnded();
+      }
+
+      if (mHasSaccadeStart)
+      {
+         fireEvent(new GazeEvent(GazeEvent.Type.SACCADE,
+                                 mSaccadeStartNanos, run.mFirstNanos,
+                                 mSaccadeStartX, mSaccadeStartY,
+                                 run.mFirstX, run.mFirstY,
+                                 mPeakVelocity, mSaccadeSamples));
+      }
+
+      clearSaccade();
+      mHasSaccadeStart = false;
+
+      mFixating = true;
+      mFixation.copyFrom(run);
+
+      fireEvent(new GazeEvent(GazeEvent.Type.FIXATION_START,
+                              mFixation.mFirstNanos, mFixation.mLastNanos,
+                              mFixation.getCentroidX(), mFixation.getCentroidY(),
+                              mFixation.getCentroidX(), mFixation.getCentroidY(),
+                              0, mFixation.mCount));
+   }
+
+   /**
+    * Adds a sample to the fixation in progress.
+    *
+    * @param x Screen x coordinate.
+    * @param y Screen y coordinate.
+    * @param timestampNanos When the sample was taken.
+    */
+   final void fixationContinued(int x, int y, long timestampNanos)
+   {
+      mFixation.add(x, y, timestampNanos);
+   }
+
+   /**
+    * Ends the fixation in progress, reporting it, and starts measuring the
+    * saccade that follows from its last sample.
+    */
+   final void fixationEnded()
+   {
+      if (!mFixating)
+      {
+         return;
+      }
+
+      mFixating = false;
+
+      fireEvent(new GazeEvent(GazeEvent.Type.FIXATION_END,
+                              mFixation.mFirstNanos, mFixation.mLastNanos,
+                              mFixation.getCentroidX(), mFixation.getCentroidY(),
+                              mFixation.getCentroidX(), mFixation.getCentroidY(),
+                              0, mFixation.mCount));
+
+      clearSaccade();
+      mHasSaccadeStart = true;
+      mSaccadeStartX = mFixation.mLastX;
+      mSaccadeStartY = mFixation.mLastY;
+      mSaccadeStartNanos = mFixation.mLastNanos;
+      mFixation.clear();
+   }
+
+   private void clearSaccade()
+   {
+      mSaccadeSamples = 0;
+      mPeakVelocity = 0;
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Properties">
+
+   public boolean isFixating()
+   {
+      return mFixating;
+   }
+
+   public long getMinFixationDuration(TimeUnit unit)
+   {
+      return unit.convert(mMinFixationNanos, TimeUnit.NANOSECONDS);
+   }
+
+   /**
+    * @param duration Shortest run of samples reported as a fixation.
+    * @param unit Unit of the duration.
+    */
+   public void setMinFixationDuration(long duration, TimeUnit unit)
+   {
+      mMinFixationNanos = unit.toNanos(duration);
+   }
+
+   /**
+    * Sets how long the tracker must lose the eyes for to count as a blink.
+    * Longer losses still end the current fixation but are not reported.
+    *
+    * @param minDuration Shortest loss reported as a blink.
+    * @param maxDuration Longest loss reported as a blink.
+    * @param unit Unit of the durations.
+    */
+   public void setBlinkDuration(long minDuration, long maxDuration, TimeUnit unit)
+   {
+      mMinBlinkNanos = unit.toNanos(minDuration);
+      mMaxBlinkNanos = unit.toNanos(maxDuration);
+   }
+
+   /**
+    * @param maxGap Longest time between two samples before tracking is
+    * considered lost and classification starts afresh.
+    * @param unit Unit of the gap.
+    */
+   public void setMaxSampleGap(long maxGap, TimeUnit unit)
+   {
+      mMaxSampleGapNanos = unit.toNanos(maxGap);
+   }
+
+   /**
+    * @param interval Time over which velocity is measured. Shorter intervals
+    * react faster but let more tracker noise through.
+    * @param unit Unit of the interval.
+    */
+   public void setVelocityInterval(long interval, TimeUnit unit)
+   {
+      mVelocityIntervalNanos = unit.toNanos(interval);
+   }
+
+   public TimeUnit getTrackerTimeUnit()
+   {
+      return mTrackerTimeUnit;
+   }
+
+   /**
+    * @param trackerTimeUnit Unit of the samples' tracker timestamps.
+    * Microseconds, as iViewX uses, by default.
+    */
+   public void setTrackerTimeUnit(TimeUnit trackerTimeUnit)
+   {
+      mTrackerTimeUnit = trackerTimeUnit;
+   }
+
+   // </editor-fold>
+}
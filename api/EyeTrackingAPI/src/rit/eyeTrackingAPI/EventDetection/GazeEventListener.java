@@ -0,0 +1,19 @@
+package rit.eyeTrackingAPI.EventDetection;
+
+/**
+ * Receives the events recognised by a {@link GazeEventDetector}.
+ *
+ * Events are delivered on the thread that feeds samples to the detector, in
+ * the order they happened, so implementations should return quickly.
+ *
+ * @author Mark Hazlewood
+ */
+public interface GazeEventListener
+{
+   /**
+    * Called once for every event recognised.
+    *
+    * @param event The event.
+    */
+   void gazeEventDetected(GazeEvent event);
+}
@@ -0,0 +1,77 @@
+package rit.eyeTrackingAPI.EventDetection;
+
+/**
+ * A run of consecutive samples reduced to its first and last sample and the
+ * sums needed for its centroid.
+ *
+ * @author Mark Hazlewood
+ */
+class SampleRun
+{
+   int mFirstX;
+   int mFirstY;
+   long mFirstNanos;
+   int mLastX;
+   int mLastY;
+   long mLastNanos;
+   long mSumX;
+   long mSumY;
+   int mCount;
+
+   void clear()
+   {
+      mSumX = 0;
+      mSumY = 0;
+      mCount = 0;
+   }
+
+   void add(int x, int y, long nanos)
+   {
+      if (mCount == 0)
+      {
+         mFirstX = x;
+         mFirstY = y;
+         mFirstNanos = nanos;
+      }
+
+      mLastX = x;
+      mLastY = y;
+      mLastNanos = nanos;
+      mSumX += x;
+      mSumY += y;
+      mCount++;
+   }
+
+   void copyFrom(SampleRun other)
+   {
+      mFirstX = other.mFirstX;
+      mFirstY = other.mFirstY;
+      mFirstNanos = other.mFirstNanos;
+      mLastX = other.mLastX;
+      mLastY = other.mLastY;
+      mLastNanos = other.mLastNanos;
+      mSumX = other.mSumX;
+      mSumY = other.mSumY;
+      mCount = other.mCount;
+   }
+
+   boolean isEmpty()
+   {
+      return mCount == 0;
+   }
+
+   long getDurationNanos()
+   {
+      return mCount == 0 ? 0 : mLastNanos - mFirstNanos;
+   }
+
+   double getCentroidX()
+   {
+      return (double) mSumX / mCount;
+   }
+
+   double getCentroidY()
+   {
+      return (double) mSumY / mCount;
+   }
+}
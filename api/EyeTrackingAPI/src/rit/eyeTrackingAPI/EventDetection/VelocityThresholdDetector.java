@@ -0,0 +1,103 @@
+package rit.eyeTrackingAPI.EventDetection;
+
+/**
+ * Velocity-threshold identification (I-VT). Each sample is classed as part of
+ * a fixation if the eyes moved slower than a threshold velocity since the
+ * previous sample, and as part of a saccade otherwise. A run of slow samples
+ * is reported as a fixation once it has lasted the minimum fixation duration.
+ *
+ * I-VT is the cheapest classifier and reacts to the end of a fixation on the
+ * very first fast sample, but the threshold has to sit above the tracker's
+ * sample to sample noise, which grows with the sampling rate.
+ *
+ * @author Mark Hazlewood
+ */
+public class VelocityThresholdDetector extends GazeEventDetector
+{
+   // <editor-fold defaultstate="expanded" desc="Constants">
+
+   /**
+    * Default threshold, roughly 30 degrees per second at a typical desktop
+    * viewing distance.
+    */
+   public static final double DEFAULT_VELOCITY_THRESHOLD = 1500.0;
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Private Members">
+
+   private double mVelocityThreshold;
+
+   // Slow samples that have not yet lasted long enough to be a fixation
+   private final SampleRun mCandidate = new SampleRun();
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Constructor(s)">
+
+   public VelocityThresholdDetector()
+   {
+      this(DEFAULT_VELOCITY_THRESHOLD);
+   }
+
+   /**
+    * @param velocityThreshold Fastest movement, in pixels per second, still
+    * considered part of a fixation.
+    */
+   public VelocityThresholdDetector(double velocityThreshold)
+   {
+      mVelocityThreshold = velocityThreshold;
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Classification">
+
+   @Override
+   void classify(int x, int y, long timestampNanos, double velocity)
+   {
+      if (velocity <= mVelocityThreshold)
+      {
+         if (isFixating())
+         {
+            fixationContinued(x, y, timestampNanos);
+         }
+         else
+         {
+            mCandidate.add(x, y, timestampNanos);
+            if (mCandidate.getDurationNanos() >= mMinFixationNanos)
+            {
+               fixationStarted(mCandidate);
+               mCandidate.clear();
+            }
+         }
+      }
+      else
+      {
+         fixationEnded();
+         mCandidate.clear();
+      }
+   }
+
+   @Override
+   void resetClassifier()
+   {
+      mCandidate.clear();
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Properties">
+
+   public double getVelocityThreshold()
+   {
+      return mVelocityThreshold;
+   }
+
+   public void setVelocityThreshold(double velocityThreshold)
+   {
+      mVelocityThreshold = velocityThreshold;
+   }
+
+   // </editor-fold>
+}
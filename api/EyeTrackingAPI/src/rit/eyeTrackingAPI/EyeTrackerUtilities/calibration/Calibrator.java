@@ -19,6 +19,7 @@ import java.util.ArrayList;
 
 import javax.swing.JComponent;
 import javax.swing.JFrame;
+import rit.eyeTrackingAPI.EyeTrackerUtilities.networking.UdpReceiveEngine;
 
 /**
  * An abstract class for creating a calibration application for a specific type
@@ -262,6 +263,12 @@ public abstract class Calibrator
       try
       {
          ds = new DatagramSocket(localPort);
+
+         // Replies can be long (configuration, validation results), so
+         // receive into a buffer that can hold any datagram in full
+         byte[] receiveBuffer = new byte[UdpReceiveEngine.MAX_DATAGRAM_SIZE];
+         dp = new DatagramPacket(receiveBuffer, receiveBuffer.length);
+
          connected = true;
          System.out.println(connected);
       }
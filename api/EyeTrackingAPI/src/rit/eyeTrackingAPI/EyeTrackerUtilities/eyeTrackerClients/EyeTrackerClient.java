@@ -1,11 +1,32 @@
 package rit.eyeTrackingAPI.EyeTrackerUtilities.eyeTrackerClients;
 
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 import rit.eyeTrackingAPI.DataConstructs.GazePoint;
+import rit.eyeTrackingAPI.DataConstructs.GazeSample;
 
 /**
  * An abstract class for communicating and receiving gaze sample points from an
  * eye tracker on a dedicated thread.
  *
+ * Instead of running as a thread of its own, a client can be given an
+ * executor through {@link #setExecutor(Executor)} before it is started; its
+ * receive loop then runs as a task on that executor, for example on a virtual
+ * thread (see
+ * {@link rit.eyeTrackingAPI.ApplicationUtilities.GazeExecutors}). Either way
+ * {@link #requestStop()} stops the loop by closing its socket or interrupting
+ * the thread running it, and {@link #awaitStop(long, TimeUnit)} waits for it
+ * to finish.
+ *
+ * A client run on an executor is still a {@link Thread} object, but that
+ * thread itself is never started, so {@link #isAlive()} stays false,
+ * {@link #join()} returns at once and {@link #getState()} stays NEW while the
+ * receive loop runs on the executor; Thread declares those final, so they
+ * cannot be made to follow the loop. Use {@link #isRunning()} and
+ * {@link #awaitStop(long, TimeUnit)} instead, which work however the client
+ * was started.
+ *
  * @author Corey Engelman
  *
  */
@@ -17,12 +38,27 @@ public abstract class EyeTrackerClient extends Thread
     */
    protected GazePoint mGazePointContainer;
 
+   /**
+    * Reusable sample that implementations refill for every datagram before
+    * handing it to {@link #mGazePointContainer}. Nothing downstream keeps a
+    * reference to it, so no sample needs to be allocated per datagram.
+    */
+   protected final GazeSample mSample = new GazeSample();
+
    /**
     * A flag for whether or not this client object is connected to the port the
     * eye tracker will be sending points to. Does not guarantee connection with
     * the eye tracker.
     */
-   protected boolean connected = false;
+   protected volatile boolean connected = false;
+
+   private volatile Executor mExecutor = null;
+
+   // Receive loop state, guarded by mRunLock
+   private final Object mRunLock = new Object();
+   private Thread mRunner = null;
+   private boolean mStarted = false;
+   private boolean mActive = false;
 
    /**
     * Creates a new eye Tracker client with a reference to a GazePoint object
@@ -35,13 +71,160 @@ public abstract class EyeTrackerClient extends Thread
       this.setName("Comm Thread");
    }
 
+   /**
+    * Starts the receive loop, on this thread or, if one has been set, on the
+    * executor.
+    *
+    * @throws IllegalThreadStateException If the client was already started.
+    * @throws RejectedExecutionException If the executor would not take the
+    * receive loop, for example because it has been shut down. The client is
+    * left unstarted, so it can be started again.
+    */
+   @Override
+   public void start()
+   {
+      synchronized (mRunLock)
+      {
+         if (mStarted)
+         {
+            throw new IllegalThreadStateException(getName() + " has already been started");
+         }
+         mStarted = true;
+         mActive = true;
+      }
+
+      Executor executor = mExecutor;
+      if (executor == null)
+      {
+         super.start();
+         return;
+      }
+
+      try
+      {
+         executor.execute(newReceiveTask());
+      }
+      catch (RejectedExecutionException ex)
+      {
+         synchronized (mRunLock)
+         {
+            mStarted = false;
+            mActive = false;
+            mRunLock.notifyAll();
+         }
+         throw ex;
+      }
+   }
+
+   /*
+    * Runs the receive loop on an executor's thread under this client's name.
+    */
+   private Runnable newReceiveTask()
+   {
+      return new Runnable()
+      {
+         @Override
+         public void run()
+         {
+            Thread thread = Thread.currentThread();
+            String threadName = thread.getName();
+            thread.setName(getName());
+            try
+            {
+               EyeTrackerClient.this.run();
+            }
+            finally
+            {
+               thread.setName(threadName);
+
+               // Don't hand a pooled thread back with our interrupt pending
+               Thread.interrupted();
+            }
+         }
+      };
+   }
+
    /**
     * The primary method of execution for this client thread.
     */
    @Override
    public void run()
    {
-      clientOperation();
+      synchronized (mRunLock)
+      {
+         mRunner = Thread.currentThread();
+         mStarted = true;
+         mActive = true;
+      }
+
+      try
+      {
+         clientOperation();
+      }
+      finally
+      {
+         synchronized (mRunLock)
+         {
+            mRunner = null;
+            mActive = false;
+            mRunLock.notifyAll();
+         }
+      }
+   }
+
+   /**
+    * Interrupts whichever thread is running the receive loop, if any.
+    * Implementations of {@link #requestStop()} call this to wake a loop that
+    * is sleeping or blocked.
+    */
+   protected void interruptRunner()
+   {
+      synchronized (mRunLock)
+      {
+         if (mRunner != null)
+         {
+            mRunner.interrupt();
+         }
+      }
+   }
+
+   /**
+    * Waits for the receive loop to finish, however the client was started.
+    * Returns at once if the client was never started.
+    *
+    * @return True if the loop is not running on return.
+    *
+    * @throws InterruptedException If interrupted while waiting.
+    */
+   public boolean awaitStop(long timeout, TimeUnit unit) throws InterruptedException
+   {
+      long deadline = System.nanoTime() + unit.toNanos(timeout);
+
+      synchronized (mRunLock)
+      {
+         while (mActive)
+         {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0)
+            {
+               return false;
+            }
+            TimeUnit.NANOSECONDS.timedWait(mRunLock, remaining);
+         }
+      }
+
+      return true;
+   }
+
+   /**
+    * @return True from {@link #start()} until the receive loop has finished.
+    */
+   public boolean isRunning()
+   {
+      synchronized (mRunLock)
+      {
+         return mActive;
+      }
    }
 
    /**
@@ -75,6 +258,24 @@ public abstract class EyeTrackerClient extends Thread
     */
    public abstract void requestStop();
 
+   /**
+    * Runs the receive loop on the given executor instead of on this thread.
+    * Must be called before {@link #start()}. A client that owns its receive
+    * engine occupies one of the executor's threads for as long as it runs.
+    *
+    * @param executor Executor to run the receive loop on, or null to run it
+    * on this thread.
+    */
+   public void setExecutor(Executor executor)
+   {
+      mExecutor = executor;
+   }
+
+   public Executor getExecutor()
+   {
+      return mExecutor;
+   }
+
    /**
     * Toggle the eye tracker on/off without disconnecting.
     */
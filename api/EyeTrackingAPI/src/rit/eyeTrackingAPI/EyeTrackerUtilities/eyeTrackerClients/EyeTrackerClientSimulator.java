@@ -1,20 +1,25 @@
 package rit.eyeTrackingAPI.EyeTrackerUtilities.eyeTrackerClients;
 
 import java.awt.Point;
-import java.io.BufferedReader;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Path;
+import java.io.IOException;
 import java.nio.file.Paths;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import rit.eyeTrackingAPI.ApplicationUtilities.GazeSampleSubscriber;
 import rit.eyeTrackingAPI.DataConstructs.GazePoint;
+import rit.eyeTrackingAPI.DataConstructs.GazeSample;
+import rit.eyeTrackingAPI.EyeTrackerUtilities.replay.CsvReplaySource;
+import rit.eyeTrackingAPI.EyeTrackerUtilities.replay.ReplayEngine;
+import rit.eyeTrackingAPI.EyeTrackerUtilities.replay.ReplaySource;
+import rit.eyeTrackingAPI.EyeTrackerUtilities.replay.ResamplingReplaySource;
 
 /**
  * This class acts as a simulator for an eye tracker. It accepts either a list of 
- * {@link SimulatedGazePoint} objects or a path to a file containing screen
- * coordinates. Those coordinates are used to simulate eye tracker data reported
- * on a dedicated thread in the same way as any other {@link EyeTrackerClient}.
+ * {@link SimulatedGazePoint} objects, a path to a file containing screen
+ * coordinates, or any other {@link ReplaySource}, such as a recorded gaze log. 
+ * Those coordinates are used to simulate eye tracker data reported on a 
+ * dedicated thread in the same way as any other {@link EyeTrackerClient}.
  *
  * The format expected for a file containing usable gaze points is should match 
  * the following (UTF-8 encoding):
@@ -27,10 +32,15 @@ import rit.eyeTrackingAPI.DataConstructs.GazePoint;
  * 
  * X and Y values are self-explanatory. "duration_#" indicates the amount of time
  * to wait "on that point" before sending the next point. This can be useful for
- * simulating eye tracker data at different rates.
+ * simulating eye tracker data at different rates. The file is read as it is
+ * replayed rather than loaded up front.
+ * 
+ * Points are replayed by a {@link ReplayEngine}, against an absolute timeline,
+ * so long replays do not drift. The replay can run in real time, faster or 
+ * slower, or as fast as possible; see {@link #setSpeed(double)}.
  * 
  * This class may additionally interpolate between given screen points if specified.
- * This interpolation extrapolates on given data to match a specified constant
+ * This interpolation resamples the given data to match a specified constant
  * duration for all points. If this feature is used, it overrides any "duration_#" 
  * values from the original data set.
  * 
@@ -42,22 +52,28 @@ import rit.eyeTrackingAPI.DataConstructs.GazePoint;
  * 
  * @see SimulatedGazePoint
  * @see EyeTrackerClient
+ * @see ReplayEngine
  */
 public class EyeTrackerClientSimulator extends EyeTrackerClient
 {
    // <editor-fold defaultstate="expanded" desc="Constructor(s)">
    
-   private ArrayList<SimulatedGazePoint> mOriginalGazePoints;
-   private ArrayList<SimulatedGazePoint> mInterpolatedGazePoints;
-   private boolean mActive = true;
+   private List<SimulatedGazePoint> mGazePoints;
+   private String mGazePathFilePath;
+   private ReplaySource mSource;
+   private volatile ReplayEngine mEngine;
+   private volatile boolean mActive = true;
    
    private boolean mInterpolate = false;
    private short mTimeOnPoints_override = 0;
+   private double mSpeed = 1.0;
+   private volatile int mJitter = 0;
+   private final Random mRandom = new Random();
    
    /**
     * 
     * @param cursor 
-    * @param timeOnPoints 
+    * @param timeOnPoints Time on each point, in milliseconds, when interpolating.
     * @param interpolate 
     */
    public EyeTrackerClientSimulator(GazePoint cursor, short timeOnPoints, boolean interpolate)
@@ -72,25 +88,16 @@ public class EyeTrackerClientSimulator extends EyeTrackerClient
    /**
     * 
     * @param cursor
-    * @param gazePath
+    * @param gazePath Points to replay. The list is read as it is replayed, so
+    * it must not be changed while the simulator runs.
     * @param timeOnPoints
     * @param interpolate 
     */
-   public EyeTrackerClientSimulator(GazePoint cursor, ArrayList<SimulatedGazePoint> gazePath, short timeOnPoints, boolean interpolate)
+   public EyeTrackerClientSimulator(GazePoint cursor, List<SimulatedGazePoint> gazePath, short timeOnPoints, boolean interpolate)
    {
       this(cursor, timeOnPoints, interpolate);
       
-      mOriginalGazePoints = ((ArrayList<SimulatedGazePoint>)gazePath.clone());
-      
-      if (this.mInterpolate == true)
-      {
-         // Build interpolated gaze position list
-         mInterpolatedGazePoints = interpolatePoints(mOriginalGazePoints);
-      }
-      else
-      {
-         mInterpolatedGazePoints = ((ArrayList<SimulatedGazePoint>)mOriginalGazePoints.clone());
-      }
+      mGazePoints = gazePath;
    }
    
    /**
@@ -103,54 +110,57 @@ public class EyeTrackerClientSimulator extends EyeTrackerClient
    public EyeTrackerClientSimulator(GazePoint cursor, String gazePathFilePath, short timeOnPoints, boolean interpolate)
    {
       this(cursor, timeOnPoints, interpolate);
-      loadOriginalPointsFromFile(gazePathFilePath);
       
-      if (mOriginalGazePoints.size() > 0)
-      {
-         if (this.mInterpolate == true)
-         {
-            // Build interpolated gaze position list      
-            mInterpolatedGazePoints = interpolatePoints(mOriginalGazePoints);
-         }
-         else
-         {
-            mInterpolatedGazePoints = ((ArrayList<SimulatedGazePoint>)mOriginalGazePoints.clone());
-         }
-      }
+      mGazePathFilePath = gazePathFilePath;
    }
 
    /**
-    * Populates the *original* gaze point list with content from the specified
-    * gaze point file.
+    * Replays any source of samples, such as a
+    * {@link rit.eyeTrackingAPI.EyeTrackerUtilities.replay.GazeLogReplaySource}.
     * 
-    * @param gazePathFilePath Path to a file containing gaze data.
+    * @param cursor
+    * @param source Samples to replay, closed when the replay ends. Wrap it in
+    * a {@link ResamplingReplaySource} to replay at a different rate.
+    * @param speed How many times faster than recorded to replay: 1 for real
+    * time, or {@link ReplayEngine#AS_FAST_AS_POSSIBLE}.
     */
-   private void loadOriginalPointsFromFile(String gazePathFilePath)
+   public EyeTrackerClientSimulator(GazePoint cursor, ReplaySource source, double speed)
    {
-      mOriginalGazePoints = new ArrayList<>();
-      Path filePath = Paths.get(gazePathFilePath);
+      this(cursor, (short)0, false);
       
-      try(BufferedReader reader = Files.newBufferedReader(filePath, StandardCharsets.UTF_8))
+      mSource = source;
+      mSpeed = speed;
+   }
+
+   /**
+    * Opens whichever source the simulator was created with.
+    */
+   private ReplaySource openSource() throws IOException
+   {
+      ReplaySource source;
+      if (mSource != null)
       {
-         String line;
-         String[] values;
-         int x, y;
-         short timeOnPoint;
-         
-         while ((line = reader.readLine()) != null)
-         {
-            values = line.split(",");
-            x = Integer.parseInt(values[0].trim());
-            y = Integer.parseInt(values[1].trim());
-            timeOnPoint = Short.parseShort(values[2].trim());
-            
-            mOriginalGazePoints.add(new SimulatedGazePoint(new Point(x, y), timeOnPoint));
-         }         
+         source = mSource;
       }
-      catch (Exception ex)
+      else if (mGazePathFilePath != null)
       {
-         ex.printStackTrace();
+         source = new CsvReplaySource(Paths.get(mGazePathFilePath));
+      }
+      else if (mGazePoints != null)
+      {
+         source = new PointListSource(mGazePoints);
+      }
+      else
+      {
+         return null;
       }
+      
+      if (mInterpolate == true && mTimeOnPoints_override > 0)
+      {
+         source = interpolatePoints(source);
+      }
+      
+      return source;
    }
 
    // </editor-fold>
@@ -180,81 +190,157 @@ public class EyeTrackerClientSimulator extends EyeTrackerClient
    }
    
    /**
+    * Resamples the raw points to one point every mTimeOnPoints milliseconds,
+    * following the path between them with a smooth curve.
     * 
     * @param rawPoints
     * @return 
     */
-   private ArrayList<SimulatedGazePoint> interpolatePoints(List<SimulatedGazePoint> rawPoints)
+   private ReplaySource interpolatePoints(ReplaySource rawPoints)
    {
-      ArrayList<SimulatedGazePoint> interpolatedList = new ArrayList<>();
-      
-      // TODO: Fill in interpolatedList with points that follow rawPoints at 
-      //          an interval matching mTimeOnPoints.
-      
-      
-      return interpolatedList;
+      return new ResamplingReplaySource(rawPoints, 
+                                        1000.0 / mTimeOnPoints_override, 
+                                        ResamplingReplaySource.Interpolation.CUBIC);
    }
    
+   /**
+    * Sets the jitter added to every point sent from now on.
+    * 
+    * @param jitterValue Largest offset, in pixels, in either direction.
+    */
    public void setJitter(int jitterValue)
    {
-      try
-      {
-         mInterpolatedGazePoints.clear();
-      }
-      catch (Exception ex)
-      {
-         ex.printStackTrace();
-      }
-      
-      for (SimulatedGazePoint point : mOriginalGazePoints)
-      {
-         int x = point.getPoint().x + (int)((Math.random() * (jitterValue*2)) - jitterValue);
-         int y = point.getPoint().y + (int)((Math.random() * (jitterValue*2)) - jitterValue);
-         
-         SimulatedGazePoint newPoint = new SimulatedGazePoint(new Point(x, y), point.getTimeOnPoint_milliseconds());
-         mInterpolatedGazePoints.add(newPoint);
-      }
+      mJitter = jitterValue;
+   }
+
+   /**
+    * Sets how fast to replay. Takes effect the next time the simulator starts.
+    * 
+    * @param speed How many times faster than recorded to replay: 1 for real
+    * time, or {@link ReplayEngine#AS_FAST_AS_POSSIBLE}.
+    */
+   public void setSpeed(double speed)
+   {
+      mSpeed = speed;
+   }
+   
+   public double getSpeed()
+   {
+      return mSpeed;
+   }
+   
+   /**
+    * @return Longest time, in nanoseconds, a point was sent after it was due.
+    */
+   public long getMaxLatenessNanos()
+   {
+      ReplayEngine engine = mEngine;
+      return (engine != null) ? engine.getMaxLatenessNanos() : 0;
    }
 
    /**
-    * Primary operational method for the client. Will read in points from the
-    * interpolated list then exit the thread.
+    * Primary operational method for the client. Will replay the points then 
+    * exit the thread.
     */
    @Override
    protected void clientOperation()
    {
-      SimulatedGazePoint currentPoint;
-      int pointIndex = 0;
-      
-      while (mActive == true && pointIndex < mInterpolatedGazePoints.size())
-      {     
-         if (mInterpolatedGazePoints.size() > 0)
-         {         
-            // Pull out next interpolated point
-            currentPoint = mInterpolatedGazePoints.get(pointIndex);
-            pointIndex = pointIndex+1;
-
-            // Send it out
-            mGazePointContainer.setCoordinates( currentPoint.getPoint().x, 
-                                                currentPoint.getPoint().y);
-
-            // Wait to send out the next point
-            try
-            {
-               Thread.sleep(currentPoint.getTimeOnPoint_milliseconds());
-            }
-            catch (InterruptedException ex)
+      try (ReplaySource source = openSource())
+      {
+         if (source == null || mActive == false)
+         {
+            return;
+         }
+         
+         ReplayEngine engine = new ReplayEngine(source, mSpeed);
+         mEngine = engine;
+         if (mActive == false)
+         {
+            return;
+         }
+         
+         engine.replay(new GazeSampleSubscriber()
+         {
+            @Override
+            public void sampleReceived(GazeSample sample)
             {
-               ex.printStackTrace();
+               sendSample(sample);
             }
-         }
+         });
+      }
+      catch (IOException ex)
+      {
+         ex.printStackTrace();
       }
    }
+   
+   private void sendSample(GazeSample sample)
+   {
+      mSample.copyFrom(sample);
+      
+      int jitter = mJitter;
+      if (jitter > 0)
+      {
+         int x = sample.getX() + mRandom.nextInt(jitter * 2 + 1) - jitter;
+         int y = sample.getY() + mRandom.nextInt(jitter * 2 + 1) - jitter;
+         mSample.setPosition(x, y);
+      }
+      
+      mGazePointContainer.setCoordinates(mSample);
+   }
 
    @Override
    public void requestStop()
    {
       mActive = false;
+      
+      ReplayEngine engine = mEngine;
+      if (engine != null)
+      {
+         engine.stop();
+      }
+      interruptRunner();
+   }
+   
+   /**
+    * Replays a list of {@link SimulatedGazePoint}s, each point's time being
+    * the sum of the durations before it.
+    */
+   private static class PointListSource implements ReplaySource
+   {
+      private final List<SimulatedGazePoint> mPoints;
+      private int mIndex = 0;
+      private long mNextNanos = 0;
+      
+      PointListSource(List<SimulatedGazePoint> points)
+      {
+         mPoints = points;
+      }
+      
+      @Override
+      public long next(GazeSample sample)
+      {
+         if (mIndex >= mPoints.size())
+         {
+            return END;
+         }
+         
+         SimulatedGazePoint point = mPoints.get(mIndex);
+         mIndex = mIndex+1;
+         
+         long time = mNextNanos;
+         mNextNanos += TimeUnit.MILLISECONDS.toNanos(Math.max(point.getTimeOnPoint_milliseconds(), 0));
+         
+         sample.clear();
+         sample.set(point.getPoint().x, point.getPoint().y);
+         return time;
+      }
+      
+      @Override
+      public void close()
+      {
+         // Nothing to release
+      }
    }
    
    /**
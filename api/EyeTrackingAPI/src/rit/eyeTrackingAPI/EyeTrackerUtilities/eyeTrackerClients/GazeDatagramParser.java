@@ -0,0 +1,56 @@
+package rit.eyeTrackingAPI.EyeTrackerUtilities.eyeTrackerClients;
+
+import java.nio.ByteBuffer;
+import rit.eyeTrackingAPI.DataConstructs.GazeSample;
+
+/**
+ * Decodes one tracker-specific datagram into a {@link GazeSample}. Each
+ * {@link UdpEyeTrackerClient} is given the parser for its tracker's wire format.
+ *
+ * @author Mark Hazlewood
+ */
+public interface GazeDatagramParser
+{
+   /**
+    * Why a datagram was not accepted as a sample.
+    */
+   enum Rejection
+   {
+      /**
+       * Not a sample line at all, such as a command reply.
+       */
+      NOT_A_SAMPLE,
+
+      /**
+       * A sample line with a field that could not be read.
+       */
+      MALFORMED,
+
+      /**
+       * A sample line that ends before all of its fields.
+       */
+      TRUNCATED
+   }
+
+   /**
+    * Parses the bytes between a buffer's position and limit.
+    *
+    * @param datagram Buffer holding the datagram. May be a direct buffer.
+    * @param destination Sample to fill in. Only modified when parsing succeeds.
+    *
+    * @return True if the datagram held a gaze sample and destination has been
+    * filled in, false for any other datagram.
+    */
+   boolean parse(ByteBuffer datagram, GazeSample destination);
+
+   /**
+    * Works out why {@link #parse(ByteBuffer, GazeSample)} rejected a datagram.
+    * Only called for rejected datagrams, so it may be slower than parsing.
+    *
+    * @param datagram Buffer holding the rejected datagram between position and
+    * limit, which are left unchanged.
+    *
+    * @return Why the datagram is not a sample.
+    */
+   Rejection rejectionOf(ByteBuffer datagram);
+}
@@ -2,109 +2,53 @@ package rit.eyeTrackingAPI.EyeTrackerUtilities.eyeTrackerClients;
 
 import java.io.IOException;
 import java.net.BindException;
-import java.net.DatagramPacket;
-import java.net.DatagramSocket;
-import java.net.InetAddress;
-import java.net.SocketException;
-import java.net.UnknownHostException;
 import rit.eyeTrackingAPI.DataConstructs.GazePoint;
+import rit.eyeTrackingAPI.EyeTrackerUtilities.networking.UdpReceiveEngine;
 
-public class ITUGazeTrackerClient extends EyeTrackerClient
+public class ITUGazeTrackerClient extends UdpEyeTrackerClient
 {
 
-   private DatagramSocket ds;
-   private DatagramPacket dp;
-   private boolean stop = false;
-   private boolean toggleOn = true;
-   private InetAddress iViewX = null;
-   private InetAddress ituGT;
+   private static final int INCOMING_DATA_BIND_PORT = 6666;
 
    public ITUGazeTrackerClient(GazePoint cursor)
    {
-      super(cursor);
+      this(cursor, null);
    }
 
-   @Override
-   protected void clientOperation()
+   /**
+    * @param cursor - the cursor associated with this client
+    * @param sharedEngine - receive engine shared with other clients, or null
+    * for the client to receive on its own thread
+    */
+   public ITUGazeTrackerClient(GazePoint cursor, UdpReceiveEngine sharedEngine)
    {
-      if (!connected)
-      {
-         connect();
-      }
-
-      while (!stop)
-      {
-         String gtString = null;
-
-         try
-         {
-            ds.receive(dp);
-            gtString = new String(dp.getData(), 0, dp.getLength());
-         }
-         catch (IOException e)
-         {
-            e.printStackTrace();
-         }
-
-         if (gtString != null)
-         {
-            String[] tokens = gtString.split(" ");
-
-            if (toggleOn)
-            {
-               mGazePointContainer.setCoordinates((int) Double.parseDouble(tokens[2]), (int) Double.parseDouble(tokens[3]));
-            }
-         }
-      }
+      super(cursor, new ITUGazeTrackerSampleParser(), sharedEngine);
    }
 
    @Override
    public void connect()
    {
-      byte[] b = new byte[50];
-      byte[] address = new byte[4];
-      address[0] = new Integer(127).byteValue();
-      address[1] = new Integer(0).byteValue();
-      address[2] = new Integer(0).byteValue();
-      address[3] = new Integer(1).byteValue();
-
-      dp = new DatagramPacket(b, b.length);
-
       try
       {
-         ituGT = InetAddress.getByAddress(address);
-      }
-      catch (UnknownHostException e)
-      {
-         System.err.println("Cannot find iViewX system");
-         for (StackTraceElement ste : e.getStackTrace())
-         {
-            System.out.println(ste.toString());
-         }
-      }
-
-      //ds = new DatagramSocket(7777);
-      try
-      {
-         ds = new DatagramSocket(6666);
+         openChannel(INCOMING_DATA_BIND_PORT);
+         connected = true;
       }
       catch (BindException ex)
       {
          System.err.println("failed to connect to socket, another program may be using it.");
+         connected = false;
       }
-      catch (SocketException e)
+      catch (IOException e)
       {
-         for (StackTraceElement ste : e.getStackTrace())
-         {
-            System.out.println(ste.toString());
-         }
+         e.printStackTrace();
+         connected = false;
       }
    }
 
    @Override
    public void disconnect()
    {
-      ds.close();
+      closeChannel();
       connected = false;
    }
 
@@ -114,12 +58,6 @@ public class ITUGazeTrackerClient extends EyeTrackerClient
       return connected;
    }
 
-   @Override
-   public void requestStop()
-   {
-      stop = true;
-   }
-
    @Override
    public void toggle()
    {
@@ -0,0 +1,190 @@
+package rit.eyeTrackingAPI.EyeTrackerUtilities.eyeTrackerClients;
+
+import java.nio.ByteBuffer;
+import rit.eyeTrackingAPI.DataConstructs.GazeSample;
+
+/**
+ * Decodes ITU GazeTracker UDP sample lines in place. Each line is a series of
+ * space separated tokens: the tracker's timestamp, then the X and Y screen
+ * coordinates, possibly with a fractional part:
+ *
+ *    STREAM_DATA 1234567 812.25 604.5
+ *
+ * A timestamp that is not a whole number is reported as zero.
+ *
+ * The parser does not allocate and is not thread safe.
+ *
+ * @author Mark Hazlewood
+ *
+ * @see ITUGazeTrackerClient
+ */
+public class ITUGazeTrackerSampleParser implements GazeDatagramParser
+{
+   // <editor-fold defaultstate="expanded" desc="Constants">
+
+   private static final byte[] SAMPLE_PREFIX = { 'S', 'T', 'R', 'E', 'A', 'M', '_', 'D', 'A', 'T', 'A' };
+
+   private static final int TIMESTAMP_TOKEN_INDEX = 1;
+   private static final int X_TOKEN_INDEX = 2;
+   private static final int Y_TOKEN_INDEX = 3;
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Working Functions">
+
+   @Override
+   public boolean parse(ByteBuffer datagram, GazeSample destination)
+   {
+      int position = datagram.position();
+      int end = datagram.limit();
+      int tokenIndex = 0;
+      long timestamp = 0;
+      long x = 0;
+
+      while (position < end)
+      {
+         // Skip the separator(s) in front of the next token
+         while (position < end && isWhitespace(datagram.get(position)))
+         {
+            position++;
+         }
+         if (position >= end)
+         {
+            break;
+         }
+
+         int tokenStart = position;
+         while (position < end && !isWhitespace(datagram.get(position)))
+         {
+            position++;
+         }
+
+         if (tokenIndex == TIMESTAMP_TOKEN_INDEX)
+         {
+            timestamp = parseWholePart(datagram, tokenStart, position);
+            if (timestamp == Long.MIN_VALUE)
+            {
+               timestamp = 0;
+            }
+         }
+         else if (tokenIndex == X_TOKEN_INDEX || tokenIndex == Y_TOKEN_INDEX)
+         {
+            long value = parseWholePart(datagram, tokenStart, position);
+            if (value == Long.MIN_VALUE)
+            {
+               return false;
+            }
+
+            if (tokenIndex == X_TOKEN_INDEX)
+            {
+               x = value;
+            }
+            else
+            {
+               destination.set((int) x, (int) value);
+               destination.setEyeType(GazeSample.EYE_UNKNOWN);
+               destination.setTrackerTimestamp(timestamp);
+               return true;
+            }
+         }
+
+         tokenIndex++;
+      }
+
+      return false;
+   }
+
+   /**
+    * Lines starting with STREAM_DATA are samples: truncated if they have fewer
+    * than four tokens, malformed otherwise.
+    */
+   @Override
+   public Rejection rejectionOf(ByteBuffer datagram)
+   {
+      int position = datagram.position();
+      int end = datagram.limit();
+
+      while (position < end && isWhitespace(datagram.get(position)))
+      {
+         position++;
+      }
+
+      if (end - position < SAMPLE_PREFIX.length)
+      {
+         return Rejection.NOT_A_SAMPLE;
+      }
+      for (int i = 0; i < SAMPLE_PREFIX.length; i++)
+      {
+         if (datagram.get(position + i) != SAMPLE_PREFIX[i])
+         {
+            return Rejection.NOT_A_SAMPLE;
+         }
+      }
+
+      int tokens = 0;
+      while (position < end)
+      {
+         while (position < end && isWhitespace(datagram.get(position)))
+         {
+            position++;
+         }
+         if (position < end)
+         {
+            tokens++;
+         }
+         while (position < end && !isWhitespace(datagram.get(position)))
+         {
+            position++;
+         }
+      }
+
+      return (tokens <= Y_TOKEN_INDEX) ? Rejection.TRUNCATED : Rejection.MALFORMED;
+   }
+
+   /*
+    * Returns the integer part of a decimal token, or Long.MIN_VALUE if the
+    * token is not a number.
+    */
+   private static long parseWholePart(ByteBuffer data, int start, int end)
+   {
+      int position = start;
+      boolean negative = false;
+      if (data.get(position) == '-' || data.get(position) == '+')
+      {
+         negative = data.get(position) == '-';
+         position++;
+      }
+
+      long value = 0;
+      int digits = 0;
+      while (position < end && data.get(position) >= '0' && data.get(position) <= '9')
+      {
+         value = value * 10 + (data.get(position) - '0');
+         position++;
+         digits++;
+      }
+
+      if (position < end && data.get(position) == '.')
+      {
+         position++;
+         while (position < end && data.get(position) >= '0' && data.get(position) <= '9')
+         {
+            position++;
+         }
+      }
+
+      if (digits == 0 || position != end)
+      {
+         return Long.MIN_VALUE;
+      }
+
+      return negative ? -value : value;
+   }
+
+   private static boolean isWhitespace(byte b)
+   {
+      return b == ' ' || b == '\t' || b == '\r' || b == '\n' || b == 0;
+   }
+
+   // </editor-fold>
+}
@@ -1,17 +1,14 @@
 package rit.eyeTrackingAPI.EyeTrackerUtilities.eyeTrackerClients;
 
-import java.io.BufferedWriter;
-import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.net.BindException;
-import java.net.DatagramPacket;
-import java.net.DatagramSocket;
-import java.net.InetAddress;
-import java.net.SocketException;
-import java.net.UnknownHostException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 
 import rit.eyeTrackingAPI.DataConstructs.GazePoint;
+import rit.eyeTrackingAPI.EyeTrackerUtilities.networking.UdpReceiveEngine;
 
 /**
  * A class used to set up communication with the mTrackerServerCommandAddress
@@ -23,13 +20,11 @@ import rit.eyeTrackingAPI.DataConstructs.GazePoint;
  * @author Corey Engelman
  *
  */
-public class IViewXClient extends EyeTrackerClient
+public class IViewXClient extends UdpEyeTrackerClient
 {
    // <editor-fold defaultstate="expanded" desc="Private Members">
 
-   private boolean stop = false;
-   private final boolean toggleOn = true;
-   private InetAddress mTrackerServerCommandAddress = null;
+   private SocketAddress mTrackerServerCommandAddress = null;
 
    // Set up some members to handle the connection to the tracker, with defaults
    // (Should be able to change these before connecting, or between connections)
@@ -38,27 +33,18 @@ public class IViewXClient extends EyeTrackerClient
    private final int mIncomingDataBindPort = 7777;
    private final int mDesiredDataRate = 60;
 
-   // Two sockets, one to receive incoming data and one to send commands to the tracker
-   private DatagramSocket mSendSocket;
-   private DatagramSocket mReceiveSocket;
-
-   // Packet object used to store incoming data from the tracker
-   private DatagramPacket mUdpPacket;
-
-   private BufferedWriter dataDump = null;
-   private FileWriter writer = null;
-
    // </editor-fold>
    // <editor-fold defaultstate="expanded" desc="Constants">
-   private final String OUTPUT_PATH = "C:" + File.separator + "dataDump.txt";
-
-   private final int MAX_RESPONSE_SIZE_BYTES = 50;
-
    private final String PING_COMMAND = "ET_PNG\n";
    private final String DISCONNECT_COMMAND = "ET_EST\n";
-   private final String FORMAT_REQUEST_COMMAND = "ET_FRM \"%ET %TS %SX %SY\"\n";
+   private final String FORMAT_REQUEST_COMMAND = SAMPLE_FORMAT_COMMAND;
    private final String DATA_REQUEST_COMMAND = "ET_STR " + Integer.toString(mDesiredDataRate) + "\n";
-   private final String RESPONSE_DATA_STRING = "ET_SPL";
+
+   /*
+    * Sample lines are decoded in the format requested by FORMAT_REQUEST_COMMAND.
+    * Static, since the parser has to be handed to the superclass constructor.
+    */
+   private static final String SAMPLE_FORMAT_COMMAND = "ET_FRM \"%ET %TS %SX %SY\"\n";
 
    // </editor-fold>
    
@@ -71,21 +57,7 @@ public class IViewXClient extends EyeTrackerClient
     */
    public IViewXClient(GazePoint cursor)
    {
-      super(cursor);
-
-      try
-      {
-         writer = new FileWriter(OUTPUT_PATH);
-      }
-      catch (IOException e)
-      {
-         for (StackTraceElement ste : e.getStackTrace())
-         {
-            System.out.println(ste.toString());
-         }
-      }
-
-      dataDump = new BufferedWriter(writer);
+      super(cursor, IViewXSampleParser.fromFormatCommand(SAMPLE_FORMAT_COMMAND), null);
    }
 
    /**
@@ -98,55 +70,36 @@ public class IViewXClient extends EyeTrackerClient
     */
    public IViewXClient(GazePoint cursor, String ipAddress)
    {
-      super(cursor);
-
-      mTrackerServerIP = ipAddress;
-
-      try
-      {
-         writer = new FileWriter(OUTPUT_PATH);
-      }
-      catch (IOException e)
-      {
-         for (StackTraceElement ste : e.getStackTrace())
-         {
-            System.out.println(ste.toString());
-         }
-      }
-
-      dataDump = new BufferedWriter(writer);
+      this(cursor, ipAddress, null);
    }
 
-   // </editor-fold>
-   // <editor-fold defaultstate="expanded" desc="Working Functions">
    /**
-    * Overrides the run method. First sets up UDP connection with the
-    * mTrackerServerCommandAddress, then enters a loop and continuously tries to
-    * receive data from the mTrackerServerCommandAddress eye tracking device
-    * until the requestStop() method is called.
+    * Constructor for the IViewXComm class. Sets the cursor object associated
+    * with this IViewXComm instance to cursor and the ip of the system running
+    * mTrackerServerCommandAddress, and receives samples through an engine
+    * shared with other clients.
+    *
+    * @param cursor - the cursor associated with this IViewXComm
+    * @param ipAddress - the ipAddress as a string
+    * @param sharedEngine - receive engine shared with other clients, or null
+    * for the client to receive on its own thread
     */
-   @Override
-   public void run()
+   public IViewXClient(GazePoint cursor, String ipAddress, UdpReceiveEngine sharedEngine)
    {
-      clientOperation();
+      super(cursor, IViewXSampleParser.fromFormatCommand(SAMPLE_FORMAT_COMMAND), sharedEngine);
+
+      mTrackerServerIP = ipAddress;
    }
 
+   // </editor-fold>
+   // <editor-fold defaultstate="expanded" desc="Working Functions">
    @Override
    public synchronized void disconnect()
    {
-      byte[] stopCommand = createIViewXCommandFromString(DISCONNECT_COMMAND);
-      try
-      {
-         mSendSocket.send(new DatagramPacket(stopCommand, stopCommand.length));
-      }
-      catch (IOException e)
-      {
-         e.printStackTrace();
-      }
+      sendCommand(DISCONNECT_COMMAND);
 
       //requestStop();
-      mSendSocket.close();
-      mReceiveSocket.close();
+      closeChannel();
       connected = false;
    }
 
@@ -155,21 +108,16 @@ public class IViewXClient extends EyeTrackerClient
    {
       System.out.println("Initiating connection handshake ...");
 
-      try
-      {
-         mTrackerServerCommandAddress = InetAddress.getByName(mTrackerServerIP);
-      }
-      catch (UnknownHostException e)
+      mTrackerServerCommandAddress = new InetSocketAddress(mTrackerServerIP, mTrackerServerCommandPort);
+      if (((InetSocketAddress) mTrackerServerCommandAddress).isUnresolved())
       {
          System.err.println("Cannot find iViewX system");
-         System.out.println(e.getStackTrace());
       }
 
       try
       {
-         // Initialize both send and receive sockets
-         mReceiveSocket = new DatagramSocket(mIncomingDataBindPort);
-         mSendSocket = new DatagramSocket();
+         // One channel both receives incoming data and sends commands to the tracker
+         openChannel(mIncomingDataBindPort);
 
          connected = true;
          System.out.println(connected);
@@ -178,47 +126,45 @@ public class IViewXClient extends EyeTrackerClient
       {
          System.err.println("failed to create send/receive sockets, another program may be using them.");
          connected = false;
+         return;
       }
-      catch (SocketException e)
+      catch (IOException e)
       {
          e.printStackTrace();
          connected = false;
+         return;
       }
 
-      try
-      {
-         // Ping the tracker to make sure someone is home ...
-         System.out.println("Pinging iViewX server @ " + mTrackerServerIP + ":" + mTrackerServerCommandPort + " ...");
-         byte[] msg = createIViewXCommandFromString(PING_COMMAND);
-         mSendSocket.send(new DatagramPacket(msg, msg.length, mTrackerServerCommandAddress, mTrackerServerCommandPort));
-
-         // Grab ping response, should be immediate
-         byte[] recvBuff = new byte[MAX_RESPONSE_SIZE_BYTES];
-         DatagramPacket recvPacket = new DatagramPacket(recvBuff, recvBuff.length);
-         mReceiveSocket.receive(recvPacket);
-
-         String pingResponse = new String(recvPacket.getData(), 0, recvPacket.getLength());// receive
-         System.out.println(">>> Ping response \t" + pingResponse);
+      // Ping the tracker to make sure someone is home ... the reply arrives
+      // on the receive engine and is reported by otherDatagramReceived()
+      System.out.println("Pinging iViewX server @ " + mTrackerServerIP + ":" + mTrackerServerCommandPort + " ...");
+      sendCommand(PING_COMMAND);
 
-         /* send format of data to mTrackerServerCommandAddress
-          * Format is eye type, time stamp, gaze x, gaze y
-          * each format token needs a % symbol in front of it, and the entire
-          * format string needs to be in quotes, hence the \" 
-          */
-         msg = createIViewXCommandFromString(FORMAT_REQUEST_COMMAND);
-         mSendSocket.send(new DatagramPacket(msg, msg.length, mTrackerServerCommandAddress, mTrackerServerCommandPort));
+      /* send format of data to mTrackerServerCommandAddress
+       * Format is eye type, time stamp, gaze x, gaze y
+       * each format token needs a % symbol in front of it, and the entire
+       * format string needs to be in quotes, hence the \" 
+       */
+      sendCommand(FORMAT_REQUEST_COMMAND);
 
-         //send request for data stream to mTrackerServerCommandAddress, 250 notes the sampling rate
-         msg = createIViewXCommandFromString(DATA_REQUEST_COMMAND);
-         mSendSocket.send(new DatagramPacket(msg, msg.length, mTrackerServerCommandAddress, mTrackerServerCommandPort));
+      //send request for data stream to mTrackerServerCommandAddress, 250 notes the sampling rate
+      sendCommand(DATA_REQUEST_COMMAND);
+   }
 
+   /*
+    * Sends a command to the tracker's command port over the data channel.
+    */
+   private void sendCommand(String command)
+   {
+      if (mChannel == null || mTrackerServerCommandAddress == null)
+      {
+         System.err.println("Not connected to an Eye Tracking device");
+         return;
       }
-      catch (SocketException ex)
+
+      try
       {
-         if (ex.getClass().getName().equals("BindException"))
-         {
-            System.err.println("Not connected to an Eye Tracking device");
-         }
+         mChannel.send(ByteBuffer.wrap(createIViewXCommandFromString(command)), mTrackerServerCommandAddress);
       }
       catch (IOException e)
       {
@@ -227,37 +173,35 @@ public class IViewXClient extends EyeTrackerClient
    }
 
    /**
-    * Toggles eye tracking on and off
+    * Incoming data format should be as follows:
+    *                           [ET]                     [TS]                           [SX]                                               [SY]
+    *       "ET_SPL { (l)eft, (r)ight, (b)inocular } {timestamp} {X position of left eye} {X position of right eye} {Y position of left eye} {Y position of right eye}"
+    *
+    * Sample lines are decoded by the parser, which averages the two reported
+    * eye positions into a single X,Y screen location. Everything else (ping
+    * replies etc.) ends up here and is just logged.
     */
    @Override
-   public void toggle()
+   protected void otherDatagramReceived(ByteBuffer datagram, SocketAddress source)
    {
-      if (connected)
-      {
-         disconnect();
-      }
-      else
-      {
-         connect();
-      }
+      byte[] response = new byte[datagram.remaining()];
+      datagram.get(response);
+      System.out.println(">>> Response \t" + new String(response, StandardCharsets.US_ASCII).trim());
    }
 
    /**
-    * A means of stopping this thread.
+    * Toggles eye tracking on and off
     */
    @Override
-   public void requestStop()
+   public void toggle()
    {
-      stop = true;
-      connected = false;
-      try
+      if (connected)
       {
-         dataDump.close();
-         writer.close();
+         disconnect();
       }
-      catch (IOException e)
+      else
       {
-         e.printStackTrace();
+         connect();
       }
    }
 
@@ -274,107 +218,6 @@ public class IViewXClient extends EyeTrackerClient
       return commandAsBytes;
    }
 
-   @Override
-   protected void clientOperation()
-   {
-      if (!connected)
-      {
-         connect();
-      }
-
-      String responseString = "";
-      try
-      {
-         byte[] recvBuff = new byte[MAX_RESPONSE_SIZE_BYTES];
-         mUdpPacket = new DatagramPacket(recvBuff, recvBuff.length);
-         stop = false;
-
-         while (!stop)
-         {
-            if (connected)
-            {
-               if (responseString != null)
-               {
-
-                  try
-                  {
-                     if (mReceiveSocket != null)
-                     {
-                        mReceiveSocket.receive(mUdpPacket);
-                     }
-
-                     responseString = new String(mUdpPacket.getData(), 0, mUdpPacket.getLength());   // receive
-                     // file
-                     // contents
-                     if (responseString.contains(RESPONSE_DATA_STRING))
-                     {
-                        //System.out.println("From eye tracker " + responseString);
-                        String[] tokens = responseString.split(" ");
-
-                        if (toggleOn)
-                        {
-                           int screenX = 0;
-                           int screenY = 0;
-
-                           // Incoming data format should be as follows:
-                           //                           [ET]                     [TS]                           [SX]                                               [SY]
-                           //       "ET_SPL { (l)eft, (r)ight, (b)inocular } {timestamp} {X position of left eye} {X position of right eye} {Y position of left eye} {Y position of right eye}"
-                           //
-                           // So here we want to get a single X,Y screen location by averaging the two reported eye positions
-                           try
-                           {
-                              screenX = (Integer.parseInt(tokens[3].trim()) + Integer.parseInt(tokens[4].trim())) / 2;
-                              screenY = (Integer.parseInt(tokens[5].trim()) + Integer.parseInt(tokens[6].trim())) / 2;
-
-                              // Report a new gaze point to the "cursor" object assigned
-                              // to this listener
-                              mGazePointContainer.setCoordinates(screenX, screenY);
-
-                           }
-                           catch (NumberFormatException ex)
-                           {
-                              screenX = (Integer.parseInt(tokens[2].trim()) + Integer.parseInt(tokens[3].trim())) / 2;
-                              screenY = (Integer.parseInt(tokens[4].trim()) + Integer.parseInt(tokens[5].trim())) / 2;
-
-                              // Report a new gaze point to the "cursor" object assigned
-                              // to this listener
-                              mGazePointContainer.setCoordinates(screenX, screenY);
-                           }
-                           catch (ArrayIndexOutOfBoundsException ex)
-                           {
-                              System.err.println("out of bounds exception");
-                           }
-                        }
-                     }
-                  }
-                  catch (SocketException ex)
-                  {
-                     //System.err.println("Disconnected");
-                  }
-               }
-            }
-         }
-      }
-      catch (IOException ex)
-      {
-         System.err.println("I/O error");
-         ex.printStackTrace();
-      }
-      catch (NullPointerException ex)
-      {
-         ex.printStackTrace();
-      }
-
-      try
-      {
-         mReceiveSocket.close();
-      }
-      catch (NullPointerException ex)
-      {
-         ex.printStackTrace();
-      }
-   }
-
    // </editor-fold>
    // <editor-fold defaultstate="expanded" desc="Public Properties">
    @Override
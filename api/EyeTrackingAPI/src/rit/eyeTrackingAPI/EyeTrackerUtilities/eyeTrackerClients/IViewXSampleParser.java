@@ -0,0 +1,428 @@
+package rit.eyeTrackingAPI.EyeTrackerUtilities.eyeTrackerClients;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import rit.eyeTrackingAPI.DataConstructs.GazeSample;
+
+/**
+ * Decodes iViewX "ET_SPL" sample lines straight from the received bytes into a
+ * {@link GazeSample}, without building any intermediate Strings or arrays.
+ *
+ * The parser is built from the same format string that is sent to the tracker
+ * with the ET_FRM command (for example "%ET %TS %SX %SY"), so the order of the
+ * fields in each sample line is known up front. Each field in a sample line is
+ * one token, except the per-eye fields (such as %SX and %SY) which carry one
+ * token per reported eye: two when the eye type is binocular, one otherwise.
+ *
+ *    ET_SPL b 1234567 812 818 604 611
+ *           [ET] [TS] [SX l r] [SY l r]
+ *
+ * Lines that are not sample lines (ping replies, command acknowledgements) and
+ * sample lines that do not match the negotiated format are rejected by
+ * the parse methods returning false.
+ *
+ * Instances keep parse state in fields and are not thread safe; each client
+ * should own its own parser.
+ *
+ * @author Mark Hazlewood
+ *
+ * @see IViewXClient
+ */
+public class IViewXSampleParser implements GazeDatagramParser
+{
+   // <editor-fold defaultstate="expanded" desc="Constants">
+
+   private static final byte[] SAMPLE_PREFIX = { 'E', 'T', '_', 'S', 'P', 'L' };
+
+   private static final int FIELD_EYE_TYPE = 0;
+   private static final int FIELD_TIMESTAMP = 1;
+   private static final int FIELD_SCREEN_X = 2;
+   private static final int FIELD_SCREEN_Y = 3;
+   private static final int FIELD_OTHER_PER_EYE = 4;
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Private Members">
+
+   private final String mFormat;
+   private final int[] mFieldLayout;
+
+   // Wrapper reused across calls for datagrams received into a byte array
+   private ByteBuffer mArrayWrapper = null;
+
+   // Scan state for the line currently being parsed
+   private ByteBuffer mData;
+   private int mPosition;
+   private int mEnd;
+   private long mLastNumber;
+   private boolean mRanOut;
+
+   // Sample rejected lines are re-parsed into to work out what was wrong
+   private final GazeSample mScratchSample = new GazeSample();
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Constructor(s)">
+
+   /**
+    * Creates a parser for sample lines in the given format.
+    *
+    * @param format The iViewX format string, e.g. "%ET %TS %SX %SY".
+    *
+    * @throws IllegalArgumentException If the format does not include both %SX
+    * and %SY.
+    */
+   public IViewXSampleParser(String format)
+   {
+      mFormat = format.trim();
+
+      List<Integer> layout = new ArrayList<>();
+      for (String token : mFormat.split("\\s+"))
+      {
+         switch (token)
+         {
+            case "%ET":
+               layout.add(FIELD_EYE_TYPE);
+               break;
+            case "%TS":
+               layout.add(FIELD_TIMESTAMP);
+               break;
+            case "%SX":
+               layout.add(FIELD_SCREEN_X);
+               break;
+            case "%SY":
+               layout.add(FIELD_SCREEN_Y);
+               break;
+            default:
+               layout.add(FIELD_OTHER_PER_EYE);
+               break;
+         }
+      }
+
+      if (!layout.contains(FIELD_SCREEN_X) || !layout.contains(FIELD_SCREEN_Y))
+      {
+         throw new IllegalArgumentException("Sample format must include %SX and %SY: " + format);
+      }
+
+      mFieldLayout = new int[layout.size()];
+      for (int i = 0; i < mFieldLayout.length; i++)
+      {
+         mFieldLayout[i] = layout.get(i);
+      }
+   }
+
+   /**
+    * Creates a parser from a complete ET_FRM command, as sent to the tracker.
+    *
+    * @param formatCommand The command, e.g. "ET_FRM \"%ET %TS %SX %SY\"\n".
+    *
+    * @return A parser for the format requested by the command.
+    */
+   public static IViewXSampleParser fromFormatCommand(String formatCommand)
+   {
+      int firstQuote = formatCommand.indexOf('"');
+      int lastQuote = formatCommand.lastIndexOf('"');
+
+      if (firstQuote < 0 || lastQuote <= firstQuote)
+      {
+         throw new IllegalArgumentException("No quoted format string in command: " + formatCommand);
+      }
+
+      return new IViewXSampleParser(formatCommand.substring(firstQuote + 1, lastQuote));
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Working Functions">
+
+   /**
+    * Parses one datagram.
+    *
+    * @param data Buffer holding the datagram.
+    * @param offset Index of the first byte of the datagram.
+    * @param length Number of bytes in the datagram.
+    * @param destination Sample to fill in. Only modified when parsing succeeds.
+    *
+    * @return True if the datagram was a well-formed sample line and
+    * destination has been filled in, otherwise false.
+    */
+   public boolean parse(byte[] data, int offset, int length, GazeSample destination)
+   {
+      // Clients receive into the same array every time, so this only wraps once
+      if (mArrayWrapper == null || mArrayWrapper.array() != data)
+      {
+         mArrayWrapper = ByteBuffer.wrap(data);
+      }
+
+      return parse(mArrayWrapper, offset, offset + length, destination);
+   }
+
+   /**
+    * Parses the bytes between a buffer's position and limit. The buffer may be
+    * a heap or a direct buffer; its position and limit are left unchanged.
+    *
+    * @param data Buffer holding the datagram.
+    * @param destination Sample to fill in. Only modified when parsing succeeds.
+    *
+    * @return True if destination has been filled in.
+    *
+    * @see #parse(byte[], int, int, GazeSample)
+    */
+   @Override
+   public boolean parse(ByteBuffer data, GazeSample destination)
+   {
+      return parse(data, data.position(), data.limit(), destination);
+   }
+
+   /**
+    * A line is truncated when it runs out before a field it should still
+    * hold, and malformed when a field is there but cannot be read.
+    */
+   @Override
+   public Rejection rejectionOf(ByteBuffer data)
+   {
+      mData = data;
+      mPosition = data.position();
+      mEnd = data.limit();
+
+      try
+      {
+         skipWhitespace();
+         if (!skipPrefix())
+         {
+            return Rejection.NOT_A_SAMPLE;
+         }
+      }
+      finally
+      {
+         mData = null;
+      }
+
+      if (parse(data, mScratchSample))
+      {
+         // Not a rejected line after all
+         return Rejection.MALFORMED;
+      }
+
+      return mRanOut ? Rejection.TRUNCATED : Rejection.MALFORMED;
+   }
+
+   private boolean parse(ByteBuffer data, int start, int end, GazeSample destination)
+   {
+      mData = data;
+      mPosition = start;
+      mEnd = end;
+      mRanOut = false;
+
+      try
+      {
+         return parseLine(destination);
+      }
+      finally
+      {
+         mData = null;
+      }
+   }
+
+   private boolean parseLine(GazeSample destination)
+   {
+      skipWhitespace();
+      if (!skipPrefix())
+      {
+         return false;
+      }
+
+      char eyeType = GazeSample.EYE_BINOCULAR;
+      long timestamp = 0;
+      long leftX = 0, rightX = 0, leftY = 0, rightY = 0;
+
+      for (int field : mFieldLayout)
+      {
+         skipWhitespace();
+         if (mPosition >= mEnd)
+         {
+            mRanOut = true;
+            return false;
+         }
+
+         switch (field)
+         {
+            case FIELD_EYE_TYPE:
+               eyeType = (char) mData.get(mPosition);
+               if (eyeType != GazeSample.EYE_LEFT
+                       && eyeType != GazeSample.EYE_RIGHT
+                       && eyeType != GazeSample.EYE_BINOCULAR)
+               {
+                  return false;
+               }
+               skipToken();
+               break;
+
+            case FIELD_TIMESTAMP:
+               if (!parseNumber())
+               {
+                  return false;
+               }
+               timestamp = mLastNumber;
+               break;
+
+            case FIELD_SCREEN_X:
+               if (!parseNumber())
+               {
+                  return false;
+               }
+               leftX = mLastNumber;
+               rightX = mLastNumber;
+               if (eyeType == GazeSample.EYE_BINOCULAR)
+               {
+                  skipWhitespace();
+                  if (!parseNumber())
+                  {
+                     mRanOut = mPosition >= mEnd;
+                     return false;
+                  }
+                  rightX = mLastNumber;
+               }
+               break;
+
+            case FIELD_SCREEN_Y:
+               if (!parseNumber())
+               {
+                  return false;
+               }
+               leftY = mLastNumber;
+               rightY = mLastNumber;
+               if (eyeType == GazeSample.EYE_BINOCULAR)
+               {
+                  skipWhitespace();
+                  if (!parseNumber())
+                  {
+                     mRanOut = mPosition >= mEnd;
+                     return false;
+                  }
+                  rightY = mLastNumber;
+               }
+               break;
+
+            default:
+               skipToken();
+               if (eyeType == GazeSample.EYE_BINOCULAR)
+               {
+                  skipWhitespace();
+                  skipToken();
+               }
+               break;
+         }
+      }
+
+      if (eyeType == GazeSample.EYE_BINOCULAR)
+      {
+         destination.setBinocular((int) leftX, (int) leftY, (int) rightX, (int) rightY);
+      }
+      else
+      {
+         destination.set((int) leftX, (int) leftY);
+         destination.setEyeType(eyeType);
+      }
+      destination.setTrackerTimestamp(timestamp);
+
+      return true;
+   }
+
+   private boolean skipPrefix()
+   {
+      if (mEnd - mPosition < SAMPLE_PREFIX.length)
+      {
+         return false;
+      }
+
+      for (int i = 0; i < SAMPLE_PREFIX.length; i++)
+      {
+         if (mData.get(mPosition + i) != SAMPLE_PREFIX[i])
+         {
+            return false;
+         }
+      }
+
+      mPosition += SAMPLE_PREFIX.length;
+
+      // The prefix must be a whole token
+      return mPosition >= mEnd || isWhitespace(mData.get(mPosition));
+   }
+
+   /*
+    * Reads a decimal number into mLastNumber. A fractional part is accepted
+    * and truncated, since screen coordinates are used as whole pixels.
+    */
+   private boolean parseNumber()
+   {
+      boolean negative = false;
+      if (mPosition < mEnd && (mData.get(mPosition) == '-' || mData.get(mPosition) == '+'))
+      {
+         negative = mData.get(mPosition) == '-';
+         mPosition++;
+      }
+
+      long value = 0;
+      int digits = 0;
+      while (mPosition < mEnd && mData.get(mPosition) >= '0' && mData.get(mPosition) <= '9')
+      {
+         value = value * 10 + (mData.get(mPosition) - '0');
+         mPosition++;
+         digits++;
+      }
+
+      if (mPosition < mEnd && mData.get(mPosition) == '.')
+      {
+         mPosition++;
+         while (mPosition < mEnd && mData.get(mPosition) >= '0' && mData.get(mPosition) <= '9')
+         {
+            mPosition++;
+         }
+      }
+
+      if (digits == 0 || (mPosition < mEnd && !isWhitespace(mData.get(mPosition))))
+      {
+         return false;
+      }
+
+      mLastNumber = negative ? -value : value;
+      return true;
+   }
+
+   private void skipToken()
+   {
+      while (mPosition < mEnd && !isWhitespace(mData.get(mPosition)))
+      {
+         mPosition++;
+      }
+   }
+
+   private void skipWhitespace()
+   {
+      while (mPosition < mEnd && isWhitespace(mData.get(mPosition)))
+      {
+         mPosition++;
+      }
+   }
+
+   private static boolean isWhitespace(byte b)
+   {
+      return b == ' ' || b == '\t' || b == '\r' || b == '\n' || b == 0;
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Properties">
+
+   /**
+    * @return The format string this parser was built for.
+    */
+   public String getFormat()
+   {
+      return mFormat;
+   }
+
+   // </editor-fold>
+}
@@ -0,0 +1,406 @@
+package rit.eyeTrackingAPI.EyeTrackerUtilities.eyeTrackerClients;
+
+import java.lang.management.ManagementFactory;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Health of one client's incoming sample stream: how fast samples arrive and
+ * how evenly, how many went missing or came out of order on the way, and how
+ * many datagrams could not be read.
+ *
+ * Gaps are inferred from the tracker's own timestamps, whatever their unit.
+ * The tracker's sample interval is taken to be the smallest step between
+ * consecutive timestamps over the last {@link #INTERVAL_WINDOW} samples; a step
+ * of more than one and a half intervals is a gap, and the samples that would
+ * have filled it are counted as missing. A sample older than the newest one
+ * seen is counted as reordered and no longer as missing. Samples without a
+ * tracker timestamp only contribute to the rate and jitter.
+ *
+ * Rate and jitter are smoothed over roughly the last sixteen samples. Jitter is
+ * the mean deviation of the arrival intervals from their average, in the
+ * manner of RFC 3550.
+ *
+ * Statistics are updated from the receiving thread only, and can be read from
+ * any thread, directly or as an MBean once {@link #register(String)} has been
+ * called.
+ *
+ * @author Mark Hazlewood
+ */
+public class IngestStatistics implements IngestStatisticsMBean
+{
+   // <editor-fold defaultstate="expanded" desc="Constants">
+
+   /**
+    * Domain the MBeans are registered under.
+    */
+   public static final String JMX_DOMAIN = "rit.eyeTrackingAPI";
+
+   /**
+    * Number of samples over which the tracker's interval is re-estimated.
+    */
+   public static final int INTERVAL_WINDOW = 256;
+
+   private static final double SMOOTHING = 1.0 / 16;
+   private static final double GAP_THRESHOLD = 1.5;
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Private Members">
+
+   private ObjectName mObjectName = null;
+
+   // Arrival
+   private volatile long mSampleCount = 0;
+   private long mLastArrivalNanos = 0;
+   private volatile double mMeanIntervalNanos = 0;
+   private volatile double mJitterNanos = 0;
+
+   // Tracker timestamps
+   private long mNewestTimestamp = 0;
+   private long mWindowMinInterval = Long.MAX_VALUE;
+   private int mWindowCount = 0;
+   private volatile long mNominalInterval = 0;
+   private volatile long mGapCount = 0;
+   private volatile long mMissingCount = 0;
+   private volatile long mReorderedCount = 0;
+   private volatile long mDuplicateCount = 0;
+   private volatile long mLateDropCount = 0;
+
+   // Rejected datagrams
+   private volatile long mMalformedCount = 0;
+   private volatile long mTruncatedCount = 0;
+   private volatile long mOtherCount = 0;
+
+   // Set by reset() from another thread, acted on by the receiving thread
+   private volatile boolean mResetRequested = false;
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Recording">
+
+   /**
+    * Records a sample that was parsed successfully.
+    *
+    * @param trackerTimestamp The tracker's timestamp for the sample, or zero
+    * if it has none.
+    * @param receiveNanos {@link System#nanoTime()} when it was received.
+    */
+   public void sampleReceived(long trackerTimestamp, long receiveNanos)
+   {
+      if (mResetRequested)
+      {
+         clear();
+      }
+
+      mSampleCount = mSampleCount + 1;
+
+      if (mLastArrivalNanos != 0)
+      {
+         double interval = receiveNanos - mLastArrivalNanos;
+         double mean = (mMeanIntervalNanos == 0) ? interval : mMeanIntervalNanos + (interval - mMeanIntervalNanos) * SMOOTHING;
+         mMeanIntervalNanos = mean;
+         mJitterNanos = mJitterNanos + (Math.abs(interval - mean) - mJitterNanos) * SMOOTHING;
+      }
+      mLastArrivalNanos = receiveNanos;
+
+      if (trackerTimestamp == 0)
+      {
+         return;
+      }
+
+      if (mNewestTimestamp == 0)
+      {
+         mNewestTimestamp = trackerTimestamp;
+         return;
+      }
+
+      long step = trackerTimestamp - mNewestTimestamp;
+      if (step < 0)
+      {
+         mReorderedCount = mReorderedCount + 1;
+
+         // It arrived after all, in the gap it was counted missing from
+         if (mMissingCount > 0)
+         {
+            mMissingCount = mMissingCount - 1;
+         }
+         return;
+      }
+      if (step == 0)
+      {
+         mDuplicateCount = mDuplicateCount + 1;
+         return;
+      }
+
+      mNewestTimestamp = trackerTimestamp;
+      updateInterval(step);
+
+      long nominal = mNominalInterval;
+      if (nominal > 0 && step > nominal * GAP_THRESHOLD)
+      {
+         mGapCount = mGapCount + 1;
+         mMissingCount = mMissingCount + Math.max(1, Math.round(step / (double) nominal) - 1);
+      }
+   }
+
+   /*
+    * Takes the smallest step of each window as the tracker's interval. Until
+    * the first window is complete, the smallest step so far is used.
+    */
+   private void updateInterval(long step)
+   {
+      if (step < mWindowMinInterval)
+      {
+         mWindowMinInterval = step;
+      }
+
+      if (++mWindowCount >= INTERVAL_WINDOW)
+      {
+         mNominalInterval = mWindowMinInterval;
+         mWindowMinInterval = Long.MAX_VALUE;
+         mWindowCount = 0;
+      }
+      else if (mNominalInterval == 0 || mWindowMinInterval < mNominalInterval)
+      {
+         mNominalInterval = mWindowMinInterval;
+      }
+   }
+
+   /**
+    * Records a datagram that the parser rejected.
+    *
+    * @param rejection Why it was rejected.
+    */
+   public void datagramRejected(GazeDatagramParser.Rejection rejection)
+   {
+      if (mResetRequested)
+      {
+         clear();
+      }
+
+      switch (rejection)
+      {
+         case MALFORMED:
+            mMalformedCount = mMalformedCount + 1;
+            break;
+         case TRUNCATED:
+            mTruncatedCount = mTruncatedCount + 1;
+            break;
+         default:
+            mOtherCount = mOtherCount + 1;
+            break;
+      }
+   }
+
+   /**
+    * Records a sample the reorder buffer dropped because samples after it had
+    * already been passed on.
+    */
+   public void lateSampleDropped()
+   {
+      mLateDropCount = mLateDropCount + 1;
+   }
+
+   /**
+    * Starts the statistics again. The receiving thread does the clearing the
+    * next time it records something, so this is safe to call from any thread.
+    */
+   @Override
+   public void reset()
+   {
+      mResetRequested = true;
+   }
+
+   private void clear()
+   {
+      mResetRequested = false;
+      mSampleCount = 0;
+      mLastArrivalNanos = 0;
+      mMeanIntervalNanos = 0;
+      mJitterNanos = 0;
+      mNewestTimestamp = 0;
+      mWindowMinInterval = Long.MAX_VALUE;
+      mWindowCount = 0;
+      mNominalInterval = 0;
+      mGapCount = 0;
+      mMissingCount = 0;
+      mReorderedCount = 0;
+      mDuplicateCount = 0;
+      mLateDropCount = 0;
+      mMalformedCount = 0;
+      mTruncatedCount = 0;
+      mOtherCount = 0;
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="JMX">
+
+   /**
+    * Registers these statistics with the platform MBean server as
+    * "rit.eyeTrackingAPI:type=IngestStatistics,name=...". Any previous
+    * registration is removed first.
+    *
+    * @param name Name of the client the statistics belong to.
+    */
+   public synchronized void register(String name)
+   {
+      unregister();
+
+      try
+      {
+         ObjectName objectName = new ObjectName(JMX_DOMAIN + ":type=IngestStatistics,name=" + ObjectName.quote(name));
+         ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+         mObjectName = objectName;
+      }
+      catch (JMException ex)
+      {
+         System.err.println("Could not register ingest statistics for " + name + ": " + ex.getMessage());
+      }
+   }
+
+   /**
+    * Removes the MBean registered by {@link #register(String)}, if any.
+    */
+   public synchronized void unregister()
+   {
+      if (mObjectName == null)
+      {
+         return;
+      }
+
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      try
+      {
+         if (server.isRegistered(mObjectName))
+         {
+            server.unregisterMBean(mObjectName);
+         }
+      }
+      catch (JMException ex)
+      {
+         ex.printStackTrace();
+      }
+      mObjectName = null;
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Properties">
+
+   @Override
+   public long getSampleCount()
+   {
+      return mSampleCount;
+   }
+
+   /**
+    * @return Samples received per second.
+    */
+   @Override
+   public double getSampleRate()
+   {
+      double mean = mMeanIntervalNanos;
+      return (mean > 0) ? 1.0e9 / mean : 0;
+   }
+
+   @Override
+   public double getJitterMillis()
+   {
+      return mJitterNanos / 1.0e6;
+   }
+
+   /**
+    * @return The tracker's sample interval, in its own timestamp unit, or zero
+    * until it is known.
+    */
+   @Override
+   public long getNominalInterval()
+   {
+      return mNominalInterval;
+   }
+
+   /**
+    * @return Number of gaps in the tracker timestamps.
+    */
+   @Override
+   public long getGapCount()
+   {
+      return mGapCount;
+   }
+
+   /**
+    * @return Number of samples the gaps should have held.
+    */
+   @Override
+   public long getMissingSampleCount()
+   {
+      return mMissingCount;
+   }
+
+   /**
+    * @return Missing samples as a percentage of all the samples sent.
+    */
+   @Override
+   public double getLossPercent()
+   {
+      long missing = mMissingCount;
+      long total = mSampleCount + missing;
+      return (total > 0) ? 100.0 * missing / total : 0;
+   }
+
+   @Override
+   public long getReorderedCount()
+   {
+      return mReorderedCount;
+   }
+
+   /**
+    * @return Number of samples repeating the newest timestamp.
+    */
+   @Override
+   public long getDuplicateCount()
+   {
+      return mDuplicateCount;
+   }
+
+   @Override
+   public long getLateDropCount()
+   {
+      return mLateDropCount;
+   }
+
+   @Override
+   public long getMalformedCount()
+   {
+      return mMalformedCount;
+   }
+
+   @Override
+   public long getTruncatedCount()
+   {
+      return mTruncatedCount;
+   }
+
+   /**
+    * @return Number of datagrams that were not samples, such as command
+    * replies.
+    */
+   @Override
+   public long getOtherDatagramCount()
+   {
+      return mOtherCount;
+   }
+
+   @Override
+   public String toString()
+   {
+      return String.format("%d samples at %.1f/s, jitter %.2f ms, %d gaps (%d missing, %.2f%%), %d reordered, %d duplicate, %d late, %d malformed, %d truncated",
+                           getSampleCount(), getSampleRate(), getJitterMillis(), getGapCount(), getMissingSampleCount(), getLossPercent(),
+                           getReorderedCount(), getDuplicateCount(), getLateDropCount(), getMalformedCount(), getTruncatedCount());
+   }
+
+   // </editor-fold>
+}
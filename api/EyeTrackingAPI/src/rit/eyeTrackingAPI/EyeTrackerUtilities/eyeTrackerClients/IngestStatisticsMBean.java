@@ -0,0 +1,37 @@
+package rit.eyeTrackingAPI.EyeTrackerUtilities.eyeTrackerClients;
+
+/**
+ * Management interface of {@link IngestStatistics}, as seen through JMX.
+ *
+ * @author Mark Hazlewood
+ */
+public interface IngestStatisticsMBean
+{
+   long getSampleCount();
+
+   double getSampleRate();
+
+   double getJitterMillis();
+
+   long getNominalInterval();
+
+   long getGapCount();
+
+   long getMissingSampleCount();
+
+   double getLossPercent();
+
+   long getReorderedCount();
+
+   long getDuplicateCount();
+
+   long getLateDropCount();
+
+   long getMalformedCount();
+
+   long getTruncatedCount();
+
+   long getOtherDatagramCount();
+
+   void reset();
+}
@@ -0,0 +1,269 @@
+package rit.eyeTrackingAPI.EyeTrackerUtilities.eyeTrackerClients;
+
+import java.util.concurrent.TimeUnit;
+import rit.eyeTrackingAPI.DataConstructs.GazeSample;
+
+/**
+ * Puts samples that arrived out of order back in tracker timestamp order,
+ * holding each one back for no longer than a latency budget.
+ *
+ * A sample that directly follows the last one passed on, one tracker interval
+ * later, is passed on at once, so a stream that arrives in order is not
+ * delayed at all. Any other sample is held until the samples in front of it
+ * turn up, until it has waited the budget, or until the buffer fills up. A
+ * sample that turns up after later ones have been passed on is dropped.
+ *
+ * A sample further behind than a full buffer of intervals, or a run of
+ * samples that would all be dropped as late, means the tracker's clock has
+ * restarted or wrapped rather than that samples were reordered. The samples
+ * still held are then passed on first, and ordering starts afresh from the
+ * new sample, as after {@link #clear()}.
+ *
+ * The buffer has no timer: held samples are released as later samples are
+ * added. At the tracker's rate that bounds the delay to the budget plus one
+ * sample interval.
+ *
+ * Samples are copied into slots allocated up front, so adding and polling do
+ * not allocate. Not thread safe; meant to be used on the receiving thread.
+ *
+ * @author Mark Hazlewood
+ *
+ * @see UdpEyeTrackerClient#setReorderLatency(long, TimeUnit)
+ */
+public class ReorderBuffer
+{
+   // <editor-fold defaultstate="expanded" desc="Constants">
+
+   public static final int DEFAULT_CAPACITY = 32;
+
+   // Consecutive late samples taken to mean the tracker's clock has restarted,
+   // however small the jump back
+   private static final int RESTART_LATE_SAMPLES = 8;
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Private Members">
+
+   private final GazeSample[] mSlots;
+   private final long mLatencyNanos;
+
+   // Held samples are mSlots[0 .. mSize), oldest timestamp first
+   private int mSize = 0;
+   private long mLastReleased = 0;
+   private long mExpectedInterval = 0;
+
+   // Held samples from before the tracker's clock restarted, at the front and
+   // passed on unconditionally
+   private int mOldCount = 0;
+   private int mLateRun = 0;
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Constructor(s)">
+
+   /**
+    * @param latency Longest time to hold a sample waiting for the ones in front
+    * of it.
+    * @param unit Unit of latency.
+    */
+   public ReorderBuffer(long latency, TimeUnit unit)
+   {
+      this(latency, unit, DEFAULT_CAPACITY);
+   }
+
+   /**
+    * @param latency Longest time to hold a sample waiting for the ones in front
+    * of it.
+    * @param unit Unit of latency.
+    * @param capacity Most samples held at once.
+    */
+   public ReorderBuffer(long latency, TimeUnit unit, int capacity)
+   {
+      mLatencyNanos = unit.toNanos(latency);
+      mSlots = new GazeSample[capacity];
+      for (int i = 0; i < capacity; i++)
+      {
+         mSlots[i] = new GazeSample();
+      }
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Working Functions">
+
+   /**
+    * Adds a copy of a sample. Samples without a tracker timestamp cannot be
+    * ordered and should be passed on directly instead.
+    *
+    * @param sample The sample. Its receive stamp is when its wait starts.
+    *
+    * @return False if the sample was dropped for arriving too late, or
+    * because the buffer was full.
+    */
+   public boolean add(GazeSample sample)
+   {
+      long timestamp = sample.getTrackerTimestamp();
+      if (mLastReleased != 0 && timestamp <= mLastReleased)
+      {
+         if (!clockRestarted(timestamp))
+         {
+            mLateRun++;
+            return false;
+         }
+
+         // Pass on what is held from before the restart, then order afresh
+         mOldCount = mSize;
+         mLastReleased = 0;
+      }
+      mLateRun = 0;
+
+      // Usually in order, so the new sample usually goes at the end
+      int index = mSize;
+      while (index > mOldCount && mSlots[index - 1].getTrackerTimestamp() > timestamp)
+      {
+         index--;
+      }
+
+      if (mSize == mSlots.length)
+      {
+         // Only when poll() was not called after the last add
+         return false;
+      }
+
+      GazeSample slot = mSlots[mSize];
+      System.arraycopy(mSlots, index, mSlots, index + 1, mSize - index);
+      mSlots[index] = slot;
+      slot.copyFrom(sample);
+      mSize++;
+
+      return true;
+   }
+
+   /**
+    * Takes the next sample that is ready to be passed on, if any. Call until
+    * it returns false after each {@link #add(GazeSample)}.
+    *
+    * @param destination Filled in with the sample.
+    * @param nowNanos The current {@link System#nanoTime()}.
+    *
+    * @return True if destination has been filled in.
+    */
+   public boolean poll(GazeSample destination, long nowNanos)
+   {
+      if (mSize == 0)
+      {
+         return false;
+      }
+
+      if (mOldCount > 0)
+      {
+         release(destination);
+         return true;
+      }
+
+      GazeSample head = mSlots[0];
+      long timestamp = head.getTrackerTimestamp();
+
+      boolean next = mLastReleased == 0
+              || (mExpectedInterval > 0 && timestamp - mLastReleased <= mExpectedInterval + mExpectedInterval / 2);
+      boolean expired = nowNanos - head.getReceiveNanos() >= mLatencyNanos;
+
+      if (!next && !expired && mSize < mSlots.length)
+      {
+         return false;
+      }
+
+      release(destination);
+      return true;
+   }
+
+   /**
+    * Takes the oldest held sample regardless of whether it is ready, for
+    * emptying the buffer when the stream ends.
+    *
+    * @param destination Filled in with the sample.
+    *
+    * @return True if destination has been filled in.
+    */
+   public boolean drain(GazeSample destination)
+   {
+      if (mSize == 0)
+      {
+         return false;
+      }
+
+      release(destination);
+      return true;
+   }
+
+   private void release(GazeSample destination)
+   {
+      GazeSample head = mSlots[0];
+      destination.copyFrom(head);
+      if (mOldCount > 0)
+      {
+         mOldCount--;
+      }
+      else
+      {
+         mLastReleased = head.getTrackerTimestamp();
+      }
+      System.arraycopy(mSlots, 1, mSlots, 0, mSize - 1);
+      mSlots[mSize - 1] = head;
+      mSize--;
+   }
+
+   /*
+    * Whether a sample at or before the last one passed on shows the tracker's
+    * clock has gone back, rather than that the sample was delayed.
+    */
+   private boolean clockRestarted(long timestamp)
+   {
+      if (mExpectedInterval > 0 && mLastReleased - timestamp > mExpectedInterval * mSlots.length)
+      {
+         return true;
+      }
+
+      return mLateRun + 1 >= RESTART_LATE_SAMPLES;
+   }
+
+   /**
+    * Forgets all held samples and the order so far, for a new stream.
+    */
+   public void clear()
+   {
+      mSize = 0;
+      mLastReleased = 0;
+      mOldCount = 0;
+      mLateRun = 0;
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Properties">
+
+   /**
+    * @param interval The tracker's sample interval, in its timestamp unit, or
+    * zero if unknown. Until it is known every held sample waits the full
+    * budget.
+    */
+   public void setExpectedInterval(long interval)
+   {
+      mExpectedInterval = interval;
+   }
+
+   public long getLatency(TimeUnit unit)
+   {
+      return unit.convert(mLatencyNanos, TimeUnit.NANOSECONDS);
+   }
+
+   /**
+    * @return Number of samples being held.
+    */
+   public int size()
+   {
+      return mSize;
+   }
+
+   // </editor-fold>
+}
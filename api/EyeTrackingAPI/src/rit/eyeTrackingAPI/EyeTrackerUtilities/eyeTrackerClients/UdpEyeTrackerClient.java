@@ -0,0 +1,298 @@
+package rit.eyeTrackingAPI.EyeTrackerUtilities.eyeTrackerClients;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.concurrent.TimeUnit;
+import rit.eyeTrackingAPI.DataConstructs.GazePoint;
+import rit.eyeTrackingAPI.DataConstructs.GazeSample;
+import rit.eyeTrackingAPI.EyeTrackerUtilities.networking.DatagramReceiver;
+import rit.eyeTrackingAPI.EyeTrackerUtilities.networking.UdpReceiveEngine;
+
+/**
+ * Base class for eye tracker clients that receive samples over UDP. Datagrams
+ * are received through a {@link UdpReceiveEngine} and decoded in place by the
+ * client's {@link GazeDatagramParser}, so no packet is ever truncated and no
+ * String is built per sample.
+ *
+ * A client either owns a private engine, which then runs on the client's own
+ * thread exactly as the old blocking receive loop did, or is given an engine
+ * shared with other clients. In the shared case one engine thread services
+ * every tracker and the client thread only performs the connection handshake.
+ *
+ * Every client keeps {@link IngestStatistics} on what it receives, which are
+ * registered as an MBean while its channel is open. Samples can optionally be
+ * put back in tracker timestamp order before they are passed on, see
+ * {@link #setReorderLatency(long, TimeUnit)}.
+ *
+ * @author Mark Hazlewood
+ */
+public abstract class UdpEyeTrackerClient extends EyeTrackerClient implements DatagramReceiver
+{
+   // <editor-fold defaultstate="expanded" desc="Protected Members">
+
+   /**
+    * Channel samples arrive on, opened by {@link #openChannel(int)}. May also
+    * be used to send commands to the tracker.
+    */
+   protected DatagramChannel mChannel = null;
+
+   /**
+    * Whether decoded samples are passed on to the gaze point container.
+    */
+   protected volatile boolean mForwardingSamples = true;
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Private Members">
+
+   private final GazeDatagramParser mParser;
+   private UdpReceiveEngine mEngine;
+   private final boolean mOwnsEngine;
+
+   private final IngestStatistics mStatistics = new IngestStatistics();
+   private volatile ReorderBuffer mReorderBuffer = null;
+
+   // Samples released by the reorder buffer are copied out into this one
+   private final GazeSample mReleasedSample = new GazeSample();
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Constructor(s)">
+
+   /**
+    * @param gazePoint Container that decoded samples are reported to.
+    * @param parser Decoder for the tracker's sample datagrams.
+    * @param sharedEngine Engine shared with other clients, or null to have the
+    * client create and run an engine of its own.
+    */
+   public UdpEyeTrackerClient(GazePoint gazePoint, GazeDatagramParser parser, UdpReceiveEngine sharedEngine)
+   {
+      super(gazePoint);
+
+      mParser = parser;
+      mEngine = sharedEngine;
+      mOwnsEngine = sharedEngine == null;
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Working Functions">
+
+   /**
+    * Binds a channel to the given local port and registers it with the
+    * engine. Any previously opened channel is closed first. The ingest
+    * statistics start again and are registered as an MBean named after the
+    * client class and the port.
+    *
+    * @param localPort Port the tracker sends samples to.
+    *
+    * @throws IOException If the port could not be bound.
+    */
+   protected void openChannel(int localPort) throws IOException
+   {
+      closeChannel();
+
+      ReorderBuffer reorder = mReorderBuffer;
+      if (reorder != null)
+      {
+         reorder.clear();
+      }
+      mStatistics.reset();
+
+      mChannel = getEngine().register(localPort, this);
+      mStatistics.register(getClass().getSimpleName() + "-" + localPort);
+   }
+
+   /**
+    * Unregisters and closes the channel, if one is open. Samples still held
+    * for reordering are not passed on.
+    */
+   protected void closeChannel()
+   {
+      DatagramChannel channel = mChannel;
+      mChannel = null;
+      mStatistics.unregister();
+
+      if (channel != null)
+      {
+         if (mEngine != null)
+         {
+            mEngine.unregister(channel);
+         }
+
+         try
+         {
+            channel.close();
+         }
+         catch (IOException ex)
+         {
+            ex.printStackTrace();
+         }
+      }
+   }
+
+   /**
+    * Connects, then services the channel until {@link #requestStop()} is
+    * called. With a shared engine this returns as soon as the connection has
+    * been set up, and the shared engine delivers samples from then on.
+    */
+   @Override
+   protected void clientOperation()
+   {
+      if (!connected)
+      {
+         connect();
+      }
+
+      UdpReceiveEngine engine = mEngine;
+      if (mOwnsEngine && engine != null && mChannel != null)
+      {
+         engine.run();
+      }
+   }
+
+   @Override
+   public void datagramReceived(ByteBuffer datagram, SocketAddress source, long receiveNanos)
+   {
+      if (mParser.parse(datagram, mSample))
+      {
+         mSample.setReceiveNanos(receiveNanos);
+         mSample.setParsedNanos(System.nanoTime());
+         mStatistics.sampleReceived(mSample.getTrackerTimestamp(), receiveNanos);
+
+         if (mForwardingSamples)
+         {
+            ReorderBuffer reorder = mReorderBuffer;
+            if (reorder == null || mSample.getTrackerTimestamp() == 0)
+            {
+               // Report a new gaze point to the "cursor" object assigned to
+               // this client
+               mGazePointContainer.setCoordinates(mSample);
+            }
+            else
+            {
+               forwardInOrder(reorder, receiveNanos);
+            }
+         }
+      }
+      else
+      {
+         GazeDatagramParser.Rejection rejection = mParser.rejectionOf(datagram);
+         mStatistics.datagramRejected(rejection);
+
+         if (rejection == GazeDatagramParser.Rejection.NOT_A_SAMPLE)
+         {
+            otherDatagramReceived(datagram, source);
+         }
+      }
+   }
+
+   private void forwardInOrder(ReorderBuffer reorder, long nowNanos)
+   {
+      reorder.setExpectedInterval(mStatistics.getNominalInterval());
+      if (!reorder.add(mSample))
+      {
+         mStatistics.lateSampleDropped();
+      }
+
+      while (reorder.poll(mReleasedSample, nowNanos))
+      {
+         mGazePointContainer.setCoordinates(mReleasedSample);
+      }
+   }
+
+   /**
+    * Called for datagrams that are not samples, such as command replies.
+    * Malformed and truncated sample lines are only counted in the ingest
+    * statistics. Does nothing by default.
+    *
+    * @param datagram Buffer holding the datagram between position and limit.
+    * Only valid for the duration of the call.
+    * @param source Address the datagram was sent from.
+    */
+   protected void otherDatagramReceived(ByteBuffer datagram, SocketAddress source)
+   {
+   }
+
+   /**
+    * Stops the client. A privately owned engine is stopped and its loop
+    * returns; a shared engine keeps running for its other clients.
+    */
+   @Override
+   public void requestStop()
+   {
+      connected = false;
+      closeChannel();
+
+      if (mOwnsEngine && mEngine != null)
+      {
+         mEngine.close();
+         mEngine = null;
+      }
+
+      // Wakes a handshake still in progress
+      interruptRunner();
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Properties">
+
+   /**
+    * @return The engine this client receives through, creating a private one
+    * on first use if none was shared.
+    *
+    * @throws IOException If a private engine could not be created.
+    */
+   protected synchronized UdpReceiveEngine getEngine() throws IOException
+   {
+      if (mEngine == null)
+      {
+         mEngine = new UdpReceiveEngine(getName());
+      }
+
+      return mEngine;
+   }
+
+   public boolean isSharingEngine()
+   {
+      return !mOwnsEngine;
+   }
+
+   /**
+    * @return Statistics on the samples and datagrams received.
+    */
+   public IngestStatistics getIngestStatistics()
+   {
+      return mStatistics;
+   }
+
+   /**
+    * Turns reordering on or off. With it on, samples that arrive out of order
+    * are held back, for up to the given latency, to be passed on in tracker
+    * timestamp order; see {@link ReorderBuffer}. Best set before connecting,
+    * as samples held when it is changed are lost.
+    *
+    * @param latency Longest time to hold a sample back, or zero to pass
+    * samples on in the order they arrive.
+    * @param unit Unit of latency.
+    */
+   public void setReorderLatency(long latency, TimeUnit unit)
+   {
+      mReorderBuffer = (latency > 0) ? new ReorderBuffer(latency, unit) : null;
+   }
+
+   /**
+    * @return Longest time a sample is held back for reordering, or zero if
+    * reordering is off.
+    */
+   public long getReorderLatency(TimeUnit unit)
+   {
+      ReorderBuffer reorder = mReorderBuffer;
+      return (reorder != null) ? reorder.getLatency(unit) : 0;
+   }
+
+   // </editor-fold>
+}
@@ -0,0 +1,33 @@
+package rit.eyeTrackingAPI.EyeTrackerUtilities.networking;
+
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+
+/**
+ * Callback for datagrams received by a {@link UdpReceiveEngine}. One receiver
+ * is registered per channel, normally the eye tracker client that owns the
+ * channel, and it is responsible for parsing the datagram in the tracker's own
+ * format.
+ *
+ * @author Mark Hazlewood
+ *
+ * @see UdpReceiveEngine
+ */
+public interface DatagramReceiver
+{
+   /**
+    * Called on the engine's thread for every datagram received on the channel
+    * this receiver was registered with.
+    *
+    * The buffer is shared by every channel the engine services and is
+    * overwritten by the next datagram, so it must not be kept after this method
+    * returns. Its position and limit bound the datagram; implementations may
+    * move the position freely.
+    *
+    * @param datagram Buffer holding the datagram between position and limit.
+    * @param source Address the datagram was sent from.
+    * @param receiveNanos {@link System#nanoTime()} taken as the datagram was
+    * read from the channel.
+    */
+   void datagramReceived(ByteBuffer datagram, SocketAddress source, long receiveNanos);
+}
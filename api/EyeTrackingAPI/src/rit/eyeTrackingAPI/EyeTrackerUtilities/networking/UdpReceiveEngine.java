@@ -0,0 +1,416 @@
+package rit.eyeTrackingAPI.EyeTrackerUtilities.networking;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A selector-based UDP receive loop that can service any number of eye tracker
+ * channels from a single thread.
+ *
+ * Each channel is registered together with a {@link DatagramReceiver}. Whenever
+ * the selector wakes up, the datagrams already queued on each ready channel are
+ * drained in one batch, of at most {@link #MAX_BATCH_PER_CHANNEL} datagrams, and
+ * handed to that channel's receiver. A channel with more waiting is still ready
+ * at the next select, so one flooding tracker only gets its turn with the
+ * others rather than starving them. Datagrams are read
+ * into a single direct buffer large enough for any UDP payload, so long sample
+ * lines (binocular data, extra fields) are never truncated.
+ *
+ * The loop can either run on a thread of its own, via {@link #start()}, or on
+ * a caller-supplied thread via {@link #run()}. Channels may be registered and
+ * unregistered from any thread while the loop is running.
+ *
+ * @author Mark Hazlewood
+ *
+ * @see DatagramReceiver
+ */
+public class UdpReceiveEngine implements Runnable
+{
+   // <editor-fold defaultstate="expanded" desc="Constants">
+
+   /**
+    * Largest payload a UDP datagram can carry over IPv4.
+    */
+   public static final int MAX_DATAGRAM_SIZE = 65507;
+
+   /**
+    * Most datagrams read from one channel before the other ready channels get
+    * their turn.
+    */
+   public static final int MAX_BATCH_PER_CHANNEL = 64;
+
+   /*
+    * Receive buffer size requested from the OS for each channel, so bursts that
+    * arrive while the engine is busy are queued rather than dropped.
+    */
+   private static final int SOCKET_RECEIVE_BUFFER_BYTES = 256 * 1024;
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Private Members">
+
+   private final String mName;
+   private final Selector mSelector;
+   private final ByteBuffer mReceiveBuffer = ByteBuffer.allocateDirect(MAX_DATAGRAM_SIZE);
+
+   // Registration changes are handed to the engine thread, which owns the selector
+   private final Queue<Registration> mPendingRegistrations = new ConcurrentLinkedQueue<>();
+
+   private volatile boolean mStopRequested = false;
+   private volatile Thread mEngineThread = null;
+
+   private volatile long mDatagramCount = 0;
+   private volatile long mBatchCount = 0;
+   private volatile int mLargestBatch = 0;
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Constructor(s)">
+
+   /**
+    * Creates a new engine. No thread is started until {@link #start()} or
+    * {@link #run()} is called.
+    *
+    * @param name Name used for the engine thread.
+    *
+    * @throws IOException If a selector could not be opened.
+    */
+   public UdpReceiveEngine(String name) throws IOException
+   {
+      mName = name;
+      mSelector = Selector.open();
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Channel Registration">
+
+   /**
+    * Opens a non-blocking datagram channel bound to the given local port and
+    * registers it with this engine.
+    *
+    * @param localPort Port to bind to.
+    * @param receiver Receiver for every datagram arriving on the port.
+    *
+    * @return The bound channel. It may also be used to send commands to the
+    * tracker. The caller owns it and should pass it to
+    * {@link #unregister(DatagramChannel)} and close it when done.
+    *
+    * @throws IOException If the channel could not be opened or bound, for
+    * example because another program is using the port.
+    */
+   public DatagramChannel register(int localPort, DatagramReceiver receiver) throws IOException
+   {
+      DatagramChannel channel = DatagramChannel.open();
+      try
+      {
+         channel.setOption(StandardSocketOptions.SO_RCVBUF, SOCKET_RECEIVE_BUFFER_BYTES);
+         channel.bind(new InetSocketAddress(localPort));
+         register(channel, receiver);
+      }
+      catch (IOException ex)
+      {
+         channel.close();
+         throw ex;
+      }
+
+      return channel;
+   }
+
+   /**
+    * Registers an already bound channel with this engine. The channel is
+    * switched to non-blocking mode.
+    *
+    * @param channel Channel to receive from.
+    * @param receiver Receiver for every datagram arriving on the channel.
+    *
+    * @throws IOException If the channel could not be made non-blocking.
+    */
+   public void register(DatagramChannel channel, DatagramReceiver receiver) throws IOException
+   {
+      channel.configureBlocking(false);
+      mPendingRegistrations.add(new Registration(channel, receiver));
+      mSelector.wakeup();
+   }
+
+   /**
+    * Stops delivering datagrams from a channel. The channel is not closed.
+    *
+    * @param channel A channel previously registered with this engine.
+    */
+   public void unregister(DatagramChannel channel)
+   {
+      mPendingRegistrations.add(new Registration(channel, null));
+      mSelector.wakeup();
+   }
+
+   private void applyPendingRegistrations()
+   {
+      Registration registration;
+      while ((registration = mPendingRegistrations.poll()) != null)
+      {
+         SelectionKey existingKey = registration.mChannel.keyFor(mSelector);
+
+         if (registration.mReceiver == null)
+         {
+            if (existingKey != null)
+            {
+               existingKey.cancel();
+            }
+         }
+         else if (existingKey != null && existingKey.isValid())
+         {
+            existingKey.attach(registration.mReceiver);
+         }
+         else if (registration.mChannel.isOpen())
+         {
+            try
+            {
+               registration.mChannel.register(mSelector, SelectionKey.OP_READ, registration.mReceiver);
+            }
+            catch (IOException ex)
+            {
+               ex.printStackTrace();
+            }
+         }
+      }
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Working Functions">
+
+   /**
+    * Starts the receive loop on a new daemon thread.
+    */
+   public synchronized void start()
+   {
+      if (mEngineThread != null)
+      {
+         return;
+      }
+
+      // Claimed here rather than in run(), so a second start() made before the
+      // new thread gets going does not start another loop on the same selector
+      Thread engineThread = new Thread(this, mName);
+      engineThread.setDaemon(true);
+      mEngineThread = engineThread;
+      mStopRequested = false;
+      engineThread.start();
+   }
+
+   /**
+    * Runs the receive loop on the calling thread until {@link #requestStop()}
+    * is called or the thread is interrupted.
+    */
+   @Override
+   public void run()
+   {
+      Thread currentThread = Thread.currentThread();
+      synchronized (this)
+      {
+         if (mEngineThread == null)
+         {
+            // Called directly rather than through start()
+            mEngineThread = currentThread;
+            mStopRequested = false;
+         }
+         else if (mEngineThread != currentThread)
+         {
+            throw new IllegalStateException("UDP receive engine \"" + mName + "\" is already running");
+         }
+      }
+
+      try
+      {
+         while (!mStopRequested && !Thread.currentThread().isInterrupted())
+         {
+            applyPendingRegistrations();
+
+            if (mSelector.select() == 0)
+            {
+               continue;
+            }
+
+            Iterator<SelectionKey> readyKeys = mSelector.selectedKeys().iterator();
+            while (readyKeys.hasNext())
+            {
+               SelectionKey key = readyKeys.next();
+               readyKeys.remove();
+
+               if (key.isValid() && key.isReadable())
+               {
+                  drainChannel(key);
+               }
+            }
+         }
+      }
+      catch (ClosedSelectorException ex)
+      {
+         // Engine was closed while running, nothing left to do
+      }
+      catch (IOException ex)
+      {
+         System.err.println("UDP receive engine \"" + mName + "\" stopped on I/O error");
+         ex.printStackTrace();
+      }
+      finally
+      {
+         synchronized (this)
+         {
+            mEngineThread = null;
+         }
+      }
+   }
+
+   /*
+    * Reads the datagrams already queued on the channel, up to a batch, handing
+    * each one to the channel's receiver as it is read.
+    */
+   private void drainChannel(SelectionKey key)
+   {
+      DatagramChannel channel = (DatagramChannel) key.channel();
+      DatagramReceiver receiver = (DatagramReceiver) key.attachment();
+      int batchSize = 0;
+
+      while (batchSize < MAX_BATCH_PER_CHANNEL)
+      {
+         SocketAddress source;
+         mReceiveBuffer.clear();
+
+         try
+         {
+            source = channel.receive(mReceiveBuffer);
+         }
+         catch (IOException ex)
+         {
+            // ICMP port unreachable and similar errors surface here on some
+            // platforms; they apply to one datagram, not the channel
+            break;
+         }
+
+         if (source == null)
+         {
+            break;
+         }
+
+         long receiveNanos = System.nanoTime();
+         mReceiveBuffer.flip();
+         ++batchSize;
+
+         try
+         {
+            receiver.datagramReceived(mReceiveBuffer, source, receiveNanos);
+         }
+         catch (RuntimeException ex)
+         {
+            // A misbehaving receiver must not take the other channels down
+            ex.printStackTrace();
+         }
+      }
+
+      if (batchSize > 0)
+      {
+         mDatagramCount = mDatagramCount + batchSize;
+         mBatchCount = mBatchCount + 1;
+         if (batchSize > mLargestBatch)
+         {
+            mLargestBatch = batchSize;
+         }
+      }
+   }
+
+   /**
+    * Asks the receive loop to exit. Returns immediately; registered channels
+    * are left open.
+    */
+   public void requestStop()
+   {
+      mStopRequested = true;
+      mSelector.wakeup();
+   }
+
+   /**
+    * Stops the receive loop and closes the selector. The engine cannot be
+    * restarted afterwards.
+    */
+   public void close()
+   {
+      requestStop();
+      try
+      {
+         mSelector.close();
+      }
+      catch (IOException ex)
+      {
+         ex.printStackTrace();
+      }
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Properties">
+
+   public String getName()
+   {
+      return mName;
+   }
+
+   public boolean isRunning()
+   {
+      return mEngineThread != null;
+   }
+
+   /**
+    * @return Total number of datagrams delivered to receivers.
+    */
+   public long getDatagramCount()
+   {
+      return mDatagramCount;
+   }
+
+   /**
+    * @return Number of wakeups that delivered at least one datagram. Together
+    * with {@link #getDatagramCount()} this gives the average batch size.
+    */
+   public long getBatchCount()
+   {
+      return mBatchCount;
+   }
+
+   /**
+    * @return The most datagrams drained from one channel in a single wakeup.
+    */
+   public int getLargestBatch()
+   {
+      return mLargestBatch;
+   }
+
+   // </editor-fold>
+
+   /*
+    * A registration change waiting to be applied on the engine thread. A null
+    * receiver means the channel is being unregistered.
+    */
+   private static class Registration
+   {
+      private final DatagramChannel mChannel;
+      private final DatagramReceiver mReceiver;
+
+      Registration(DatagramChannel channel, DatagramReceiver receiver)
+      {
+         mChannel = channel;
+         mReceiver = receiver;
+      }
+   }
+}
@@ -0,0 +1,95 @@
+package rit.eyeTrackingAPI.EyeTrackerUtilities.replay;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import rit.eyeTrackingAPI.DataConstructs.GazeSample;
+
+/**
+ * Streams a gaze path file in the simulator's text format, one point per line
+ * (UTF-8 encoding):
+ *
+ *    x_1, y_1, duration_1
+ *    x_2, y_2, duration_2
+ *    ...
+ *
+ * Each duration is the time, in milliseconds, spent on that point before the
+ * next one, so a point's time is the sum of the durations before it. Blank
+ * lines and lines that do not parse are skipped.
+ *
+ * @author Mark Hazlewood
+ *
+ * @see rit.eyeTrackingAPI.EyeTrackerUtilities.eyeTrackerClients.EyeTrackerClientSimulator
+ */
+public class CsvReplaySource implements ReplaySource
+{
+   // <editor-fold defaultstate="expanded" desc="Private Members">
+
+   private final BufferedReader mReader;
+   private long mNextNanos = 0;
+   private int mLineNumber = 0;
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Constructor(s)">
+
+   /**
+    * @param path File to read.
+    *
+    * @throws IOException If the file could not be opened.
+    */
+   public CsvReplaySource(Path path) throws IOException
+   {
+      mReader = Files.newBufferedReader(path, StandardCharsets.UTF_8);
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="ReplaySource">
+
+   @Override
+   public long next(GazeSample sample) throws IOException
+   {
+      String line;
+      while ((line = mReader.readLine()) != null)
+      {
+         mLineNumber++;
+         if (line.trim().isEmpty())
+         {
+            continue;
+         }
+
+         String[] values = line.split(",");
+         try
+         {
+            int x = Integer.parseInt(values[0].trim());
+            int y = Integer.parseInt(values[1].trim());
+            long duration = Long.parseLong(values[2].trim());
+
+            long time = mNextNanos;
+            mNextNanos += TimeUnit.MILLISECONDS.toNanos(Math.max(duration, 0));
+
+            sample.clear();
+            sample.set(x, y);
+            return time;
+         }
+         catch (NumberFormatException | ArrayIndexOutOfBoundsException ex)
+         {
+            System.err.println("Skipping gaze path line " + mLineNumber + ": " + line);
+         }
+      }
+
+      return END;
+   }
+
+   @Override
+   public void close() throws IOException
+   {
+      mReader.close();
+   }
+
+   // </editor-fold>
+}
@@ -0,0 +1,86 @@
+package rit.eyeTrackingAPI.EyeTrackerUtilities.replay;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import rit.eyeTrackingAPI.DataConstructs.GazeSample;
+import rit.eyeTrackingAPI.Recording.GazeLogReader;
+
+/**
+ * Streams a binary gaze log, optionally starting part way through. Sample
+ * times are taken from the receive stamps in the log, so the replay keeps the
+ * original session's timing, including any gaps and bursts.
+ *
+ * @author Mark Hazlewood
+ *
+ * @see GazeLogReader
+ */
+public class GazeLogReplaySource implements ReplaySource
+{
+   // <editor-fold defaultstate="expanded" desc="Private Members">
+
+   private final GazeLogReader mReader;
+   private final long mStartNanos;
+   private final long mEndIndex;
+   private long mIndex;
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Constructor(s)">
+
+   /**
+    * Replays the whole log.
+    *
+    * @param path Log to read.
+    *
+    * @throws IOException If the log could not be opened.
+    */
+   public GazeLogReplaySource(Path path) throws IOException
+   {
+      this(new GazeLogReader(path), 0, Long.MAX_VALUE);
+   }
+
+   /**
+    * Replays the part of a log between two times.
+    *
+    * @param reader Open log, closed along with this source.
+    * @param fromNanos Offset from the start of the log, in nanoseconds, of the
+    * first sample to replay.
+    * @param toNanos Offset from the start of the log, in nanoseconds, at which
+    * to stop.
+    */
+   public GazeLogReplaySource(GazeLogReader reader, long fromNanos, long toNanos)
+   {
+      mReader = reader;
+
+      long logStart = reader.getStartNanos();
+      mIndex = reader.indexOfTime(logStart + fromNanos);
+      mEndIndex = (toNanos >= reader.getEndNanos() - logStart) ? reader.getRecordCount() : reader.indexOfTime(logStart + toNanos);
+      mStartNanos = (mIndex < mEndIndex) ? reader.getReceiveNanos(mIndex) : logStart;
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="ReplaySource">
+
+   @Override
+   public long next(GazeSample sample)
+   {
+      if (mIndex >= mEndIndex)
+      {
+         return END;
+      }
+
+      mReader.read(mIndex, sample);
+      mIndex++;
+
+      return sample.getReceiveNanos() - mStartNanos;
+   }
+
+   @Override
+   public void close() throws IOException
+   {
+      mReader.close();
+   }
+
+   // </editor-fold>
+}
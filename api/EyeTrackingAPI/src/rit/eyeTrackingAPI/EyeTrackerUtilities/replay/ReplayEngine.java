@@ -0,0 +1,200 @@
+package rit.eyeTrackingAPI.EyeTrackerUtilities.replay;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import rit.eyeTrackingAPI.ApplicationUtilities.GazeSampleSubscriber;
+import rit.eyeTrackingAPI.DataConstructs.GazeSample;
+
+/**
+ * Plays a {@link ReplaySource} back to a subscriber, in real time, N times
+ * faster or slower, or as fast as the subscriber can take it.
+ *
+ * Every sample is scheduled against one absolute timeline fixed when the
+ * replay starts, rather than by sleeping for the gap since the previous
+ * sample, so sleep granularity and time spent in the subscriber never add up
+ * to drift: sample n is delivered at start + time(n) / speed, however long the
+ * replay runs. The engine parks until shortly before each sample is due and
+ * yields for the rest, which holds rates well above 1 kHz. If delivery falls
+ * behind, for instance while the subscriber is slow, the late samples are
+ * sent straight away until the replay has caught up.
+ *
+ * Each delivered sample carries the source's position, eye and tracker
+ * timestamp fields, with its receive and parsed stamps set to the moment it
+ * was delivered, as if it had just arrived from a tracker.
+ *
+ * @author Mark Hazlewood
+ */
+public class ReplayEngine
+{
+   // <editor-fold defaultstate="expanded" desc="Constants">
+
+   /**
+    * Speed at which samples are delivered back to back, without waiting.
+    */
+   public static final double AS_FAST_AS_POSSIBLE = Double.POSITIVE_INFINITY;
+
+   /**
+    * How long before a sample is due the engine stops parking and starts
+    * yielding. Parking can overshoot by tens of microseconds.
+    */
+   private static final long SPIN_NANOS = TimeUnit.MICROSECONDS.toNanos(200);
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Private Members">
+
+   private final ReplaySource mSource;
+   private final double mSpeed;
+   private final GazeSample mSample = new GazeSample();
+
+   private volatile boolean mStopped = false;
+   private volatile long mDeliveredCount = 0;
+   private volatile long mMaxLatenessNanos = 0;
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Constructor(s)">
+
+   /**
+    * @param source Samples to replay. Not closed by the engine.
+    * @param speed How many times faster than recorded to replay: 1 for real
+    * time, or {@link #AS_FAST_AS_POSSIBLE}.
+    */
+   public ReplayEngine(ReplaySource source, double speed)
+   {
+      if (!(speed > 0))
+      {
+         throw new IllegalArgumentException("Speed must be positive: " + speed);
+      }
+
+      mSource = source;
+      mSpeed = speed;
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Replay">
+
+   /**
+    * Replays the source on the calling thread until it runs out, the
+    * replay is stopped, or the thread is interrupted.
+    *
+    * @param subscriber Receives each sample, on the calling thread. The
+    * sample is reused for the next one.
+    *
+    * @return Number of samples delivered.
+    *
+    * @throws IOException If the source could not be read.
+    */
+   public long replay(GazeSampleSubscriber subscriber) throws IOException
+   {
+      boolean paced = !Double.isInfinite(mSpeed);
+      long startNanos = System.nanoTime();
+      long delivered = 0;
+      long maxLateness = 0;
+
+      try
+      {
+         long time;
+         while (!mStopped && (time = mSource.next(mSample)) != ReplaySource.END)
+         {
+            long now = System.nanoTime();
+            if (paced)
+            {
+               long dueNanos = startNanos + (long) (time / mSpeed);
+               if (!waitUntil(dueNanos))
+               {
+                  break;
+               }
+               now = System.nanoTime();
+               maxLateness = Math.max(maxLateness, now - dueNanos);
+            }
+
+            mSample.setReceiveNanos(now);
+            mSample.setParsedNanos(now);
+            subscriber.sampleReceived(mSample);
+
+            delivered++;
+            if ((delivered & 0xff) == 0)
+            {
+               mDeliveredCount = delivered;
+               mMaxLatenessNanos = maxLateness;
+            }
+         }
+      }
+      finally
+      {
+         mDeliveredCount = delivered;
+         mMaxLatenessNanos = maxLateness;
+      }
+
+      return delivered;
+   }
+
+   /*
+    * Returns once the deadline has passed, or false if the replay was stopped
+    * or interrupted first. The interrupt status is left set.
+    */
+   private boolean waitUntil(long dueNanos)
+   {
+      long now;
+      while ((now = System.nanoTime()) - dueNanos < 0)
+      {
+         if (mStopped || Thread.currentThread().isInterrupted())
+         {
+            return false;
+         }
+
+         long remaining = dueNanos - now;
+         if (remaining > SPIN_NANOS)
+         {
+            LockSupport.parkNanos(this, remaining - SPIN_NANOS);
+         }
+         else
+         {
+            Thread.yield();
+         }
+      }
+
+      return true;
+   }
+
+   /**
+    * Asks a running replay to stop before its next sample. Safe to call from
+    * any thread.
+    */
+   public void stop()
+   {
+      mStopped = true;
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Properties">
+
+   public double getSpeed()
+   {
+      return mSpeed;
+   }
+
+   /**
+    * @return Number of samples delivered so far, updated every 256 samples
+    * while a replay runs.
+    */
+   public long getDeliveredCount()
+   {
+      return mDeliveredCount;
+   }
+
+   /**
+    * @return Longest time, in nanoseconds, a sample was delivered after it was
+    * due, updated along with {@link #getDeliveredCount()}.
+    */
+   public long getMaxLatenessNanos()
+   {
+      return mMaxLatenessNanos;
+   }
+
+   // </editor-fold>
+}
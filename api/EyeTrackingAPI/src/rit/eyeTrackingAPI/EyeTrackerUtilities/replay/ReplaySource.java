@@ -0,0 +1,35 @@
+package rit.eyeTrackingAPI.EyeTrackerUtilities.replay;
+
+import java.io.Closeable;
+import java.io.IOException;
+import rit.eyeTrackingAPI.DataConstructs.GazeSample;
+
+/**
+ * A recorded stream of gaze samples for a {@link ReplayEngine} to play back.
+ * Samples are read one at a time, so a source never needs to hold the whole
+ * recording in memory.
+ *
+ * @author Mark Hazlewood
+ *
+ * @see ReplayEngine
+ */
+public interface ReplaySource extends Closeable
+{
+   /**
+    * Returned by {@link #next(GazeSample)} once the recording is exhausted.
+    */
+   long END = -1;
+
+   /**
+    * Reads the next sample.
+    *
+    * @param sample Filled in with the sample's position and, where the
+    * recording has them, its eye and tracker timestamp fields.
+    *
+    * @return Time of the sample in nanoseconds since the start of the
+    * recording, never less than that of the previous sample, or {@link #END}.
+    *
+    * @throws IOException If the recording could not be read.
+    */
+   long next(GazeSample sample) throws IOException;
+}
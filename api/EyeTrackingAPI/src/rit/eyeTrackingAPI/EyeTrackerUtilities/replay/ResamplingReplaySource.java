@@ -0,0 +1,235 @@
+package rit.eyeTrackingAPI.EyeTrackerUtilities.replay;
+
+import java.io.IOException;
+import rit.eyeTrackingAPI.DataConstructs.GazeSample;
+
+/**
+ * Resamples another source to a constant rate, interpolating the gaze
+ * position between the recorded samples.
+ *
+ * Linear interpolation draws straight lines between recorded samples. Cubic
+ * interpolation fits a Catmull-Rom style Hermite spline through them, with
+ * tangents scaled by the actual time between samples, which gives smooth
+ * curves even when the recording's own rate was uneven.
+ *
+ * Samples where the tracker lost the eyes, reported at (0, 0), are never
+ * interpolated across: an output that falls next to one repeats the nearest
+ * recorded sample instead. Fields other than the position, such as the eye
+ * type, are copied from the nearest recorded sample.
+ *
+ * Only the four recorded samples around the current output time are held, so
+ * resampling streams as well as its source does.
+ *
+ * @author Mark Hazlewood
+ */
+public class ResamplingReplaySource implements ReplaySource
+{
+   // <editor-fold defaultstate="expanded" desc="Interpolation">
+
+   public enum Interpolation
+   {
+      LINEAR,
+      CUBIC
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Private Members">
+
+   private final ReplaySource mSource;
+   private final Interpolation mInterpolation;
+   private final long mIntervalNanos;
+
+   // Window of recorded samples: [0] before [1], the output lies between [1]
+   // and [2], [3] after [2]
+   private final GazeSample[] mWindow = new GazeSample[4];
+   private final long[] mTimes = new long[4];
+   private boolean mSourceEnded = false;
+   private boolean mStarted = false;
+
+   private long mOutputNanos = 0;
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Constructor(s)">
+
+   /**
+    * @param source Source to resample, closed along with this one.
+    * @param sampleRate Output rate in Hz.
+    * @param interpolation How to interpolate between recorded samples.
+    */
+   public ResamplingReplaySource(ReplaySource source, double sampleRate, Interpolation interpolation)
+   {
+      if (!(sampleRate > 0))
+      {
+         throw new IllegalArgumentException("Sample rate must be positive: " + sampleRate);
+      }
+
+      mSource = source;
+      mInterpolation = interpolation;
+      mIntervalNanos = Math.max(1, Math.round(1.0e9 / sampleRate));
+
+      for (int i = 0; i < mWindow.length; i++)
+      {
+         mWindow[i] = new GazeSample();
+      }
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="ReplaySource">
+
+   @Override
+   public long next(GazeSample sample) throws IOException
+   {
+      if (!mStarted)
+      {
+         mStarted = true;
+         if (!fillWindow())
+         {
+            return END;
+         }
+      }
+
+      // Slide the window until the output time lies between [1] and [2]
+      while (mOutputNanos >= mTimes[2])
+      {
+         if (mSourceEnded && mTimes[2] == mTimes[3])
+         {
+            // Past the last recorded sample; emit it once if it falls on the
+            // output time, then stop
+            if (mOutputNanos == mTimes[2])
+            {
+               sample.copyFrom(mWindow[2]);
+               mOutputNanos += mIntervalNanos;
+               return mTimes[2];
+            }
+            return END;
+         }
+         advance();
+      }
+
+      interpolate(mOutputNanos, sample);
+
+      long time = mOutputNanos;
+      mOutputNanos += mIntervalNanos;
+      return time;
+   }
+
+   @Override
+   public void close() throws IOException
+   {
+      mSource.close();
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Window">
+
+   private boolean fillWindow() throws IOException
+   {
+      long first = mSource.next(mWindow[1]);
+      if (first == END)
+      {
+         return false;
+      }
+
+      mTimes[1] = first;
+      mWindow[0].copyFrom(mWindow[1]);
+      mTimes[0] = first;
+      mOutputNanos = first;
+
+      readInto(2, 1);
+      readInto(3, 2);
+      return true;
+   }
+
+   /*
+    * Reads the next recorded sample into a slot, or repeats the given slot
+    * once the source has run out.
+    */
+   private void readInto(int slot, int previous) throws IOException
+   {
+      long time = mSourceEnded ? END : mSource.next(mWindow[slot]);
+      if (time == END)
+      {
+         mSourceEnded = true;
+         mWindow[slot].copyFrom(mWindow[previous]);
+         mTimes[slot] = mTimes[previous];
+      }
+      else
+      {
+         mTimes[slot] = Math.max(time, mTimes[previous]);
+      }
+   }
+
+   private void advance() throws IOException
+   {
+      GazeSample oldest = mWindow[0];
+      System.arraycopy(mWindow, 1, mWindow, 0, 3);
+      System.arraycopy(mTimes, 1, mTimes, 0, 3);
+      mWindow[3] = oldest;
+      readInto(3, 2);
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Interpolation">
+
+   private void interpolate(long time, GazeSample sample)
+   {
+      GazeSample p1 = mWindow[1];
+      GazeSample p2 = mWindow[2];
+      long span = mTimes[2] - mTimes[1];
+      double u = (span > 0) ? (double) (time - mTimes[1]) / span : 0;
+
+      sample.copyFrom(u < 0.5 ? p1 : p2);
+
+      if (span <= 0 || isLost(p1) || isLost(p2))
+      {
+         return;
+      }
+
+      double x;
+      double y;
+      if (mInterpolation == Interpolation.CUBIC && !isLost(mWindow[0]) && !isLost(mWindow[3]))
+      {
+         x = hermite(mWindow[0].getX(), p1.getX(), p2.getX(), mWindow[3].getX(), u);
+         y = hermite(mWindow[0].getY(), p1.getY(), p2.getY(), mWindow[3].getY(), u);
+      }
+      else
+      {
+         x = p1.getX() + (p2.getX() - p1.getX()) * u;
+         y = p1.getY() + (p2.getY() - p1.getY()) * u;
+      }
+
+      sample.setPosition((int) Math.round(x), (int) Math.round(y));
+   }
+
+   /*
+    * Cubic Hermite between v1 and v2 with Catmull-Rom tangents, each taken
+    * over the real time its neighbours span and rescaled to the v1..v2 span.
+    */
+   private double hermite(double v0, double v1, double v2, double v3, double u)
+   {
+      double span = mTimes[2] - mTimes[1];
+      long before = mTimes[2] - mTimes[0];
+      long after = mTimes[3] - mTimes[1];
+      double m1 = (before > 0) ? (v2 - v0) * span / before : 0;
+      double m2 = (after > 0) ? (v3 - v1) * span / after : 0;
+
+      double u2 = u * u;
+      double u3 = u2 * u;
+      return (2 * u3 - 3 * u2 + 1) * v1
+             + (u3 - 2 * u2 + u) * m1
+             + (-2 * u3 + 3 * u2) * v2
+             + (u3 - u2) * m2;
+   }
+
+   private static boolean isLost(GazeSample sample)
+   {
+      return sample.getX() == 0 && sample.getY() == 0;
+   }
+
+   // </editor-fold>
+}
@@ -0,0 +1,42 @@
+package rit.eyeTrackingAPI.EyeTrackerUtilities.simulation;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Writes numbers into byte buffers as ASCII digits without building
+ * Strings.
+ *
+ * @author Mark Hazlewood
+ */
+final class AsciiEncoding
+{
+   private AsciiEncoding()
+   {
+   }
+
+   static void putLong(ByteBuffer destination, long value)
+   {
+      // Digits are taken from the negated value, as Long.MIN_VALUE has no
+      // positive counterpart
+      if (value < 0)
+      {
+         destination.put((byte) '-');
+      }
+      else
+      {
+         value = -value;
+      }
+
+      long divisor = 1;
+      while (value / divisor <= -10)
+      {
+         divisor *= 10;
+      }
+
+      while (divisor > 0)
+      {
+         destination.put((byte) ('0' - (value / divisor) % 10));
+         divisor /= 10;
+      }
+   }
+}
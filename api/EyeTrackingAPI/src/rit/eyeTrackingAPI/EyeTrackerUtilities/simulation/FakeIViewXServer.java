@@ -0,0 +1,720 @@
+package rit.eyeTrackingAPI.EyeTrackerUtilities.simulation;
+
+import java.awt.Point;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.DatagramChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import rit.eyeTrackingAPI.ApplicationUtilities.GazeExecutors;
+import rit.eyeTrackingAPI.ApplicationUtilities.GazeSampleSubscriber;
+import rit.eyeTrackingAPI.DataConstructs.GazeSample;
+import rit.eyeTrackingAPI.EyeTrackerUtilities.replay.ReplayEngine;
+
+/**
+ * A stand-in for an SMI iViewX server that runs inside the JVM and speaks
+ * the subset of the remote command protocol this API uses, over UDP. Point
+ * an {@link rit.eyeTrackingAPI.EyeTrackerUtilities.eyeTrackerClients.IViewXClient}
+ * at 127.0.0.1 to test it, or a calibrator, without the hardware.
+ *
+ * Commands are answered to the address they came from:
+ *
+ *    ET_PNG                 ET_PNG
+ *    ET_FRM "format"        ET_FRM "format"; later samples use the format
+ *    ET_STR [rate]          starts streaming ET_SPL samples, no reply
+ *    ET_EST                 stops streaming; ET_EST
+ *    ET_CSZ w h             ET_CSZ w h; sets the calibration area
+ *    ET_CPA n v             ET_CPA n v; parameter 2 turns auto accept on
+ *    ET_CAL [n]             ET_CAL n, ET_PNT i x y for each point, ET_CHG 1
+ *    ET_VAL                 the same for the four validation points
+ *    ET_ACC                 ET_CHG i for the next point, or on the last:
+ *                           ET_FIN after calibration, or one
+ *                           "ET_VLS x y dx° dy°" line per point after
+ *                           validation
+ *    ET_BRK                 ET_BRK; abandons calibration or validation
+ *    anything else          ET_ERR, as are arguments that are not numbers
+ *
+ * With auto accept on, points after the first are accepted on their own
+ * after {@link #setAutoAcceptInterval(long, TimeUnit)}.
+ *
+ * Samples come from a {@link SyntheticGazeGenerator}, streamed on their own
+ * thread to the address ET_STR came from. Packet loss and reordering can be
+ * injected to see how a client copes; both are driven by a seeded random
+ * generator of the stream's own, so a test sees the same losses every run
+ * whatever commands are sent meanwhile.
+ *
+ * @author Mark Hazlewood
+ */
+public class FakeIViewXServer implements Closeable
+{
+   // <editor-fold defaultstate="expanded" desc="Constants">
+
+   /**
+    * The port IViewXClient sends its commands to.
+    */
+   public static final int DEFAULT_COMMAND_PORT = 6665;
+
+   public static final int DEFAULT_CALIBRATION_POINTS = 9;
+
+   private static final Pattern QUOTED = Pattern.compile("\"([^\"]*)\"");
+   private static final int PACKET_CAPACITY = 512;
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Private Members">
+
+   private final DatagramChannel mChannel;
+   private final Thread mCommandThread;
+   private final ScheduledExecutorService mTimer;
+   // Validation noise, used with this locked
+   private final Random mRandom;
+   private final ByteBuffer mCommandBuffer = ByteBuffer.allocate(PACKET_CAPACITY);
+
+   // Streaming
+   private volatile double mRateOverride = 0;
+   private volatile double mLossProbability = 0;
+   private volatile double mReorderProbability = 0;
+   private volatile GazePacketEncoder mEncoder = new IViewXPacketEncoder();
+   private Stream mStream = null;
+   private long mStreamSeed = 1;
+
+   // Calibration, guarded by this
+   private int mScreenWidth = SyntheticGazeGenerator.DEFAULT_SCREEN_WIDTH;
+   private int mScreenHeight = SyntheticGazeGenerator.DEFAULT_SCREEN_HEIGHT;
+   private boolean mAutoAccept = false;
+   private long mAutoAcceptMillis = 1000;
+   private double mValidationErrorDegrees = 0.5;
+   private List<Point> mPoints = null;
+   private boolean mValidating = false;
+   private int mCurrentPoint = 0;
+   private SocketAddress mCalibrationClient = null;
+   private ScheduledFuture<?> mAutoAcceptTask = null;
+
+   private volatile long mSentCount = 0;
+   private volatile long mDroppedCount = 0;
+   private volatile long mReorderedCount = 0;
+   private volatile long mCommandCount = 0;
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Constructor(s)">
+
+   /**
+    * Starts a server on the default command port.
+    *
+    * @throws IOException If the port could not be bound.
+    */
+   public FakeIViewXServer() throws IOException
+   {
+      this(DEFAULT_COMMAND_PORT, 1);
+   }
+
+   /**
+    * Starts a server.
+    *
+    * @param commandPort Port to listen for commands on, on 127.0.0.1, or 0
+    * for any free port.
+    * @param seed Seed for the samples and for injected loss and reordering.
+    *
+    * @throws IOException If the port could not be bound.
+    */
+   public FakeIViewXServer(int commandPort, long seed) throws IOException
+   {
+      mRandom = new Random(seed);
+      mStreamSeed = seed;
+
+      mChannel = DatagramChannel.open();
+      mChannel.bind(new InetSocketAddress("127.0.0.1", commandPort));
+
+      mTimer = Executors.newSingleThreadScheduledExecutor(GazeExecutors.daemonThreadFactory("Fake iViewX Timer"));
+
+      mCommandThread = new Thread(new Runnable()
+      {
+         @Override
+         public void run()
+         {
+            serveCommands();
+         }
+      }, "Fake iViewX Server");
+      mCommandThread.setDaemon(true);
+      mCommandThread.start();
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Commands">
+
+   private void serveCommands()
+   {
+      try
+      {
+         while (true)
+         {
+            mCommandBuffer.clear();
+            SocketAddress client = mChannel.receive(mCommandBuffer);
+            mCommandBuffer.flip();
+
+            String command = StandardCharsets.US_ASCII.decode(mCommandBuffer).toString().trim();
+            mCommandCount++;
+            handleCommand(command, client);
+         }
+      }
+      catch (AsynchronousCloseException ex)
+      {
+         // Closed
+      }
+      catch (IOException ex)
+      {
+         ex.printStackTrace();
+      }
+   }
+
+   private void handleCommand(String command, SocketAddress client) throws IOException
+   {
+      String[] tokens = command.split("\\s+");
+
+      switch (tokens[0])
+      {
+         case "ET_PNG":
+            reply(client, "ET_PNG");
+            break;
+
+         case "ET_FRM":
+            Matcher format = QUOTED.matcher(command);
+            if (format.find())
+            {
+               mEncoder = new IViewXPacketEncoder(format.group(1));
+               reply(client, "ET_FRM \"" + format.group(1) + "\"");
+            }
+            else
+            {
+               reply(client, "ET_ERR");
+            }
+            break;
+
+         case "ET_STR":
+            startStream(client, (tokens.length > 1) ? parseRate(tokens[1]) : 0);
+            break;
+
+         case "ET_EST":
+            stopStream();
+            reply(client, "ET_EST");
+            break;
+
+         case "ET_CSZ":
+            if (tokens.length > 2)
+            {
+               int width = parseCount(tokens[1]);
+               int height = parseCount(tokens[2]);
+               if (width <= 0 || height <= 0)
+               {
+                  reply(client, "ET_ERR");
+                  break;
+               }
+
+               synchronized (this)
+               {
+                  mScreenWidth = width;
+                  mScreenHeight = height;
+               }
+            }
+            reply(client, command);
+            break;
+
+         case "ET_CPA":
+            if (tokens.length > 2 && tokens[1].equals("2"))
+            {
+               synchronized (this)
+               {
+                  mAutoAccept = !tokens[2].equals("0");
+               }
+            }
+            reply(client, command);
+            break;
+
+         case "ET_CAL":
+            int pointCount = (tokens.length > 1) ? parseCount(tokens[1]) : DEFAULT_CALIBRATION_POINTS;
+            if (pointCount <= 0)
+            {
+               reply(client, "ET_ERR");
+               break;
+            }
+            startCalibration(client, pointCount, false);
+            break;
+
+         case "ET_VAL":
+            startCalibration(client, 4, true);
+            break;
+
+         case "ET_ACC":
+            accept();
+            break;
+
+         case "ET_BRK":
+            synchronized (this)
+            {
+               endCalibration();
+            }
+            reply(client, "ET_BRK");
+            break;
+
+         default:
+            reply(client, "ET_ERR");
+            break;
+      }
+   }
+
+   private static double parseRate(String text)
+   {
+      try
+      {
+         return Double.parseDouble(text);
+      }
+      catch (NumberFormatException ex)
+      {
+         return 0;
+      }
+   }
+
+   /*
+    * Parses a positive whole number, or returns 0 if the text is not one.
+    */
+   private static int parseCount(String text)
+   {
+      try
+      {
+         return Math.max(Integer.parseInt(text), 0);
+      }
+      catch (NumberFormatException ex)
+      {
+         return 0;
+      }
+   }
+
+   private void reply(SocketAddress client, String line) throws IOException
+   {
+      mChannel.send(ByteBuffer.wrap((line + "\n").getBytes(StandardCharsets.UTF_8)), client);
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Calibration">
+
+   private synchronized void startCalibration(SocketAddress client, int pointCount, boolean validation) throws IOException
+   {
+      endCalibration();
+
+      mCalibrationClient = client;
+      mValidating = validation;
+      mPoints = validation ? validationPoints() : calibrationPoints(pointCount);
+      mCurrentPoint = 1;
+
+      reply(client, (validation ? "ET_VAL " : "ET_CAL ") + mPoints.size());
+      for (int i = 0; i < mPoints.size(); i++)
+      {
+         reply(client, "ET_PNT " + (i + 1) + " " + mPoints.get(i).x + " " + mPoints.get(i).y);
+      }
+      reply(client, "ET_CHG 1");
+   }
+
+   /*
+    * Points on a grid over the calibration area, ten percent in from each
+    * edge, centre first as the SMI software does.
+    */
+   private List<Point> calibrationPoints(int count)
+   {
+      int columns = (int) Math.ceil(Math.sqrt(count));
+      int rows = (int) Math.ceil(count / (double) columns);
+      List<Point> points = new ArrayList<>();
+      points.add(new Point(mScreenWidth / 2, mScreenHeight / 2));
+
+      for (int row = 0; row < rows && points.size() < count; row++)
+      {
+         for (int column = 0; column < columns && points.size() < count; column++)
+         {
+            int x = (int) (mScreenWidth * (0.1 + 0.8 * ((columns > 1) ? column / (double) (columns - 1) : 0.5)));
+            int y = (int) (mScreenHeight * (0.1 + 0.8 * ((rows > 1) ? row / (double) (rows - 1) : 0.5)));
+            Point point = new Point(x, y);
+            if (!points.contains(point))
+            {
+               points.add(point);
+            }
+         }
+      }
+      return points;
+   }
+
+   /*
+    * The four validation points the Calibrator expects.
+    */
+   private List<Point> validationPoints()
+   {
+      List<Point> points = new ArrayList<>();
+      points.add(new Point(mScreenWidth / 4, mScreenHeight / 4));
+      points.add(new Point(mScreenWidth * 3 / 4, mScreenHeight * 3 / 4));
+      points.add(new Point(mScreenWidth * 3 / 4, mScreenHeight / 4));
+      points.add(new Point(mScreenWidth / 4, mScreenHeight * 3 / 4));
+      return points;
+   }
+
+   private synchronized void accept() throws IOException
+   {
+      if (mPoints == null)
+      {
+         return;
+      }
+
+      if (mAutoAcceptTask != null)
+      {
+         mAutoAcceptTask.cancel(false);
+         mAutoAcceptTask = null;
+      }
+
+      if (mCurrentPoint < mPoints.size())
+      {
+         mCurrentPoint++;
+         reply(mCalibrationClient, "ET_CHG " + mCurrentPoint);
+
+         if (mAutoAccept)
+         {
+            mAutoAcceptTask = mTimer.schedule(new Runnable()
+            {
+               @Override
+               public void run()
+               {
+                  try
+                  {
+                     accept();
+                  }
+                  catch (IOException ex)
+                  {
+                     ex.printStackTrace();
+                  }
+               }
+            }, mAutoAcceptMillis, TimeUnit.MILLISECONDS);
+         }
+         return;
+      }
+
+      if (mValidating)
+      {
+         // Deviations in degrees, the degree sign sent as UTF-8 like the
+         // real server does
+         double pixelsPerDegree = SyntheticGazeGenerator.DEFAULT_PIXELS_PER_DEGREE;
+         for (Point point : mPoints)
+         {
+            double angle = mRandom.nextDouble() * 2 * Math.PI;
+            double dx = Math.abs(Math.cos(angle)) * mValidationErrorDegrees;
+            double dy = Math.abs(Math.sin(angle)) * mValidationErrorDegrees;
+            reply(mCalibrationClient, String.format(Locale.ROOT, "ET_VLS %.1f %.1f %.2f° %.2f°",
+                                                    point.x + Math.cos(angle) * mValidationErrorDegrees * pixelsPerDegree,
+                                                    point.y + Math.sin(angle) * mValidationErrorDegrees * pixelsPerDegree,
+                                                    dx, dy));
+         }
+      }
+      else
+      {
+         reply(mCalibrationClient, "ET_FIN");
+      }
+
+      endCalibration();
+   }
+
+   /*
+    * Called with the monitor held.
+    */
+   private void endCalibration()
+   {
+      if (mAutoAcceptTask != null)
+      {
+         mAutoAcceptTask.cancel(false);
+         mAutoAcceptTask = null;
+      }
+      mPoints = null;
+      mCalibrationClient = null;
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Streaming">
+
+   /*
+    * One stream of samples to one client, on its own thread.
+    */
+   private class Stream implements GazeSampleSubscriber, Runnable
+   {
+      private final SocketAddress mClient;
+      private final ReplayEngine mEngine;
+      private final Thread mThread;
+      private final ByteBuffer mPacket = ByteBuffer.allocateDirect(PACKET_CAPACITY);
+      private final ByteBuffer mHeld = ByteBuffer.allocateDirect(PACKET_CAPACITY);
+      private boolean mHolding = false;
+
+      // Only used on the stream's thread; the server's own generator is used
+      // by the command and timer threads
+      private final Random mFaultRandom;
+
+      Stream(SocketAddress client, double rate)
+      {
+         long seed = mStreamSeed++;
+         mClient = client;
+         mEngine = new ReplayEngine(new SyntheticGazeGenerator(rate, seed), 1.0);
+         mFaultRandom = new Random(~seed);
+         mThread = new Thread(this, "Fake iViewX Stream");
+         mThread.setDaemon(true);
+      }
+
+      @Override
+      public void run()
+      {
+         try
+         {
+            mEngine.replay(this);
+         }
+         catch (IOException ex)
+         {
+            ex.printStackTrace();
+         }
+         finally
+         {
+            // A packet still held back when the stream stops is never sent
+            if (mHolding)
+            {
+               mHolding = false;
+               mDroppedCount++;
+            }
+         }
+      }
+
+      @Override
+      public void sampleReceived(GazeSample sample)
+      {
+         mPacket.clear();
+         mEncoder.encode(sample, mPacket);
+         mPacket.flip();
+
+         double loss = mLossProbability;
+         double reorder = mReorderProbability;
+         if (loss > 0 && mFaultRandom.nextDouble() < loss)
+         {
+            mDroppedCount++;
+            return;
+         }
+
+         if (!mHolding && reorder > 0 && mFaultRandom.nextDouble() < reorder)
+         {
+            // Hold this packet back until after the next one
+            mHeld.clear();
+            mHeld.put(mPacket);
+            mHeld.flip();
+            mHolding = true;
+            return;
+         }
+
+         send(mPacket);
+         if (mHolding)
+         {
+            // Only counted once it has actually gone out after a later one
+            if (send(mHeld))
+            {
+               mReorderedCount++;
+            }
+            mHolding = false;
+         }
+      }
+
+      private boolean send(ByteBuffer packet)
+      {
+         try
+         {
+            mChannel.send(packet, mClient);
+            mSentCount++;
+            return true;
+         }
+         catch (IOException ex)
+         {
+            mDroppedCount++;
+            return false;
+         }
+      }
+
+      void stop()
+      {
+         // Unpark rather than interrupt: an interrupt during a send would
+         // close the channel the commands arrive on too
+         mEngine.stop();
+         LockSupport.unpark(mThread);
+      }
+   }
+
+   private synchronized void startStream(SocketAddress client, double requestedRate)
+   {
+      stopStream();
+
+      double rate = (mRateOverride > 0) ? mRateOverride : requestedRate;
+      if (!(rate > 0))
+      {
+         rate = 60;
+      }
+
+      mStream = new Stream(client, rate);
+      mStream.mThread.start();
+   }
+
+   private synchronized void stopStream()
+   {
+      if (mStream != null)
+      {
+         mStream.stop();
+         mStream = null;
+      }
+   }
+
+   /**
+    * Stops streaming and closes the command port.
+    */
+   @Override
+   public void close() throws IOException
+   {
+      stopStream();
+      synchronized (this)
+      {
+         endCalibration();
+      }
+      mTimer.shutdownNow();
+      mChannel.close();
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Properties">
+
+   /**
+    * @return Address the server listens for commands on.
+    */
+   public InetSocketAddress getCommandAddress() throws IOException
+   {
+      return (InetSocketAddress) mChannel.getLocalAddress();
+   }
+
+   /**
+    * @param sampleRate Rate to stream at whatever the client asks for, or
+    * zero to use the rate in ET_STR.
+    */
+   public void setStreamRate(double sampleRate)
+   {
+      mRateOverride = sampleRate;
+   }
+
+   /**
+    * @param probability Chance of each sample packet being dropped.
+    */
+   public void setLossProbability(double probability)
+   {
+      mLossProbability = probability;
+   }
+
+   /**
+    * @param probability Chance of each sample packet being held back and sent
+    * after the one that follows it.
+    */
+   public void setReorderProbability(double probability)
+   {
+      mReorderProbability = probability;
+   }
+
+   public synchronized void setAutoAcceptInterval(long interval, TimeUnit unit)
+   {
+      mAutoAcceptMillis = unit.toMillis(interval);
+   }
+
+   /**
+    * @param degrees Size of the error reported for each validation point.
+    */
+   public synchronized void setValidationError(double degrees)
+   {
+      mValidationErrorDegrees = degrees;
+   }
+
+   /**
+    * @return Sample packets sent.
+    */
+   public long getSentCount()
+   {
+      return mSentCount;
+   }
+
+   /**
+    * @return Sample packets dropped on purpose or because sending failed.
+    */
+   public long getDroppedCount()
+   {
+      return mDroppedCount;
+   }
+
+   /**
+    * @return Sample packets sent out of order.
+    */
+   public long getReorderedCount()
+   {
+      return mReorderedCount;
+   }
+
+   public long getCommandCount()
+   {
+      return mCommandCount;
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Command Line">
+
+   /**
+    * Runs a server until the process is killed.
+    *
+    *    FakeIViewXServer [rate] [loss probability] [reorder probability]
+    */
+   public static void main(String[] args) throws Exception
+   {
+      try (FakeIViewXServer server = new FakeIViewXServer())
+      {
+         if (args.length > 0)
+         {
+            server.setStreamRate(Double.parseDouble(args[0]));
+         }
+         if (args.length > 1)
+         {
+            server.setLossProbability(Double.parseDouble(args[1]));
+         }
+         if (args.length > 2)
+         {
+            server.setReorderProbability(Double.parseDouble(args[2]));
+         }
+
+         System.out.println("Fake iViewX server listening on " + server.getCommandAddress());
+         while (true)
+         {
+            Thread.sleep(5000);
+            System.out.println("Sent " + server.getSentCount()
+                               + ", dropped " + server.getDroppedCount()
+                               + ", reordered " + server.getReorderedCount());
+         }
+      }
+   }
+
+   // </editor-fold>
+}
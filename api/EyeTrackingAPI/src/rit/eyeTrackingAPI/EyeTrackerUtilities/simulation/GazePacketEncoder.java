@@ -0,0 +1,23 @@
+package rit.eyeTrackingAPI.EyeTrackerUtilities.simulation;
+
+import java.nio.ByteBuffer;
+import rit.eyeTrackingAPI.DataConstructs.GazeSample;
+
+/**
+ * Writes gaze samples as the datagrams a particular tracker sends, so
+ * synthetic data can be fed to the real clients over UDP.
+ *
+ * @author Mark Hazlewood
+ *
+ * @see UdpGazeSender
+ */
+public interface GazePacketEncoder
+{
+   /**
+    * Writes one sample datagram at the buffer's position. Must not allocate.
+    *
+    * @param sample The sample.
+    * @param destination Buffer with room for at least 128 bytes.
+    */
+   void encode(GazeSample sample, ByteBuffer destination);
+}
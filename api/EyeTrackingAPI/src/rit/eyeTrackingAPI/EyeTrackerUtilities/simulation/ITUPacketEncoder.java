@@ -0,0 +1,33 @@
+package rit.eyeTrackingAPI.EyeTrackerUtilities.simulation;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import rit.eyeTrackingAPI.DataConstructs.GazeSample;
+
+/**
+ * Writes ITU GazeTracker sample lines:
+ *
+ *    STREAM_DATA 1234567 812 604
+ *
+ * The timestamp is the sample's tracker timestamp.
+ *
+ * @author Mark Hazlewood
+ *
+ * @see rit.eyeTrackingAPI.EyeTrackerUtilities.eyeTrackerClients.ITUGazeTrackerSampleParser
+ */
+public class ITUPacketEncoder implements GazePacketEncoder
+{
+   private static final byte[] SAMPLE_PREFIX = "STREAM_DATA ".getBytes(StandardCharsets.US_ASCII);
+
+   @Override
+   public void encode(GazeSample sample, ByteBuffer destination)
+   {
+      destination.put(SAMPLE_PREFIX);
+      AsciiEncoding.putLong(destination, sample.getTrackerTimestamp());
+      destination.put((byte) ' ');
+      AsciiEncoding.putLong(destination, sample.getX());
+      destination.put((byte) ' ');
+      AsciiEncoding.putLong(destination, sample.getY());
+      destination.put((byte) '\n');
+   }
+}
@@ -0,0 +1,152 @@
+package rit.eyeTrackingAPI.EyeTrackerUtilities.simulation;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import rit.eyeTrackingAPI.DataConstructs.GazeSample;
+
+/**
+ * Writes iViewX "ET_SPL" sample lines in a given ET_FRM format, for example
+ * with "%ET %TS %SX %SY":
+ *
+ *    ET_SPL b 1234567 812 818 604 611
+ *
+ * Per-eye fields carry both eyes for binocular samples and one value
+ * otherwise. Fields other than eye type, timestamp and screen position are
+ * written as zero.
+ *
+ * @author Mark Hazlewood
+ *
+ * @see rit.eyeTrackingAPI.EyeTrackerUtilities.eyeTrackerClients.IViewXSampleParser
+ */
+public class IViewXPacketEncoder implements GazePacketEncoder
+{
+   // <editor-fold defaultstate="expanded" desc="Constants">
+
+   /**
+    * The format the IViewXClient asks for.
+    */
+   public static final String DEFAULT_FORMAT = "%ET %TS %SX %SY";
+
+   private static final byte[] SAMPLE_PREFIX = "ET_SPL".getBytes(StandardCharsets.US_ASCII);
+
+   private static final int FIELD_EYE_TYPE = 0;
+   private static final int FIELD_TIMESTAMP = 1;
+   private static final int FIELD_SCREEN_X = 2;
+   private static final int FIELD_SCREEN_Y = 3;
+   private static final int FIELD_OTHER_PER_EYE = 4;
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Private Members">
+
+   private final String mFormat;
+   private final int[] mFieldLayout;
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Constructor(s)">
+
+   public IViewXPacketEncoder()
+   {
+      this(DEFAULT_FORMAT);
+   }
+
+   /**
+    * @param format The iViewX format string, e.g. "%ET %TS %SX %SY".
+    */
+   public IViewXPacketEncoder(String format)
+   {
+      mFormat = format.trim();
+
+      List<Integer> layout = new ArrayList<>();
+      for (String token : mFormat.split("\\s+"))
+      {
+         switch (token)
+         {
+            case "%ET":
+               layout.add(FIELD_EYE_TYPE);
+               break;
+            case "%TS":
+               layout.add(FIELD_TIMESTAMP);
+               break;
+            case "%SX":
+               layout.add(FIELD_SCREEN_X);
+               break;
+            case "%SY":
+               layout.add(FIELD_SCREEN_Y);
+               break;
+            default:
+               layout.add(FIELD_OTHER_PER_EYE);
+               break;
+         }
+      }
+
+      mFieldLayout = new int[layout.size()];
+      for (int i = 0; i < mFieldLayout.length; i++)
+      {
+         mFieldLayout[i] = layout.get(i);
+      }
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Working Functions">
+
+   @Override
+   public void encode(GazeSample sample, ByteBuffer destination)
+   {
+      boolean binocular = sample.getEyeType() == GazeSample.EYE_BINOCULAR;
+
+      destination.put(SAMPLE_PREFIX);
+      for (int field : mFieldLayout)
+      {
+         destination.put((byte) ' ');
+         switch (field)
+         {
+            case FIELD_EYE_TYPE:
+               destination.put((byte) (binocular ? GazeSample.EYE_BINOCULAR : GazeSample.EYE_LEFT));
+               break;
+
+            case FIELD_TIMESTAMP:
+               AsciiEncoding.putLong(destination, sample.getTrackerTimestamp());
+               break;
+
+            case FIELD_SCREEN_X:
+               putPerEye(destination, binocular, sample.getLeftX(), sample.getRightX(), sample.getX());
+               break;
+
+            case FIELD_SCREEN_Y:
+               putPerEye(destination, binocular, sample.getLeftY(), sample.getRightY(), sample.getY());
+               break;
+
+            default:
+               putPerEye(destination, binocular, 0, 0, 0);
+               break;
+         }
+      }
+      destination.put((byte) '\n');
+   }
+
+   private static void putPerEye(ByteBuffer destination, boolean binocular, int left, int right, int combined)
+   {
+      if (binocular)
+      {
+         AsciiEncoding.putLong(destination, left);
+         destination.put((byte) ' ');
+         AsciiEncoding.putLong(destination, right);
+      }
+      else
+      {
+         AsciiEncoding.putLong(destination, combined);
+      }
+   }
+
+   public String getFormat()
+   {
+      return mFormat;
+   }
+
+   // </editor-fold>
+}
@@ -0,0 +1,505 @@
+package rit.eyeTrackingAPI.EyeTrackerUtilities.simulation;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import rit.eyeTrackingAPI.DataConstructs.GazeSample;
+import rit.eyeTrackingAPI.EyeTrackerUtilities.replay.ReplaySource;
+
+/**
+ * Generates statistically realistic gaze for one synthetic participant, at
+ * any sample rate, for load and soak testing without a tracker.
+ *
+ * The eyes alternate between fixations and saccades:
+ *
+ * - Fixation durations follow a log-normal distribution. During a fixation
+ *   the eyes drift slowly, with a velocity that wanders at random, and
+ *   tremor adds a small fast oscillation on top.
+ * - Saccade amplitudes are roughly exponentially distributed and land on
+ *   the screen. Each saccade lasts as long as the main sequence predicts for
+ *   its amplitude (2.2 ms per degree plus 21 ms) and follows a minimum-jerk
+ *   path, giving the usual bell-shaped velocity profile.
+ * - Blinks arrive at random, end a fixation, and are reported as lost
+ *   samples at (0, 0) for their duration.
+ * - Short tracker dropouts arrive independently of what the eyes are doing.
+ *
+ * Both eyes are reported, each with its own measurement noise. Angles are
+ * converted to pixels with {@link #setPixelsPerDegree(double)}.
+ *
+ * The generator is a {@link ReplaySource}, so it can be played through a
+ * {@link rit.eyeTrackingAPI.EyeTrackerUtilities.replay.ReplayEngine} or an
+ * {@link rit.eyeTrackingAPI.EyeTrackerUtilities.eyeTrackerClients.EyeTrackerClientSimulator},
+ * in real time or faster. Sample times are exact multiples of the sample
+ * interval, and tracker timestamps are in microseconds as iViewX reports
+ * them. Generating a sample does not allocate. A generator is not thread
+ * safe; give each participant its own.
+ *
+ * @author Mark Hazlewood
+ *
+ * @see SyntheticLoad
+ */
+public class SyntheticGazeGenerator implements ReplaySource
+{
+   // <editor-fold defaultstate="expanded" desc="Constants">
+
+   public static final int DEFAULT_SCREEN_WIDTH = 1920;
+   public static final int DEFAULT_SCREEN_HEIGHT = 1080;
+
+   /**
+    * Default pixels per degree of visual angle; a 24 inch 1080p screen at
+    * about 65 cm.
+    */
+   public static final double DEFAULT_PIXELS_PER_DEGREE = 35.0;
+
+   /**
+    * Default median fixation duration in milliseconds.
+    */
+   public static final double DEFAULT_MEDIAN_FIXATION_MILLIS = 230.0;
+
+   /**
+    * Default mean saccade amplitude in degrees.
+    */
+   public static final double DEFAULT_MEAN_SACCADE_DEGREES = 7.0;
+
+   /**
+    * Default blinks per minute.
+    */
+   public static final double DEFAULT_BLINKS_PER_MINUTE = 15.0;
+
+   /**
+    * Default tracker dropouts per minute.
+    */
+   public static final double DEFAULT_DROPOUTS_PER_MINUTE = 6.0;
+
+   /**
+    * Default standard deviation of measurement noise, in pixels, per eye.
+    */
+   public static final double DEFAULT_NOISE_PIXELS = 1.5;
+
+   private static final double FIXATION_SIGMA = 0.45;
+   private static final long MIN_FIXATION_NANOS = TimeUnit.MILLISECONDS.toNanos(60);
+   private static final double MIN_SACCADE_DEGREES = 0.5;
+
+   private static final double DRIFT_DEGREES_PER_SECOND = 0.25;
+   private static final double DRIFT_CORRELATION_SECONDS = 0.2;
+   private static final double TREMOR_HERTZ = 83.0;
+   private static final double TREMOR_DEGREES = 0.01;
+
+   private static final long MIN_BLINK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+   private static final long MAX_BLINK_NANOS = TimeUnit.MILLISECONDS.toNanos(250);
+   private static final long MIN_DROPOUT_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+   private static final long MAX_DROPOUT_NANOS = TimeUnit.MILLISECONDS.toNanos(80);
+
+   private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Private Members">
+
+   private enum Phase
+   {
+      FIXATION,
+      SACCADE,
+      BLINK
+   }
+
+   private final Random mRandom;
+   private final double mSampleRate;
+   private final long mDurationNanos;
+
+   private int mScreenWidth = DEFAULT_SCREEN_WIDTH;
+   private int mScreenHeight = DEFAULT_SCREEN_HEIGHT;
+   private double mPixelsPerDegree = DEFAULT_PIXELS_PER_DEGREE;
+   private double mMedianFixationMillis = DEFAULT_MEDIAN_FIXATION_MILLIS;
+   private double mMeanSaccadeDegrees = DEFAULT_MEAN_SACCADE_DEGREES;
+   private double mBlinksPerMinute = DEFAULT_BLINKS_PER_MINUTE;
+   private double mDropoutsPerMinute = DEFAULT_DROPOUTS_PER_MINUTE;
+   private double mNoisePixels = DEFAULT_NOISE_PIXELS;
+
+   private long mSampleIndex = 0;
+   private long mPreviousNanos = 0;
+
+   // Where the eyes are actually looking
+   private Phase mPhase = Phase.FIXATION;
+   private long mPhaseStartNanos = 0;
+   private long mPhaseEndNanos = 0;
+   private double mEyeX;
+   private double mEyeY;
+
+   private double mDriftX = 0;
+   private double mDriftY = 0;
+   // Each axis trembles with its own phase and frequency jitter, so the
+   // tremor traces a small irregular loop rather than a diagonal line
+   private double mTremorPhaseX = 0;
+   private double mTremorPhaseY;
+
+   private double mSaccadeStartX;
+   private double mSaccadeStartY;
+   private double mSaccadeTargetX;
+   private double mSaccadeTargetY;
+
+   private long mNextBlinkNanos;
+   private long mNextDropoutNanos;
+   private long mDropoutEndNanos = 0;
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Constructor(s)">
+
+   /**
+    * Creates a generator that runs until stopped.
+    *
+    * @param sampleRate Samples per second.
+    * @param seed Seed for the participant's random behaviour; the same seed
+    * always gives the same trace.
+    */
+   public SyntheticGazeGenerator(double sampleRate, long seed)
+   {
+      this(sampleRate, seed, Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+   }
+
+   /**
+    * @param sampleRate Samples per second.
+    * @param seed Seed for the participant's random behaviour.
+    * @param duration Length of the trace.
+    * @param unit Unit of the duration.
+    */
+   public SyntheticGazeGenerator(double sampleRate, long seed, long duration, TimeUnit unit)
+   {
+      if (!(sampleRate > 0))
+      {
+         throw new IllegalArgumentException("Sample rate must be positive: " + sampleRate);
+      }
+
+      mRandom = new Random(seed);
+      mSampleRate = sampleRate;
+      mDurationNanos = unit.toNanos(duration);
+      mTremorPhaseY = 2 * Math.PI * mRandom.nextDouble();
+
+      mEyeX = mScreenWidth / 2.0;
+      mEyeY = mScreenHeight / 2.0;
+      mPhaseEndNanos = fixationDuration();
+      mNextBlinkNanos = nextArrival(0, mBlinksPerMinute);
+      mNextDropoutNanos = nextArrival(0, mDropoutsPerMinute);
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="ReplaySource">
+
+   @Override
+   public long next(GazeSample sample)
+   {
+      long nanos = Math.round(mSampleIndex * NANOS_PER_SECOND / mSampleRate);
+      if (nanos >= mDurationNanos)
+      {
+         return END;
+      }
+      mSampleIndex++;
+
+      advance(nanos);
+
+      sample.clear();
+      sample.setTrackerTimestamp(nanos / 1000);
+
+      if (mPhase == Phase.BLINK || isDroppedOut(nanos))
+      {
+         sample.setEyeType(GazeSample.EYE_BINOCULAR);
+         return nanos;
+      }
+
+      double tremorX = TREMOR_DEGREES * mPixelsPerDegree * Math.sin(mTremorPhaseX);
+      double tremorY = TREMOR_DEGREES * mPixelsPerDegree * Math.sin(mTremorPhaseY);
+      sample.setBinocular(screenX(mEyeX + tremorX + mRandom.nextGaussian() * mNoisePixels),
+                          screenY(mEyeY + tremorY + mRandom.nextGaussian() * mNoisePixels),
+                          screenX(mEyeX + tremorX + mRandom.nextGaussian() * mNoisePixels),
+                          screenY(mEyeY + tremorY + mRandom.nextGaussian() * mNoisePixels));
+      return nanos;
+   }
+
+   @Override
+   public void close()
+   {
+      // Nothing to release
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Eye Model">
+
+   /*
+    * Moves the eyes on to the given time.
+    */
+   private void advance(long nanos)
+   {
+      while (nanos >= mPhaseEndNanos)
+      {
+         endPhase(mPhaseEndNanos);
+      }
+
+      double seconds = (nanos - mPreviousNanos) / NANOS_PER_SECOND;
+      mPreviousNanos = nanos;
+
+      mTremorPhaseX += 2 * Math.PI * TREMOR_HERTZ * seconds * (0.9 + 0.2 * mRandom.nextDouble());
+      mTremorPhaseY += 2 * Math.PI * TREMOR_HERTZ * seconds * (0.9 + 0.2 * mRandom.nextDouble());
+
+      switch (mPhase)
+      {
+         case FIXATION:
+            // Drift velocity wanders as an Ornstein-Uhlenbeck process
+            double decay = Math.exp(-seconds / DRIFT_CORRELATION_SECONDS);
+            double spread = DRIFT_DEGREES_PER_SECOND * mPixelsPerDegree * Math.sqrt(1 - decay * decay);
+            mDriftX = mDriftX * decay + mRandom.nextGaussian() * spread;
+            mDriftY = mDriftY * decay + mRandom.nextGaussian() * spread;
+            mEyeX = clamp(mEyeX + mDriftX * seconds, mScreenWidth);
+            mEyeY = clamp(mEyeY + mDriftY * seconds, mScreenHeight);
+            break;
+
+         case SACCADE:
+            double progress = (double) (nanos - mPhaseStartNanos) / (mPhaseEndNanos - mPhaseStartNanos);
+            double position = minimumJerk(progress);
+            mEyeX = mSaccadeStartX + (mSaccadeTargetX - mSaccadeStartX) * position;
+            mEyeY = mSaccadeStartY + (mSaccadeTargetY - mSaccadeStartY) * position;
+            break;
+
+         default:
+            break;
+      }
+   }
+
+   private void endPhase(long nanos)
+   {
+      mPhaseStartNanos = nanos;
+
+      switch (mPhase)
+      {
+         case FIXATION:
+            if (nanos >= mNextBlinkNanos)
+            {
+               mPhase = Phase.BLINK;
+               mPhaseEndNanos = nanos + between(MIN_BLINK_NANOS, MAX_BLINK_NANOS);
+               mNextBlinkNanos = nextArrival(mPhaseEndNanos, mBlinksPerMinute);
+            }
+            else
+            {
+               startSaccade(nanos);
+            }
+            break;
+
+         case SACCADE:
+            mEyeX = mSaccadeTargetX;
+            mEyeY = mSaccadeTargetY;
+            startFixation(nanos);
+            break;
+
+         case BLINK:
+            // The eyes rarely reopen exactly where they closed
+            mEyeX = clamp(mEyeX + mRandom.nextGaussian() * 0.5 * mPixelsPerDegree, mScreenWidth);
+            mEyeY = clamp(mEyeY + mRandom.nextGaussian() * 0.5 * mPixelsPerDegree, mScreenHeight);
+            startFixation(nanos);
+            break;
+      }
+   }
+
+   private void startFixation(long nanos)
+   {
+      mPhase = Phase.FIXATION;
+      mPhaseEndNanos = nanos + fixationDuration();
+      mDriftX = 0;
+      mDriftY = 0;
+   }
+
+   private void startSaccade(long nanos)
+   {
+      mSaccadeStartX = mEyeX;
+      mSaccadeStartY = mEyeY;
+
+      // Draw an amplitude and direction, retrying if the target is off screen
+      double amplitude = 0;
+      for (int attempt = 0; attempt < 16; attempt++)
+      {
+         amplitude = MIN_SACCADE_DEGREES - mMeanSaccadeDegrees * Math.log(1 - mRandom.nextDouble());
+         double direction = mRandom.nextDouble() * 2 * Math.PI;
+         mSaccadeTargetX = mEyeX + Math.cos(direction) * amplitude * mPixelsPerDegree;
+         mSaccadeTargetY = mEyeY + Math.sin(direction) * amplitude * mPixelsPerDegree;
+
+         if (mSaccadeTargetX >= 0 && mSaccadeTargetX < mScreenWidth
+             && mSaccadeTargetY >= 0 && mSaccadeTargetY < mScreenHeight)
+         {
+            break;
+         }
+
+         mSaccadeTargetX = clamp(mSaccadeTargetX, mScreenWidth);
+         mSaccadeTargetY = clamp(mSaccadeTargetY, mScreenHeight);
+      }
+
+      amplitude = Math.hypot(mSaccadeTargetX - mEyeX, mSaccadeTargetY - mEyeY) / mPixelsPerDegree;
+      double millis = 2.2 * amplitude + 21.0;
+
+      mPhase = Phase.SACCADE;
+      mPhaseEndNanos = nanos + Math.round(millis * 1.0e6);
+   }
+
+   private boolean isDroppedOut(long nanos)
+   {
+      if (nanos < mDropoutEndNanos)
+      {
+         return true;
+      }
+
+      if (nanos >= mNextDropoutNanos)
+      {
+         mDropoutEndNanos = nanos + between(MIN_DROPOUT_NANOS, MAX_DROPOUT_NANOS);
+         mNextDropoutNanos = nextArrival(mDropoutEndNanos, mDropoutsPerMinute);
+         return true;
+      }
+
+      return false;
+   }
+
+   /*
+    * Position along a minimum-jerk path, from 0 to 1.
+    */
+   private static double minimumJerk(double t)
+   {
+      double t3 = t * t * t;
+      return t3 * (10 - 15 * t + 6 * t * t);
+   }
+
+   private long fixationDuration()
+   {
+      double millis = mMedianFixationMillis * Math.exp(FIXATION_SIGMA * mRandom.nextGaussian());
+      return Math.max(MIN_FIXATION_NANOS, Math.round(millis * 1.0e6));
+   }
+
+   /*
+    * Time of the next event of a Poisson process.
+    */
+   private long nextArrival(long fromNanos, double perMinute)
+   {
+      if (perMinute <= 0)
+      {
+         return Long.MAX_VALUE;
+      }
+
+      double seconds = -Math.log(1 - mRandom.nextDouble()) * 60.0 / perMinute;
+      return fromNanos + Math.round(seconds * NANOS_PER_SECOND);
+   }
+
+   private long between(long min, long max)
+   {
+      return min + (long) (mRandom.nextDouble() * (max - min));
+   }
+
+   private static double clamp(double value, int size)
+   {
+      return Math.max(0, Math.min(size - 1, value));
+   }
+
+   /*
+    * Never reports (0, 0), which would read as a lost sample.
+    */
+   private int screenX(double x)
+   {
+      return (int) Math.round(Math.max(1, Math.min(mScreenWidth - 1, x)));
+   }
+
+   private int screenY(double y)
+   {
+      return (int) Math.round(Math.max(0, Math.min(mScreenHeight - 1, y)));
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Properties">
+
+   public double getSampleRate()
+   {
+      return mSampleRate;
+   }
+
+   /**
+    * @param width Screen width in pixels.
+    * @param height Screen height in pixels.
+    */
+   public void setScreenSize(int width, int height)
+   {
+      mScreenWidth = width;
+      mScreenHeight = height;
+      mEyeX = clamp(mEyeX, width);
+      mEyeY = clamp(mEyeY, height);
+   }
+
+   public double getPixelsPerDegree()
+   {
+      return mPixelsPerDegree;
+   }
+
+   public void setPixelsPerDegree(double pixelsPerDegree)
+   {
+      mPixelsPerDegree = pixelsPerDegree;
+   }
+
+   public double getMedianFixationMillis()
+   {
+      return mMedianFixationMillis;
+   }
+
+   public void setMedianFixationMillis(double medianFixationMillis)
+   {
+      mMedianFixationMillis = medianFixationMillis;
+   }
+
+   public double getMeanSaccadeDegrees()
+   {
+      return mMeanSaccadeDegrees;
+   }
+
+   public void setMeanSaccadeDegrees(double meanSaccadeDegrees)
+   {
+      mMeanSaccadeDegrees = meanSaccadeDegrees;
+   }
+
+   public double getBlinksPerMinute()
+   {
+      return mBlinksPerMinute;
+   }
+
+   /**
+    * @param blinksPerMinute Average blink rate, or zero for no blinks.
+    */
+   public void setBlinksPerMinute(double blinksPerMinute)
+   {
+      mBlinksPerMinute = blinksPerMinute;
+      mNextBlinkNanos = nextArrival(mPreviousNanos, blinksPerMinute);
+   }
+
+   public double getDropoutsPerMinute()
+   {
+      return mDropoutsPerMinute;
+   }
+
+   /**
+    * @param dropoutsPerMinute Average rate of short tracker dropouts, or zero
+    * for none.
+    */
+   public void setDropoutsPerMinute(double dropoutsPerMinute)
+   {
+      mDropoutsPerMinute = dropoutsPerMinute;
+      mNextDropoutNanos = nextArrival(mPreviousNanos, dropoutsPerMinute);
+   }
+
+   public double getNoisePixels()
+   {
+      return mNoisePixels;
+   }
+
+   /**
+    * @param noisePixels Standard deviation of each eye's measurement noise.
+    */
+   public void setNoisePixels(double noisePixels)
+   {
+      mNoisePixels = noisePixels;
+   }
+
+   // </editor-fold>
+}
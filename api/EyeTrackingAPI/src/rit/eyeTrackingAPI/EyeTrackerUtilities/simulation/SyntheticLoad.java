@@ -0,0 +1,277 @@
+package rit.eyeTrackingAPI.EyeTrackerUtilities.simulation;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import rit.eyeTrackingAPI.ApplicationUtilities.GazeExecutors;
+import rit.eyeTrackingAPI.ApplicationUtilities.GazeSampleSubscriber;
+import rit.eyeTrackingAPI.EyeTrackerUtilities.replay.ReplayEngine;
+
+/**
+ * Runs several synthetic participants at once, each on its own thread and in
+ * real time (or faster), for soak testing. Each participant is a
+ * {@link SyntheticGazeGenerator} with its own seed and slightly different
+ * habits, feeding its own target: a filter, an event bus or any other
+ * subscriber in the same process, or a {@link UdpGazeSender} to drive a real
+ * client over the network.
+ *
+ *    SyntheticLoad load = new SyntheticLoad(4, 2000, 10, TimeUnit.MINUTES);
+ *    load.start(SyntheticLoad.udpSenders(4, new IViewXPacketEncoder(), "127.0.0.1", 7777));
+ *    load.awaitCompletion(11, TimeUnit.MINUTES);
+ *
+ * @author Mark Hazlewood
+ *
+ * @see SyntheticGazeGenerator
+ */
+public class SyntheticLoad implements Closeable
+{
+   // <editor-fold defaultstate="expanded" desc="Private Members">
+
+   private final List<SyntheticGazeGenerator> mParticipants = new ArrayList<>();
+   private final List<ReplayEngine> mEngines = new ArrayList<>();
+   private final List<Closeable> mOwnedTargets = new ArrayList<>();
+   private double mSpeed = 1.0;
+   private ExecutorService mExecutor = null;
+   private CountDownLatch mFinished = null;
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Constructor(s)">
+
+   /**
+    * @param participants Number of participants.
+    * @param sampleRate Samples per second for each participant.
+    * @param duration How long each participant runs for.
+    * @param unit Unit of the duration.
+    */
+   public SyntheticLoad(int participants, double sampleRate, long duration, TimeUnit unit)
+   {
+      Random habits = new Random(participants);
+      for (int i = 0; i < participants; i++)
+      {
+         SyntheticGazeGenerator participant = new SyntheticGazeGenerator(sampleRate, i + 1, duration, unit);
+
+         // People differ in how long they look and how far they jump
+         participant.setMedianFixationMillis(SyntheticGazeGenerator.DEFAULT_MEDIAN_FIXATION_MILLIS * (0.8 + 0.4 * habits.nextDouble()));
+         participant.setMeanSaccadeDegrees(SyntheticGazeGenerator.DEFAULT_MEAN_SACCADE_DEGREES * (0.8 + 0.4 * habits.nextDouble()));
+         participant.setBlinksPerMinute(SyntheticGazeGenerator.DEFAULT_BLINKS_PER_MINUTE * (0.5 + habits.nextDouble()));
+
+         mParticipants.add(participant);
+      }
+   }
+
+   /**
+    * Creates one UDP sender per participant, to consecutive ports. The
+    * senders are closed along with the load they are started with.
+    *
+    * @param participants Number of participants.
+    * @param encoder Packet format.
+    * @param host Host the clients listen on.
+    * @param firstPort Port the first participant is sent to.
+    *
+    * @return The senders.
+    *
+    * @throws IOException If a socket could not be opened.
+    */
+   public static List<UdpGazeSender> udpSenders(int participants, GazePacketEncoder encoder, String host, int firstPort) throws IOException
+   {
+      List<UdpGazeSender> senders = new ArrayList<>(participants);
+      for (int i = 0; i < participants; i++)
+      {
+         senders.add(new UdpGazeSender(encoder, host, firstPort + i));
+      }
+      return senders;
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Running">
+
+   /**
+    * Starts every participant.
+    *
+    * @param targets One target per participant. Targets that are also
+    * {@link Closeable} are closed by {@link #close()}.
+    */
+   public synchronized void start(List<? extends GazeSampleSubscriber> targets)
+   {
+      if (mExecutor != null)
+      {
+         throw new IllegalStateException("Already started");
+      }
+      if (targets.size() != mParticipants.size())
+      {
+         throw new IllegalArgumentException("Need one target per participant");
+      }
+
+      mExecutor = GazeExecutors.virtualThreadPerTask("Synthetic Participant");
+      mFinished = new CountDownLatch(mParticipants.size());
+
+      for (int i = 0; i < mParticipants.size(); i++)
+      {
+         final ReplayEngine engine = new ReplayEngine(mParticipants.get(i), mSpeed);
+         final GazeSampleSubscriber target = targets.get(i);
+         mEngines.add(engine);
+
+         if (target instanceof Closeable)
+         {
+            mOwnedTargets.add((Closeable) target);
+         }
+
+         mExecutor.execute(new Runnable()
+         {
+            @Override
+            public void run()
+            {
+               try
+               {
+                  engine.replay(target);
+               }
+               catch (IOException ex)
+               {
+                  ex.printStackTrace();
+               }
+               finally
+               {
+                  mFinished.countDown();
+               }
+            }
+         });
+      }
+   }
+
+   /**
+    * Waits for every participant to finish.
+    *
+    * @return False if the timeout passed first.
+    */
+   public boolean awaitCompletion(long timeout, TimeUnit unit) throws InterruptedException
+   {
+      CountDownLatch finished;
+      synchronized (this)
+      {
+         finished = mFinished;
+      }
+      return finished == null || finished.await(timeout, unit);
+   }
+
+   /**
+    * Stops every participant and closes the targets it owns.
+    */
+   @Override
+   public synchronized void close() throws IOException
+   {
+      for (ReplayEngine engine : mEngines)
+      {
+         engine.stop();
+      }
+
+      if (mExecutor != null)
+      {
+         mExecutor.shutdownNow();
+      }
+
+      for (Closeable target : mOwnedTargets)
+      {
+         target.close();
+      }
+      mOwnedTargets.clear();
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Properties">
+
+   /**
+    * @return The participants, to adjust before starting.
+    */
+   public List<SyntheticGazeGenerator> getParticipants()
+   {
+      return Collections.unmodifiableList(mParticipants);
+   }
+
+   /**
+    * @param speed How many times faster than real time to run, or
+    * {@link ReplayEngine#AS_FAST_AS_POSSIBLE}. Must be set before starting.
+    */
+   public synchronized void setSpeed(double speed)
+   {
+      mSpeed = speed;
+   }
+
+   /**
+    * @return Samples delivered so far by all participants together.
+    */
+   public synchronized long getDeliveredCount()
+   {
+      long delivered = 0;
+      for (ReplayEngine engine : mEngines)
+      {
+         delivered += engine.getDeliveredCount();
+      }
+      return delivered;
+   }
+
+   /**
+    * @return Longest time, in nanoseconds, any sample was delivered after it
+    * was due.
+    */
+   public synchronized long getMaxLatenessNanos()
+   {
+      long lateness = 0;
+      for (ReplayEngine engine : mEngines)
+      {
+         lateness = Math.max(lateness, engine.getMaxLatenessNanos());
+      }
+      return lateness;
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Command Line">
+
+   /**
+    * Sends synthetic participants to local clients over UDP.
+    *
+    *    SyntheticLoad [participants] [rate] [seconds] [iviewx|itu] [first port]
+    *
+    * Defaults to one iViewX participant at 500 Hz for 60 seconds on port
+    * 7777, where the IViewXClient listens.
+    */
+   public static void main(String[] args) throws Exception
+   {
+      int participants = (args.length > 0) ? Integer.parseInt(args[0]) : 1;
+      double rate = (args.length > 1) ? Double.parseDouble(args[1]) : 500;
+      long seconds = (args.length > 2) ? Long.parseLong(args[2]) : 60;
+      boolean itu = args.length > 3 && args[3].equalsIgnoreCase("itu");
+      int port = (args.length > 4) ? Integer.parseInt(args[4]) : (itu ? 6666 : 7777);
+
+      GazePacketEncoder encoder = itu ? new ITUPacketEncoder() : new IViewXPacketEncoder();
+
+      try (SyntheticLoad load = new SyntheticLoad(participants, rate, seconds, TimeUnit.SECONDS))
+      {
+         load.start(udpSenders(participants, encoder, "127.0.0.1", port));
+
+         long start = System.nanoTime();
+         while (!load.awaitCompletion(1, TimeUnit.SECONDS))
+         {
+            double elapsed = (System.nanoTime() - start) / 1.0e9;
+            System.out.printf(Locale.ROOT, "%.0f s: %d samples, %.0f per second, worst lateness %.2f ms%n",
+                              elapsed,
+                              load.getDeliveredCount(),
+                              load.getDeliveredCount() / elapsed,
+                              load.getMaxLatenessNanos() / 1.0e6);
+         }
+         System.out.println("Sent " + load.getDeliveredCount() + " samples");
+      }
+   }
+
+   // </editor-fold>
+}
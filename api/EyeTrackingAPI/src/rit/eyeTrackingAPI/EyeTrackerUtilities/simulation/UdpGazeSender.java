@@ -0,0 +1,113 @@
+package rit.eyeTrackingAPI.EyeTrackerUtilities.simulation;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import rit.eyeTrackingAPI.ApplicationUtilities.GazeSampleSubscriber;
+import rit.eyeTrackingAPI.DataConstructs.GazeSample;
+
+/**
+ * Sends each sample it receives as one datagram, encoded the way a real
+ * tracker would send it, so the full receive, filter and listener path can be
+ * exercised. Sending does not allocate.
+ *
+ * @author Mark Hazlewood
+ */
+public class UdpGazeSender implements GazeSampleSubscriber, Closeable
+{
+   // <editor-fold defaultstate="expanded" desc="Private Members">
+
+   private static final int PACKET_CAPACITY = 512;
+
+   private final GazePacketEncoder mEncoder;
+   private final SocketAddress mTarget;
+   private final DatagramChannel mChannel;
+   private final ByteBuffer mPacket = ByteBuffer.allocateDirect(PACKET_CAPACITY);
+
+   private volatile long mSentCount = 0;
+   private volatile long mFailedCount = 0;
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Constructor(s)">
+
+   /**
+    * @param encoder Packet format.
+    * @param host Host the client listens on, usually "127.0.0.1".
+    * @param port Port the client listens on.
+    *
+    * @throws IOException If no socket could be opened.
+    */
+   public UdpGazeSender(GazePacketEncoder encoder, String host, int port) throws IOException
+   {
+      this(encoder, new InetSocketAddress(host, port));
+   }
+
+   /**
+    * @param encoder Packet format.
+    * @param target Where to send the packets.
+    *
+    * @throws IOException If no socket could be opened.
+    */
+   public UdpGazeSender(GazePacketEncoder encoder, SocketAddress target) throws IOException
+   {
+      mEncoder = encoder;
+      mTarget = target;
+      mChannel = DatagramChannel.open();
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Working Functions">
+
+   /**
+    * Sends a sample. Failures are counted rather than reported one by one.
+    */
+   @Override
+   public void sampleReceived(GazeSample sample)
+   {
+      mPacket.clear();
+      mEncoder.encode(sample, mPacket);
+      mPacket.flip();
+
+      try
+      {
+         mChannel.send(mPacket, mTarget);
+         mSentCount++;
+      }
+      catch (IOException ex)
+      {
+         mFailedCount++;
+      }
+   }
+
+   @Override
+   public void close() throws IOException
+   {
+      mChannel.close();
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Properties">
+
+   public SocketAddress getTarget()
+   {
+      return mTarget;
+   }
+
+   public long getSentCount()
+   {
+      return mSentCount;
+   }
+
+   public long getFailedCount()
+   {
+      return mFailedCount;
+   }
+
+   // </editor-fold>
+}
@@ -0,0 +1,42 @@
+package rit.eyeTrackingAPI.Interaction;
+
+/**
+ * Told when a {@link DwellScheduler.Target} is activated by dwelling on it,
+ * when an activation repeats, and when it is released again.
+ *
+ * Called on the scheduler's thread, so implementations should return quickly
+ * and hand any UI work over to the event dispatch thread.
+ *
+ * @author Mark Hazlewood
+ */
+public interface DwellListener
+{
+   /**
+    * What just happened to a target.
+    */
+   enum Phase
+   {
+      /**
+       * The gaze has stayed on the target for its dwell time.
+       */
+      ACTIVATED,
+
+      /**
+       * The gaze is still on an activated target, one repeat interval after
+       * the last activation or repeat.
+       */
+      REPEATED,
+
+      /**
+       * The gaze has been off an activated target for longer than its
+       * hysteresis.
+       */
+      RELEASED
+   }
+
+   /**
+    * @param target The target.
+    * @param phase What happened to it.
+    */
+   void dwellChanged(DwellScheduler.Target target, Phase phase);
+}
@@ -0,0 +1,575 @@
+package rit.eyeTrackingAPI.Interaction;
+
+import java.io.Closeable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Works out when the gaze has dwelt on a target long enough to activate it,
+ * for any number of gaze-selectable targets, on one thread.
+ *
+ * The application tells the scheduler when the gaze enters and leaves each
+ * target, or with {@link #gazeAt(Target)} which one target the gaze is on.
+ * Each target has its own settings:
+ *
+ *    dwell        how long the gaze must stay on it before it is activated
+ *    hysteresis   how long the gaze may leave it without the dwell being
+ *                 lost, so a blink or a jittery sample near its edge does not
+ *                 start the dwell again
+ *    repeat       how often an activated target repeats its activation while
+ *                 the gaze stays on it, or zero for once
+ *
+ * and its {@link DwellListener} is told when it is activated, repeated and
+ * released.
+ *
+ * Deadlines are kept in a hashed timing wheel of {@link #WHEEL_SIZE}
+ * one-millisecond slots, ticked by a daemon thread of the scheduler's own,
+ * which only ticks while some deadline is pending. Every target carries the
+ * links of its one wheel entry, so entering and leaving targets and firing
+ * their deadlines never allocate, and cost the same for four targets as for
+ * hundreds.
+ *
+ * @author Mark Hazlewood
+ */
+public class DwellScheduler implements Closeable
+{
+   // <editor-fold defaultstate="expanded" desc="Constants">
+
+   /**
+    * Number of slots in the wheel, one per millisecond. Deadlines further
+    * away than this wait for the wheel to come round again.
+    */
+   public static final int WHEEL_SIZE = 512;
+
+   private static final int MASK = WHEEL_SIZE - 1;
+   private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+   private static final int IDLE = 0;
+   private static final int GAZED = 1;
+   private static final int LEAVING = 2;
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Private Members">
+
+   private final long mStartNanos = System.nanoTime();
+   private final Thread mThread;
+   private volatile boolean mClosed = false;
+
+   // Guarded by this
+   private final Target[] mWheel = new Target[WHEEL_SIZE];
+   private long mProcessedTick = 0;
+   private int mScheduledCount = 0;
+   private Target mFocus = null;
+
+   // Targets fired in the current tick, in order, waiting for their callbacks
+   private Target mFiredHead = null;
+   private Target mFiredTail = null;
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Constructor(s)">
+
+   /**
+    * Creates a scheduler and starts its thread.
+    */
+   public DwellScheduler()
+   {
+      mThread = new Thread(new Runnable()
+      {
+         @Override
+         public void run()
+         {
+            runWheel();
+         }
+      }, "Dwell Scheduler");
+      mThread.setDaemon(true);
+      mThread.start();
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Targets">
+
+   /**
+    * Adds a target.
+    *
+    * @param dwellMillis How long the gaze must stay on the target to activate
+    * it.
+    * @param hysteresisMillis How long the gaze may leave the target without
+    * the dwell being lost.
+    * @param repeatMillis How often an activated target repeats while gazed
+    * at, or zero to activate it once per dwell.
+    * @param listener Told when the target is activated, repeated and
+    * released.
+    *
+    * @return The target, to pass to {@link #enter(Target)} and
+    * {@link #leave(Target)}.
+    */
+   public Target addTarget(long dwellMillis, long hysteresisMillis, long repeatMillis, DwellListener listener)
+   {
+      return new Target(this, dwellMillis, hysteresisMillis, repeatMillis, listener);
+   }
+
+   /**
+    * Stops tracking a target. It is not released, and does nothing if
+    * entered again.
+    *
+    * @param target The target.
+    */
+   public synchronized void removeTarget(Target target)
+   {
+      checkOwner(target);
+
+      unschedule(target);
+      target.mState = IDLE;
+      target.mActivated = false;
+      target.mRemoved = true;
+
+      if (mFocus == target)
+      {
+         mFocus = null;
+      }
+   }
+
+   /**
+    * Tells the scheduler the gaze is on a target. Starts its dwell, or, if
+    * the gaze only left it within its hysteresis, carries on with the dwell
+    * as if it had never left.
+    *
+    * @param target The target.
+    */
+   public synchronized void enter(Target target)
+   {
+      checkOwner(target);
+      if (target.mRemoved)
+      {
+         return;
+      }
+
+      switch (target.mState)
+      {
+         case IDLE:
+            target.mState = GAZED;
+            target.mActivated = false;
+            target.mEventTick = currentTick() + Math.max(target.mDwellMillis, 0);
+            target.mGraceTick = 0;
+            schedule(target);
+            break;
+
+         case LEAVING:
+            target.mState = GAZED;
+            target.mGraceTick = 0;
+            schedule(target);
+            break;
+
+         default:
+            break;
+      }
+   }
+
+   /**
+    * Tells the scheduler the gaze has left a target. The dwell is lost once
+    * the gaze has stayed off it for its hysteresis. Meanwhile the target is
+    * neither activated nor repeated; an activation or repeat that fell due
+    * while the gaze was off it happens as soon as the gaze comes back.
+    *
+    * @param target The target.
+    */
+   public synchronized void leave(Target target)
+   {
+      checkOwner(target);
+
+      if (target.mState == GAZED)
+      {
+         target.mState = LEAVING;
+         target.mGraceTick = currentTick() + Math.max(target.mHysteresisMillis, 0);
+         schedule(target);
+      }
+   }
+
+   /**
+    * Tells the scheduler which one target the gaze is on, for applications
+    * whose targets do not overlap. Leaves the target given last time, if it
+    * is a different one.
+    *
+    * @param target The target the gaze is on, or null for none.
+    */
+   public synchronized void gazeAt(Target target)
+   {
+      if (target == mFocus)
+      {
+         return;
+      }
+
+      if (mFocus != null)
+      {
+         leave(mFocus);
+      }
+
+      mFocus = target;
+      if (target != null)
+      {
+         enter(target);
+      }
+   }
+
+   private void checkOwner(Target target)
+   {
+      if (target.mScheduler != this)
+      {
+         throw new IllegalArgumentException("Target belongs to another scheduler");
+      }
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Wheel">
+
+   private long currentTick()
+   {
+      return (System.nanoTime() - mStartNanos) / TICK_NANOS;
+   }
+
+   /*
+    * (Re)links a target into the wheel at its next deadline: its next
+    * activation or repeat while the gaze is on it, or the end of its
+    * hysteresis while the gaze is off it. The activation or repeat is held
+    * back until the gaze comes back, so nothing fires for a target the gaze
+    * is not on.
+    */
+   private void schedule(Target target)
+   {
+      unschedule(target);
+
+      long deadline = (target.mState == LEAVING) ? target.mGraceTick : target.mEventTick;
+      if (deadline == 0)
+      {
+         return;
+      }
+
+      if (mScheduledCount == 0)
+      {
+         // The wheel has been idle, so bring it up to date first
+         mProcessedTick = Math.max(mProcessedTick, currentTick() - 1);
+         notifyAll();
+      }
+
+      deadline = Math.max(deadline, mProcessedTick + 1);
+      target.mDeadlineTick = deadline;
+
+      int slot = (int) (deadline & MASK);
+      target.mNext = mWheel[slot];
+      target.mPrev = null;
+      if (target.mNext != null)
+      {
+         target.mNext.mPrev = target;
+      }
+      mWheel[slot] = target;
+      target.mScheduled = true;
+      mScheduledCount++;
+   }
+
+   private void unschedule(Target target)
+   {
+      if (!target.mScheduled)
+      {
+         return;
+      }
+
+      if (target.mPrev != null)
+      {
+         target.mPrev.mNext = target.mNext;
+      }
+      else
+      {
+         mWheel[(int) (target.mDeadlineTick & MASK)] = target.mNext;
+      }
+      if (target.mNext != null)
+      {
+         target.mNext.mPrev = target.mPrev;
+      }
+
+      target.mPrev = null;
+      target.mNext = null;
+      target.mScheduled = false;
+      mScheduledCount--;
+   }
+
+   private void runWheel()
+   {
+      while (!mClosed)
+      {
+         synchronized (this)
+         {
+            while (mScheduledCount == 0 && !mClosed)
+            {
+               try
+               {
+                  wait();
+               }
+               catch (InterruptedException ex)
+               {
+                  return;
+               }
+            }
+         }
+
+         // Catch up on every tick that has passed, a wheel's worth at most
+         long now = currentTick();
+         synchronized (this)
+         {
+            mProcessedTick = Math.max(mProcessedTick, now - WHEEL_SIZE);
+         }
+
+         while (true)
+         {
+            synchronized (this)
+            {
+               if (mProcessedTick >= now)
+               {
+                  break;
+               }
+               processTick(++mProcessedTick);
+            }
+            deliverFired();
+         }
+
+         long nextTickNanos = mStartNanos + (now + 1) * TICK_NANOS;
+         LockSupport.parkNanos(this, nextTickNanos - System.nanoTime());
+      }
+   }
+
+   /*
+    * Called with the monitor held.
+    */
+   private void processTick(long tick)
+   {
+      Target target = mWheel[(int) (tick & MASK)];
+      while (target != null)
+      {
+         Target next = target.mNext;
+         if (target.mDeadlineTick <= tick)
+         {
+            unschedule(target);
+            expire(target, tick);
+         }
+         target = next;
+      }
+   }
+
+   /*
+    * Called with the monitor held, for a target whose deadline has passed.
+    */
+   private void expire(Target target, long tick)
+   {
+      if (target.mState == LEAVING)
+      {
+         if (target.mGraceTick > tick)
+         {
+            schedule(target);
+            return;
+         }
+
+         boolean wasActivated = target.mActivated;
+         target.mState = IDLE;
+         target.mActivated = false;
+
+         if (wasActivated)
+         {
+            fire(target, DwellListener.Phase.RELEASED);
+         }
+         return;
+      }
+
+      if (target.mEventTick != 0 && target.mEventTick <= tick)
+      {
+         if (!target.mActivated)
+         {
+            target.mActivated = true;
+            fire(target, DwellListener.Phase.ACTIVATED);
+         }
+         else
+         {
+            fire(target, DwellListener.Phase.REPEATED);
+         }
+
+         target.mEventTick = (target.mRepeatMillis > 0) ? tick + target.mRepeatMillis : 0;
+      }
+
+      schedule(target);
+   }
+
+   private void fire(Target target, DwellListener.Phase phase)
+   {
+      target.mFiredPhase = phase;
+      target.mFiredNext = null;
+
+      if (mFiredTail == null)
+      {
+         mFiredHead = target;
+      }
+      else
+      {
+         mFiredTail.mFiredNext = target;
+      }
+      mFiredTail = target;
+   }
+
+   /*
+    * Calls the listeners of the targets fired in the last tick, without the
+    * monitor held so they may enter and leave targets themselves.
+    */
+   private void deliverFired()
+   {
+      Target target;
+      synchronized (this)
+      {
+         target = mFiredHead;
+         mFiredHead = null;
+         mFiredTail = null;
+      }
+
+      while (target != null)
+      {
+         Target next = target.mFiredNext;
+         DwellListener.Phase phase = target.mFiredPhase;
+         target.mFiredNext = null;
+
+         try
+         {
+            target.mListener.dwellChanged(target, phase);
+         }
+         catch (RuntimeException ex)
+         {
+            // One misbehaving listener must not stop the wheel
+            ex.printStackTrace();
+         }
+
+         target = next;
+      }
+   }
+
+   /**
+    * Stops the scheduler's thread. No listener is called afterwards.
+    */
+   @Override
+   public void close()
+   {
+      mClosed = true;
+      synchronized (this)
+      {
+         notifyAll();
+      }
+      LockSupport.unpark(mThread);
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Properties">
+
+   /**
+    * @return Number of targets with a deadline pending.
+    */
+   public synchronized int getScheduledCount()
+   {
+      return mScheduledCount;
+   }
+
+   // </editor-fold>
+
+   /**
+    * A gaze-selectable target, created by
+    * {@link DwellScheduler#addTarget(long, long, long, DwellListener)}.
+    */
+   public static final class Target
+   {
+      private final DwellScheduler mScheduler;
+      private final long mDwellMillis;
+      private final long mHysteresisMillis;
+      private final long mRepeatMillis;
+      private final DwellListener mListener;
+      private volatile Object mTag = null;
+
+      // Guarded by the scheduler
+      private int mState = IDLE;
+      private boolean mActivated = false;
+      private boolean mRemoved = false;
+      private long mEventTick = 0;
+      private long mGraceTick = 0;
+
+      // Wheel entry, guarded by the scheduler
+      private boolean mScheduled = false;
+      private long mDeadlineTick = 0;
+      private Target mPrev = null;
+      private Target mNext = null;
+
+      // Owned by the scheduler's thread
+      private Target mFiredNext = null;
+      private DwellListener.Phase mFiredPhase = null;
+
+      private Target(DwellScheduler scheduler, long dwellMillis, long hysteresisMillis, long repeatMillis, DwellListener listener)
+      {
+         mScheduler = scheduler;
+         mDwellMillis = dwellMillis;
+         mHysteresisMillis = hysteresisMillis;
+         mRepeatMillis = repeatMillis;
+         mListener = listener;
+      }
+
+      public long getDwellMillis()
+      {
+         return mDwellMillis;
+      }
+
+      public long getHysteresisMillis()
+      {
+         return mHysteresisMillis;
+      }
+
+      public long getRepeatMillis()
+      {
+         return mRepeatMillis;
+      }
+
+      /**
+       * @return True while the gaze is on the target, or has been off it for
+       * less than its hysteresis.
+       */
+      public boolean isGazed()
+      {
+         synchronized (mScheduler)
+         {
+            return mState != IDLE;
+         }
+      }
+
+      /**
+       * @return True from activation until release.
+       */
+      public boolean isActivated()
+      {
+         synchronized (mScheduler)
+         {
+            return mActivated;
+         }
+      }
+
+      /**
+       * @return Whatever the application attached to the target.
+       */
+      public Object getTag()
+      {
+         return mTag;
+      }
+
+      /**
+       * @param tag Anything the application wants to attach to the target,
+       * such as the control or map feature it stands for.
+       */
+      public void setTag(Object tag)
+      {
+         mTag = tag;
+      }
+   }
+}
@@ -0,0 +1,299 @@
+package rit.eyeTrackingAPI.Interaction;
+
+import java.util.concurrent.TimeUnit;
+
+import rit.eyeTrackingAPI.DataConstructs.GazeSample;
+
+/**
+ * Holds the most recent gaze samples for a render loop to query once per
+ * frame, instead of the loop redrawing for every sample that arrives.
+ *
+ * {@link #predict(long, GazeSample)} returns the latest sample extrapolated to
+ * the time the frame will be on screen. The gaze velocity is a least-squares
+ * fit over the samples of the last velocity window, timed by the tracker's
+ * own timestamps, which are free of the network's jitter. Tracker time is
+ * mapped onto {@link System#nanoTime()} by the smallest difference between a
+ * sample's receive stamp and its tracker timestamp over the recent samples,
+ * that is by the sample that was delayed least on its way in. Samples without
+ * a tracker timestamp are timed by their receive stamps instead.
+ *
+ * Prediction is left out while the gaze moves slower than the minimum speed,
+ * so fixation jitter is not magnified, and is never taken further ahead than
+ * the maximum prediction. If the latest sample is more than twice the maximum
+ * prediction older than the display time the stream has stalled and the
+ * latest sample is returned as is.
+ *
+ * Samples at (0, 0), which trackers report while the eyes are lost, are
+ * ignored, so the last known position is held through blinks.
+ *
+ * Samples are added on the tracker's thread and predictions are made on the
+ * render thread; both take a short lock and neither allocates.
+ *
+ * @author Mark Hazlewood
+ */
+public class PredictiveGazeSource
+{
+   // <editor-fold defaultstate="expanded" desc="Constants">
+
+   /**
+    * Number of recent samples kept for the velocity fit.
+    */
+   public static final int HISTORY_SIZE = 32;
+
+   /**
+    * Default span, in milliseconds of tracker time, of the samples the
+    * velocity is fitted to.
+    */
+   public static final long DEFAULT_VELOCITY_WINDOW_MILLIS = 50;
+
+   /**
+    * Default furthest, in milliseconds, a sample is extrapolated.
+    */
+   public static final long DEFAULT_MAX_PREDICTION_MILLIS = 50;
+
+   /**
+    * Default speed, in pixels per second, below which samples are not
+    * extrapolated.
+    */
+   public static final double DEFAULT_MIN_SPEED = 100.0;
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Private Members">
+
+   private final TimeUnit mTrackerTimeUnit;
+
+   // Guarded by this
+   private final long[] mTimes = new long[HISTORY_SIZE];
+   private final int[] mX = new int[HISTORY_SIZE];
+   private final int[] mY = new int[HISTORY_SIZE];
+   private final long[] mClockOffsets = new long[HISTORY_SIZE];
+   private int mNewest = -1;
+   private int mCount = 0;
+   private final GazeSample mLatest = new GazeSample();
+
+   private long mVelocityWindowNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_VELOCITY_WINDOW_MILLIS);
+   private long mMaxPredictionNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_MAX_PREDICTION_MILLIS);
+   private double mMinSpeed = DEFAULT_MIN_SPEED;
+
+   private volatile long mSampleCount = 0;
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Constructor(s)">
+
+   /**
+    * Creates a source for trackers that timestamp in microseconds, as iViewX
+    * does.
+    */
+   public PredictiveGazeSource()
+   {
+      this(TimeUnit.MICROSECONDS);
+   }
+
+   /**
+    * @param trackerTimeUnit Unit of the samples' tracker timestamps.
+    */
+   public PredictiveGazeSource(TimeUnit trackerTimeUnit)
+   {
+      mTrackerTimeUnit = trackerTimeUnit;
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Working Functions">
+
+   /**
+    * Adds a sample. The sample is copied, so it can be reused straight away.
+    * A sample whose tracker timestamp goes backwards starts the history
+    * afresh, as after the tracker is restarted.
+    *
+    * @param sample The new sample.
+    */
+   public void addSample(GazeSample sample)
+   {
+      if (sample.getX() == 0 && sample.getY() == 0)
+      {
+         return;
+      }
+
+      long receiveNanos = sample.getReceiveNanos() != 0 ? sample.getReceiveNanos() : System.nanoTime();
+      long trackerNanos = sample.getTrackerTimestamp() != 0
+                          ? mTrackerTimeUnit.toNanos(sample.getTrackerTimestamp())
+                          : receiveNanos;
+
+      synchronized (this)
+      {
+         if (mCount > 0 && trackerNanos < mTimes[mNewest])
+         {
+            mCount = 0;
+         }
+
+         mNewest = (mNewest + 1) % HISTORY_SIZE;
+         mTimes[mNewest] = trackerNanos;
+         mX[mNewest] = sample.getX();
+         mY[mNewest] = sample.getY();
+         mClockOffsets[mNewest] = receiveNanos - trackerNanos;
+         mCount = Math.min(mCount + 1, HISTORY_SIZE);
+
+         mLatest.copyFrom(sample);
+         mSampleCount++;
+      }
+   }
+
+   /**
+    * Predicts the gaze position at a given time.
+    *
+    * @param displayNanos {@link System#nanoTime()} at which the prediction
+    * will be seen, usually when the frame being drawn reaches the screen.
+    * @param destination Receives a copy of the latest sample, with its
+    * combined position moved to the predicted one.
+    *
+    * @return False if there has not been a sample yet, in which case the
+    * destination is left untouched.
+    */
+   public synchronized boolean predict(long displayNanos, GazeSample destination)
+   {
+      if (mCount == 0)
+      {
+         return false;
+      }
+
+      destination.copyFrom(mLatest);
+
+      long newestTime = mTimes[mNewest];
+      long horizon = displayNanos - (newestTime + clockOffset());
+      if (horizon <= 0 || horizon > 2 * mMaxPredictionNanos)
+      {
+         return true;
+      }
+      horizon = Math.min(horizon, mMaxPredictionNanos);
+
+      // Least-squares slope of each axis against time, in seconds before the
+      // newest sample
+      double n = 0;
+      double sumT = 0;
+      double sumTT = 0;
+      double sumX = 0;
+      double sumY = 0;
+      double sumTX = 0;
+      double sumTY = 0;
+      for (int i = 0, slot = mNewest; i < mCount; i++, slot = (slot + HISTORY_SIZE - 1) % HISTORY_SIZE)
+      {
+         long age = newestTime - mTimes[slot];
+         if (age > mVelocityWindowNanos)
+         {
+            break;
+         }
+
+         double t = -age / 1.0e9;
+         n++;
+         sumT += t;
+         sumTT += t * t;
+         sumX += mX[slot];
+         sumY += mY[slot];
+         sumTX += t * mX[slot];
+         sumTY += t * mY[slot];
+      }
+
+      double denominator = n * sumTT - sumT * sumT;
+      if (n < 2 || denominator <= 0)
+      {
+         return true;
+      }
+
+      double velocityX = (n * sumTX - sumT * sumX) / denominator;
+      double velocityY = (n * sumTY - sumT * sumY) / denominator;
+      if (Math.hypot(velocityX, velocityY) < mMinSpeed)
+      {
+         return true;
+      }
+
+      double seconds = horizon / 1.0e9;
+      destination.setPosition((int) Math.round(mX[mNewest] + velocityX * seconds),
+                              (int) Math.round(mY[mNewest] + velocityY * seconds));
+      return true;
+   }
+
+   /**
+    * Forgets every sample.
+    */
+   public synchronized void reset()
+   {
+      mCount = 0;
+      mNewest = -1;
+   }
+
+   /*
+    * Difference between System.nanoTime() and tracker time, taken from the
+    * least delayed of the recent samples.
+    */
+   private long clockOffset()
+   {
+      long offset = Long.MAX_VALUE;
+      for (int i = 0, slot = mNewest; i < mCount; i++, slot = (slot + HISTORY_SIZE - 1) % HISTORY_SIZE)
+      {
+         offset = Math.min(offset, mClockOffsets[slot]);
+      }
+      return offset;
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Public Properties">
+
+   /**
+    * @return Number of samples added so far. A render loop can compare this
+    * with the count at its last frame to see whether anything new has
+    * arrived.
+    */
+   public long getSampleCount()
+   {
+      return mSampleCount;
+   }
+
+   public synchronized long getVelocityWindowMillis()
+   {
+      return TimeUnit.NANOSECONDS.toMillis(mVelocityWindowNanos);
+   }
+
+   /**
+    * @param velocityWindowMillis Span of tracker time the velocity is fitted
+    * over. Longer windows are steadier but slower to follow a change of
+    * direction.
+    */
+   public synchronized void setVelocityWindowMillis(long velocityWindowMillis)
+   {
+      mVelocityWindowNanos = TimeUnit.MILLISECONDS.toNanos(velocityWindowMillis);
+   }
+
+   public synchronized long getMaxPredictionMillis()
+   {
+      return TimeUnit.NANOSECONDS.toMillis(mMaxPredictionNanos);
+   }
+
+   /**
+    * @param maxPredictionMillis Furthest a sample is extrapolated, or zero to
+    * never extrapolate.
+    */
+   public synchronized void setMaxPredictionMillis(long maxPredictionMillis)
+   {
+      mMaxPredictionNanos = TimeUnit.MILLISECONDS.toNanos(maxPredictionMillis);
+   }
+
+   public synchronized double getMinSpeed()
+   {
+      return mMinSpeed;
+   }
+
+   /**
+    * @param minSpeed Speed, in pixels per second, below which samples are
+    * not extrapolated.
+    */
+   public synchronized void setMinSpeed(double minSpeed)
+   {
+      mMinSpeed = minSpeed;
+   }
+
+   // </editor-fold>
+}
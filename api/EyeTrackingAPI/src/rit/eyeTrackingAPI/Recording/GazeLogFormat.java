@@ -0,0 +1,115 @@
+package rit.eyeTrackingAPI.Recording;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import rit.eyeTrackingAPI.DataConstructs.GazeSample;
+
+/**
+ * Layout of a binary gaze log, as written by {@link GazeLogWriter} and read by
+ * {@link GazeLogReader}. All values are little-endian.
+ *
+ * The file starts with a fixed {@value #HEADER_SIZE} byte header:
+ *
+ *    offset  size  field
+ *         0     8  magic, "GAZELOG" followed by a zero byte
+ *         8     2  format version
+ *        10     2  header size
+ *        12     4  record size
+ *        16     4  nominal sample rate in Hz, or zero if unknown
+ *        20     4  records per index block
+ *        24     8  creation time, milliseconds since the epoch
+ *        32     8  record count
+ *        40     8  offset of the block index, or zero if the log was not
+ *                  closed cleanly
+ *        48    16  reserved
+ *
+ * It is followed by the records, each {@value #RECORD_SIZE} bytes:
+ *
+ *    offset  size  field
+ *         0     8  receive time, System.nanoTime() of the recording machine
+ *         8     8  tracker timestamp
+ *        16     4  x
+ *        20     4  y
+ *        24     4  left eye x
+ *        28     4  left eye y
+ *        32     4  right eye x
+ *        36     4  right eye y
+ *        40     2  eye type, a {@link rit.eyeTrackingAPI.DataConstructs.GazeSample}
+ *                  EYE_ constant
+ *        42     2  flags, see FLAG_
+ *        44     4  reserved
+ *
+ * and then by the block index: the receive time of the first record of every
+ * block of {@value #INDEX_BLOCK_RECORDS} records, as one long per block. The
+ * index lets a reader find a point in time without touching the records in
+ * between. A log whose writer did not close it still has a valid header
+ * record count up to the last completed block, and no index.
+ *
+ * @author Mark Hazlewood
+ */
+final class GazeLogFormat
+{
+   static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+
+   static final byte[] MAGIC = "GAZELOG\0".getBytes(StandardCharsets.US_ASCII);
+   static final short VERSION = 1;
+
+   static final int HEADER_SIZE = 64;
+   static final int RECORD_SIZE = 48;
+   static final int INDEX_BLOCK_RECORDS = 4096;
+
+   // Header field offsets
+   static final int HEADER_VERSION = 8;
+   static final int HEADER_HEADER_SIZE = 10;
+   static final int HEADER_RECORD_SIZE = 12;
+   static final int HEADER_SAMPLE_RATE = 16;
+   static final int HEADER_INDEX_BLOCK_RECORDS = 20;
+   static final int HEADER_CREATED_MILLIS = 24;
+   static final int HEADER_RECORD_COUNT = 32;
+   static final int HEADER_INDEX_OFFSET = 40;
+
+   // Record field offsets
+   static final int RECORD_RECEIVE_NANOS = 0;
+   static final int RECORD_TRACKER_TIMESTAMP = 8;
+   static final int RECORD_X = 16;
+   static final int RECORD_Y = 20;
+   static final int RECORD_LEFT_X = 24;
+   static final int RECORD_LEFT_Y = 28;
+   static final int RECORD_RIGHT_X = 32;
+   static final int RECORD_RIGHT_Y = 36;
+   static final int RECORD_EYE_TYPE = 40;
+   static final int RECORD_FLAGS = 42;
+   static final int RECORD_RESERVED = 44;
+
+   /**
+    * Set on records for which the tracker lost the eyes and reported (0, 0).
+    */
+   static final short FLAG_LOST = 0x0001;
+
+   private GazeLogFormat()
+   {
+   }
+
+   /**
+    * Encodes a sample as a record.
+    *
+    * @param buffer Buffer to write into, in {@link #BYTE_ORDER}.
+    * @param offset Position of the record in the buffer.
+    * @param sample The sample.
+    */
+   static void writeRecord(ByteBuffer buffer, int offset, GazeSample sample)
+   {
+      buffer.putLong(offset + RECORD_RECEIVE_NANOS, sample.getReceiveNanos());
+      buffer.putLong(offset + RECORD_TRACKER_TIMESTAMP, sample.getTrackerTimestamp());
+      buffer.putInt(offset + RECORD_X, sample.getX());
+      buffer.putInt(offset + RECORD_Y, sample.getY());
+      buffer.putInt(offset + RECORD_LEFT_X, sample.getLeftX());
+      buffer.putInt(offset + RECORD_LEFT_Y, sample.getLeftY());
+      buffer.putInt(offset + RECORD_RIGHT_X, sample.getRightX());
+      buffer.putInt(offset + RECORD_RIGHT_Y, sample.getRightY());
+      buffer.putShort(offset + RECORD_EYE_TYPE, (short) sample.getEyeType());
+      buffer.putShort(offset + RECORD_FLAGS, (sample.getX() == 0 && sample.getY() == 0) ? FLAG_LOST : 0);
+      buffer.putInt(offset + RECORD_RESERVED, 0);
+   }
+}
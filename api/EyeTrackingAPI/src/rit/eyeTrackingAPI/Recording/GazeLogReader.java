@@ -0,0 +1,354 @@
+package rit.eyeTrackingAPI.Recording;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import rit.eyeTrackingAPI.DataConstructs.GazeSample;
+
+import static rit.eyeTrackingAPI.Recording.GazeLogFormat.*;
+
+/**
+ * Reads a binary gaze log written by {@link GazeLogWriter}.
+ *
+ * The whole log is memory-mapped when it is opened and nothing is parsed up
+ * front, so opening even an hour-long log is immediate and its records are
+ * only paged in as they are read. Records are read in place by index, either
+ * field by field or into a reusable {@link GazeSample}, so reading never
+ * allocates either.
+ *
+ * A reader may be shared by several threads.
+ *
+ * @author Mark Hazlewood
+ *
+ * @see GazeLogWriter
+ */
+public class GazeLogReader implements Closeable
+{
+   // <editor-fold defaultstate="expanded" desc="Constants">
+
+   /*
+    * Records per mapped segment; a single mapping is limited to 2 GB.
+    */
+   private static final int SEGMENT_SHIFT = 24;
+   private static final int SEGMENT_RECORDS = 1 << SEGMENT_SHIFT;
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Private Members">
+
+   private final FileChannel mChannel;
+   private final ByteBuffer[] mSegments;
+   private final long mRecordCount;
+   private final int mSampleRate;
+   private final long mCreatedMillis;
+   private final long[] mBlockStartNanos;
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Constructor(s)">
+
+   /**
+    * Opens a log.
+    *
+    * @param path File to read.
+    *
+    * @throws IOException If the file could not be read or is not a gaze log
+    * of a supported version.
+    */
+   public GazeLogReader(Path path) throws IOException
+   {
+      mChannel = FileChannel.open(path, StandardOpenOption.READ);
+
+      try
+      {
+         ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(BYTE_ORDER);
+         if (!readFully(header, 0))
+         {
+            throw new IOException(path + " is not a gaze log");
+         }
+         checkHeader(header, path);
+
+         mSampleRate = header.getInt(HEADER_SAMPLE_RATE);
+         mCreatedMillis = header.getLong(HEADER_CREATED_MILLIS);
+         long indexOffset = header.getLong(HEADER_INDEX_OFFSET);
+
+         // Never trust the count beyond what the file actually holds
+         long recordsInFile = (mChannel.size() - HEADER_SIZE) / RECORD_SIZE;
+         mRecordCount = Math.min(header.getLong(HEADER_RECORD_COUNT), recordsInFile);
+
+         mSegments = mapSegments();
+         mBlockStartNanos = (indexOffset != 0) ? readIndex(indexOffset) : buildIndex();
+      }
+      catch (IOException | RuntimeException ex)
+      {
+         mChannel.close();
+         throw ex;
+      }
+   }
+
+   private static void checkHeader(ByteBuffer header, Path path) throws IOException
+   {
+      byte[] magic = new byte[MAGIC.length];
+      for (int i = 0; i < magic.length; i++)
+      {
+         magic[i] = header.get(i);
+      }
+
+      if (!Arrays.equals(magic, MAGIC))
+      {
+         throw new IOException(path + " is not a gaze log");
+      }
+      if (header.getShort(HEADER_VERSION) != VERSION)
+      {
+         throw new IOException(path + " is a version " + header.getShort(HEADER_VERSION) + " gaze log, only version " + VERSION + " is supported");
+      }
+      if (header.getShort(HEADER_HEADER_SIZE) != HEADER_SIZE
+          || header.getInt(HEADER_RECORD_SIZE) != RECORD_SIZE
+          || header.getInt(HEADER_INDEX_BLOCK_RECORDS) != INDEX_BLOCK_RECORDS)
+      {
+         throw new IOException(path + " has an unexpected gaze log layout");
+      }
+   }
+
+   private ByteBuffer[] mapSegments() throws IOException
+   {
+      int segmentCount = (int) ((mRecordCount + SEGMENT_RECORDS - 1) >>> SEGMENT_SHIFT);
+      ByteBuffer[] segments = new ByteBuffer[segmentCount];
+
+      for (int i = 0; i < segmentCount; i++)
+      {
+         long firstRecord = (long) i << SEGMENT_SHIFT;
+         long records = Math.min(SEGMENT_RECORDS, mRecordCount - firstRecord);
+
+         MappedByteBuffer segment = mChannel.map(FileChannel.MapMode.READ_ONLY,
+                                                 HEADER_SIZE + firstRecord * RECORD_SIZE,
+                                                 records * RECORD_SIZE);
+         segment.order(BYTE_ORDER);
+         segments[i] = segment;
+      }
+
+      return segments;
+   }
+
+   private long[] readIndex(long indexOffset) throws IOException
+   {
+      int blocks = blockCount();
+      ByteBuffer index = ByteBuffer.allocate(blocks * 8).order(BYTE_ORDER);
+      if (!readFully(index, indexOffset))
+      {
+         // Index cut short; the records are all that matter
+         return buildIndex();
+      }
+      index.flip();
+
+      long[] blockStartNanos = new long[blocks];
+      index.asLongBuffer().get(blockStartNanos);
+      return blockStartNanos;
+   }
+
+   /*
+    * Fills the buffer from the given file position. Returns false if the file
+    * ends first.
+    */
+   private boolean readFully(ByteBuffer buffer, long position) throws IOException
+   {
+      while (buffer.hasRemaining())
+      {
+         if (mChannel.read(buffer, position + buffer.position()) < 0)
+         {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   /*
+    * Rebuilds the index of a log that was not closed, from the first record
+    * of every block.
+    */
+   private long[] buildIndex()
+   {
+      long[] blockStartNanos = new long[blockCount()];
+      for (int i = 0; i < blockStartNanos.length; i++)
+      {
+         blockStartNanos[i] = getReceiveNanos((long) i * INDEX_BLOCK_RECORDS);
+      }
+      return blockStartNanos;
+   }
+
+   private int blockCount()
+   {
+      return (int) ((mRecordCount + INDEX_BLOCK_RECORDS - 1) / INDEX_BLOCK_RECORDS);
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Working Functions">
+
+   /**
+    * Reads a record into a sample. Every field of the sample is overwritten;
+    * the parsed and filtered stamps are cleared.
+    *
+    * @param index Index of the record, from zero.
+    * @param destination Sample to fill in.
+    */
+   public void read(long index, GazeSample destination)
+   {
+      ByteBuffer segment = segment(index);
+      int offset = offset(index);
+
+      destination.setBinocular(segment.getInt(offset + RECORD_LEFT_X),
+                               segment.getInt(offset + RECORD_LEFT_Y),
+                               segment.getInt(offset + RECORD_RIGHT_X),
+                               segment.getInt(offset + RECORD_RIGHT_Y));
+      destination.setPosition(segment.getInt(offset + RECORD_X), segment.getInt(offset + RECORD_Y));
+      destination.setEyeType((char) segment.getShort(offset + RECORD_EYE_TYPE));
+      destination.setTrackerTimestamp(segment.getLong(offset + RECORD_TRACKER_TIMESTAMP));
+      destination.setReceiveNanos(segment.getLong(offset + RECORD_RECEIVE_NANOS));
+      destination.setParsedNanos(0);
+      destination.setFilteredNanos(0);
+   }
+
+   public long getReceiveNanos(long index)
+   {
+      return segment(index).getLong(offset(index) + RECORD_RECEIVE_NANOS);
+   }
+
+   public long getTrackerTimestamp(long index)
+   {
+      return segment(index).getLong(offset(index) + RECORD_TRACKER_TIMESTAMP);
+   }
+
+   public int getX(long index)
+   {
+      return segment(index).getInt(offset(index) + RECORD_X);
+   }
+
+   public int getY(long index)
+   {
+      return segment(index).getInt(offset(index) + RECORD_Y);
+   }
+
+   /**
+    * @return True if the tracker had lost the eyes for this record.
+    */
+   public boolean isLost(long index)
+   {
+      return (segment(index).getShort(offset(index) + RECORD_FLAGS) & FLAG_LOST) != 0;
+   }
+
+   /**
+    * Finds the first record received at or after a given time. The block
+    * index narrows the search down to one block, so only a few records are
+    * touched.
+    *
+    * @param receiveNanos Time to look for, on the recording machine's
+    * System.nanoTime() clock.
+    *
+    * @return Index of the record, or the record count if every record is
+    * older.
+    */
+   public long indexOfTime(long receiveNanos)
+   {
+      if (mRecordCount == 0)
+      {
+         return 0;
+      }
+
+      // Last block starting at or before the time
+      int block = Arrays.binarySearch(mBlockStartNanos, receiveNanos);
+      if (block < 0)
+      {
+         block = Math.max(0, -block - 2);
+      }
+      while (block > 0 && mBlockStartNanos[block - 1] == receiveNanos)
+      {
+         block--;
+      }
+
+      long low = (long) block * INDEX_BLOCK_RECORDS;
+      long high = Math.min(low + INDEX_BLOCK_RECORDS, mRecordCount);
+      while (low < high)
+      {
+         long middle = (low + high) >>> 1;
+         if (getReceiveNanos(middle) < receiveNanos)
+         {
+            low = middle + 1;
+         }
+         else
+         {
+            high = middle;
+         }
+      }
+
+      return low;
+   }
+
+   private ByteBuffer segment(long index)
+   {
+      if (index < 0 || index >= mRecordCount)
+      {
+         throw new IndexOutOfBoundsException("Record " + index + " of " + mRecordCount);
+      }
+      return mSegments[(int) (index >>> SEGMENT_SHIFT)];
+   }
+
+   private static int offset(long index)
+   {
+      return (int) (index & (SEGMENT_RECORDS - 1)) * RECORD_SIZE;
+   }
+
+   @Override
+   public void close() throws IOException
+   {
+      mChannel.close();
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Properties">
+
+   public long getRecordCount()
+   {
+      return mRecordCount;
+   }
+
+   /**
+    * @return Nominal sample rate of the tracker in Hz, or zero if unknown.
+    */
+   public int getSampleRate()
+   {
+      return mSampleRate;
+   }
+
+   /**
+    * @return When the log was created, in milliseconds since the epoch.
+    */
+   public long getCreatedMillis()
+   {
+      return mCreatedMillis;
+   }
+
+   /**
+    * @return Receive time of the first record, or zero if there is none.
+    */
+   public long getStartNanos()
+   {
+      return (mRecordCount > 0) ? getReceiveNanos(0) : 0;
+   }
+
+   /**
+    * @return Receive time of the last record, or zero if there is none.
+    */
+   public long getEndNanos()
+   {
+      return (mRecordCount > 0) ? getReceiveNanos(mRecordCount - 1) : 0;
+   }
+
+   // </editor-fold>
+}
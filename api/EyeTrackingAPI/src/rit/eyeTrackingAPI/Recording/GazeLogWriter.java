@@ -0,0 +1,296 @@
+package rit.eyeTrackingAPI.Recording;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import rit.eyeTrackingAPI.DataConstructs.GazeSample;
+
+import static rit.eyeTrackingAPI.Recording.GazeLogFormat.*;
+
+/**
+ * Appends gaze samples to a binary gaze log (see {@link GazeLogFormat} for
+ * the layout).
+ *
+ * Records are written straight into a memory-mapped window of the file, which
+ * is moved along as it fills, so appending a sample is a handful of stores
+ * into the page cache: no allocation, no system call and no heap that grows
+ * with the length of the session. The header's record count is brought up to
+ * date every index block, so everything up to the last completed block can be
+ * read back even if the writer never gets to close the log.
+ *
+ * A writer is not thread-safe and should be fed from one thread, such as a
+ * recorder's flush thread.
+ *
+ * @author Mark Hazlewood
+ *
+ * @see GazeLogReader
+ */
+public class GazeLogWriter implements Closeable
+{
+   // <editor-fold defaultstate="expanded" desc="Constants">
+
+   /*
+    * Records per mapped window. Also the most padding a log can be left with
+    * if the file cannot be truncated on close.
+    */
+   private static final int WINDOW_RECORDS = 4 * INDEX_BLOCK_RECORDS;
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Private Members">
+
+   private final FileChannel mChannel;
+   private final MappedByteBuffer mHeader;
+
+   private MappedByteBuffer mWindow = null;
+   private long mWindowFirstRecord = 0;
+
+   private long mRecordCount = 0;
+   private long[] mBlockStartNanos = new long[64];
+   private boolean mClosed = false;
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Constructor(s)">
+
+   /**
+    * Creates a new log, replacing any file already at the path.
+    *
+    * @param path File to write.
+    * @param sampleRate Nominal sample rate of the tracker in Hz, or zero if
+    * unknown. Only stored for readers.
+    *
+    * @throws IOException If the file could not be created.
+    */
+   public GazeLogWriter(Path path, int sampleRate) throws IOException
+   {
+      mChannel = FileChannel.open(path,
+                                  StandardOpenOption.CREATE,
+                                  StandardOpenOption.TRUNCATE_EXISTING,
+                                  StandardOpenOption.READ,
+                                  StandardOpenOption.WRITE);
+
+      try
+      {
+         mHeader = mChannel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+      }
+      catch (IOException ex)
+      {
+         mChannel.close();
+         throw ex;
+      }
+
+      mHeader.order(BYTE_ORDER);
+      mHeader.put(MAGIC);
+      mHeader.putShort(HEADER_VERSION, VERSION);
+      mHeader.putShort(HEADER_HEADER_SIZE, (short) HEADER_SIZE);
+      mHeader.putInt(HEADER_RECORD_SIZE, RECORD_SIZE);
+      mHeader.putInt(HEADER_SAMPLE_RATE, sampleRate);
+      mHeader.putInt(HEADER_INDEX_BLOCK_RECORDS, INDEX_BLOCK_RECORDS);
+      mHeader.putLong(HEADER_CREATED_MILLIS, System.currentTimeMillis());
+      mHeader.putLong(HEADER_RECORD_COUNT, 0);
+      mHeader.putLong(HEADER_INDEX_OFFSET, 0);
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Working Functions">
+
+   /**
+    * Appends a sample to the log.
+    *
+    * @param sample The sample. Its receive stamp is the record's time.
+    *
+    * @throws IOException If the file could not be extended.
+    */
+   public void append(GazeSample sample) throws IOException
+   {
+      if (mClosed)
+      {
+         throw new IOException("Gaze log has been closed");
+      }
+
+      int offset = (int) (mRecordCount - mWindowFirstRecord) * RECORD_SIZE;
+      if (mWindow == null || offset >= mWindow.capacity())
+      {
+         mapNextWindow();
+         offset = 0;
+      }
+
+      writeRecord(mWindow, offset, sample);
+
+      if (mRecordCount % INDEX_BLOCK_RECORDS == 0)
+      {
+         startBlock(mRecordCount, sample.getReceiveNanos());
+      }
+
+      mRecordCount++;
+   }
+
+   /**
+    * Appends records that were already encoded, such as a batch collected by
+    * a {@link SessionRecorder}, in bulk.
+    *
+    * @param records Whole records between position and limit, in the log's
+    * byte order. Consumed by the call.
+    *
+    * @throws IOException If the file could not be extended.
+    */
+   void appendRecords(ByteBuffer records) throws IOException
+   {
+      if (mClosed)
+      {
+         throw new IOException("Gaze log has been closed");
+      }
+
+      while (records.remaining() >= RECORD_SIZE)
+      {
+         int offset = (int) (mRecordCount - mWindowFirstRecord) * RECORD_SIZE;
+         if (mWindow == null || offset >= mWindow.capacity())
+         {
+            mapNextWindow();
+            offset = 0;
+         }
+
+         int count = Math.min((mWindow.capacity() - offset) / RECORD_SIZE, records.remaining() / RECORD_SIZE);
+         int start = records.position();
+
+         ByteBuffer chunk = records.duplicate();
+         chunk.limit(start + count * RECORD_SIZE);
+         mWindow.position(offset);
+         mWindow.put(chunk);
+
+         // Index every block that starts within the chunk
+         long firstBlockRecord = ((mRecordCount + INDEX_BLOCK_RECORDS - 1) / INDEX_BLOCK_RECORDS) * INDEX_BLOCK_RECORDS;
+         for (long record = firstBlockRecord; record < mRecordCount + count; record += INDEX_BLOCK_RECORDS)
+         {
+            int recordOffset = start + (int) (record - mRecordCount) * RECORD_SIZE;
+            startBlock(record, records.getLong(recordOffset + RECORD_RECEIVE_NANOS));
+         }
+
+         records.position(start + count * RECORD_SIZE);
+         mRecordCount += count;
+      }
+   }
+
+   private void mapNextWindow() throws IOException
+   {
+      mWindowFirstRecord = mRecordCount;
+      long position = HEADER_SIZE + mWindowFirstRecord * RECORD_SIZE;
+
+      mWindow = mChannel.map(FileChannel.MapMode.READ_WRITE, position, (long) WINDOW_RECORDS * RECORD_SIZE);
+      mWindow.order(BYTE_ORDER);
+   }
+
+   /*
+    * Records the index entry of the block starting at the given record and
+    * publishes the count of the records before it, all of which are complete.
+    */
+   private void startBlock(long firstRecord, long firstReceiveNanos)
+   {
+      int block = (int) (firstRecord / INDEX_BLOCK_RECORDS);
+      if (block == mBlockStartNanos.length)
+      {
+         long[] grown = new long[block * 2];
+         System.arraycopy(mBlockStartNanos, 0, grown, 0, block);
+         mBlockStartNanos = grown;
+      }
+      mBlockStartNanos[block] = firstReceiveNanos;
+
+      mHeader.putLong(HEADER_RECORD_COUNT, firstRecord);
+   }
+
+   /**
+    * Brings the header up to date with every record appended so far and
+    * forces the log to disk.
+    */
+   public void flush()
+   {
+      if (mClosed)
+      {
+         return;
+      }
+
+      if (mWindow != null)
+      {
+         mWindow.force();
+      }
+
+      mHeader.putLong(HEADER_RECORD_COUNT, mRecordCount);
+      mHeader.force();
+   }
+
+   /**
+    * Writes the block index, completes the header and closes the file.
+    * Appending is not possible afterwards.
+    *
+    * @throws IOException If the index could not be written.
+    */
+   @Override
+   public void close() throws IOException
+   {
+      if (mClosed)
+      {
+         return;
+      }
+
+      try
+      {
+         flush();
+         mClosed = true;
+
+         long indexOffset = HEADER_SIZE + mRecordCount * RECORD_SIZE;
+         int blocks = (int) ((mRecordCount + INDEX_BLOCK_RECORDS - 1) / INDEX_BLOCK_RECORDS);
+
+         ByteBuffer index = ByteBuffer.allocate(blocks * 8).order(BYTE_ORDER);
+         index.asLongBuffer().put(mBlockStartNanos, 0, blocks);
+         while (index.hasRemaining())
+         {
+            mChannel.write(index, indexOffset + index.position());
+         }
+
+         mHeader.putLong(HEADER_INDEX_OFFSET, indexOffset);
+         mHeader.force();
+
+         mWindow = null;
+         truncate(indexOffset + blocks * 8L);
+      }
+      finally
+      {
+         mClosed = true;
+         mChannel.close();
+      }
+   }
+
+   /*
+    * Removes the unused end of the last mapped window. Some platforms refuse
+    * to truncate a file that is still mapped; the padding is then left in
+    * place, where readers ignore it.
+    */
+   private void truncate(long size)
+   {
+      try
+      {
+         mChannel.truncate(size);
+      }
+      catch (IOException ex)
+      {
+         System.err.println("Could not trim the end of the gaze log: " + ex.getMessage());
+      }
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Properties">
+
+   public long getRecordCount()
+   {
+      return mRecordCount;
+   }
+
+   // </editor-fold>
+}
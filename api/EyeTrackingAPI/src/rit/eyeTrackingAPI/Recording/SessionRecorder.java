@@ -0,0 +1,569 @@
+package rit.eyeTrackingAPI.Recording;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import rit.eyeTrackingAPI.ApplicationUtilities.GazeSampleSubscriber;
+import rit.eyeTrackingAPI.DataConstructs.GazeSample;
+import rit.eyeTrackingAPI.EventDetection.GazeEvent;
+import rit.eyeTrackingAPI.EventDetection.GazeEventListener;
+
+/**
+ * Records a session: every gaze sample to a binary gaze log (see
+ * {@link GazeLogWriter}), and detected gaze events and task markers to a
+ * text file next to it.
+ *
+ * Recording never waits on the disk. Samples are encoded into one of two
+ * direct buffers; when that buffer fills up, or the flush interval passes,
+ * the buffers are swapped and a background thread writes out the full one and
+ * forces it to disk in one go, while new samples go into the other. Should
+ * the disk stall for so long that both buffers fill up, further samples are
+ * dropped and counted rather than holding up the thread recording them.
+ * Events and markers are queued in the same way and written with the next
+ * batch.
+ *
+ * A recorder is a {@link GazeSampleSubscriber} and a
+ * {@link GazeEventListener}, so it can subscribe to a
+ * {@link rit.eyeTrackingAPI.ApplicationUtilities.GazeEventBus} or be fed
+ * directly. Samples may be recorded from any thread.
+ *
+ * The events file has one comma separated line per entry, all times on the
+ * recording machine's System.nanoTime() clock like the samples':
+ *
+ *    MARK,time,label
+ *    type,start time,end time,x,y,start x,start y,peak velocity,sample count
+ *
+ * @author Mark Hazlewood
+ *
+ * @see GazeLogReader
+ */
+public class SessionRecorder implements GazeSampleSubscriber, GazeEventListener, Closeable
+{
+   // <editor-fold defaultstate="expanded" desc="Constants">
+
+   /**
+    * Default number of samples written per batch; about two seconds at
+    * 500 Hz.
+    */
+   public static final int DEFAULT_BATCH_SAMPLES = 1024;
+
+   /**
+    * Default longest time, in milliseconds, a sample waits before being
+    * written.
+    */
+   public static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 250;
+
+   /**
+    * Default number of events and markers that can be waiting to be written.
+    */
+   public static final int DEFAULT_EVENT_CAPACITY = 1024;
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Private Members">
+
+   private final GazeLogWriter mLogWriter;
+   private final BufferedWriter mEventWriter;
+   private final Path mEventPath;
+   private final long mFlushIntervalNanos;
+   private final int mEventCapacity;
+   private final Thread mFlushThread;
+
+   // Buffer state, guarded by mLock
+   private final Object mLock = new Object();
+   private ByteBuffer mActive;
+   private ByteBuffer mSpare;
+   private ByteBuffer mFull = null;
+   private List<Object> mQueuedEntries = new ArrayList<>();
+   private boolean mFlushRequested = false;
+   private boolean mClosing = false;
+
+   private volatile long mAcceptedSamples = 0;
+   private volatile long mWrittenSamples = 0;
+   private volatile long mDroppedSamples = 0;
+   private volatile long mDroppedEntries = 0;
+   private volatile long mBatchCount = 0;
+   private volatile IOException mFailure = null;
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Task Markers">
+
+   private static final class Marker
+   {
+      final long mNanos;
+      final String mLabel;
+
+      Marker(long nanos, String label)
+      {
+         mNanos = nanos;
+         mLabel = label;
+      }
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Constructor(s)">
+
+   /**
+    * Starts recording with the default batch size and flush interval.
+    *
+    * @param logPath Gaze log to create. Events are written next to it, see
+    * {@link #getEventPath()}.
+    * @param sampleRate Nominal sample rate of the tracker in Hz, or zero if
+    * unknown.
+    *
+    * @throws IOException If the files could not be created.
+    */
+   public SessionRecorder(Path logPath, int sampleRate) throws IOException
+   {
+      this(logPath, sampleRate, DEFAULT_BATCH_SAMPLES, DEFAULT_FLUSH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+   }
+
+   /**
+    * Starts recording.
+    *
+    * @param logPath Gaze log to create. Events are written next to it, see
+    * {@link #getEventPath()}.
+    * @param sampleRate Nominal sample rate of the tracker in Hz, or zero if
+    * unknown.
+    * @param batchSamples Samples per buffer. A batch is written as soon as a
+    * buffer is full.
+    * @param flushInterval Longest time a sample waits before being written.
+    * @param unit Unit of the flush interval.
+    *
+    * @throws IOException If the files could not be created.
+    */
+   public SessionRecorder(Path logPath, int sampleRate, int batchSamples, long flushInterval, TimeUnit unit) throws IOException
+   {
+      if (batchSamples < 1)
+      {
+         throw new IllegalArgumentException("A batch must hold at least one sample");
+      }
+
+      mEventPath = eventPathFor(logPath);
+      mFlushIntervalNanos = unit.toNanos(flushInterval);
+      mEventCapacity = DEFAULT_EVENT_CAPACITY;
+
+      mActive = ByteBuffer.allocateDirect(batchSamples * GazeLogFormat.RECORD_SIZE).order(GazeLogFormat.BYTE_ORDER);
+      mSpare = ByteBuffer.allocateDirect(batchSamples * GazeLogFormat.RECORD_SIZE).order(GazeLogFormat.BYTE_ORDER);
+
+      mLogWriter = new GazeLogWriter(logPath, sampleRate);
+      try
+      {
+         mEventWriter = Files.newBufferedWriter(mEventPath, StandardCharsets.UTF_8);
+      }
+      catch (IOException ex)
+      {
+         mLogWriter.close();
+         throw ex;
+      }
+
+      mFlushThread = new Thread(new Runnable()
+      {
+         @Override
+         public void run()
+         {
+            flushLoop();
+         }
+      }, "Session Recorder");
+      mFlushThread.setDaemon(true);
+      mFlushThread.start();
+   }
+
+   /**
+    * Gives the events file that goes with a gaze log: "session.gazelog"
+    * records its events in "session.events.csv".
+    *
+    * @param logPath The gaze log.
+    *
+    * @return Path of its events file, which may not exist.
+    */
+   public static Path eventPathFor(Path logPath)
+   {
+      String name = logPath.getFileName().toString();
+      int extension = name.lastIndexOf('.');
+      if (extension > 0)
+      {
+         name = name.substring(0, extension);
+      }
+      return logPath.resolveSibling(name + ".events.csv");
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Recording">
+
+   /**
+    * Queues a sample to be written. Never blocks on the disk and never
+    * allocates.
+    *
+    * @param sample The sample, copied. Its receive stamp is its time in the
+    * log.
+    */
+   public void record(GazeSample sample)
+   {
+      synchronized (mLock)
+      {
+         if (mClosing)
+         {
+            return;
+         }
+
+         if (mActive.remaining() < GazeLogFormat.RECORD_SIZE)
+         {
+            if (mSpare == null)
+            {
+               // Both buffers are full, the disk is not keeping up
+               mDroppedSamples++;
+               return;
+            }
+
+            swapBuffers();
+            mLock.notifyAll();
+         }
+
+         GazeLogFormat.writeRecord(mActive, mActive.position(), sample);
+         mActive.position(mActive.position() + GazeLogFormat.RECORD_SIZE);
+         mAcceptedSamples++;
+      }
+   }
+
+   @Override
+   public void sampleReceived(GazeSample sample)
+   {
+      record(sample);
+   }
+
+   /**
+    * Queues a gaze event to be written.
+    */
+   @Override
+   public void gazeEventDetected(GazeEvent event)
+   {
+      queueEntry(event);
+   }
+
+   /**
+    * Queues a task marker, such as the start or end of a task, stamped with
+    * the current time.
+    *
+    * @param label Text of the marker. Commas and line breaks are replaced.
+    */
+   public void mark(String label)
+   {
+      queueEntry(new Marker(System.nanoTime(), label.replaceAll("[,\\r\\n]", " ")));
+   }
+
+   private void queueEntry(Object entry)
+   {
+      synchronized (mLock)
+      {
+         if (mClosing)
+         {
+            return;
+         }
+
+         if (mQueuedEntries.size() >= mEventCapacity)
+         {
+            mDroppedEntries++;
+            return;
+         }
+
+         mQueuedEntries.add(entry);
+      }
+   }
+
+   /**
+    * Asks for everything queued so far to be written now rather than at the
+    * next interval. Does not wait for it.
+    */
+   public void flush()
+   {
+      synchronized (mLock)
+      {
+         mFlushRequested = true;
+         mLock.notifyAll();
+      }
+   }
+
+   /**
+    * Writes everything still queued, then closes both files. Samples
+    * recorded afterwards are ignored.
+    *
+    * @throws IOException If writing failed at any point during the session.
+    */
+   @Override
+   public void close() throws IOException
+   {
+      synchronized (mLock)
+      {
+         mClosing = true;
+         mLock.notifyAll();
+      }
+
+      boolean interrupted = false;
+      while (mFlushThread.isAlive())
+      {
+         try
+         {
+            mFlushThread.join();
+         }
+         catch (InterruptedException ex)
+         {
+            interrupted = true;
+         }
+      }
+
+      if (interrupted)
+      {
+         Thread.currentThread().interrupt();
+      }
+
+      if (mFailure != null)
+      {
+         throw mFailure;
+      }
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Flush Thread">
+
+   /*
+    * Called with mLock held, while the spare buffer is free.
+    */
+   private void swapBuffers()
+   {
+      mFull = mActive;
+      mActive = mSpare;
+      mSpare = null;
+   }
+
+   private void flushLoop()
+   {
+      List<Object> entries = new ArrayList<>();
+
+      try
+      {
+         while (true)
+         {
+            ByteBuffer batch;
+            boolean closing;
+
+            synchronized (mLock)
+            {
+               long deadline = System.nanoTime() + mFlushIntervalNanos;
+               while (mFull == null && !mFlushRequested && !mClosing)
+               {
+                  long remaining = deadline - System.nanoTime();
+                  if (remaining <= 0)
+                  {
+                     break;
+                  }
+                  TimeUnit.NANOSECONDS.timedWait(mLock, remaining);
+               }
+
+               // Interval passed or asked to flush: take the partial buffer
+               if (mFull == null && mSpare != null && mActive.position() > 0)
+               {
+                  swapBuffers();
+               }
+
+               mFlushRequested = false;
+               closing = mClosing;
+               batch = mFull;
+
+               List<Object> queued = mQueuedEntries;
+               mQueuedEntries = entries;
+               entries = queued;
+            }
+
+            writeBatch(batch, entries);
+
+            synchronized (mLock)
+            {
+               if (batch != null)
+               {
+                  batch.clear();
+                  mSpare = batch;
+                  mFull = null;
+               }
+
+               if (closing && mActive.position() == 0 && mQueuedEntries.isEmpty())
+               {
+                  break;
+               }
+            }
+         }
+      }
+      catch (InterruptedException ex)
+      {
+         // Not expected, the thread is private; fall through and close
+      }
+      finally
+      {
+         closeFiles();
+      }
+   }
+
+   /*
+    * Writes one batch of samples and entries, then forces both to disk: one
+    * commit for the whole group.
+    */
+   private void writeBatch(ByteBuffer batch, List<Object> entries)
+   {
+      if (mFailure != null)
+      {
+         // Keep draining so recording never backs up, but write nothing more
+         entries.clear();
+         return;
+      }
+
+      try
+      {
+         if (batch != null)
+         {
+            batch.flip();
+            int samples = batch.remaining() / GazeLogFormat.RECORD_SIZE;
+            mLogWriter.appendRecords(batch);
+            mWrittenSamples += samples;
+         }
+
+         for (Object entry : entries)
+         {
+            writeEntry(entry);
+         }
+         entries.clear();
+
+         if (batch != null)
+         {
+            mLogWriter.flush();
+         }
+         mEventWriter.flush();
+         mBatchCount++;
+      }
+      catch (IOException ex)
+      {
+         ex.printStackTrace();
+         mFailure = ex;
+         entries.clear();
+      }
+   }
+
+   private void writeEntry(Object entry) throws IOException
+   {
+      if (entry instanceof Marker)
+      {
+         Marker marker = (Marker) entry;
+         mEventWriter.write("MARK," + marker.mNanos + "," + marker.mLabel);
+      }
+      else
+      {
+         GazeEvent event = (GazeEvent) entry;
+         mEventWriter.write(String.format(Locale.ROOT, "%s,%d,%d,%.1f,%.1f,%.1f,%.1f,%.1f,%d",
+                                          event.getType(),
+                                          event.getStartNanos(),
+                                          event.getEndNanos(),
+                                          event.getX(),
+                                          event.getY(),
+                                          event.getStartX(),
+                                          event.getStartY(),
+                                          event.getPeakVelocity(),
+                                          event.getSampleCount()));
+      }
+      mEventWriter.newLine();
+   }
+
+   private void closeFiles()
+   {
+      try
+      {
+         mLogWriter.close();
+      }
+      catch (IOException ex)
+      {
+         ex.printStackTrace();
+         if (mFailure == null)
+         {
+            mFailure = ex;
+         }
+      }
+
+      try
+      {
+         mEventWriter.close();
+      }
+      catch (IOException ex)
+      {
+         ex.printStackTrace();
+         if (mFailure == null)
+         {
+            mFailure = ex;
+         }
+      }
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Properties">
+
+   /**
+    * @return Number of samples recorded but not yet written to disk.
+    */
+   public long getQueuedSampleCount()
+   {
+      return mAcceptedSamples - mWrittenSamples;
+   }
+
+   /**
+    * @return Number of samples written to the log so far.
+    */
+   public long getWrittenSampleCount()
+   {
+      return mWrittenSamples;
+   }
+
+   /**
+    * @return Number of samples dropped because the disk could not keep up.
+    */
+   public long getDroppedSampleCount()
+   {
+      return mDroppedSamples;
+   }
+
+   /**
+    * @return Number of events and markers dropped because too many were
+    * waiting to be written.
+    */
+   public long getDroppedEventCount()
+   {
+      return mDroppedEntries;
+   }
+
+   /**
+    * @return Number of batches written, each one forced to disk.
+    */
+   public long getBatchCount()
+   {
+      return mBatchCount;
+   }
+
+   /**
+    * @return Where events and task markers are written.
+    */
+   public Path getEventPath()
+   {
+      return mEventPath;
+   }
+
+   // </editor-fold>
+}
@@ -0,0 +1,109 @@
+package rit.eyeTrackingAPI.SmoothingFilters;
+
+import rit.eyeTrackingAPI.DataConstructs.GazeSample;
+
+/**
+ * Bridges short losses of tracking, such as blinks. The tracker reports a
+ * lost sample as (0, 0); while the loss is no longer than the maximum gap,
+ * such samples are replaced by the last valid position so the cursor holds
+ * still instead of jumping to the corner of the screen. Lost samples beyond
+ * the gap, or before any valid one, are dropped.
+ *
+ * @author Mark Hazlewood
+ */
+public class BlinkGapFillStage implements FilterStage
+{
+   // <editor-fold defaultstate="expanded" desc="Constants">
+
+   /**
+    * Default longest loss bridged, in milliseconds. Long enough for an
+    * ordinary blink.
+    */
+   public static final long DEFAULT_MAX_GAP_MILLIS = 300;
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Private Members">
+
+   private volatile double mMaxGapSeconds;
+   private final SampleInterval mInterval;
+
+   private boolean mHaveValid = false;
+   private int mValidX;
+   private int mValidY;
+   private double mGapSeconds = 0;
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Constructor(s)">
+
+   public BlinkGapFillStage()
+   {
+      this(DEFAULT_MAX_GAP_MILLIS, OneEuroFilter.DEFAULT_SAMPLE_RATE);
+   }
+
+   /**
+    * @param maxGapMillis Longest loss bridged, in milliseconds.
+    * @param sampleRate Tracker rate, in Hz, assumed for samples without
+    * timestamps.
+    */
+   public BlinkGapFillStage(long maxGapMillis, double sampleRate)
+   {
+      mMaxGapSeconds = maxGapMillis / 1000.0;
+      mInterval = new SampleInterval(sampleRate);
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Working Functions">
+
+   @Override
+   public boolean process(GazeSample sample)
+   {
+      double interval = mInterval.next(sample.getReceiveNanos());
+      int x = sample.getX();
+      int y = sample.getY();
+
+      if (x != 0 || y != 0)
+      {
+         mHaveValid = true;
+         mValidX = x;
+         mValidY = y;
+         mGapSeconds = 0;
+         return true;
+      }
+
+      mGapSeconds += interval;
+      if (!mHaveValid || mGapSeconds > mMaxGapSeconds)
+      {
+         return false;
+      }
+
+      sample.setPosition(mValidX, mValidY);
+      return true;
+   }
+
+   @Override
+   public void reset()
+   {
+      mHaveValid = false;
+      mGapSeconds = 0;
+      mInterval.reset();
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Properties">
+
+   public long getMaxGapMillis()
+   {
+      return Math.round(mMaxGapSeconds * 1000);
+   }
+
+   public void setMaxGapMillis(long maxGapMillis)
+   {
+      mMaxGapSeconds = maxGapMillis / 1000.0;
+   }
+
+   // </editor-fold>
+}
@@ -1,6 +1,8 @@
 package rit.eyeTrackingAPI.SmoothingFilters;
 
 import java.awt.Point;
+import rit.eyeTrackingAPI.DataConstructs.GazeSample;
+import rit.eyeTrackingAPI.DataConstructs.GazeSampleRingBuffer;
 
 /**
  * A class representing a filtering algorithm for smoothing jittery raw data
@@ -14,8 +16,17 @@ public abstract class Filter
    protected int mFilterIntensity = 0;
    protected int mFilterCounter = 0;
    protected boolean mNewCoordinateAvailable = false;
-   protected Point mLastFilteredCoordinate;
+   protected final Point mLastFilteredCoordinate = new Point();
    protected boolean mLatestCoordinateHasBeenRead = false;
+   protected volatile GazeSampleRingBuffer mOutputBuffer = null;
+
+   /*
+    * The raw sample currently being filtered and the filtered sample most
+    * recently published. Both are reused for every sample, so the filtered
+    * output carries the input's timing and per-eye data without allocating.
+    */
+   protected final GazeSample mInputSample = new GazeSample();
+   protected final GazeSample mLastFilteredSample = new GazeSample();
 
    /**
     * Constructs a filter with the cursor to be updated, the filter intensity,
@@ -45,6 +56,64 @@ public abstract class Filter
     */
    public abstract void filter(int x, int y);
 
+   /**
+    * Filters a full gaze sample. The sample is copied, so the caller may reuse
+    * it as soon as this returns. Samples published as a result carry this
+    * sample's timestamp and per-eye data along with the filtered position.
+    *
+    * @param sample The raw sample from the eye tracker.
+    */
+   public synchronized void filter(GazeSample sample)
+   {
+      mInputSample.copyFrom(sample);
+      filter(sample.getX(), sample.getY());
+   }
+
+   /**
+    * Makes a newly filtered coordinate available to whoever is reading from
+    * this filter. Subclasses call this from {@link #filter(int, int)} once per
+    * output point, while holding the filter's monitor.
+    *
+    * If an output buffer has been set the point is pushed into it and this
+    * method returns immediately. Otherwise the calling thread waits until the
+    * point has been read through {@link #notifyCoordinateRead()}.
+    *
+    * @param x Filtered X screen coordinate.
+    * @param y Filtered Y screen coordinate.
+    */
+   protected void publishCoordinate(int x, int y)
+   {
+      mLastFilteredSample.copyFrom(mInputSample);
+      mLastFilteredSample.setPosition(x, y);
+      mLastFilteredSample.setFilteredNanos(System.nanoTime());
+
+      GazeSampleRingBuffer outputBuffer = mOutputBuffer;
+      if (outputBuffer != null)
+      {
+         outputBuffer.offer(mLastFilteredSample);
+         return;
+      }
+
+      // Cleared before the reader is woken, so every point is waited for,
+      // including the second and later of a burst
+      mLastFilteredCoordinate.setLocation(x, y);
+      mLatestCoordinateHasBeenRead = false;
+      mNewCoordinateAvailable = true;
+      notifyAll();
+
+      while (!mLatestCoordinateHasBeenRead)
+      {
+         try
+         {
+            wait();
+         }
+         catch (InterruptedException e)
+         {
+            e.printStackTrace();
+         }
+      }
+   }
+
    /**
     * Called to check if a new coordinate is available.
     * 
@@ -81,6 +150,23 @@ public abstract class Filter
       mLatestCoordinateHasBeenRead = false;
    }
 
+   /**
+    * Like {@link #waitForNewCoordinate()}, but gives up when the waiting
+    * thread is interrupted, so a reader can be stopped while no coordinates
+    * are arriving.
+    *
+    * @throws InterruptedException If the thread was interrupted while waiting.
+    */
+   public synchronized void awaitNewCoordinate() throws InterruptedException
+   {
+      while (!mNewCoordinateAvailable)
+      {
+         wait();
+      }
+
+      mLatestCoordinateHasBeenRead = false;
+   }
+
    /**
     * Changes the coordinateRead flag to true, then notifies all.
     */
@@ -92,7 +178,9 @@ public abstract class Filter
    }
 
    /**
-    * Access the last filtered gaze coordinate.
+    * Access the last filtered gaze coordinate. The same instance is updated in
+    * place for every new coordinate, so callers wanting to keep it should take
+    * a copy.
     *
     * @return the filtered gaze point in screen space
     */
@@ -100,4 +188,42 @@ public abstract class Filter
    {
       return mLastFilteredCoordinate;
    }
+
+   /**
+    * Access the last filtered gaze sample, including its timestamp and per-eye
+    * data. Like {@link #getLastFilteredCoordinate()} this instance is reused.
+    *
+    * @return the most recently published filtered sample
+    */
+   public GazeSample getLastFilteredSample()
+   {
+      return mLastFilteredSample;
+   }
+
+   /**
+    * Switches this filter between the blocking read handshake and the
+    * non-blocking ring buffer pipeline. When a buffer is set, filtered points
+    * are pushed into it and the tracker thread calling {@link #filter(int, int)}
+    * never waits on the reader; the reader drains the buffer instead of using
+    * {@link #waitForNewCoordinate()}.
+    *
+    * This should be set before the tracker client and filter poller are
+    * started.
+    *
+    * @param outputBuffer Ring to publish into, or null to use the blocking
+    * handshake.
+    */
+   public void setOutputBuffer(GazeSampleRingBuffer outputBuffer)
+   {
+      mOutputBuffer = outputBuffer;
+   }
+
+   /**
+    * @return The ring filtered points are published into, or null if this
+    * filter uses the blocking read handshake.
+    */
+   public GazeSampleRingBuffer getOutputBuffer()
+   {
+      return mOutputBuffer;
+   }
 }
@@ -0,0 +1,106 @@
+package rit.eyeTrackingAPI.SmoothingFilters;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import rit.eyeTrackingAPI.DataConstructs.GazeSample;
+
+/**
+ * A filter made up of a sequence of {@link FilterStage}s, for example:
+ *
+ *    new FilterChain(new OutlierRejectionStage(),
+ *                    new BlinkGapFillStage(),
+ *                    new OneEuroStage(),
+ *                    ScreenClampStage.forAllScreens());
+ *
+ * Each incoming sample is passed through the stages in order, in place, and
+ * the result is published once at the end. Stages never publish or wait on
+ * one another, so a multi-stage pipeline costs one method call per stage per
+ * sample rather than one read handshake per stage. If any stage drops the
+ * sample, nothing is published for it.
+ *
+ * @author Mark Hazlewood
+ *
+ * @see FilterStage
+ */
+public class FilterChain extends Filter
+{
+   // <editor-fold defaultstate="expanded" desc="Private Members">
+
+   private final FilterStage[] mStages;
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Constructor(s)">
+
+   /**
+    * @param stages The stages, in the order samples pass through them.
+    */
+   public FilterChain(FilterStage... stages)
+   {
+      mStages = stages.clone();
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Working Functions">
+
+   @Override
+   public synchronized void filter(GazeSample sample)
+   {
+      mInputSample.copyFrom(sample);
+      runStages();
+   }
+
+   /**
+    * Filters a bare position. Stages that depend on timing treat it as
+    * arriving one nominal sample period after the previous one.
+    *
+    * @param x Raw X screen coordinate.
+    * @param y Raw Y screen coordinate.
+    */
+   @Override
+   public synchronized void filter(int x, int y)
+   {
+      mInputSample.setPosition(x, y);
+      runStages();
+   }
+
+   private void runStages()
+   {
+      for (int i = 0; i < mStages.length; i++)
+      {
+         if (!mStages[i].process(mInputSample))
+         {
+            return;
+         }
+      }
+
+      publishCoordinate(mInputSample.getX(), mInputSample.getY());
+   }
+
+   /**
+    * Resets every stage.
+    */
+   public synchronized void reset()
+   {
+      for (FilterStage stage : mStages)
+      {
+         stage.reset();
+      }
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Properties">
+
+   /**
+    * @return The stages, in order.
+    */
+   public List<FilterStage> getStages()
+   {
+      return Collections.unmodifiableList(Arrays.asList(mStages));
+   }
+
+   // </editor-fold>
+}
@@ -0,0 +1,35 @@
+package rit.eyeTrackingAPI.SmoothingFilters;
+
+import rit.eyeTrackingAPI.DataConstructs.GazeSample;
+
+/**
+ * One step of a {@link FilterChain}. A stage transforms a gaze sample in
+ * place, typically by replacing its screen position, and either passes it on
+ * to the next stage or drops it.
+ *
+ * Stages do not publish anything or wait on anyone; only the chain they are
+ * part of publishes, once, after the last stage. A stage is called with the
+ * chain's monitor held, so it needs no synchronisation of its own as long as
+ * it is only used in one chain.
+ *
+ * @author Mark Hazlewood
+ *
+ * @see FilterChain
+ */
+public interface FilterStage
+{
+   /**
+    * Transforms a sample.
+    *
+    * @param sample The sample, to be modified in place. Its receive stamp
+    * gives the time it was taken.
+    *
+    * @return True to pass the sample on, false to drop it.
+    */
+   boolean process(GazeSample sample);
+
+   /**
+    * Forgets any history the stage keeps, as if it had just been created.
+    */
+   void reset();
+}
@@ -1,9 +1,10 @@
 package rit.eyeTrackingAPI.SmoothingFilters;
 
-import java.awt.Point;
-import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import rit.eyeTrackingAPI.DataConstructs.Fixation;
+import rit.eyeTrackingAPI.DataConstructs.FixationIndex;
 
 /**
  * A filtering algorithm that uses a combination of of smoothing based on
@@ -35,44 +36,96 @@ public class FixationAndLeastSquaresFilter extends Filter
     */
    private static final int NUM_REGRESSION_REDRAW_DATA_POINTS = 3;
 
+   /*
+    * Fits the points of the current saccade segment, updated as each point
+    * arrives rather than re-summed at the end of the segment
+    */
+   private final StreamingRegression regression;
+
    private double eyeTrackerRawData[][] = null;
    private double adjustedData[][] = null;
-   private Double xMin_Regression = null;
-   private Double xMax_Regression = null;
+   private double xMin_Regression = Double.NaN;
+   private double xMax_Regression = Double.NaN;
    private double xIncrement_Regression;
    private int regressionIndex = 0;
-   private Point current;
-   private Point next;
 
-   private ArrayList<Fixation> fixationList = new ArrayList<Fixation>();
-   private Fixation currentFixation;
-   private boolean beingModified;
+   /*
+    * The reference point fixations are measured from and the newest raw point,
+    * kept as primitives so filtering a sample does not allocate.
+    */
+   private boolean hasCurrent = false;
+   private boolean hasNext = false;
+   private int currentX;
+   private int currentY;
+   private int nextX;
+   private int nextY;
+
+   /*
+    * Fixations seen so far, looked up by position when a saccade segment ends
+    */
+   private final FixationIndex fixationIndex = new FixationIndex(FIXATION_THRESHOLD);
+   private volatile Fixation currentFixation;
+
+   /*
+    * When set, the regression slides over the saccade and is fitted for every
+    * sample, see setContinuousFit(boolean)
+    */
+   private boolean continuousFit = false;
+   private boolean inSaccade = false;
 
    public FixationAndLeastSquaresFilter(int filterIntensity)
+   {
+      this(filterIntensity, LINEAR_FIT);
+   }
+
+   /**
+    * @param filterIntensity The number of points in each saccade segment
+    * @param regressionOrder Order of the polynomial fitted to each segment,
+    * from LINEAR_FIT (1) up to QUARTIC_FIT (4)
+    */
+   public FixationAndLeastSquaresFilter(int filterIntensity, int regressionOrder)
    {
       super(filterIntensity);
       eyeTrackerRawData = new double[filterIntensity][2];
       adjustedData = new double[NUM_REGRESSION_REDRAW_DATA_POINTS][2];
+
+      if (regressionOrder < LINEAR_FIT || regressionOrder > QUARTIC_FIT)
+      {
+         throw new IllegalArgumentException("Regression order must be between "
+                 + LINEAR_FIT + " and " + QUARTIC_FIT);
+      }
+      regression = new StreamingRegression(regressionOrder, Math.max(filterIntensity, 1));
    }
 
    @Override
    public synchronized void filter(int x, int y)
    {
+      if (continuousFit)
+      {
+         filterContinuous(x, y);
+         return;
+      }
+
       double distance = 0.0;
 
-      if (current == null)
+      if (!hasCurrent)
       {
-         current = new Point(x, y);
+         currentX = x;
+         currentY = y;
+         hasCurrent = true;
       }
       else
       {
-         next = new Point(x, y);
+         nextX = x;
+         nextY = y;
+         hasNext = true;
       }
 
-      if (next != null)
+      if (hasNext)
       {
-         distance = Math.sqrt((Math.pow((current.x - next.x), 2) + Math.pow(
-                 (current.y - next.y), 2)));
+         double dx = currentX - nextX;
+         double dy = currentY - nextY;
+         distance = Math.sqrt(dx * dx + dy * dy);
       }
 
       ////System.out.println("Distance = " + distance);
@@ -81,30 +134,14 @@ public class FixationAndLeastSquaresFilter extends Filter
       {
          if (initial)
          {
-            mLastFilteredCoordinate = new Point(current);
-            mNewCoordinateAvailable = true;
             initial = false;
-            Fixation fix = new Fixation(mLastFilteredCoordinate);
-            fixationList.add(fix);
-            currentFixation = fix;
-            notifyAll();
-            while (!mLatestCoordinateHasBeenRead)
-            {
-               try
-               {
-                  wait();
-               }
-               catch (InterruptedException e)
-               {
-                  e.printStackTrace();
-               }
-            }
-
+            currentFixation = fixationIndex.add(currentX, currentY);
+            publishCoordinate(currentX, currentY);
          }
          else if (distance < FIXATION_THRESHOLD && !initial)
          {
             ////System.out.println("still a fixation");
-            currentFixation.incrementCycles();
+            fixationIndex.countSample(currentFixation);
          }
          else
          {
@@ -128,7 +165,8 @@ public class FixationAndLeastSquaresFilter extends Filter
          // adjustedData[filterCounter][0] =
          // eyeTrackerRawData[filterCounter][0];
          eyeTrackerRawData[mFilterCounter][1] = y;
-         if (xMin_Regression == null)
+         regression.add(x, y);
+         if (Double.isNaN(xMin_Regression))
          {
             xMin_Regression = eyeTrackerRawData[mFilterCounter][0];
          }
@@ -136,7 +174,7 @@ public class FixationAndLeastSquaresFilter extends Filter
          {
             xMin_Regression = eyeTrackerRawData[mFilterCounter][0];
          }
-         if (xMax_Regression == null)
+         if (Double.isNaN(xMax_Regression))
          {
             xMax_Regression = eyeTrackerRawData[mFilterCounter][0];
          }
@@ -151,12 +189,9 @@ public class FixationAndLeastSquaresFilter extends Filter
       //calculate regression line
       if (mFilterCounter == (mFilterIntensity))
       {
-         double coefficients[] = Regression.linear_equation(eyeTrackerRawData, LINEAR_FIT);
-         //double coefficients[] = Regression.linear_equation(eyeTrackerRawData, QUADRATIC_FIT);
-         // double coefficients[] =
-         // Regression.linear_equation(eyeTrackerRawData, CUBIC_FIT);
-         // double coefficients[] =
-         // Regression.linear_equation(eyeTrackerRawData, QUARTIC_FIT);
+         // The regression window is exactly one segment long, so it holds
+         // the same points as eyeTrackerRawData
+         regression.fit();
 
          xIncrement_Regression = (xMax_Regression - xMin_Regression)
                  / NUM_REGRESSION_REDRAW_DATA_POINTS;
@@ -173,12 +208,7 @@ public class FixationAndLeastSquaresFilter extends Filter
          for (int i = 0; i < NUM_REGRESSION_REDRAW_DATA_POINTS; i++)
          {
             adjustedData[i][0] = currentXValue;
-            adjustedData[i][1] = coefficients[0];
-            for (int j = 1; j < coefficients.length; j++)
-            {
-               adjustedData[i][1] += Math.pow(adjustedData[i][0], j)
-                       * coefficients[j];
-            }
+            adjustedData[i][1] = regression.evaluate(currentXValue);
             if (eyeTrackerRawData[0][0] <= eyeTrackerRawData[mFilterIntensity - 1][0])
             {
                currentXValue += xIncrement_Regression;
@@ -189,15 +219,6 @@ public class FixationAndLeastSquaresFilter extends Filter
             }
 
          }
-         /*
-          * for(double j = xMin_Regression; i < xMax_Regression;
-          * i+=xIncrement_Regression){ adjustedData[(int)i][1] =
-          * coefficients[0]; for(int k = 1; j < coefficients.length; j++){
-          * adjustedData[i][1] +=
-          * Math.pow(adjustedData[i][0],j)*coefficients[j]; }
-          * 
-          * }
-          */
          mFilterCounter++;
       }
 
@@ -210,36 +231,16 @@ public class FixationAndLeastSquaresFilter extends Filter
              && regressionIndex < NUM_REGRESSION_REDRAW_DATA_POINTS) {*/
             if (regressionIndex == NUM_REGRESSION_REDRAW_DATA_POINTS - 1)
             {
-               mLastFilteredCoordinate = new Point(
-                       (int) eyeTrackerRawData[eyeTrackerRawData.length - 1][0],
-                       (int) eyeTrackerRawData[eyeTrackerRawData.length - 1][1]);
-               current = mLastFilteredCoordinate;
+               currentX = (int) eyeTrackerRawData[eyeTrackerRawData.length - 1][0];
+               currentY = (int) eyeTrackerRawData[eyeTrackerRawData.length - 1][1];
+               publishCoordinate(currentX, currentY);
             }
             else
             {
-               mLastFilteredCoordinate = new Point(
-                       (int) adjustedData[regressionIndex][0],
-                       (int) adjustedData[regressionIndex][1]);
+               publishCoordinate((int) adjustedData[regressionIndex][0],
+                                 (int) adjustedData[regressionIndex][1]);
             }
 
-            mNewCoordinateAvailable = true;
-            System.out.println("notifying from filterleastesquares");
-            notifyAll();
-            System.out.println("coordinateRead: " + mLatestCoordinateHasBeenRead);
-            //System.out.println("\tfilter waiting with i: " + i);
-            do
-            {
-               try
-               {
-                  this.wait();
-               }
-               catch (InterruptedException e)
-               {
-                  e.printStackTrace();
-               }
-               System.out.println("woke up with coordinateRead: " + mLatestCoordinateHasBeenRead);
-            } while (!mLatestCoordinateHasBeenRead);
-            //System.out.println("\tfilter woke up with i: " + i);
             regressionIndex++;
 
          }
@@ -258,65 +259,156 @@ public class FixationAndLeastSquaresFilter extends Filter
             if (mFilterCounter == (mFilterIntensity + 1))
             {
                mFilterCounter = 0;
-               xMin_Regression = null;
-               xMax_Regression = null;
+               xMin_Regression = Double.NaN;
+               xMax_Regression = Double.NaN;
             }
             //System.out.println("b");
 
-            Fixation fix = new Fixation(mLastFilteredCoordinate);
-            boolean repeatFixation = false;
-            for (Fixation f : fixationList)
-            {
-               if (f.getCoordinates().equals(fix.getCoordinates()))
-               {
-                  repeatFixation = true;
-                  currentFixation = f;
-                  currentFixation.incrementCycles();
-               }
-            }
-            //System.out.println("c");
-
-            if (!repeatFixation)
-            {
-               fixationList.add(fix);
-               currentFixation = fix;
-            }
+            landOnFixation();
             //System.out.println("d");
 
          }
       }
    }
 
-   public void lockFixationList() throws InterruptedException
+   /*
+    * Makes the fixation nearest the current point, or a new one there, the
+    * current fixation.
+    */
+   private void landOnFixation()
    {
-      while (beingModified)
+      Fixation repeatFixation = fixationIndex.findNearest(currentX, currentY);
+
+      if (repeatFixation != null)
       {
-         try
-         {
-            wait();
-         }
-         catch (IllegalMonitorStateException ex)
-         {
-         }
+         fixationIndex.countSample(repeatFixation);
+         currentFixation = repeatFixation;
+      }
+      else
+      {
+         currentFixation = fixationIndex.add(currentX, currentY);
       }
-      beingModified = true;
    }
 
-   public void unlockFixationList()
+   /*
+    * Fits at tracker rate, with the same cadence as the segments. While the
+    * gaze stays within the fixation threshold of the current point nothing
+    * new is published. Once it leaves, every sample of the saccade is added to
+    * the sliding regression window, the polynomial is re-fitted and the sample
+    * is published on the fitted curve. Every filterIntensity samples the raw
+    * sample is published instead and becomes the current point, as at the end
+    * of a segment; if the sample after it is within the threshold of it the
+    * saccade is over.
+    */
+   private void filterContinuous(int x, int y)
    {
-      beingModified = false;
-      try
+      if (!hasCurrent)
+      {
+         currentX = x;
+         currentY = y;
+         hasCurrent = true;
+         initial = false;
+         currentFixation = fixationIndex.add(currentX, currentY);
+         publishCoordinate(currentX, currentY);
+         return;
+      }
+
+      nextX = x;
+      nextY = y;
+      hasNext = true;
+
+      if (mFilterCounter == 0)
+      {
+         double dx = currentX - x;
+         double dy = currentY - y;
+         if (Math.sqrt(dx * dx + dy * dy) < FIXATION_THRESHOLD)
+         {
+            if (inSaccade)
+            {
+               inSaccade = false;
+               regression.clear();
+            }
+            fixationIndex.countSample(currentFixation);
+            return;
+         }
+      }
+
+      inSaccade = true;
+      regression.add(x, y);
+      mFilterCounter++;
+
+      if (mFilterCounter < mFilterIntensity)
       {
-         notifyAll();
+         double fittedY = regression.fit() ? regression.evaluate(x) : Double.NaN;
+         publishCoordinate(x, Double.isNaN(fittedY) ? y : (int) Math.round(fittedY));
       }
-      catch (IllegalMonitorStateException ex)
+      else
+      {
+         mFilterCounter = 0;
+         currentX = x;
+         currentY = y;
+         publishCoordinate(currentX, currentY);
+         landOnFixation();
+      }
+   }
+
+   /**
+    * Chooses how saccades are smoothed. By default the saccade is cut into
+    * segments of filterIntensity points, and one fit of each segment is
+    * published as NUM_REGRESSION_REDRAW_DATA_POINTS points once the segment
+    * is complete. With a continuous fit the regression window slides over
+    * the last filterIntensity points of the saccade and is re-fitted for
+    * every sample, so each saccade sample is published as it arrives, on
+    * the curve fitted through it and the points before it.
+    *
+    * @param continuous True to fit for every sample
+    */
+   public synchronized void setContinuousFit(boolean continuous)
+   {
+      if (continuous != continuousFit)
       {
+         continuousFit = continuous;
+         inSaccade = false;
+         mFilterCounter = 0;
+         regressionIndex = 0;
+         xMin_Regression = Double.NaN;
+         xMax_Regression = Double.NaN;
+         regression.clear();
       }
    }
 
-   public ArrayList<Fixation> getFixationsList()
+   public synchronized boolean isContinuousFit()
    {
-      return this.fixationList;
+      return continuousFit;
+   }
+
+   /**
+    * No longer needed: {@link #getFixationsList()} returns a snapshot that
+    * the filter never modifies.
+    */
+   @Deprecated
+   public void lockFixationList() throws InterruptedException
+   {
+   }
+
+   /**
+    * No longer needed, see {@link #lockFixationList()}.
+    */
+   @Deprecated
+   public void unlockFixationList()
+   {
+   }
+
+   /**
+    * Returns the fixations retained so far, least recently visited first. The
+    * list is an unmodifiable snapshot and is safe to iterate on any thread
+    * while filtering continues.
+    *
+    * @return Snapshot of the fixation list
+    */
+   public synchronized List<Fixation> getFixationsList()
+   {
+      return fixationIndex.snapshot();
    }
 
    public Fixation getCurrentFixation()
@@ -324,4 +416,28 @@ public class FixationAndLeastSquaresFilter extends Filter
       return currentFixation;
    }
 
+   /**
+    * Limits how many fixations are retained. The least recently visited are
+    * dropped first.
+    *
+    * @param maxFixations Most fixations to keep, FixationIndex.DEFAULT_MAX_FIXATIONS
+    * by default
+    */
+   public synchronized void setMaxRetainedFixations(int maxFixations)
+   {
+      fixationIndex.setMaxFixations(maxFixations);
+   }
+
+   /**
+    * Drops fixations that have not been visited for a while.
+    *
+    * @param maxAge How long to keep a fixation after it was last visited, or
+    * zero (the default) to keep fixations regardless of age
+    * @param unit Unit of the age
+    */
+   public synchronized void setFixationMaxAge(long maxAge, TimeUnit unit)
+   {
+      fixationIndex.setMaxAge(maxAge, unit);
+   }
+
 }
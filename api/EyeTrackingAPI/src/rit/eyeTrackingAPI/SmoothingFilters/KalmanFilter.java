@@ -0,0 +1,142 @@
+package rit.eyeTrackingAPI.SmoothingFilters;
+
+/**
+ * A constant-velocity Kalman filter for gaze points. Each axis is modelled as
+ * a position and a velocity, with white-noise acceleration as the process
+ * noise and the tracker's jitter as the measurement noise. Both axes share the
+ * same noise settings and sample times, so they share a single 2x2 covariance
+ * and one gain computation per sample.
+ *
+ * A plain Kalman filter trusts its motion model during a saccade and lags
+ * behind the jump. To avoid that, the innovation of every sample is checked
+ * against its expected spread: when the normalised innovation squared exceeds
+ * the saccade gate the filter is re-seeded at the new point, so it lands with
+ * the eyes instead of drifting after them.
+ *
+ * The prediction step uses the actual time between samples, taken from their
+ * receive stamps. All state is kept in primitive fields and filtering a point
+ * never allocates. The filter is a {@link FilterChain} of a single
+ * {@link KalmanStage}; use that stage directly to combine Kalman smoothing
+ * with other stages in one chain.
+ *
+ * @author Mark Hazlewood
+ */
+public class KalmanFilter extends FilterChain
+{
+   // <editor-fold defaultstate="expanded" desc="Constants">
+
+   /**
+    * Default process noise, the spectral density of the acceleration in
+    * pixels squared per second cubed.
+    */
+   public static final double DEFAULT_PROCESS_NOISE = 1000.0;
+
+   /**
+    * Default measurement noise, the variance of tracker jitter in pixels
+    * squared.
+    */
+   public static final double DEFAULT_MEASUREMENT_NOISE = 36.0;
+
+   /**
+    * Default saccade gate on the normalised innovation squared. With two
+    * degrees of freedom, a value of 16 is exceeded by jitter alone about once
+    * in three thousand samples.
+    */
+   public static final double DEFAULT_SACCADE_GATE = 16.0;
+
+   /**
+    * Default tracker rate, in Hz, assumed for samples without timestamps.
+    */
+   public static final double DEFAULT_SAMPLE_RATE = 60.0;
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Private Members">
+
+   private final KalmanStage mStage;
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Constructor(s)">
+
+   public KalmanFilter()
+   {
+      this(DEFAULT_PROCESS_NOISE, DEFAULT_MEASUREMENT_NOISE);
+   }
+
+   /**
+    * @param processNoise Spectral density of the acceleration, in pixels
+    * squared per second cubed. Higher values follow the gaze more closely.
+    * @param measurementNoise Variance of the tracker's jitter, in pixels
+    * squared. Higher values smooth more.
+    */
+   public KalmanFilter(double processNoise, double measurementNoise)
+   {
+      this(processNoise, measurementNoise, DEFAULT_SACCADE_GATE, DEFAULT_SAMPLE_RATE);
+   }
+
+   /**
+    * @param processNoise Spectral density of the acceleration, in pixels
+    * squared per second cubed.
+    * @param measurementNoise Variance of the tracker's jitter, in pixels
+    * squared.
+    * @param saccadeGate Normalised innovation squared above which the filter
+    * is re-seeded at the new point, or zero to never re-seed.
+    * @param sampleRate Tracker rate, in Hz, assumed for samples without
+    * timestamps.
+    */
+   public KalmanFilter(double processNoise, double measurementNoise, double saccadeGate, double sampleRate)
+   {
+      this(new KalmanStage(processNoise, measurementNoise, saccadeGate, sampleRate));
+   }
+
+   private KalmanFilter(KalmanStage stage)
+   {
+      super(stage);
+      mStage = stage;
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Properties">
+
+   public double getProcessNoise()
+   {
+      return mStage.getProcessNoise();
+   }
+
+   public void setProcessNoise(double processNoise)
+   {
+      mStage.setProcessNoise(processNoise);
+   }
+
+   public double getMeasurementNoise()
+   {
+      return mStage.getMeasurementNoise();
+   }
+
+   public void setMeasurementNoise(double measurementNoise)
+   {
+      mStage.setMeasurementNoise(measurementNoise);
+   }
+
+   public double getSaccadeGate()
+   {
+      return mStage.getSaccadeGate();
+   }
+
+   public void setSaccadeGate(double saccadeGate)
+   {
+      mStage.setSaccadeGate(saccadeGate);
+   }
+
+   /**
+    * @return Number of times the filter has been re-seeded by a saccade.
+    */
+   public long getSaccadeCount()
+   {
+      return mStage.getSaccadeCount();
+   }
+
+   // </editor-fold>
+}
@@ -0,0 +1,208 @@
+package rit.eyeTrackingAPI.SmoothingFilters;
+
+import rit.eyeTrackingAPI.DataConstructs.GazeSample;
+
+/**
+ * The constant-velocity Kalman step as a {@link FilterStage}. See
+ * {@link KalmanFilter} for how it works; that filter is simply a chain made of
+ * this one stage.
+ *
+ * @author Mark Hazlewood
+ */
+public class KalmanStage implements FilterStage
+{
+   // <editor-fold defaultstate="expanded" desc="Constants">
+
+   /*
+    * Velocity variance, in pixels squared per second squared, given to a
+    * freshly seeded filter. A saccade almost always lands in a fixation, so
+    * the eyes are expected to be close to still; a larger value lets the
+    * first few noisy samples after landing set a spurious velocity.
+    */
+   private static final double INITIAL_VELOCITY_VARIANCE = 1.0e4;
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Private Members">
+
+   private volatile double mProcessNoise;
+   private volatile double mMeasurementNoise;
+   private volatile double mSaccadeGate;
+   private final SampleInterval mInterval;
+
+   private boolean mInitialised = false;
+
+   // State per axis: position and velocity
+   private double mX;
+   private double mVelocityX;
+   private double mY;
+   private double mVelocityY;
+
+   // Covariance, shared by both axes: [mP00 mP01; mP01 mP11]
+   private double mP00;
+   private double mP01;
+   private double mP11;
+
+   private volatile long mSaccadeCount = 0;
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Constructor(s)">
+
+   public KalmanStage()
+   {
+      this(KalmanFilter.DEFAULT_PROCESS_NOISE, KalmanFilter.DEFAULT_MEASUREMENT_NOISE);
+   }
+
+   /**
+    * @param processNoise Spectral density of the acceleration, in pixels
+    * squared per second cubed.
+    * @param measurementNoise Variance of the tracker's jitter, in pixels
+    * squared.
+    */
+   public KalmanStage(double processNoise, double measurementNoise)
+   {
+      this(processNoise, measurementNoise, KalmanFilter.DEFAULT_SACCADE_GATE, KalmanFilter.DEFAULT_SAMPLE_RATE);
+   }
+
+   /**
+    * @param processNoise Spectral density of the acceleration, in pixels
+    * squared per second cubed.
+    * @param measurementNoise Variance of the tracker's jitter, in pixels
+    * squared.
+    * @param saccadeGate Normalised innovation squared above which the filter
+    * is re-seeded at the new point, or zero to never re-seed.
+    * @param sampleRate Tracker rate, in Hz, assumed for samples without
+    * timestamps.
+    */
+   public KalmanStage(double processNoise, double measurementNoise, double saccadeGate, double sampleRate)
+   {
+      mProcessNoise = processNoise;
+      mMeasurementNoise = measurementNoise;
+      mSaccadeGate = saccadeGate;
+      mInterval = new SampleInterval(sampleRate);
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Working Functions">
+
+   @Override
+   public boolean process(GazeSample sample)
+   {
+      double dt = mInterval.next(sample.getReceiveNanos());
+      int x = sample.getX();
+      int y = sample.getY();
+
+      if (!mInitialised)
+      {
+         seed(x, y);
+         return true;
+      }
+
+      // Predict: x = F x, P = F P F' + Q
+      mX += mVelocityX * dt;
+      mY += mVelocityY * dt;
+
+      double dt2 = dt * dt;
+      double p00 = mP00 + 2 * dt * mP01 + dt2 * mP11 + mProcessNoise * dt2 * dt / 3;
+      double p01 = mP01 + dt * mP11 + mProcessNoise * dt2 / 2;
+      double p11 = mP11 + mProcessNoise * dt;
+
+      // Innovation and its variance
+      double innovationX = x - mX;
+      double innovationY = y - mY;
+      double innovationVariance = p00 + mMeasurementNoise;
+
+      double normalisedInnovation = (innovationX * innovationX + innovationY * innovationY) / innovationVariance;
+      if (mSaccadeGate > 0 && normalisedInnovation > mSaccadeGate)
+      {
+         // Too far from the prediction to be jitter: the eyes have jumped
+         mSaccadeCount++;
+         seed(x, y);
+         return true;
+      }
+
+      // Update: K = P H' / S, x += K y, P = (I - K H) P
+      double gainPosition = p00 / innovationVariance;
+      double gainVelocity = p01 / innovationVariance;
+
+      mX += gainPosition * innovationX;
+      mY += gainPosition * innovationY;
+      mVelocityX += gainVelocity * innovationX;
+      mVelocityY += gainVelocity * innovationY;
+
+      mP00 = (1 - gainPosition) * p00;
+      mP01 = (1 - gainPosition) * p01;
+      mP11 = p11 - gainVelocity * p01;
+
+      sample.setPosition((int) Math.round(mX), (int) Math.round(mY));
+      return true;
+   }
+
+   private void seed(int x, int y)
+   {
+      mInitialised = true;
+      mX = x;
+      mY = y;
+      mVelocityX = 0;
+      mVelocityY = 0;
+      mP00 = mMeasurementNoise;
+      mP01 = 0;
+      mP11 = INITIAL_VELOCITY_VARIANCE;
+   }
+
+   /**
+    * Forgets the stage's history, so the next point is passed through as is.
+    */
+   @Override
+   public void reset()
+   {
+      mInitialised = false;
+      mInterval.reset();
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Properties">
+
+   public double getProcessNoise()
+   {
+      return mProcessNoise;
+   }
+
+   public void setProcessNoise(double processNoise)
+   {
+      mProcessNoise = processNoise;
+   }
+
+   public double getMeasurementNoise()
+   {
+      return mMeasurementNoise;
+   }
+
+   public void setMeasurementNoise(double measurementNoise)
+   {
+      mMeasurementNoise = measurementNoise;
+   }
+
+   public double getSaccadeGate()
+   {
+      return mSaccadeGate;
+   }
+
+   public void setSaccadeGate(double saccadeGate)
+   {
+      mSaccadeGate = saccadeGate;
+   }
+
+   /**
+    * @return Number of times the stage has been re-seeded by a saccade.
+    */
+   public long getSaccadeCount()
+   {
+      return mSaccadeCount;
+   }
+
+   // </editor-fold>
+}
@@ -0,0 +1,127 @@
+package rit.eyeTrackingAPI.SmoothingFilters;
+
+/**
+ * An adaptive low-pass filter after Casiez, Roussel and Vogel's "1 Euro
+ * Filter". Each new point is blended with the previous output by an
+ * exponential smoothing factor whose cutoff frequency rises with the speed of
+ * the gaze: while the eyes are still the cutoff sits at its minimum and
+ * jitter is smoothed away, and as soon as a saccade starts the cutoff opens
+ * up and the output follows with next to no lag.
+ *
+ * Speed is estimated from the smoothed derivative of both axes together, so
+ * a saccade opens the filter in x and y at the same time. The smoothing
+ * factors are recomputed from the actual time between samples, taken from
+ * their receive stamps.
+ *
+ * All state is kept in primitive fields and filtering a point never
+ * allocates. The filter is a {@link FilterChain} of a single
+ * {@link OneEuroStage}; use that stage directly to combine 1 Euro smoothing
+ * with other stages in one chain.
+ *
+ * @author Mark Hazlewood
+ */
+public class OneEuroFilter extends FilterChain
+{
+   // <editor-fold defaultstate="expanded" desc="Constants">
+
+   /**
+    * Default cutoff, in Hz, while the eyes are still.
+    */
+   public static final double DEFAULT_MIN_CUTOFF = 1.0;
+
+   /**
+    * Default increase in cutoff, in Hz, per pixel per second of gaze speed.
+    */
+   public static final double DEFAULT_BETA = 0.003;
+
+   /**
+    * Default cutoff, in Hz, used to smooth the speed estimate.
+    */
+   public static final double DEFAULT_DERIVATIVE_CUTOFF = 3.0;
+
+   /**
+    * Default tracker rate, in Hz, assumed for samples without timestamps.
+    */
+   public static final double DEFAULT_SAMPLE_RATE = 60.0;
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Private Members">
+
+   private final OneEuroStage mStage;
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Constructor(s)">
+
+   public OneEuroFilter()
+   {
+      this(DEFAULT_MIN_CUTOFF, DEFAULT_BETA);
+   }
+
+   /**
+    * @param minCutoff Cutoff frequency, in Hz, while the eyes are still.
+    * Lower values remove more jitter during fixations.
+    * @param beta Increase in cutoff, in Hz, per pixel per second of gaze
+    * speed. Higher values reduce lag during saccades.
+    */
+   public OneEuroFilter(double minCutoff, double beta)
+   {
+      this(minCutoff, beta, DEFAULT_DERIVATIVE_CUTOFF, DEFAULT_SAMPLE_RATE);
+   }
+
+   /**
+    * @param minCutoff Cutoff frequency, in Hz, while the eyes are still.
+    * @param beta Increase in cutoff, in Hz, per pixel per second of gaze speed.
+    * @param derivativeCutoff Cutoff frequency, in Hz, used to smooth the
+    * speed estimate.
+    * @param sampleRate Tracker rate, in Hz, assumed for samples without
+    * timestamps.
+    */
+   public OneEuroFilter(double minCutoff, double beta, double derivativeCutoff, double sampleRate)
+   {
+      this(new OneEuroStage(minCutoff, beta, derivativeCutoff, sampleRate));
+   }
+
+   private OneEuroFilter(OneEuroStage stage)
+   {
+      super(stage);
+      mStage = stage;
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Properties">
+
+   public double getMinCutoff()
+   {
+      return mStage.getMinCutoff();
+   }
+
+   public void setMinCutoff(double minCutoff)
+   {
+      mStage.setMinCutoff(minCutoff);
+   }
+
+   public double getBeta()
+   {
+      return mStage.getBeta();
+   }
+
+   public void setBeta(double beta)
+   {
+      mStage.setBeta(beta);
+   }
+
+   public double getDerivativeCutoff()
+   {
+      return mStage.getDerivativeCutoff();
+   }
+
+   public void setDerivativeCutoff(double derivativeCutoff)
+   {
+      mStage.setDerivativeCutoff(derivativeCutoff);
+   }
+
+   // </editor-fold>
+}
@@ -0,0 +1,159 @@
+package rit.eyeTrackingAPI.SmoothingFilters;
+
+import rit.eyeTrackingAPI.DataConstructs.GazeSample;
+
+/**
+ * The 1 Euro smoothing step as a {@link FilterStage}. See
+ * {@link OneEuroFilter} for how it works; that filter is simply a chain made
+ * of this one stage.
+ *
+ * @author Mark Hazlewood
+ */
+public class OneEuroStage implements FilterStage
+{
+   // <editor-fold defaultstate="expanded" desc="Private Members">
+
+   private volatile double mMinCutoff;
+   private volatile double mBeta;
+   private volatile double mDerivativeCutoff;
+   private final SampleInterval mInterval;
+
+   private boolean mInitialised = false;
+   private double mRawX;
+   private double mRawY;
+   private double mFilteredX;
+   private double mFilteredY;
+   private double mDerivativeX;
+   private double mDerivativeY;
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Constructor(s)">
+
+   public OneEuroStage()
+   {
+      this(OneEuroFilter.DEFAULT_MIN_CUTOFF, OneEuroFilter.DEFAULT_BETA);
+   }
+
+   /**
+    * @param minCutoff Cutoff frequency, in Hz, while the eyes are still.
+    * @param beta Increase in cutoff, in Hz, per pixel per second of gaze speed.
+    */
+   public OneEuroStage(double minCutoff, double beta)
+   {
+      this(minCutoff, beta, OneEuroFilter.DEFAULT_DERIVATIVE_CUTOFF, OneEuroFilter.DEFAULT_SAMPLE_RATE);
+   }
+
+   /**
+    * @param minCutoff Cutoff frequency, in Hz, while the eyes are still.
+    * @param beta Increase in cutoff, in Hz, per pixel per second of gaze speed.
+    * @param derivativeCutoff Cutoff frequency, in Hz, used to smooth the
+    * speed estimate.
+    * @param sampleRate Tracker rate, in Hz, assumed for samples without
+    * timestamps.
+    */
+   public OneEuroStage(double minCutoff, double beta, double derivativeCutoff, double sampleRate)
+   {
+      mMinCutoff = minCutoff;
+      mBeta = beta;
+      mDerivativeCutoff = derivativeCutoff;
+      mInterval = new SampleInterval(sampleRate);
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Working Functions">
+
+   @Override
+   public boolean process(GazeSample sample)
+   {
+      double interval = mInterval.next(sample.getReceiveNanos());
+      int x = sample.getX();
+      int y = sample.getY();
+
+      if (!mInitialised)
+      {
+         mInitialised = true;
+         mRawX = x;
+         mRawY = y;
+         mFilteredX = x;
+         mFilteredY = y;
+         mDerivativeX = 0;
+         mDerivativeY = 0;
+         return true;
+      }
+
+      // Smoothed speed of the raw signal
+      double derivativeAlpha = smoothingFactor(mDerivativeCutoff, interval);
+      mDerivativeX += derivativeAlpha * ((x - mRawX) / interval - mDerivativeX);
+      mDerivativeY += derivativeAlpha * ((y - mRawY) / interval - mDerivativeY);
+      mRawX = x;
+      mRawY = y;
+
+      double speed = Math.sqrt(mDerivativeX * mDerivativeX + mDerivativeY * mDerivativeY);
+
+      // Open the filter up in proportion to that speed
+      double alpha = smoothingFactor(mMinCutoff + mBeta * speed, interval);
+      mFilteredX += alpha * (x - mFilteredX);
+      mFilteredY += alpha * (y - mFilteredY);
+
+      sample.setPosition((int) Math.round(mFilteredX), (int) Math.round(mFilteredY));
+      return true;
+   }
+
+   /*
+    * Exponential smoothing factor of a first order low-pass filter with the
+    * given cutoff, sampled at the given interval.
+    */
+   private static double smoothingFactor(double cutoff, double interval)
+   {
+      double timeConstant = 1.0 / (2.0 * Math.PI * cutoff);
+      return 1.0 / (1.0 + timeConstant / interval);
+   }
+
+   /**
+    * Forgets the stage's history, so the next point is passed through as is.
+    */
+   @Override
+   public void reset()
+   {
+      mInitialised = false;
+      mInterval.reset();
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Properties">
+
+   public double getMinCutoff()
+   {
+      return mMinCutoff;
+   }
+
+   public void setMinCutoff(double minCutoff)
+   {
+      mMinCutoff = minCutoff;
+   }
+
+   public double getBeta()
+   {
+      return mBeta;
+   }
+
+   public void setBeta(double beta)
+   {
+      mBeta = beta;
+   }
+
+   public double getDerivativeCutoff()
+   {
+      return mDerivativeCutoff;
+   }
+
+   public void setDerivativeCutoff(double derivativeCutoff)
+   {
+      mDerivativeCutoff = derivativeCutoff;
+   }
+
+   // </editor-fold>
+}
@@ -0,0 +1,142 @@
+package rit.eyeTrackingAPI.SmoothingFilters;
+
+import rit.eyeTrackingAPI.DataConstructs.GazeSample;
+
+/**
+ * Drops single-sample spikes: points that are further from the last accepted
+ * point than the eyes could have moved in the time between them.
+ *
+ * A real saccade also produces a large jump, but the samples after it agree
+ * with one another. So a rejected point is remembered, and if the next point
+ * lands close to it the jump is taken to be real and the point is accepted.
+ * The first point of every saccade landing is therefore dropped along with
+ * the spikes, and the landing reaches the later stages one sample late (2 ms
+ * at 500 Hz). A stage only passes on or drops the sample in hand, so the
+ * dropped point cannot be sent on after the fact; where that sample of
+ * latency matters more than the odd spike, leave this stage out.
+ * Lost samples, reported by the tracker as (0, 0), are passed through
+ * untouched for a later stage to deal with.
+ *
+ * @author Mark Hazlewood
+ */
+public class OutlierRejectionStage implements FilterStage
+{
+   // <editor-fold defaultstate="expanded" desc="Constants">
+
+   /**
+    * Default largest believable gaze speed, in pixels per second. Saccades
+    * peak at several hundred degrees per second, which at normal viewing
+    * distances is in the tens of thousands of pixels per second.
+    */
+   public static final double DEFAULT_MAX_VELOCITY = 40000.0;
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Private Members">
+
+   private volatile double mMaxVelocity;
+   private final SampleInterval mInterval;
+
+   private boolean mHaveAccepted = false;
+   private int mAcceptedX;
+   private int mAcceptedY;
+
+   private boolean mHaveRejected = false;
+   private int mRejectedX;
+   private int mRejectedY;
+
+   private volatile long mRejectedCount = 0;
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Constructor(s)">
+
+   public OutlierRejectionStage()
+   {
+      this(DEFAULT_MAX_VELOCITY, OneEuroFilter.DEFAULT_SAMPLE_RATE);
+   }
+
+   /**
+    * @param maxVelocity Largest believable gaze speed, in pixels per second.
+    * @param sampleRate Tracker rate, in Hz, assumed for samples without
+    * timestamps.
+    */
+   public OutlierRejectionStage(double maxVelocity, double sampleRate)
+   {
+      mMaxVelocity = maxVelocity;
+      mInterval = new SampleInterval(sampleRate);
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Working Functions">
+
+   @Override
+   public boolean process(GazeSample sample)
+   {
+      int x = sample.getX();
+      int y = sample.getY();
+      if (x == 0 && y == 0)
+      {
+         return true;
+      }
+
+      double maxStep = mMaxVelocity * mInterval.next(sample.getReceiveNanos());
+      double maxStepSquared = maxStep * maxStep;
+
+      if (!mHaveAccepted || distanceSquared(x, y, mAcceptedX, mAcceptedY) <= maxStepSquared
+          || (mHaveRejected && distanceSquared(x, y, mRejectedX, mRejectedY) <= maxStepSquared))
+      {
+         mHaveAccepted = true;
+         mAcceptedX = x;
+         mAcceptedY = y;
+         mHaveRejected = false;
+         return true;
+      }
+
+      mHaveRejected = true;
+      mRejectedX = x;
+      mRejectedY = y;
+      mRejectedCount++;
+      return false;
+   }
+
+   private static double distanceSquared(int x1, int y1, int x2, int y2)
+   {
+      double dx = x1 - x2;
+      double dy = y1 - y2;
+      return dx * dx + dy * dy;
+   }
+
+   @Override
+   public void reset()
+   {
+      mHaveAccepted = false;
+      mHaveRejected = false;
+      mInterval.reset();
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Properties">
+
+   public double getMaxVelocity()
+   {
+      return mMaxVelocity;
+   }
+
+   public void setMaxVelocity(double maxVelocity)
+   {
+      mMaxVelocity = maxVelocity;
+   }
+
+   /**
+    * @return Number of points dropped so far.
+    */
+   public long getRejectedCount()
+   {
+      return mRejectedCount;
+   }
+
+   // </editor-fold>
+}
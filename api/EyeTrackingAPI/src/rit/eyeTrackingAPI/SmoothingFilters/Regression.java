@@ -134,6 +134,26 @@ public class Regression
 
       for (int j = 0; j < (n - 1); j++)
       {
+         // partial pivoting: swap the row with the largest entry in this
+         // column into place, otherwise a small pivot blows up the error
+         int pivotRow = j;
+         for (int i = j + 1; i < n; i++)
+         {
+            if (Math.abs(a[i][j]) > Math.abs(a[pivotRow][j]))
+            {
+               pivotRow = i;
+            }
+         }
+         if (pivotRow != j)
+         {
+            double[] swapRow = a[j];
+            a[j] = a[pivotRow];
+            a[pivotRow] = swapRow;
+            double swapValue = b[j];
+            b[j] = b[pivotRow];
+            b[pivotRow] = swapValue;
+         }
+
          pivot = a[j][j];
          for (int i = j + 1; i < n; i++)
          {
@@ -0,0 +1,51 @@
+package rit.eyeTrackingAPI.SmoothingFilters;
+
+/**
+ * Works out how much time passed between consecutive samples, for stages
+ * whose behaviour depends on time rather than on sample counts.
+ *
+ * The samples' receive stamps are used when they are available. Samples
+ * without a new stamp, such as positions filtered through
+ * {@link Filter#filter(int, int)}, are taken to be the nominal interval apart.
+ * Datagrams that queued up in the socket are received in a burst, so an
+ * interval shorter than a quarter of the nominal one is not trusted either.
+ *
+ * @author Mark Hazlewood
+ */
+class SampleInterval
+{
+   private final double mNominalSeconds;
+   private long mPreviousNanos = 0;
+
+   /**
+    * @param sampleRate The tracker's rate in Hz.
+    */
+   SampleInterval(double sampleRate)
+   {
+      mNominalSeconds = 1.0 / sampleRate;
+   }
+
+   /**
+    * @param sampleNanos Receive stamp of the new sample, or zero.
+    *
+    * @return Seconds since the previous sample.
+    */
+   double next(long sampleNanos)
+   {
+      long previousNanos = mPreviousNanos;
+      mPreviousNanos = sampleNanos;
+
+      if (sampleNanos == 0 || previousNanos == 0 || sampleNanos == previousNanos)
+      {
+         return mNominalSeconds;
+      }
+
+      double interval = (sampleNanos - previousNanos) / 1.0e9;
+      return Math.max(interval, mNominalSeconds / 4);
+   }
+
+   void reset()
+   {
+      mPreviousNanos = 0;
+   }
+}
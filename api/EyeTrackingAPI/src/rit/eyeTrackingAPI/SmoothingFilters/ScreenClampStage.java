@@ -0,0 +1,74 @@
+package rit.eyeTrackingAPI.SmoothingFilters;
+
+import java.awt.GraphicsDevice;
+import java.awt.GraphicsEnvironment;
+import java.awt.Rectangle;
+import rit.eyeTrackingAPI.DataConstructs.GazeSample;
+
+/**
+ * Keeps points inside a screen area. Smoothing and prediction can overshoot
+ * the edge of the screen when the gaze is near it; this stage, usually the
+ * last in a chain, pulls such points back onto the edge.
+ *
+ * @author Mark Hazlewood
+ */
+public class ScreenClampStage implements FilterStage
+{
+   private final int mMinX;
+   private final int mMinY;
+   private final int mMaxX;
+   private final int mMaxY;
+
+   /**
+    * @param bounds The area to keep points inside.
+    */
+   public ScreenClampStage(Rectangle bounds)
+   {
+      this(bounds.x, bounds.y, bounds.x + bounds.width - 1, bounds.y + bounds.height - 1);
+   }
+
+   private ScreenClampStage(int minX, int minY, int maxX, int maxY)
+   {
+      mMinX = minX;
+      mMinY = minY;
+      mMaxX = maxX;
+      mMaxY = maxY;
+   }
+
+   /**
+    * @return A stage that keeps points inside the combined area of every
+    * screen attached to this machine. On a machine without a display, such
+    * as a server replaying recordings, there are no screens to ask and the
+    * stage passes every point through unchanged.
+    */
+   public static ScreenClampStage forAllScreens()
+   {
+      if (GraphicsEnvironment.isHeadless())
+      {
+         return new ScreenClampStage(Integer.MIN_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE);
+      }
+
+      Rectangle bounds = null;
+      for (GraphicsDevice device : GraphicsEnvironment.getLocalGraphicsEnvironment().getScreenDevices())
+      {
+         Rectangle screen = device.getDefaultConfiguration().getBounds();
+         bounds = (bounds == null) ? screen : bounds.union(screen);
+      }
+
+      return new ScreenClampStage(bounds);
+   }
+
+   @Override
+   public boolean process(GazeSample sample)
+   {
+      int x = Math.min(Math.max(sample.getX(), mMinX), mMaxX);
+      int y = Math.min(Math.max(sample.getY(), mMinY), mMaxY);
+      sample.setPosition(x, y);
+      return true;
+   }
+
+   @Override
+   public void reset()
+   {
+   }
+}
@@ -1,8 +1,6 @@
 package rit.eyeTrackingAPI.SmoothingFilters;
 
 import java.awt.Point;
-import java.util.LinkedList;
-import java.util.Queue;
 
 /**
  * Implements a simple sliding window average filter for 2D gaze points. The
@@ -17,6 +15,9 @@ import java.util.Queue;
  * compounded during large, quick changes (saccades). So the window size should
  * be kept relatively small compared with the gaze sampling rate.
  * 
+ * Points in the window are held in a pair of circular primitive arrays, so 
+ * filtering a point never allocates.
+ * 
  * @author Mark Hazlewood
  */
 public class SlidingWindowAverageFilter extends Filter
@@ -24,8 +25,10 @@ public class SlidingWindowAverageFilter extends Filter
    // <editor-fold defaultstate="expanded" desc="Private Members">
 
    private int mWindowSize = 25;
-   private Queue<Point> mPointsInWindow = new LinkedList<>();
-   private int mCurrentWindowSize = 0;    // used to avoid many .size() calls
+   private int[] mWindowX;
+   private int[] mWindowY;
+   private int mOldestIndex = 0;
+   private int mCurrentWindowSize = 0;
    
    private int mCurrentTotalX = 0;
    private int mCurrentTotalY = 0;
@@ -39,7 +42,9 @@ public class SlidingWindowAverageFilter extends Filter
 
    public SlidingWindowAverageFilter(int windowSize)
    {
-      mWindowSize = windowSize;
+      mWindowSize = Math.max(1, windowSize);
+      mWindowX = new int[mWindowSize];
+      mWindowY = new int[mWindowSize];
    }
 
    // </editor-fold>
@@ -49,45 +54,32 @@ public class SlidingWindowAverageFilter extends Filter
    @Override
    public synchronized void filter(int x, int y)
    {  
-      // Add a new point to the window, for reference during removal
-      mPointsInWindow.add(new Point(x, y));
+      // If the window is full, drop the oldest point and remove its values 
+      // from the running totals
+      if (mCurrentWindowSize == mWindowSize)
+      {
+         mCurrentTotalX -= mWindowX[mOldestIndex];
+         mCurrentTotalY -= mWindowY[mOldestIndex];
+         mOldestIndex = (mOldestIndex + 1) % mWindowSize;
+         --mCurrentWindowSize;
+      }
+      
+      // Add the new point to the window, for reference during removal
+      int newestIndex = (mOldestIndex + mCurrentWindowSize) % mWindowSize;
+      mWindowX[newestIndex] = x;
+      mWindowY[newestIndex] = y;
       ++mCurrentWindowSize;
       
       // Maintain a running total value for the window in both X and Y
       mCurrentTotalX += x;
       mCurrentTotalY += y;
       
-      // If the window size has been reached, pop off the first point and remove
-      // it's values from the running totals
-      while (mCurrentWindowSize > mWindowSize)
-      {
-         Point first = mPointsInWindow.remove();
-         mCurrentTotalX -= first.getX();
-         mCurrentTotalY -= first.getY();
-         --mCurrentWindowSize;
-      }
-      
       // Determine a new average using the current totals
       mCurrentAverageX = (double)mCurrentTotalX / (double)mCurrentWindowSize;
       mCurrentAverageY = (double)mCurrentTotalY / (double)mCurrentWindowSize;
       
       // Set the point and notify listeners
-      mLastFilteredCoordinate = new Point((int)mCurrentAverageX, (int)mCurrentAverageY);      
-      
-      mNewCoordinateAvailable = true;
-      notifyAll();
-      
-      while (!mLatestCoordinateHasBeenRead)
-      {
-         try
-         {
-            wait();
-         }
-         catch (InterruptedException e)
-         {
-            e.printStackTrace();
-         }
-      }
+      publishCoordinate((int)mCurrentAverageX, (int)mCurrentAverageY);
    }
 
    // </editor-fold>
@@ -95,9 +87,37 @@ public class SlidingWindowAverageFilter extends Filter
 
    // <editor-fold defaultstate="expanded" desc="Properties">
 
-   public void setWindowSize(int size)
+   /**
+    * Changes the window size. The most recent points are kept, up to the new
+    * size, so the average carries on smoothly from where it was.
+    * 
+    * @param size The new number of points to average over.
+    */
+   public synchronized void setWindowSize(int size)
    {
+      size = Math.max(1, size);
+      int[] windowX = new int[size];
+      int[] windowY = new int[size];
+      
+      int keep = Math.min(size, mCurrentWindowSize);
+      int skip = mCurrentWindowSize - keep;
+      mCurrentTotalX = 0;
+      mCurrentTotalY = 0;
+      
+      for (int i = 0; i < keep; i++)
+      {
+         int index = (mOldestIndex + skip + i) % mWindowSize;
+         windowX[i] = mWindowX[index];
+         windowY[i] = mWindowY[index];
+         mCurrentTotalX += windowX[i];
+         mCurrentTotalY += windowY[i];
+      }
+      
+      mWindowX = windowX;
+      mWindowY = windowY;
       mWindowSize = size;
+      mOldestIndex = 0;
+      mCurrentWindowSize = keep;
    }
 
    // </editor-fold>
@@ -0,0 +1,515 @@
+package rit.eyeTrackingAPI.SmoothingFilters;
+
+import java.util.Arrays;
+
+/**
+ * A least-squares polynomial fit of y against x over a sliding window of the
+ * most recent points, updated incrementally as points arrive.
+ *
+ * Running sums of the powers of x, and of x times y, are updated as each point
+ * enters and leaves the window, so adding a point costs time proportional to
+ * the order rather than the window size, and nothing is allocated after
+ * construction. The sums are kept about a local origin that follows the data
+ * and are rebuilt from the window now and then, so rounding error stays
+ * bounded however far the gaze moves.
+ *
+ * If the window does not determine a fit of the requested order (too few
+ * points, or all points at the same x) the highest order that can be fitted
+ * is used instead, down to a constant.
+ *
+ * Instances are not thread safe.
+ *
+ * @author Mark Hazlewood
+ *
+ * @see FixationAndLeastSquaresFilter
+ */
+public class StreamingRegression
+{
+   // <editor-fold defaultstate="expanded" desc="Constants">
+
+   /**
+    * Highest polynomial order supported.
+    */
+   public static final int MAX_ORDER = 4;
+
+   // Pixels per unit of the scaled x used internally
+   private static final double X_SCALE = 100.0;
+
+   /**
+    * Largest growth of the rounding error in the sums, from points far from
+    * their origin, tolerated before the sums are rebuilt about a new one.
+    */
+   public static final double MAX_ERROR_GROWTH = 1.0e8;
+
+   // Incremental updates allowed between full rebuilds of the sums
+   private static final int RESUM_INTERVAL = 4096;
+
+   // Pivots smaller than this, relative to the matrix, mean a singular system
+   private static final double SINGULAR_TOLERANCE = 1e-10;
+
+   // Binomial coefficients up to the highest power summed
+   private static final double[][] BINOMIAL = new double[2 * MAX_ORDER + 1][2 * MAX_ORDER + 1];
+
+   static
+   {
+      for (int n = 0; n < BINOMIAL.length; n++)
+      {
+         BINOMIAL[n][0] = 1.0;
+         for (int k = 1; k <= n; k++)
+         {
+            BINOMIAL[n][k] = BINOMIAL[n - 1][k - 1] + (k < n ? BINOMIAL[n - 1][k] : 0.0);
+         }
+      }
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Private Members">
+
+   private final int mOrder;
+
+   // Circular window of raw points
+   private final double[] mWindowX;
+   private final double[] mWindowY;
+   private int mOldestIndex = 0;
+   private int mCount = 0;
+
+   // Sums of x^k for k = 0..2*order and of x^k * y for k = 0..order, in the
+   // shifted and scaled x
+   private final double[] mPowerSums;
+   private final double[] mCrossSums;
+   private double mOrigin = 0.0;
+   private boolean mHasOrigin = false;
+   private int mUpdatesSinceResum = 0;
+
+   // Distance from the origin, in spreads of the window, beyond which the
+   // error growth passes MAX_ERROR_GROWTH, the fewest updates between
+   // rebuilds, and the furthest, in internal units, any point accumulated
+   // since the last rebuild has been from the origin
+   private final double mReanchorSpreads;
+   private final int mMinUpdatesBetweenRebuilds;
+   private double mMaxOffset = 0.0;
+   private long mRebuildCount = 0;
+
+   // The sums standardised to the window's mean and spread for solving, and
+   // the mean and spread used (in the internal x units)
+   private final double[] mFitPowerSums;
+   private final double[] mFitCrossSums;
+   private double mFitCenter = 0.0;
+   private double mFitScale = 1.0;
+
+   // Solver buffers, sized for the highest order
+   private final double[][] mMatrix;
+   private final double[] mRightHandSide;
+   private final double[] mCoefficients;
+   private int mFittedOrder = -1;
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Constructor(s)">
+
+   /**
+    * @param order Polynomial order to fit, from 0 (constant) to
+    * {@link #MAX_ORDER}.
+    * @param windowSize Number of most recent points the fit covers.
+    */
+   public StreamingRegression(int order, int windowSize)
+   {
+      if (order < 0 || order > MAX_ORDER)
+      {
+         throw new IllegalArgumentException("Regression order must be between 0 and " + MAX_ORDER);
+      }
+      if (windowSize < 1)
+      {
+         throw new IllegalArgumentException("Regression window must hold at least one point");
+      }
+
+      mOrder = order;
+      mReanchorSpreads = order == 0
+                         ? Double.POSITIVE_INFINITY
+                         : Math.max(Math.pow(MAX_ERROR_GROWTH, 1.0 / (2 * order)), 2.0 * Math.sqrt(windowSize));
+      mMinUpdatesBetweenRebuilds = Math.max(1, windowSize / 4);
+      mWindowX = new double[windowSize];
+      mWindowY = new double[windowSize];
+
+      mPowerSums = new double[2 * order + 1];
+      mCrossSums = new double[order + 1];
+      mFitPowerSums = new double[2 * order + 1];
+      mFitCrossSums = new double[order + 1];
+
+      mMatrix = new double[order + 1][order + 1];
+      mRightHandSide = new double[order + 1];
+      mCoefficients = new double[order + 1];
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Working Functions">
+
+   /**
+    * Adds a point to the window, dropping the oldest point if the window is
+    * full. Invalidates the previous fit until {@link #fit()} is called again.
+    *
+    * @param x X value of the point.
+    * @param y Y value of the point.
+    */
+   public void add(double x, double y)
+   {
+      boolean evicting = mCount == mWindowX.length;
+      double evictedX = 0.0;
+      double evictedY = 0.0;
+      int slot;
+
+      if (evicting)
+      {
+         slot = mOldestIndex;
+         evictedX = mWindowX[slot];
+         evictedY = mWindowY[slot];
+         mOldestIndex = (slot + 1) % mWindowX.length;
+      }
+      else
+      {
+         slot = (mOldestIndex + mCount) % mWindowX.length;
+         mCount++;
+      }
+
+      mWindowX[slot] = x;
+      mWindowY[slot] = y;
+      mFittedOrder = -1;
+
+      if (!mHasOrigin)
+      {
+         recenter();
+         return;
+      }
+
+      if (evicting)
+      {
+         accumulate(evictedX, evictedY, -1.0);
+      }
+      accumulate(x, y, 1.0);
+      mMaxOffset = Math.max(mMaxOffset, Math.abs(x - mOrigin) / X_SCALE);
+
+      // Points far from the origin, compared to the window's spread, leave
+      // large powers that cancel badly when standardised, so the sums are
+      // rebuilt instead once the conditioning bound is passed
+      ++mUpdatesSinceResum;
+      if (mUpdatesSinceResum >= RESUM_INTERVAL
+              || (mUpdatesSinceResum >= mMinUpdatesBetweenRebuilds && isPoorlyConditioned()))
+      {
+         recenter();
+      }
+   }
+
+   /**
+    * Empties the window.
+    */
+   public void clear()
+   {
+      mOldestIndex = 0;
+      mCount = 0;
+      mHasOrigin = false;
+      mMaxOffset = 0.0;
+      mUpdatesSinceResum = 0;
+      mFittedOrder = -1;
+      Arrays.fill(mPowerSums, 0.0);
+      Arrays.fill(mCrossSums, 0.0);
+   }
+
+   /**
+    * Solves for the polynomial through the points currently in the window.
+    *
+    * @return True if a fit was found, false only if the window is empty.
+    */
+   public boolean fit()
+   {
+      if (mCount == 0)
+      {
+         mFittedOrder = -1;
+         return false;
+      }
+
+      int highestOrder = standardiseSums() ? Math.min(mOrder, mCount - 1) : 0;
+
+      for (int order = highestOrder; order >= 0; order--)
+      {
+         if (solve(order))
+         {
+            mFittedOrder = order;
+            return true;
+         }
+      }
+
+      mFittedOrder = -1;
+      return false;
+   }
+
+   /**
+    * Evaluates the most recent fit, using Horner's method.
+    *
+    * @param x X value to evaluate at.
+    *
+    * @return The fitted y value, or NaN if {@link #fit()} has not succeeded
+    * since the last point was added.
+    */
+   public double evaluate(double x)
+   {
+      if (mFittedOrder < 0)
+      {
+         return Double.NaN;
+      }
+
+      double scaledX = ((x - mOrigin) / X_SCALE - mFitCenter) / mFitScale;
+      double result = mCoefficients[mFittedOrder];
+      for (int k = mFittedOrder - 1; k >= 0; k--)
+      {
+         result = result * scaledX + mCoefficients[k];
+      }
+
+      return result;
+   }
+
+   private void accumulate(double x, double y, double sign)
+   {
+      double scaledX = (x - mOrigin) / X_SCALE;
+      double power = sign;
+
+      for (int k = 0; k < mPowerSums.length; k++)
+      {
+         mPowerSums[k] += power;
+         if (k < mCrossSums.length)
+         {
+            mCrossSums[k] += power * y;
+         }
+         power *= scaledX;
+      }
+   }
+
+   /*
+    * Whether the points accumulated since the last rebuild have been further
+    * from the origin than the re-anchor bound, in spreads of the window. The
+    * spread is estimated from the sums themselves; when those have lost so
+    * much precision that it cannot be, the answer is yes.
+    */
+   private boolean isPoorlyConditioned()
+   {
+      if (mOrder == 0 || mMaxOffset == 0.0)
+      {
+         return false;
+      }
+
+      double mean = mPowerSums[1] / mPowerSums[0];
+      double variance = mPowerSums[2] / mPowerSums[0] - mean * mean;
+      return !(mMaxOffset * mMaxOffset <= mReanchorSpreads * mReanchorSpreads * variance);
+   }
+
+   /*
+    * Moves the origin to the mean x of the window and rebuilds every sum.
+    * Costs a pass over the window.
+    */
+   private void recenter()
+   {
+      double meanX = 0.0;
+      for (int i = 0; i < mCount; i++)
+      {
+         meanX += mWindowX[(mOldestIndex + i) % mWindowX.length];
+      }
+      mOrigin = meanX / mCount;
+      mHasOrigin = true;
+      mUpdatesSinceResum = 0;
+      mMaxOffset = 0.0;
+      mRebuildCount++;
+
+      Arrays.fill(mPowerSums, 0.0);
+      Arrays.fill(mCrossSums, 0.0);
+      for (int i = 0; i < mCount; i++)
+      {
+         int index = (mOldestIndex + i) % mWindowX.length;
+         accumulate(mWindowX[index], mWindowY[index], 1.0);
+         mMaxOffset = Math.max(mMaxOffset, Math.abs(mWindowX[index] - mOrigin) / X_SCALE);
+      }
+   }
+
+   /*
+    * Fills mFitPowerSums and mFitCrossSums with the sums taken about the
+    * window's mean x and divided by the matching power of its standard
+    * deviation. Returns false if every point has the same x, in which case only
+    * a constant can be fitted.
+    */
+   private boolean standardiseSums()
+   {
+      double count = mPowerSums[0];
+      mFitCenter = mPowerSums[1 % mPowerSums.length] / count;
+      mFitScale = 1.0;
+
+      if (mPowerSums.length == 1)
+      {
+         mFitCenter = 0.0;
+         mFitCrossSums[0] = mCrossSums[0];
+         mFitPowerSums[0] = count;
+         return true;
+      }
+
+      shiftSums(mPowerSums, mFitPowerSums, mFitCenter);
+      shiftSums(mCrossSums, mFitCrossSums, mFitCenter);
+
+      double variance = mFitPowerSums[2] / count;
+      if (!(variance > SINGULAR_TOLERANCE))
+      {
+         return false;
+      }
+
+      mFitScale = Math.sqrt(variance);
+      double divisor = 1.0;
+      for (int k = 0; k < mFitPowerSums.length; k++)
+      {
+         mFitPowerSums[k] /= divisor;
+         if (k < mFitCrossSums.length)
+         {
+            mFitCrossSums[k] /= divisor;
+         }
+         divisor *= mFitScale;
+      }
+
+      return true;
+   }
+
+   /*
+    * Given sums of x^k * w, computes sums of (x - shift)^k * w.
+    */
+   private static void shiftSums(double[] sums, double[] shifted, double shift)
+   {
+      for (int k = 0; k < sums.length; k++)
+      {
+         double total = 0.0;
+         double shiftPower = 1.0;
+         for (int j = k; j >= 0; j--)
+         {
+            total += BINOMIAL[k][j] * shiftPower * sums[j];
+            shiftPower *= -shift;
+         }
+         shifted[k] = total;
+      }
+   }
+
+   /*
+    * Solves the normal equations for the given order into mCoefficients.
+    * Returns false if the system is singular.
+    */
+   private boolean solve(int order)
+   {
+      int n = order + 1;
+      double scale = 0.0;
+
+      for (int row = 0; row < n; row++)
+      {
+         for (int column = 0; column < n; column++)
+         {
+            mMatrix[row][column] = mFitPowerSums[row + column];
+         }
+         mRightHandSide[row] = mFitCrossSums[row];
+         scale = Math.max(scale, Math.abs(mMatrix[row][row]));
+      }
+
+      double tolerance = SINGULAR_TOLERANCE * Math.max(scale, 1.0);
+
+      // Forward elimination, swapping in the largest remaining pivot
+      for (int pivot = 0; pivot < n; pivot++)
+      {
+         int best = pivot;
+         for (int row = pivot + 1; row < n; row++)
+         {
+            if (Math.abs(mMatrix[row][pivot]) > Math.abs(mMatrix[best][pivot]))
+            {
+               best = row;
+            }
+         }
+
+         if (Math.abs(mMatrix[best][pivot]) <= tolerance)
+         {
+            return false;
+         }
+
+         if (best != pivot)
+         {
+            double[] swapRow = mMatrix[pivot];
+            mMatrix[pivot] = mMatrix[best];
+            mMatrix[best] = swapRow;
+
+            double swapValue = mRightHandSide[pivot];
+            mRightHandSide[pivot] = mRightHandSide[best];
+            mRightHandSide[best] = swapValue;
+         }
+
+         for (int row = pivot + 1; row < n; row++)
+         {
+            double multiplier = mMatrix[row][pivot] / mMatrix[pivot][pivot];
+            for (int column = pivot; column < n; column++)
+            {
+               mMatrix[row][column] -= multiplier * mMatrix[pivot][column];
+            }
+            mRightHandSide[row] -= multiplier * mRightHandSide[pivot];
+         }
+      }
+
+      // Back substitution
+      for (int row = n - 1; row >= 0; row--)
+      {
+         double value = mRightHandSide[row];
+         for (int column = row + 1; column < n; column++)
+         {
+            value -= mMatrix[row][column] * mCoefficients[column];
+         }
+         mCoefficients[row] = value / mMatrix[row][row];
+      }
+
+      return true;
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Properties">
+
+   /**
+    * @return The order requested at construction.
+    */
+   public int getOrder()
+   {
+      return mOrder;
+   }
+
+   /**
+    * @return The order of the most recent fit, which may be lower than
+    * requested if the window did not determine a higher one, or -1 if there
+    * is no current fit.
+    */
+   public int getFittedOrder()
+   {
+      return mFittedOrder;
+   }
+
+   /**
+    * @return Number of points currently in the window.
+    */
+   public int getCount()
+   {
+      return mCount;
+   }
+
+   public int getWindowSize()
+   {
+      return mWindowX.length;
+   }
+
+   /**
+    * @return Number of times the sums have been rebuilt from the window,
+    * including when the first point is added after construction or
+    * {@link #clear()}.
+    */
+   public long getRebuildCount()
+   {
+      return mRebuildCount;
+   }
+
+   // </editor-fold>
+}
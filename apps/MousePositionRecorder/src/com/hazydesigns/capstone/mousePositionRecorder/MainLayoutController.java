@@ -15,10 +15,10 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.Duration;
 import java.time.temporal.TemporalAmount;
-import java.util.ArrayList;
 import java.util.ResourceBundle;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.atomic.AtomicInteger;
 import javafx.application.Platform;
 import javafx.concurrent.Task;
 import javafx.event.ActionEvent;
@@ -50,7 +50,7 @@ public class MainLayoutController implements Initializable
    private Thread mMousePollThread;
    private MousePollTask mMousePollTask;
    
-   private ArrayList<String> mTextLines;
+   private final AtomicInteger mRecordedCount = new AtomicInteger(0);
    
    private static final String TEST_FILE_PATH = System.getProperty("java.io.tmpdir") + "\\simulatedEyeData.txt";
    private static final int SAMPLE_DELAY_milliseconds = 10;
@@ -59,7 +59,6 @@ public class MainLayoutController implements Initializable
    public void initialize(URL url, ResourceBundle rb)
    {
       mRecording = false;      
-      mTextLines = new ArrayList<>();
    }
    
    public void shutdown()
@@ -111,34 +110,6 @@ public class MainLayoutController implements Initializable
          formLabel.setText("Awaiting orders");
          timerLabel.setText("");
          recordButton.setDisable(false);
-         
-         if (mTextLines.size() > 0)
-         {
-            try
-            {
-               Thread.sleep(500);
-            }
-            catch (InterruptedException ex)
-            {
-               ex.printStackTrace();
-            }
-
-            Path filePath = Paths.get(TEST_FILE_PATH);
-            try (BufferedWriter writer = Files.newBufferedWriter(filePath, StandardCharsets.UTF_8))
-            {
-               for (String line : mTextLines)
-               {
-                  writer.write(line);
-                  writer.newLine();
-               }
-               mTextLines.clear();
-            }
-            catch (Exception ex)
-            {
-               ex.printStackTrace();
-            }
-         }
-         
       }
       else
       {
@@ -161,7 +132,7 @@ public class MainLayoutController implements Initializable
                      formLabel.setText(formLabel.getText() + ".");
                   }
                   
-                  long secondsRecording = (SAMPLE_DELAY_milliseconds * mTextLines.size()) / 1000;
+                  long secondsRecording = (SAMPLE_DELAY_milliseconds * (long) mRecordedCount.get()) / 1000;
                   Duration d = Duration.ofSeconds(secondsRecording);
                   
                   long hours = d.toHours();
@@ -227,23 +198,42 @@ public class MainLayoutController implements Initializable
       }
    }
 
+   /**
+    * Streams mouse positions straight to the output file as they are polled,
+    * so memory use stays the same however long the recording runs. The file
+    * is closed when the task is cancelled.
+    */
    private class MousePollTask extends Task<Object>
    {
       @Override
       protected Object call() throws Exception
       {
-         while (true)
+         mRecordedCount.set(0);
+         
+         Path filePath = Paths.get(TEST_FILE_PATH);
+         try (BufferedWriter writer = Files.newBufferedWriter(filePath, StandardCharsets.UTF_8))
          {
-            if (isCancelled())
+            while (!isCancelled())
             {
-               break;
+               Point p = MouseInfo.getPointerInfo().getLocation();
+               writer.write(Integer.toString(p.x));
+               writer.write(',');
+               writer.write(Integer.toString(p.y));
+               writer.write(',');
+               writer.write(Integer.toString(SAMPLE_DELAY_milliseconds));
+               writer.newLine();
+               mRecordedCount.incrementAndGet();
+
+               Thread.sleep(SAMPLE_DELAY_milliseconds);
             }
-            
-            Point p = MouseInfo.getPointerInfo().getLocation();
-            String line = p.x + "," + p.y + "," + SAMPLE_DELAY_milliseconds;
-            mTextLines.add(line);
-
-            Thread.sleep(SAMPLE_DELAY_milliseconds);
+         }
+         catch (InterruptedException ex)
+         {
+            // Cancelled while waiting for the next sample
+         }
+         catch (Exception ex)
+         {
+            ex.printStackTrace();
          }
 
          return null;
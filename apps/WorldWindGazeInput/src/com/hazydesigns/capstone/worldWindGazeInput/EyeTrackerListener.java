@@ -5,6 +5,8 @@ import java.awt.Point;
 import java.awt.Robot;
 import java.awt.event.ActionListener;
 import rit.eyeTrackingAPI.ApplicationUtilities.EyeTrackingFilterListener;
+import rit.eyeTrackingAPI.DataConstructs.GazeSample;
+import rit.eyeTrackingAPI.Interaction.PredictiveGazeSource;
 import rit.eyeTrackingAPI.SmoothingFilters.Filter;
 
 /**
@@ -16,6 +18,10 @@ public class EyeTrackerListener extends EyeTrackingFilterListener
 
     private Robot mRobot;
 
+    private volatile GazeInputHandler mGazeInput = null;
+
+    private volatile PredictiveGazeSource mGazeSource = null;
+
     private boolean mListening = true;
 
     /**
@@ -42,9 +48,28 @@ public class EyeTrackerListener extends EyeTrackingFilterListener
         }
     }
 
+    /**
+     * Hands every filtered sample, with its timestamps, to the gaze source the
+     * cursor is drawn from before it is picked at.
+     *
+     * @param newGazeSample the new filtered sample
+     */
+    @Override
+    protected void newSample(GazeSample newGazeSample)
+    {
+        PredictiveGazeSource gazeSource = mGazeSource;
+        if (mListening && gazeSource != null)
+        {
+            gazeSource.addSample(newGazeSample);
+        }
+
+        super.newSample(newGazeSample);
+    }
+
     /**
      * This function will be called whenever the filter owned by this class has
-     * a new gaze point to report.
+     * a new gaze point to report. With a gaze input handler set the point is
+     * picked at directly, otherwise the mouse is moved to it.
      *
      * @param newUserGazePoint, the new gaze point
      */
@@ -53,7 +78,15 @@ public class EyeTrackerListener extends EyeTrackingFilterListener
     {
         if (mListening)
         {
-            mRobot.mouseMove(newUserGazePoint.x, newUserGazePoint.y);
+            GazeInputHandler gazeInput = mGazeInput;
+            if (gazeInput != null)
+            {
+                gazeInput.gazeAt(newUserGazePoint.x, newUserGazePoint.y);
+            }
+            else if (mRobot != null)
+            {
+                mRobot.mouseMove(newUserGazePoint.x, newUserGazePoint.y);
+            }
         }
     }
     
@@ -62,6 +95,29 @@ public class EyeTrackerListener extends EyeTrackingFilterListener
         mListening = listen;
     }
 
+    /**
+     * Sends gaze points straight to World Wind's picking instead of moving the
+     * mouse.
+     *
+     * @param gazeInput the handler to pick with, or null to go back to moving
+     * the mouse
+     */
+    public void setGazeInputHandler(GazeInputHandler gazeInput)
+    {
+        mGazeInput = gazeInput;
+    }
+
+    /**
+     * Feeds every filtered sample to a gaze source, for the render loop to
+     * draw the cursor from once per frame.
+     *
+     * @param gazeSource the source to feed, or null to stop feeding one
+     */
+    public void setGazeSource(PredictiveGazeSource gazeSource)
+    {
+        mGazeSource = gazeSource;
+    }
+
     /**
      *
      */
@@ -0,0 +1,269 @@
+package com.hazydesigns.capstone.worldWindGazeInput;
+
+import gov.nasa.worldwind.SceneController;
+import gov.nasa.worldwind.awt.WorldWindowGLCanvas;
+import gov.nasa.worldwind.event.RenderingEvent;
+import gov.nasa.worldwind.event.RenderingListener;
+import gov.nasa.worldwind.render.ScreenAnnotation;
+import java.awt.DisplayMode;
+import java.awt.GraphicsConfiguration;
+import java.awt.Point;
+import java.awt.event.ActionEvent;
+import java.util.concurrent.TimeUnit;
+import javax.swing.Timer;
+import rit.eyeTrackingAPI.DataConstructs.GazeSample;
+import rit.eyeTrackingAPI.Interaction.PredictiveGazeSource;
+
+/**
+ * Moves the gaze cursor once per frame, as the frame starts to render, to
+ * where a {@link PredictiveGazeSource} expects the gaze to be when the frame
+ * reaches the screen. That is taken to be the start of the frame, plus the
+ * time frames have recently taken to render and swap, plus half a refresh
+ * interval for the swap to wait for the next vertical retrace.
+ *
+ * Samples no longer cause a redraw each. A Swing timer ticking once per
+ * refresh interval asks for a redraw only if samples have arrived since the
+ * last frame started, so samples arriving faster than the display refreshes
+ * cost one frame per refresh and no more. The updater is the one place gaze
+ * redraws are asked for: a {@link GazeInputHandler} given to it picks in the
+ * same frames, and a new position handed to the handler also gets a frame.
+ *
+ * Until the source has had a sample, for example with no tracker connected,
+ * the cursor follows World Wind's pick point, which is where the mouse is.
+ *
+ * @author Mark Hazlewood
+ */
+public class GazeCursorUpdater
+{
+   // <editor-fold defaultstate="expanded" desc="Constants">
+
+   /**
+    * Refresh rate, in Hz, assumed when the display does not report one.
+    */
+   public static final int DEFAULT_REFRESH_RATE = 60;
+
+   // Weight of the newest frame in the average render time
+   private static final double RENDER_TIME_SMOOTHING = 1.0 / 8.0;
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Private Members">
+
+   private final WorldWindowGLCanvas mCanvas;
+   private final ScreenAnnotation mCursorImage;
+   private final PredictiveGazeSource mGazeSource;
+   private final GazeInputHandler mGazeInput;
+   private final RenderingListener mRenderingListener;
+   private final Timer mRedrawTimer;
+
+   // Only written on the rendering thread
+   private final GazeSample mPrediction = new GazeSample();
+   private long mFrameStartNanos = 0;
+   private volatile double mRenderNanos = 0;
+   private int mCursorX = Integer.MIN_VALUE;
+   private int mCursorY = Integer.MIN_VALUE;
+
+   private volatile long mRefreshNanos = TimeUnit.SECONDS.toNanos(1) / DEFAULT_REFRESH_RATE;
+   private volatile long mDrawnSampleCount = 0;
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Constructor(s)">
+
+   /**
+    * @param canvas The World Wind canvas the cursor is drawn on.
+    * @param cursorImage The cursor, in one of the canvas' layers.
+    * @param gazeSource Source of the gaze samples to draw the cursor at.
+    */
+   public GazeCursorUpdater(WorldWindowGLCanvas canvas, ScreenAnnotation cursorImage,
+                            PredictiveGazeSource gazeSource)
+   {
+      this(canvas, cursorImage, gazeSource, null);
+   }
+
+   /**
+    * @param canvas The World Wind canvas the cursor is drawn on.
+    * @param cursorImage The cursor, in one of the canvas' layers.
+    * @param gazeSource Source of the gaze samples to draw the cursor at.
+    * @param gazeInput Handler picking at the gaze on the same canvas, to
+    * redraw for as well, or null for none.
+    */
+   public GazeCursorUpdater(WorldWindowGLCanvas canvas, ScreenAnnotation cursorImage,
+                            PredictiveGazeSource gazeSource, GazeInputHandler gazeInput)
+   {
+      mCanvas = canvas;
+      mCursorImage = cursorImage;
+      mGazeSource = gazeSource;
+      mGazeInput = gazeInput;
+
+      mRenderingListener = (RenderingEvent event) ->
+      {
+         if (RenderingEvent.BEFORE_RENDERING.equals(event.getStage()))
+         {
+            frameStarting();
+         }
+         else if (RenderingEvent.AFTER_BUFFER_SWAP.equals(event.getStage()))
+         {
+            frameSwapped();
+         }
+      };
+      mCanvas.addRenderingListener(mRenderingListener);
+
+      mRedrawTimer = new Timer(refreshMillis(), (ActionEvent e) -> redrawIfNewSamples());
+      mRedrawTimer.setCoalesce(true);
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Working Functions">
+
+   /**
+    * Starts redrawing for new samples, at the refresh rate of the display the
+    * canvas is on.
+    */
+   public void start()
+   {
+      updateRefreshRate();
+      mRedrawTimer.start();
+   }
+
+   public void stop()
+   {
+      mRedrawTimer.stop();
+   }
+
+   /**
+    * Stops redrawing and detaches from the canvas.
+    */
+   public void dispose()
+   {
+      stop();
+      mCanvas.removeRenderingListener(mRenderingListener);
+   }
+
+   /**
+    * Looks the refresh rate up again, for when the canvas has moved to another
+    * display.
+    */
+   public void updateRefreshRate()
+   {
+      int refreshRate = DisplayMode.REFRESH_RATE_UNKNOWN;
+
+      GraphicsConfiguration configuration = mCanvas.getGraphicsConfiguration();
+      if (configuration != null)
+      {
+         refreshRate = configuration.getDevice().getDisplayMode().getRefreshRate();
+      }
+
+      if (refreshRate == DisplayMode.REFRESH_RATE_UNKNOWN)
+      {
+         refreshRate = DEFAULT_REFRESH_RATE;
+      }
+
+      mRefreshNanos = TimeUnit.SECONDS.toNanos(1) / refreshRate;
+      mRedrawTimer.setDelay(refreshMillis());
+   }
+
+   /*
+    * Runs on the EDT once per refresh interval.
+    */
+   private void redrawIfNewSamples()
+   {
+      if (mGazeSource.getSampleCount() != mDrawnSampleCount
+          || (mGazeInput != null && mGazeInput.hasNewPosition()))
+      {
+         mCanvas.redraw();
+      }
+   }
+
+   /*
+    * Runs on the rendering thread before every frame, whoever asked for it.
+    */
+   private void frameStarting()
+   {
+      mFrameStartNanos = System.nanoTime();
+      mDrawnSampleCount = mGazeSource.getSampleCount();
+
+      long displayNanos = mFrameStartNanos + Math.round(mRenderNanos) + mRefreshNanos / 2;
+
+      int x;
+      int y;
+      if (mGazeSource.predict(displayNanos, mPrediction) && mCanvas.isShowing())
+      {
+         Point origin = mCanvas.getLocationOnScreen();
+         x = mPrediction.getX() - origin.x;
+         y = mPrediction.getY() - origin.y;
+      }
+      else
+      {
+         SceneController sceneController = mCanvas.getSceneController();
+         Point pickPoint = sceneController != null ? sceneController.getPickPoint() : null;
+         if (pickPoint == null)
+         {
+            return;
+         }
+
+         x = pickPoint.x;
+         y = pickPoint.y;
+      }
+
+      // The annotation's origin is at the bottom of the viewport
+      y = Math.abs(y - mCanvas.getView().getViewport().height);
+
+      if (x != mCursorX || y != mCursorY)
+      {
+         mCursorX = x;
+         mCursorY = y;
+         mCursorImage.setScreenPoint(new Point(x, y));
+      }
+   }
+
+   /*
+    * Runs on the rendering thread after every frame has been swapped.
+    */
+   private void frameSwapped()
+   {
+      if (mFrameStartNanos == 0)
+      {
+         return;
+      }
+
+      long renderNanos = System.nanoTime() - mFrameStartNanos;
+      mRenderNanos = mRenderNanos == 0
+                     ? renderNanos
+                     : mRenderNanos + RENDER_TIME_SMOOTHING * (renderNanos - mRenderNanos);
+   }
+
+   /*
+    * Refresh interval rounded up, so the timer never ticks faster than the
+    * display refreshes.
+    */
+   private int refreshMillis()
+   {
+      long nanosPerMilli = TimeUnit.MILLISECONDS.toNanos(1);
+      return (int) Math.max(1, (mRefreshNanos + nanosPerMilli - 1) / nanosPerMilli);
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Public Properties">
+
+   /**
+    * @return Recent average time, in nanoseconds, from a frame starting to
+    * render to its buffers being swapped.
+    */
+   public long getRenderNanos()
+   {
+      return Math.round(mRenderNanos);
+   }
+
+   /**
+    * @return Refresh interval, in nanoseconds, that redraws are limited to.
+    */
+   public long getRefreshNanos()
+   {
+      return mRefreshNanos;
+   }
+
+   // </editor-fold>
+}
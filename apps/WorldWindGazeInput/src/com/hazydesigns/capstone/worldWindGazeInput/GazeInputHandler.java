@@ -0,0 +1,391 @@
+package com.hazydesigns.capstone.worldWindGazeInput;
+
+import gov.nasa.worldwind.SceneController;
+import gov.nasa.worldwind.awt.WorldWindowGLCanvas;
+import gov.nasa.worldwind.event.RenderingEvent;
+import gov.nasa.worldwind.event.RenderingListener;
+import gov.nasa.worldwind.event.SelectEvent;
+import gov.nasa.worldwind.event.SelectListener;
+import gov.nasa.worldwind.pick.PickedObjectList;
+import java.awt.AWTException;
+import java.awt.EventQueue;
+import java.awt.Point;
+import java.awt.Robot;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.swing.event.EventListenerList;
+
+/**
+ * Feeds gaze positions straight into World Wind's picking, without moving the
+ * mouse. Gaze samples handed to {@link #gazeAt(int, int)} only replace the
+ * latest position. As each frame starts the handler takes that position and
+ * makes it the pick point, and once the frame has been drawn the objects
+ * picked under the gaze are delivered to this handler's select listeners as
+ * {@link GazeSelectEvent}s.
+ *
+ * The handler never asks for a redraw itself, so its picks cannot race
+ * another component's redraws. Whatever schedules the canvas' frames checks
+ * {@link #hasNewPosition()} instead; in this application that is the
+ * {@link GazeCursorUpdater}, once per display refresh. The pick rate caps how
+ * often a frame takes a new gaze position; frames in between keep picking at
+ * the last one. Since picks ride on frames, rates above the display's refresh
+ * rate pick in every frame.
+ *
+ * The scene controller has one pick point, which World Wind's own input
+ * handler moves to the mouse. So that the two do not keep overwriting each
+ * other, the handler makes the gaze position the pick point as every frame
+ * starts, from the first gaze position until the handler is stopped, and the
+ * mouse only picks while there is no gaze.
+ *
+ * This skips the trip through the OS event queue, AWT and World Wind's own
+ * input handler that moving the mouse with a {@link Robot} costs for every
+ * sample, and leaves the mouse to the user. Moving the OS cursor along with the
+ * gaze can still be turned on with {@link #setMoveSystemCursor(boolean)}, at
+ * the pick rate rather than the sample rate.
+ *
+ * @author Mark Hazlewood
+ */
+public class GazeInputHandler
+{
+   // <editor-fold defaultstate="expanded" desc="Constants">
+
+   /**
+    * Default number of picks per second.
+    */
+   public static final double DEFAULT_PICK_RATE = 60.0;
+
+   // Marks that no new gaze position has arrived since the last frame
+   private static final long NO_POSITION = Long.MIN_VALUE;
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Private Members">
+
+   private final WorldWindowGLCanvas mCanvas;
+   private final EventListenerList mListeners = new EventListenerList();
+   private final RenderingListener mRenderingListener;
+
+   // Latest screen position, packed into one long so it is never torn, and
+   // when it arrived. Written by the tracker's thread, taken by the rendering
+   // thread.
+   private final AtomicLong mLatestPosition = new AtomicLong(NO_POSITION);
+   private volatile long mLatestSampleTime;
+   private volatile boolean mStarted = false;
+   private volatile long mPickIntervalNanos;
+
+   // Whether the gaze owns the pick point, and the gaze pick point. Only
+   // changed on the rendering thread, apart from stop().
+   private volatile boolean mGazeActive = false;
+   private Point mPickPoint = null;
+   private long mPickSampleTime;
+
+   // Whether the frame being drawn picks at a new gaze position, to be
+   // reported once it has been drawn, and when a frame last took one. Only
+   // used on the rendering thread.
+   private boolean mFrameReports = false;
+   private long mLastPickNanos;
+   private boolean mHasPicked = false;
+
+   private volatile boolean mMoveSystemCursor = false;
+   private Robot mRobot = null;
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Constructor(s)">
+
+   public GazeInputHandler(WorldWindowGLCanvas canvas)
+   {
+      this(canvas, DEFAULT_PICK_RATE);
+   }
+
+   /**
+    * @param canvas The World Wind canvas to pick in.
+    * @param pickRate Most picks at a new gaze position per second. Gaze
+    * samples arriving faster than this only replace the position of the next
+    * pick.
+    */
+   public GazeInputHandler(WorldWindowGLCanvas canvas, double pickRate)
+   {
+      mCanvas = canvas;
+      mPickIntervalNanos = pickInterval(pickRate);
+
+      mRenderingListener = (RenderingEvent event) ->
+      {
+         if (RenderingEvent.BEFORE_RENDERING.equals(event.getStage()))
+         {
+            frameStarting();
+         }
+         else if (RenderingEvent.AFTER_BUFFER_SWAP.equals(event.getStage()))
+         {
+            frameDrawn();
+         }
+      };
+      mCanvas.addRenderingListener(mRenderingListener);
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Working Functions">
+
+   /**
+    * Starts picking at the gaze position.
+    */
+   public void start()
+   {
+      mStarted = true;
+   }
+
+   /**
+    * Stops picking, and leaves the pick point to the mouse. Gaze positions
+    * handed over while stopped are dropped.
+    */
+   public void stop()
+   {
+      mStarted = false;
+      mLatestPosition.set(NO_POSITION);
+      mGazeActive = false;
+   }
+
+   /**
+    * Stops picking and detaches the handler from the canvas.
+    */
+   public void dispose()
+   {
+      stop();
+      mCanvas.removeRenderingListener(mRenderingListener);
+   }
+
+   /**
+    * Hands over the latest gaze position. Safe to call from any thread, and
+    * never blocks or allocates; the position is picked at in the next frame.
+    *
+    * @param screenX Gaze x, in screen coordinates.
+    * @param screenY Gaze y, in screen coordinates.
+    */
+   public void gazeAt(int screenX, int screenY)
+   {
+      if (!mStarted)
+      {
+         return;
+      }
+
+      mLatestSampleTime = System.nanoTime();
+      mLatestPosition.set(((long) screenX << 32) | (screenY & 0xFFFFFFFFL));
+   }
+
+   /**
+    * @return True if a gaze position has been handed over since the last
+    * frame started, so a frame is needed to pick at it.
+    */
+   public boolean hasNewPosition()
+   {
+      return mLatestPosition.get() != NO_POSITION;
+   }
+
+   /*
+    * Runs on the rendering thread before every frame, whoever asked for it.
+    * Takes the latest gaze position, if there is one and the pick rate allows,
+    * and puts the gaze back as the pick point over wherever the mouse left it.
+    */
+   private void frameStarting()
+   {
+      mFrameReports = false;
+
+      long position = pickDue() ? mLatestPosition.getAndSet(NO_POSITION) : NO_POSITION;
+      if (position != NO_POSITION)
+      {
+         mLastPickNanos = System.nanoTime();
+         mHasPicked = true;
+
+         int screenX = (int) (position >> 32);
+         int screenY = (int) position;
+
+         if (mMoveSystemCursor)
+         {
+            moveSystemCursor(screenX, screenY);
+         }
+
+         Point pickPoint = toCanvas(screenX, screenY);
+
+         // Off the canvas is reported once, not for every frame it stays off
+         mFrameReports = !mGazeActive || pickPoint != null || mPickPoint != null;
+
+         mPickPoint = pickPoint;
+         mPickSampleTime = mLatestSampleTime;
+         mGazeActive = true;
+      }
+
+      if (!mGazeActive)
+      {
+         return;
+      }
+
+      SceneController sceneController = mCanvas.getSceneController();
+      if (sceneController == null)
+      {
+         mFrameReports = false;
+         return;
+      }
+
+      sceneController.setPickPoint(mPickPoint);
+   }
+
+   /*
+    * Whether a pick interval has passed since the last pick. Frames a quarter
+    * of an interval early still count, so jitter in when frames start does
+    * not skip every other pick when the pick rate matches the refresh rate.
+    */
+   private boolean pickDue()
+   {
+      long interval = mPickIntervalNanos;
+      return !mHasPicked || System.nanoTime() - mLastPickNanos >= interval - interval / 4;
+   }
+
+   /*
+    * Runs on the rendering thread after every frame, whoever asked for it.
+    */
+   private void frameDrawn()
+   {
+      if (!mFrameReports)
+      {
+         return;
+      }
+      mFrameReports = false;
+
+      SceneController sceneController = mCanvas.getSceneController();
+      if (sceneController == null)
+      {
+         return;
+      }
+
+      final Point pickPoint = mPickPoint;
+      PickedObjectList pickedObjects = pickPoint != null ? sceneController.getPickedObjectList() : null;
+      final GazeSelectEvent event = new GazeSelectEvent(this, SelectEvent.ROLLOVER, pickPoint,
+                                                        pickedObjects, mPickSampleTime);
+
+      if (EventQueue.isDispatchThread())
+      {
+         callSelectListeners(event);
+      }
+      else
+      {
+         EventQueue.invokeLater(() -> callSelectListeners(event));
+      }
+   }
+
+   private void callSelectListeners(SelectEvent event)
+   {
+      for (SelectListener listener : mListeners.getListeners(SelectListener.class))
+      {
+         listener.selected(event);
+      }
+   }
+
+   /*
+    * Converts a screen position to the canvas' coordinates, or null if it is
+    * off the canvas.
+    */
+   private Point toCanvas(int screenX, int screenY)
+   {
+      if (!mCanvas.isShowing())
+      {
+         return null;
+      }
+
+      Point origin = mCanvas.getLocationOnScreen();
+      int x = screenX - origin.x;
+      int y = screenY - origin.y;
+
+      if (x < 0 || y < 0 || x >= mCanvas.getWidth() || y >= mCanvas.getHeight())
+      {
+         return null;
+      }
+
+      return new Point(x, y);
+   }
+
+   private void moveSystemCursor(int screenX, int screenY)
+   {
+      if (mRobot == null)
+      {
+         try
+         {
+            mRobot = new Robot();
+         }
+         catch (AWTException ex)
+         {
+            ex.printStackTrace();
+            mMoveSystemCursor = false;
+            return;
+         }
+      }
+
+      mRobot.mouseMove(screenX, screenY);
+   }
+
+   private static long pickInterval(double pickRate)
+   {
+      if (pickRate <= 0)
+      {
+         throw new IllegalArgumentException("Pick rate must be positive: " + pickRate);
+      }
+
+      return Math.max(1, Math.round(TimeUnit.SECONDS.toNanos(1) / pickRate));
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Public Properties">
+
+   public void addSelectListener(SelectListener listener)
+   {
+      mListeners.add(SelectListener.class, listener);
+   }
+
+   public void removeSelectListener(SelectListener listener)
+   {
+      mListeners.remove(SelectListener.class, listener);
+   }
+
+   /**
+    * @return Most picks at a new gaze position per second.
+    */
+   public double getPickRate()
+   {
+      return (double) TimeUnit.SECONDS.toNanos(1) / mPickIntervalNanos;
+   }
+
+   /**
+    * @param pickRate Most picks at a new gaze position per second. Takes
+    * effect from the next frame.
+    */
+   public void setPickRate(double pickRate)
+   {
+      mPickIntervalNanos = pickInterval(pickRate);
+   }
+
+   public boolean getMoveSystemCursor()
+   {
+      return mMoveSystemCursor;
+   }
+
+   /**
+    * @param moveSystemCursor True to also move the OS cursor to the gaze
+    * position in every frame that picks at a new one. Only needed for other applications that follow
+    * the mouse; World Wind picks at the gaze either way.
+    */
+   public void setMoveSystemCursor(boolean moveSystemCursor)
+   {
+      mMoveSystemCursor = moveSystemCursor;
+   }
+
+   /**
+    * @return The canvas this handler picks in.
+    */
+   public WorldWindowGLCanvas getCanvas()
+   {
+      return mCanvas;
+   }
+
+   // </editor-fold>
+}
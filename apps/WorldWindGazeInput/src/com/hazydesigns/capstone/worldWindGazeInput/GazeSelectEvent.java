@@ -0,0 +1,49 @@
+package com.hazydesigns.capstone.worldWindGazeInput;
+
+import gov.nasa.worldwind.event.SelectEvent;
+import gov.nasa.worldwind.pick.PickedObjectList;
+import java.awt.Point;
+
+/**
+ * A {@link SelectEvent} produced by a {@link GazeInputHandler} from a gaze
+ * position, rather than by World Wind's input handler from the mouse.
+ *
+ * @author Mark Hazlewood
+ */
+public class GazeSelectEvent extends SelectEvent
+{
+   private final long mSampleTime;
+
+   /**
+    * @param source The handler that produced the event.
+    * @param eventAction One of the {@link SelectEvent} actions.
+    * @param pickPoint Gaze position in canvas coordinates, or null when the
+    * gaze is off the canvas.
+    * @param pickedObjects Objects picked at the gaze position.
+    * @param sampleTime {@link System#nanoTime()} at which the gaze position
+    * was handed to the handler.
+    */
+   public GazeSelectEvent(GazeInputHandler source, String eventAction, Point pickPoint,
+                          PickedObjectList pickedObjects, long sampleTime)
+   {
+      super(source, eventAction, pickPoint, pickedObjects);
+      mSampleTime = sampleTime;
+   }
+
+   /**
+    * @return {@link System#nanoTime()} at which the gaze position was handed
+    * to the handler, to measure the latency from sample to selection.
+    */
+   public long getSampleTime()
+   {
+      return mSampleTime;
+   }
+
+   /**
+    * @return True if the event was produced from a gaze position.
+    */
+   public static boolean isGazeEvent(SelectEvent event)
+   {
+      return event instanceof GazeSelectEvent;
+   }
+}
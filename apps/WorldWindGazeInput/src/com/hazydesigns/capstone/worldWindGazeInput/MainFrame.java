@@ -13,6 +13,8 @@ import java.awt.GraphicsEnvironment;
 import java.awt.event.ActionEvent;
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 import java.io.BufferedWriter;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
@@ -20,15 +22,19 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 import javax.swing.JButton;
 import javax.swing.JFrame;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JSeparator;
 import javax.swing.SwingConstants;
+import rit.eyeTrackingAPI.ApplicationUtilities.GazeExecutors;
 import rit.eyeTrackingAPI.DataConstructs.GazePoint;
 import rit.eyeTrackingAPI.EyeTrackerUtilities.eyeTrackerClients.IViewXClient;
 import rit.eyeTrackingAPI.SmoothingFilters.Filter;
+import rit.eyeTrackingAPI.SmoothingFilters.OneEuroFilter;
 import rit.eyeTrackingAPI.SmoothingFilters.PassthroughFilter;
 import rit.eyeTrackingAPI.SmoothingFilters.SlidingWindowAverageFilter;
 
@@ -67,8 +73,16 @@ public class MainFrame extends JFrame
     private boolean mTaskRunning = false;
     private long mStartTaskTime = 0;
     private long mEndTaskTime = 0;
+    // On the System.nanoTime() clock the gaze samples are stamped with, so
+    // the analysis can find each task's samples
+    private long mStartTaskNanos = 0;
     private int mCurrentTaskNumber = 0;
 
+    // Task times are appended here rather than on the event dispatch thread,
+    // and waited for before the frame exits
+    private static final long TASK_LOG_FLUSH_SECONDS = 5;
+    private final ExecutorService mTaskLogExecutor = GazeExecutors.dedicatedThread("Task Log");
+
     private JButton mStartTaskButton;
     private JButton mEndTaskButton;
     private JButton mNextTaskButton;
@@ -82,7 +96,8 @@ public class MainFrame extends JFrame
     public MainFrame()
     {
         //mSmoothingFilter = new PassthroughFilter();
-        mSmoothingFilter = new SlidingWindowAverageFilter(20);
+        //mSmoothingFilter = new SlidingWindowAverageFilter(20);
+        mSmoothingFilter = new OneEuroFilter();
         mGazePoint = new GazePoint(mSmoothingFilter);
 
         mEyeTrackerListener = new EyeTrackerListener(mSmoothingFilter, null, false, 0);
@@ -114,6 +129,8 @@ public class MainFrame extends JFrame
     {
         setUndecorated(true);
         mMainViewPanel = new WorldWindPanel(mCanvasSize);
+        mEyeTrackerListener.setGazeInputHandler(mMainViewPanel.getGazeInputHandler());
+        mEyeTrackerListener.setGazeSource(mMainViewPanel.getGazeSource());
 
         mConfigTestDialog = new ConfigTestDialog(this, true);
         mNewParticipantDialog = new NewParticipantDialog(this, true);
@@ -201,6 +218,17 @@ public class MainFrame extends JFrame
             }
         });
 
+        // Finish writing task times and release the gaze input's timers and
+        // the dwell scheduler's thread before the frame exits
+        addWindowListener(new WindowAdapter()
+        {
+            @Override
+            public void windowClosing(WindowEvent e)
+            {
+                shutDown();
+            }
+        });
+
         // Search the layer list for layers that are also select listeners and register them with the World
         // Window. This enables interactive layers to be included without specific knowledge of them here.
         /*for (Layer layer : mMainViewPanel.getWorldWindow().getModel().getLayers())
@@ -252,6 +280,31 @@ public class MainFrame extends JFrame
        }
     }
 
+    /**
+     * Releases what the frame started. Runs on the event dispatch thread as
+     * the frame closes, before it exits.
+     */
+    private void shutDown()
+    {
+        mMainViewPanel.dispose();
+
+        // The log thread is a daemon, so the last task time would be lost if
+        // the frame exited before it had been appended
+        mTaskLogExecutor.shutdown();
+        try
+        {
+            if (!mTaskLogExecutor.awaitTermination(TASK_LOG_FLUSH_SECONDS, TimeUnit.SECONDS))
+            {
+                java.util.logging.Logger.getLogger(MainFrame.class.getName()).log(java.util.logging.Level.WARNING,
+                        "Task times were still being written on exit");
+            }
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
     private void toggleListeningToTracker()
     {
         if (!mListeningToTracker)
@@ -325,6 +378,7 @@ public class MainFrame extends JFrame
        
         ++mCurrentTaskNumber;
         mStartTaskTime = System.currentTimeMillis();
+        mStartTaskNanos = System.nanoTime();
 
         mTaskRunning = true;
         mNewParticipantButton.setEnabled(false);
@@ -333,14 +387,26 @@ public class MainFrame extends JFrame
     private void endTask()
     {
         mEndTaskTime = System.currentTimeMillis();
+        long endTaskNanos = System.nanoTime();
         long totalTaskTime = mEndTaskTime - mStartTaskTime;
 
-        String recordFileName = "participant" + mCurrentParticipantNumber + "_taskTimes.txt";
-        String line = "Task " + mCurrentTaskNumber + ", " + totalTaskTime;
+        final Path path = Paths.get(mParticipantRecordPath + "\\" + "participant" + mCurrentParticipantNumber + "_taskTimes.txt");
+        final String line = "Task " + mCurrentTaskNumber + ", " + totalTaskTime
+                            + ", " + mStartTaskNanos + ", " + endTaskNanos;
 
+        mTaskLogExecutor.execute(() ->
+        {
+            appendTaskTime(path, line);
+        });
+
+        mTaskRunning = false;
+        mNewParticipantButton.setEnabled(true);
+    }
+
+    private static void appendTaskTime(Path path, String line)
+    {
         try
         {
-            Path path = Paths.get(mParticipantRecordPath + "\\" + recordFileName);
             if (Files.exists(path.getParent()))
             {
                 // "try-with-resources" a.k.a. "using"
@@ -360,9 +426,6 @@ public class MainFrame extends JFrame
         {
             ex.printStackTrace();
         }
-
-        mTaskRunning = false;
-        mNewParticipantButton.setEnabled(true);
     }
 
     private void startNextTask()
@@ -10,7 +10,6 @@ import gov.nasa.worldwind.WorldWind;
 import gov.nasa.worldwind.WorldWindow;
 import gov.nasa.worldwind.avlist.AVKey;
 import gov.nasa.worldwind.awt.WorldWindowGLCanvas;
-import gov.nasa.worldwind.event.PositionEvent;
 import gov.nasa.worldwind.geom.Position;
 import gov.nasa.worldwind.layers.Layer;
 import gov.nasa.worldwind.layers.RenderableLayer;
@@ -32,6 +31,7 @@ import java.awt.image.BufferedImage;
 import java.util.ArrayList;
 import javax.swing.JPanel;
 import javax.swing.Timer;
+import rit.eyeTrackingAPI.Interaction.PredictiveGazeSource;
 
 /**
  * Container panel for the World Wind view.
@@ -47,6 +47,10 @@ public class WorldWindPanel extends JPanel
 
    private final ScreenAnnotation mCursorImage;
    private final GazeControlsLayer mGazeControlsLayer;
+   private final GazeControlsSelectListener mControlSelectListener;
+   private final GazeInputHandler mGazeInputHandler;
+   private final PredictiveGazeSource mGazeSource;
+   private final GazeCursorUpdater mGazeCursorUpdater;
 
    private final Position[] mTestLocations =
    {
@@ -95,24 +99,24 @@ public class WorldWindPanel extends JPanel
       mCursorImage.getAttributes().setSize(new Dimension(64, 64));
       cursorLayer.addRenderable(mCursorImage);
 
-      mWorldWindow.addPositionListener((PositionEvent arg0) ->
-      {
-         if (arg0.getScreenPoint() != null)
-         {
-            // These two points mysteriously have different origins, even though
-            // their accessors have the same name ("screen point"). Thanks NASA.
-            int x = arg0.getScreenPoint().x;
-            int y = Math.abs(arg0.getScreenPoint().y - mWorldWindow.getView().getViewport().height);
-
-            mCursorImage.setScreenPoint(new Point(x, y));
-            mWorldWindow.redraw();
-         }
-      });
-
       mGazeControlsLayer = new GazeControlsLayer();
       mGazeControlsLayer.setName("GazeControlLayer");
-      GazeControlsSelectListener controlSelectListener = new GazeControlsSelectListener(mWorldWindow, mGazeControlsLayer, mCursorImage);
-      mWorldWindow.addSelectListener(controlSelectListener);
+      mControlSelectListener = new GazeControlsSelectListener(mWorldWindow, mGazeControlsLayer);
+
+      // Gaze picks straight into World Wind, and only gaze picks drive the
+      // controls; World Wind's own rollovers, which follow the mouse, would
+      // cancel a dwell under the gaze
+      mGazeInputHandler = new GazeInputHandler((WorldWindowGLCanvas) mWorldWindow);
+      mGazeInputHandler.addSelectListener(mControlSelectListener);
+      mGazeInputHandler.start();
+
+      // The cursor is moved once per frame, to where the gaze is predicted to
+      // be when the frame is shown, and gaze picks are made in the same
+      // frames, which are limited to the refresh rate
+      mGazeSource = new PredictiveGazeSource();
+      mGazeCursorUpdater = new GazeCursorUpdater((WorldWindowGLCanvas) mWorldWindow, mCursorImage,
+                                                 mGazeSource, mGazeInputHandler);
+      mGazeCursorUpdater.start();
       //mWorldWindow.getModel().getLayers().add(mGazeControlsLayer);
       
       //mWorldWindow.getModel().getLayers().add(new ManeuverRecommendationLayer());
@@ -156,6 +160,24 @@ public class WorldWindPanel extends JPanel
       return mGazeControlsLayer;
    }
 
+   /**
+    *
+    * @return the handler that gaze points are picked with
+    */
+   public GazeInputHandler getGazeInputHandler()
+   {
+      return mGazeInputHandler;
+   }
+
+   /**
+    *
+    * @return the source the gaze cursor is drawn from
+    */
+   public PredictiveGazeSource getGazeSource()
+   {
+      return mGazeSource;
+   }
+
    private void hideCursor()
    {
       // Transparent 16 x 16 pixel cursor image.
@@ -265,4 +287,18 @@ public class WorldWindPanel extends JPanel
    {
        mWorldWindow.redraw();
    }
+
+   /**
+    * Stops the gaze picking, cursor and dwell threads and timers, for when the
+    * panel is thrown away, as the main frame does when it closes. Removing the
+    * panel from its parent does not, as it is taken out and put back when the
+    * control panel is toggled.
+    */
+   public void dispose()
+   {
+      mGazeInputHandler.removeSelectListener(mControlSelectListener);
+      mControlSelectListener.dispose();
+      mGazeInputHandler.dispose();
+      mGazeCursorUpdater.dispose();
+   }
 }
@@ -0,0 +1,89 @@
+package com.hazydesigns.capstone.worldWindGazeInput.ui;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Which pixels of a control image can be hit, packed one bit per pixel. A
+ * pixel can be hit unless it is fully transparent, the same test the select
+ * listener used to make on the image itself.
+ *
+ * Built once per image, after which a hit test is a couple of array lookups
+ * and never touches the image's raster.
+ *
+ * @author Mark Hazlewood
+ */
+public class AlphaHitMask
+{
+   // <editor-fold defaultstate="expanded" desc="Private Members">
+
+   private final int mWidth;
+   private final int mHeight;
+   private final long[] mBits;
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Constructor(s)">
+
+   /**
+    * @param image Image to build the mask from.
+    */
+   public AlphaHitMask(BufferedImage image)
+   {
+      mWidth = image.getWidth();
+      mHeight = image.getHeight();
+      mBits = new long[(int) (((long) mWidth * mHeight + 63) >>> 6)];
+
+      int[] row = new int[mWidth];
+      for (int y = 0; y < mHeight; y++)
+      {
+         image.getRGB(0, y, mWidth, 1, row, 0, mWidth);
+
+         int bit = y * mWidth;
+         for (int x = 0; x < mWidth; x++, bit++)
+         {
+            if ((row[x] >>> 24) != 0)
+            {
+               mBits[bit >>> 6] |= 1L << bit;
+            }
+         }
+      }
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Working Functions">
+
+   /**
+    * @param x Column, from the left of the image.
+    * @param y Row, from the top of the image.
+    *
+    * @return True if the pixel is not fully transparent. False for any point
+    * outside the image.
+    */
+   public boolean isHit(int x, int y)
+   {
+      if (x < 0 || y < 0 || x >= mWidth || y >= mHeight)
+      {
+         return false;
+      }
+
+      int bit = y * mWidth + x;
+      return (mBits[bit >>> 6] & (1L << bit)) != 0;
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Properties">
+
+   public int getWidth()
+   {
+      return mWidth;
+   }
+
+   public int getHeight()
+   {
+      return mHeight;
+   }
+
+   // </editor-fold>
+}
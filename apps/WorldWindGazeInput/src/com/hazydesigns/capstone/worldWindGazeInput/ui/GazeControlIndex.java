@@ -0,0 +1,108 @@
+package com.hazydesigns.capstone.worldWindGazeInput.ui;
+
+import gov.nasa.worldwind.render.ScreenImage;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.List;
+
+/**
+ * The controls of a {@link GazeControlsLayer} as they are currently laid out,
+ * in the order they take precedence when they overlap. Answers which control,
+ * if any, is under a point in a single pass over the controls, using their
+ * screen bounds and {@link AlphaHitMask}s.
+ *
+ * An index is immutable; the layer builds a new one whenever the controls
+ * move or change.
+ *
+ * @author Mark Hazlewood
+ */
+public class GazeControlIndex
+{
+   // <editor-fold defaultstate="expanded" desc="Private Members">
+
+   private final Control[] mControls;
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Constructor(s)">
+
+   /**
+    * @param controls The controls, the one that wins an overlap first.
+    */
+   public GazeControlIndex(List<Control> controls)
+   {
+      mControls = controls.toArray(new Control[controls.size()]);
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Working Functions">
+
+   /**
+    * @param point A point in AWT screen coordinates, such as a pick point.
+    *
+    * @return The control under the point, or null if there is none or the
+    * point is on a transparent part of every control it is within.
+    */
+   public Control controlAt(Point point)
+   {
+      if (point == null)
+      {
+         return null;
+      }
+
+      for (Control control : mControls)
+      {
+         Rectangle bounds = control.mBounds;
+         if (control.mMask.isHit(point.x - bounds.x, point.y - bounds.y))
+         {
+            return control;
+         }
+      }
+
+      return null;
+   }
+
+   // </editor-fold>
+
+   /**
+    * One control: what it does, the image showing it, and where it is.
+    */
+   public static class Control
+   {
+      private final String mOperation;
+      private final ScreenImage mScreenImage;
+      private final Rectangle mBounds;
+      private final AlphaHitMask mMask;
+
+      /**
+       * @param operation The control's AVKey.VIEW_OPERATION.
+       * @param screenImage The image showing the control.
+       * @param bounds Where the control is, in AWT screen coordinates. Should
+       * be the size of the mask.
+       * @param mask Which pixels of the control can be hit.
+       */
+      public Control(String operation, ScreenImage screenImage, Rectangle bounds, AlphaHitMask mask)
+      {
+         mOperation = operation;
+         mScreenImage = screenImage;
+         mBounds = new Rectangle(bounds);
+         mMask = mask;
+      }
+
+      public String getOperation()
+      {
+         return mOperation;
+      }
+
+      public ScreenImage getScreenImage()
+      {
+         return mScreenImage;
+      }
+
+      public Rectangle getBounds()
+      {
+         return new Rectangle(mBounds);
+      }
+   }
+}
@@ -9,11 +9,11 @@ import gov.nasa.worldwind.render.Size;
 import gov.nasa.worldwind.util.WWIO;
 import java.awt.Point;
 import java.awt.Rectangle;
-import java.awt.geom.AffineTransform;
-import java.awt.image.AffineTransformOp;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
 import javax.imageio.ImageIO;
 
 /**
@@ -23,6 +23,12 @@ import javax.imageio.ImageIO;
  * ViewControlsSelectListener did not need to be updated or modified, only the
  * UI presentation changes.
  *
+ * Alongside each control image the layer keeps an {@link AlphaHitMask}, and
+ * after every layout it publishes a {@link GazeControlIndex} that the select
+ * listener hit-tests gaze against. Scaled images and their masks come from a
+ * {@link ScaledControlImageCache}, which works out the common scales in the
+ * background when the layer is created.
+ *
  * @author Mark Hazlewood
  *
  * @see gov.nasa.worldwind.layers.ViewControlsLayer
@@ -49,6 +55,21 @@ public class GazeControlsLayer extends RenderableLayer
    private BufferedImage mCenterPanImage = null;
    private BufferedImage mZoomInImage = null;
    private BufferedImage mZoomOutImage = null;
+
+   private AlphaHitMask mEdgePanMask = null;
+   private AlphaHitMask mCenterPanMask = null;
+   private AlphaHitMask mZoomInMask = null;
+   private AlphaHitMask mZoomOutMask = null;
+
+   private volatile GazeControlIndex mControlIndex = null;
+
+   /**
+    * Scales worked out in the background at startup, besides the initial one:
+    * the zoom scales the configuration dialog is most often set to.
+    */
+   protected static final double[] PRECOMPUTED_SCALES = { 1.0, 0.9, 0.7, 0.6, 0.5 };
+
+   private final ScaledControlImageCache mImageCache = new ScaledControlImageCache();
    
    private double mZoomScale = 0.8;
 
@@ -73,19 +94,26 @@ public class GazeControlsLayer extends RenderableLayer
 
       try
       {
-         mEdgePanImage
-                 = ImageIO.read((InputStream) WWIO.getFileOrResourceAsStream(mEdgePanImagePath,
-                                 this.getClass()));
-         mCenterPanImage
-                 = ImageIO.read((InputStream) WWIO.getFileOrResourceAsStream(mCenterPanImagePath,
-                                 this.getClass()));
-         mZoomInImage
-                 = ImageIO.read((InputStream) WWIO.getFileOrResourceAsStream(mZoomInImagePath,
-                                 this.getClass()));
-         mZoomOutImage
-                 = ImageIO.read((InputStream) WWIO.getFileOrResourceAsStream(mZoomOutImagePath,
-                                 this.getClass()));
-          scaleZoom(mZoomScale);
+         mImageCache.addOriginal(mEdgePanImagePath,
+                 ImageIO.read((InputStream) WWIO.getFileOrResourceAsStream(mEdgePanImagePath,
+                                 this.getClass())));
+         mImageCache.addOriginal(mCenterPanImagePath,
+                 ImageIO.read((InputStream) WWIO.getFileOrResourceAsStream(mCenterPanImagePath,
+                                 this.getClass())));
+         mImageCache.addOriginal(mZoomInImagePath,
+                 ImageIO.read((InputStream) WWIO.getFileOrResourceAsStream(mZoomInImagePath,
+                                 this.getClass())));
+         mImageCache.addOriginal(mZoomOutImagePath,
+                 ImageIO.read((InputStream) WWIO.getFileOrResourceAsStream(mZoomOutImagePath,
+                                 this.getClass())));
+
+         // The edge pan control is never scaled
+         ScaledControlImageCache.ScaledControlImage edgePan = mImageCache.get(mEdgePanImagePath, 1.0);
+         mEdgePanImage = edgePan.getImage();
+         mEdgePanMask = edgePan.getMask();
+
+         scaleZoom(mZoomScale);
+         mImageCache.precompute(PRECOMPUTED_SCALES, mZoomInImagePath, mZoomOutImagePath, mCenterPanImagePath);
       }
       catch (IOException ex)
       {
@@ -96,6 +124,7 @@ public class GazeControlsLayer extends RenderableLayer
    public void reset()
    {
        initialized = false;       
+       mControlIndex = null;
        this.removeAllRenderables();
    }
 
@@ -280,37 +309,57 @@ public class GazeControlsLayer extends RenderableLayer
       }
 
       referenceViewport = dc.getView().getViewport();
+      mControlIndex = buildControlIndex();
+   }
+
+   /*
+    * Controls in the order the select listener has always tested them: pan
+    * first, then zoom in, then zoom out.
+    */
+   private GazeControlIndex buildControlIndex()
+   {
+      List<GazeControlIndex.Control> controls = new ArrayList<>();
+
+      if (mShowEdgePanControls)
+      {
+         controls.add(new GazeControlIndex.Control(AVKey.VIEW_PAN, mEdgePanScreenImage, mEdgePanScreenBounds, mEdgePanMask));
+      }
+      else if (mShowCenterPanControls)
+      {
+         controls.add(new GazeControlIndex.Control(AVKey.VIEW_PAN, mCenterPanScreenImage, mCenterPanScreenBounds, mCenterPanMask));
+      }
+
+      if (mShowZoomInControls)
+      {
+         controls.add(new GazeControlIndex.Control(AVKey.VIEW_ZOOM_IN, mZoomInScreenImage, mZoomInScreenBounds, mZoomInMask));
+      }
+
+      if (mShowZoomOutControls)
+      {
+         controls.add(new GazeControlIndex.Control(AVKey.VIEW_ZOOM_OUT, mZoomOutScreenImage, mZoomOutScreenBounds, mZoomOutMask));
+      }
+
+      return new GazeControlIndex(controls);
    }
    
+   /**
+    * Sets the size of the zoom and center pan controls.
+    *
+    * @param newScale Scale relative to the controls' original images.
+    */
    public void scaleZoom(double newScale)
    {  
-      int zoomInWidth = (int)(mZoomInImage.getWidth() * newScale);
-      int zoomInHeight = (int)(mZoomInImage.getHeight() * newScale);
-      int zoomOutWidth = (int)(mZoomOutImage.getWidth() * newScale);
-      int zoomOutHeight = (int)(mZoomOutImage.getHeight() * newScale);
-      
-      int centerPanWidth = (int)(mCenterPanImage.getWidth() * newScale);
-      int centerPanHeight = (int)(mCenterPanImage.getHeight() * newScale);
-      
-      BufferedImage zoomInImage = 
-         new BufferedImage(zoomInWidth, zoomInHeight, BufferedImage.TYPE_INT_ARGB);
-      BufferedImage zoomOutImage = 
-         new BufferedImage(zoomOutWidth, zoomOutHeight, BufferedImage.TYPE_INT_ARGB);
-      BufferedImage centerPanImage = 
-         new BufferedImage(centerPanWidth, centerPanHeight, BufferedImage.TYPE_INT_ARGB);
-      
-      AffineTransform transform = new AffineTransform();
-      transform.scale(newScale, newScale);
-      AffineTransformOp scaleOp = 
-         new AffineTransformOp(transform, AffineTransformOp.TYPE_BILINEAR);
+      ScaledControlImageCache.ScaledControlImage zoomIn = mImageCache.get(mZoomInImagePath, newScale);
+      ScaledControlImageCache.ScaledControlImage zoomOut = mImageCache.get(mZoomOutImagePath, newScale);
+      ScaledControlImageCache.ScaledControlImage centerPan = mImageCache.get(mCenterPanImagePath, newScale);
       
-      zoomInImage = scaleOp.filter(mZoomInImage, zoomInImage);
-      zoomOutImage = scaleOp.filter(mZoomOutImage, zoomOutImage);
-      centerPanImage = scaleOp.filter(mCenterPanImage, centerPanImage);
-      
-      mZoomInImage = zoomInImage;
-      mZoomOutImage = zoomOutImage;
-      mCenterPanImage = centerPanImage;
+      mZoomInImage = zoomIn.getImage();
+      mZoomOutImage = zoomOut.getImage();
+      mCenterPanImage = centerPan.getImage();
+
+      mZoomInMask = zoomIn.getMask();
+      mZoomOutMask = zoomOut.getMask();
+      mCenterPanMask = centerPan.getMask();
       
       mZoomScale = newScale;
       reset();
@@ -321,6 +370,15 @@ public class GazeControlsLayer extends RenderableLayer
       return mZoomScale;
    }
 
+   /**
+    * @return The controls as last laid out, or null if they have not been
+    * laid out since they last changed.
+    */
+   public GazeControlIndex getControlIndex()
+   {
+      return mControlIndex;
+   }
+
    public ScreenImage getEdgePanScreenImage()
    {
       return mEdgePanScreenImage;
@@ -417,6 +475,11 @@ public class GazeControlsLayer extends RenderableLayer
       }
    }
 
+   public void highlight(GazeControlIndex.Control control)
+   {
+      control.getScreenImage().setOpacity(1);
+   }
+
    public void highlightEdgePan()
    {
       mEdgePanScreenImage.setOpacity(1);
@@ -18,11 +18,22 @@ import gov.nasa.worldwind.render.ScreenAnnotation;
 import gov.nasa.worldwind.render.ScreenImage;
 import gov.nasa.worldwind.view.orbit.OrbitView;
 import java.awt.Point;
-import java.awt.Rectangle;
-import java.awt.event.ActionEvent;
-import javax.swing.Timer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.swing.SwingUtilities;
+import rit.eyeTrackingAPI.Interaction.DwellListener;
+import rit.eyeTrackingAPI.Interaction.DwellScheduler;
 
 /**
+ * Moves the view while the gaze dwells on one of the {@link GazeControlsLayer}
+ * controls. Each control is a target of a {@link DwellScheduler}: once the
+ * gaze has stayed on it for {@link #GAZE_ACTIVATION_DELAY} ms the view is
+ * panned or zoomed, and again every {@link #DEFAULT_TIMER_DELAY} ms until the
+ * gaze has been off it for {@link #GAZE_HYSTERESIS} ms.
+ *
+ * The scheduler runs a thread of its own, so a listener that is no longer
+ * needed must be disposed of with {@link #dispose()}.
  *
  * @author Mark Hazlewood
  */
@@ -31,18 +42,21 @@ public class GazeControlsSelectListener implements SelectListener
 
     protected static final int DEFAULT_TIMER_DELAY = 50;
     protected static final int GAZE_ACTIVATION_DELAY = 1000;
+    protected static final int GAZE_HYSTERESIS = 100;
     protected final double PAN_STEP = 0.2;
     protected final double ZOOM_STEP = 0.6;
 
     protected WorldWindow wwd;
     protected GazeControlsLayer controlsLayer;
 
-    protected Timer repeatTimer;
+    protected final DwellScheduler dwellScheduler = new DwellScheduler();
     protected String pressedControlType = null;
     protected Point lastPickPoint = null;
 
-    private Timer mGazeDelayTimer;
-    private boolean mShouldActivate = false;
+    private final Map<String, DwellScheduler.Target> mDwellTargets = new HashMap<>();
+
+    // Set while a view update is queued on the EDT, so repeats never pile up
+    private final AtomicBoolean mViewUpdatePending = new AtomicBoolean(false);
 
     private ScreenAnnotation mCursorImage = null;
 
@@ -56,15 +70,15 @@ public class GazeControlsSelectListener implements SelectListener
         this.wwd = wwd;
         this.controlsLayer = layer;
 
-        // Setup repeat timer
-        this.repeatTimer = new Timer(DEFAULT_TIMER_DELAY, (ActionEvent event) ->
+        for (String controlType : new String[] { AVKey.VIEW_PAN, AVKey.VIEW_ZOOM_IN, AVKey.VIEW_ZOOM_OUT })
         {
-            if (mShouldActivate == true)
-            {
-                updateView(pressedControlType);
-            }
-        });
-        this.repeatTimer.start();
+            DwellScheduler.Target target = dwellScheduler.addTarget(GAZE_ACTIVATION_DELAY,
+                    GAZE_HYSTERESIS,
+                    DEFAULT_TIMER_DELAY,
+                    this::dwellChanged);
+            target.setTag(controlType);
+            mDwellTargets.put(controlType, target);
+        }
     }
 
     /**
@@ -120,16 +134,7 @@ public class GazeControlsSelectListener implements SelectListener
         {
          // This case triggers when a control is activated and then the cursor
             // leaves the control, so we can treat it as a "mouse out" event
-
-            // Reset activation state
-            mShouldActivate = false;
-
-            // Kill gaze timer, just in case it's running
-            if (mGazeDelayTimer != null)
-            {
-                mGazeDelayTimer.stop();
-                mGazeDelayTimer = null;
-            }
+            dwellScheduler.gazeAt(null);
 
             return;
         }
@@ -148,147 +153,55 @@ public class GazeControlsSelectListener implements SelectListener
         {
             controlsLayer.unHighlightAll();
 
-            boolean panPicked = false;
-            boolean zoomInPicked = false;
-            boolean zoomOutPicked = false;
+            // One pass over the controls' precomputed hit masks, pan first,
+            // then zoom in, then zoom out
+            GazeControlIndex controlIndex = controlsLayer.getControlIndex();
+            GazeControlIndex.Control pickedControl =
+                    (controlIndex != null) ? controlIndex.controlAt(event.getPickPoint()) : null;
 
-            if (controlsLayer.getShowEdgePan())
+            if (pickedControl != null)
             {
-                Rectangle panScreenBounds = controlsLayer.getEdgePanScreenBounds();
-                if (panScreenBounds.contains(event.getPickPoint()))
-                {
-                    int pixelX = event.getPickPoint().x - panScreenBounds.x;
-                    int pixelY = event.getPickPoint().y - panScreenBounds.y;
-
-                    try
-                    {
-                        int pixelColor = controlsLayer.getEdgePanImage().getRGB(pixelX, pixelY);
-                        boolean transparent = ((pixelColor >> 24) == 0x00);
-
-                        if (!transparent)
-                        {
-                            controlsLayer.highlightEdgePan();
-                            panPicked = true;
-                            pressedControlType = AVKey.VIEW_PAN;
-                        }
-                    }
-                    catch (Exception ex)
-                    {
-                        System.out.println(ex.getMessage());
-                    }
-                }
-            }
-            else if (controlsLayer.getShowCenterPan())
-            {
-                Rectangle panScreenBounds = controlsLayer.getCenterPanScreenBounds();
-                if (panScreenBounds.contains(event.getPickPoint()))
-                {
-                    int pixelX = event.getPickPoint().x - panScreenBounds.x;
-                    int pixelY = event.getPickPoint().y - panScreenBounds.y;
-
-                    try
-                    {
-                        int pixelColor = controlsLayer.getCenterPanImage().getRGB(pixelX, pixelY);
-                        boolean transparent = ((pixelColor >> 24) == 0x00);
-
-                        if (!transparent)
-                        {
-                            controlsLayer.highlightCenterPan();
-                            panPicked = true;
-                            pressedControlType = AVKey.VIEW_PAN;
-                        }
-                    }
-                    catch (Exception ex)
-                    {
-                        System.out.println(ex.getMessage());
-                    }
-                }
-            }
+                controlsLayer.highlight(pickedControl);
+                pressedControlType = pickedControl.getOperation();
 
-            if (controlsLayer.getShowZoomIn() && panPicked == false)
-            {
-                Rectangle zoomInScreenBounds = controlsLayer.getZoomInScreenBounds();
-                if (zoomInScreenBounds.contains(event.getPickPoint()))
-                {
-                    int pixelX = event.getPickPoint().x - zoomInScreenBounds.x;
-                    int pixelY = event.getPickPoint().y - zoomInScreenBounds.y;
-
-                    try
-                    {
-                        int pixelColor = controlsLayer.getZoomInImage().getRGB(pixelX, pixelY);
-                        boolean transparent = ((pixelColor >> 24) == 0x00);
-
-                        if (!transparent)
-                        {
-                            controlsLayer.highlightZoomIn();
-                            zoomInPicked = true;
-                            pressedControlType = AVKey.VIEW_ZOOM_IN;
-                        }
-                    }
-                    catch (Exception ex)
-                    {
-                        System.out.println(ex.getMessage());
-                    }
-                }
+                // Starts the control's dwell, or carries on with it
+                dwellScheduler.gazeAt(mDwellTargets.get(pressedControlType));
             }
-
-            if (controlsLayer.getShowZoomOut() && zoomInPicked == false && panPicked == false)
+            else
             {
-                Rectangle zoomOutScreenBounds = controlsLayer.getZoomOutScreenBounds();
-                if (zoomOutScreenBounds.contains(event.getPickPoint()))
-                {
-                    int pixelX = event.getPickPoint().x - zoomOutScreenBounds.x;
-                    int pixelY = event.getPickPoint().y - zoomOutScreenBounds.y;
-
-                    try
-                    {
-                        int pixelColor = controlsLayer.getZoomOutImage().getRGB(pixelX, pixelY);
-                        boolean transparent = ((pixelColor >> 24) == 0x00);
-
-                        if (!transparent)
-                        {
-                            controlsLayer.highlightZoomOut();
-                            zoomOutPicked = true;
-                            pressedControlType = AVKey.VIEW_ZOOM_OUT;
-                        }
-                    }
-                    catch (Exception ex)
-                    {
-                        System.out.println(ex.getMessage());
-                    }
-                }
+                dwellScheduler.gazeAt(null);
+                controlsLayer.unHighlightAll();
             }
+        }
+    }
 
-            if (panPicked || zoomInPicked || zoomOutPicked)
-            {
-                // If the timer hasn't been started yet, start it
-                if (mGazeDelayTimer == null)
-                {
-                    mGazeDelayTimer = new Timer(GAZE_ACTIVATION_DELAY, (ActionEvent ae) ->
-                    {
-                        // For gaze input, treat a hover or rollover as a selection after
-                        // a delay.
-                        mShouldActivate = true;
-
-                        if (mGazeDelayTimer != null)
-                        {
-                            mGazeDelayTimer.stop();
-                        }
-                    });
-                    mGazeDelayTimer.start();
-                }
+    /**
+     * Stops the dwell scheduler's thread. No control is activated afterwards.
+     */
+    public void dispose()
+    {
+        dwellScheduler.close();
+    }
 
-                // If the timer has started, then elapsed, continue button activation
-                else if (mGazeDelayTimer.isRunning() == false)
-                {
-                    mGazeDelayTimer.restart();
-                }
-            }
-            else
+    /*
+     * Called on the dwell scheduler's thread when a control is activated,
+     * repeats or is released. The view is updated on the EDT.
+     */
+    private void dwellChanged(DwellScheduler.Target target, DwellListener.Phase phase)
+    {
+        if (phase == DwellListener.Phase.RELEASED)
+        {
+            return;
+        }
+
+        if (mViewUpdatePending.compareAndSet(false, true))
+        {
+            final String controlType = (String) target.getTag();
+            SwingUtilities.invokeLater(() ->
             {
-                mShouldActivate = false;
-                controlsLayer.unHighlightAll();
-            }
+                mViewUpdatePending.set(false);
+                updateView(controlType);
+            });
         }
     }
 
@@ -0,0 +1,309 @@
+package com.hazydesigns.capstone.worldWindGazeInput.ui;
+
+import java.awt.geom.AffineTransform;
+import java.awt.image.AffineTransformOp;
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import rit.eyeTrackingAPI.ApplicationUtilities.GazeExecutors;
+
+/**
+ * Control images scaled to the sizes the gaze controls are shown at, each
+ * with its {@link AlphaHitMask}, so that switching between scales does not
+ * scale the images and rebuild the masks every time.
+ *
+ * Images are always scaled from the originals, never from an earlier scaled
+ * copy. Scales are rounded to the nearest thousandth, so 0.1 + 0.2 and 0.3
+ * share an entry.
+ *
+ * The cache holds at most {@link #DEFAULT_MAX_BYTES} of scaled images and
+ * masks, evicting the least recently used scales first. A scale that is not
+ * cached is computed on the calling thread; if another thread is already
+ * computing it, the caller waits for that one instead of doing the work
+ * twice. Common scales can be computed ahead of time in the background with
+ * {@link #precompute(double[], String...)}.
+ *
+ * @author Mark Hazlewood
+ */
+public class ScaledControlImageCache
+{
+   // <editor-fold defaultstate="expanded" desc="Constants">
+
+   /**
+    * Default limit on the memory used by scaled images and masks.
+    */
+   public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Private Members">
+
+   private final Map<String, BufferedImage> mOriginals = new HashMap<>();
+   private final long mMaxBytes;
+
+   // Least recently used first, guarded by this
+   private final LinkedHashMap<Key, FutureTask<ScaledControlImage>> mEntries = new LinkedHashMap<>(16, 0.75f, true);
+   private long mBytes = 0;
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Constructor(s)">
+
+   public ScaledControlImageCache()
+   {
+      this(DEFAULT_MAX_BYTES);
+   }
+
+   /**
+    * @param maxBytes Limit on the memory used by scaled images and masks. The
+    * most recently used entry is kept even if it is larger on its own.
+    */
+   public ScaledControlImageCache(long maxBytes)
+   {
+      mMaxBytes = maxBytes;
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Working Functions">
+
+   /**
+    * Adds a control's original image. Any scaled copies of an image previously
+    * added for the control are dropped.
+    *
+    * @param control Name of the control, such as its image path.
+    * @param image The unscaled image.
+    */
+   public synchronized void addOriginal(String control, BufferedImage image)
+   {
+      mOriginals.put(control, image);
+
+      Iterator<Map.Entry<Key, FutureTask<ScaledControlImage>>> entries = mEntries.entrySet().iterator();
+      while (entries.hasNext())
+      {
+         Map.Entry<Key, FutureTask<ScaledControlImage>> entry = entries.next();
+         if (entry.getKey().mControl.equals(control))
+         {
+            mBytes -= entry.getKey().mBytes;
+            entries.remove();
+         }
+      }
+   }
+
+   /**
+    * @param control Name of a control added with
+    * {@link #addOriginal(String, BufferedImage)}.
+    * @param scale Scale relative to the original image.
+    *
+    * @return The control's image at that scale, with its hit mask.
+    *
+    * @throws IllegalArgumentException If no image was added for the control.
+    */
+   public ScaledControlImage get(String control, double scale)
+   {
+      FutureTask<ScaledControlImage> task;
+      Key key;
+      boolean computeHere = false;
+
+      synchronized (this)
+      {
+         final BufferedImage original = mOriginals.get(control);
+         if (original == null)
+         {
+            throw new IllegalArgumentException("No image for control " + control);
+         }
+
+         key = new Key(control, scale, original);
+         task = mEntries.get(key);
+         if (task == null)
+         {
+            final double roundedScale = key.mScale / 1000.0;
+            task = new FutureTask<>(() -> scale(original, roundedScale));
+            mEntries.put(key, task);
+            mBytes += key.mBytes;
+            evict();
+            computeHere = true;
+         }
+      }
+
+      if (computeHere)
+      {
+         task.run();
+      }
+
+      try
+      {
+         return task.get();
+      }
+      catch (InterruptedException ex)
+      {
+         Thread.currentThread().interrupt();
+         throw new IllegalStateException("Interrupted waiting for " + control + " at scale " + scale, ex);
+      }
+      catch (ExecutionException ex)
+      {
+         // Don't keep the failure around for the next caller
+         synchronized (this)
+         {
+            if (mEntries.get(key) == task)
+            {
+               mEntries.remove(key);
+               mBytes -= key.mBytes;
+            }
+         }
+         throw new IllegalStateException("Could not scale " + control + " to " + scale, ex.getCause());
+      }
+   }
+
+   /**
+    * Scales controls to each of the given scales on a background thread, most
+    * important scale first.
+    *
+    * @param scales The scales.
+    * @param controls Names of the controls to scale.
+    */
+   public void precompute(final double[] scales, final String... controls)
+   {
+      ExecutorService executor = GazeExecutors.dedicatedThread("Control Image Cache");
+      executor.execute(() ->
+      {
+         for (double scale : scales)
+         {
+            for (String control : controls)
+            {
+               get(control, scale);
+            }
+         }
+      });
+
+      // Lets the thread finish the work above, then exit
+      executor.shutdown();
+   }
+
+   /*
+    * Called with the monitor held.
+    */
+   private void evict()
+   {
+      Iterator<Key> keys = mEntries.keySet().iterator();
+      while (mBytes > mMaxBytes && mEntries.size() > 1)
+      {
+         Key eldest = keys.next();
+         mBytes -= eldest.mBytes;
+         keys.remove();
+      }
+   }
+
+   private static ScaledControlImage scale(BufferedImage original, double scale)
+   {
+      BufferedImage image = original;
+
+      if (scale != 1.0)
+      {
+         int width = Math.max(1, (int) (original.getWidth() * scale));
+         int height = Math.max(1, (int) (original.getHeight() * scale));
+
+         AffineTransform transform = new AffineTransform();
+         transform.scale(scale, scale);
+         AffineTransformOp scaleOp = new AffineTransformOp(transform, AffineTransformOp.TYPE_BILINEAR);
+
+         image = scaleOp.filter(original, new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB));
+      }
+
+      return new ScaledControlImage(image, new AlphaHitMask(image));
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Properties">
+
+   /**
+    * @return Estimated memory used by the cached images and masks.
+    */
+   public synchronized long getByteCount()
+   {
+      return mBytes;
+   }
+
+   /**
+    * @return Number of control and scale pairs cached or being computed.
+    */
+   public synchronized int size()
+   {
+      return mEntries.size();
+   }
+
+   // </editor-fold>
+
+   /**
+    * A control's image at one scale, with its hit mask.
+    */
+   public static class ScaledControlImage
+   {
+      private final BufferedImage mImage;
+      private final AlphaHitMask mMask;
+
+      ScaledControlImage(BufferedImage image, AlphaHitMask mask)
+      {
+         mImage = image;
+         mMask = mask;
+      }
+
+      public BufferedImage getImage()
+      {
+         return mImage;
+      }
+
+      public AlphaHitMask getMask()
+      {
+         return mMask;
+      }
+   }
+
+   /*
+    * A control and a scale in thousandths. Carries the memory the entry is
+    * expected to take, worked out from the original's size.
+    */
+   private static class Key
+   {
+      private final String mControl;
+      private final long mScale;
+      private final long mBytes;
+
+      Key(String control, double scale, BufferedImage original)
+      {
+         mControl = control;
+         mScale = Math.round(scale * 1000);
+
+         double rounded = mScale / 1000.0;
+         long pixels = (long) (original.getWidth() * rounded) * (long) (original.getHeight() * rounded);
+
+         // Four bytes per pixel for the image, unless it is the original,
+         // and one bit per pixel for the mask
+         mBytes = ((mScale == 1000) ? 0 : pixels * 4) + pixels / 8;
+      }
+
+      @Override
+      public boolean equals(Object other)
+      {
+         if (!(other instanceof Key))
+         {
+            return false;
+         }
+
+         Key key = (Key) other;
+         return mScale == key.mScale && mControl.equals(key.mControl);
+      }
+
+      @Override
+      public int hashCode()
+      {
+         return mControl.hashCode() * 31 + Long.hashCode(mScale);
+      }
+   }
+}
@@ -0,0 +1,44 @@
+package rit.eyeTrackingAPI.benchmarks;
+
+import java.io.IOException;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of the benchmark jar. Accepts the usual JMH command line and
+ * always adds the GC profiler, so every run reports allocation rate
+ * (gc.alloc.rate.norm, bytes per sample) next to throughput and latency.
+ *
+ * @author Mark Hazlewood
+ */
+public class BenchmarkRunner
+{
+   public static void main(String[] args) throws IOException, RunnerException, CommandLineOptionException
+   {
+      CommandLineOptions commandLine = new CommandLineOptions(args);
+
+      if (commandLine.shouldHelp())
+      {
+         commandLine.showHelp();
+         return;
+      }
+
+      Runner runner = new Runner(new OptionsBuilder()
+              .parent(commandLine)
+              .addProfiler(GCProfiler.class)
+              .build());
+
+      if (commandLine.shouldList())
+      {
+         runner.list();
+      }
+      else
+      {
+         runner.run();
+      }
+   }
+}
@@ -0,0 +1,81 @@
+package rit.eyeTrackingAPI.benchmarks;
+
+import java.io.IOException;
+import rit.eyeTrackingAPI.DataConstructs.GazeSample;
+import rit.eyeTrackingAPI.DataConstructs.GazeSampleRingBuffer;
+import rit.eyeTrackingAPI.SmoothingFilters.Filter;
+
+/**
+ * Shared plumbing for the filter benchmarks. Replays a {@link GazeTrace}
+ * through a filter one sample per benchmark invocation.
+ *
+ * The filter is given an output ring buffer that nothing reads from, using
+ * {@link GazeSampleRingBuffer.OverflowPolicy#DROP_OLDEST}, so publishing a
+ * filtered point never blocks on the read handshake and never backs up. What
+ * is measured is the filter itself plus one ring offer per output point.
+ *
+ * @author Mark Hazlewood
+ */
+public abstract class FilterBenchmarkState
+{
+   // <editor-fold defaultstate="expanded" desc="Constants">
+
+   /**
+    * Samples in a generated trace: about five minutes of 60 Hz data.
+    */
+   protected static final int TRACE_SAMPLES = 60 * 60 * 5;
+
+   private static final int OUTPUT_BUFFER_CAPACITY = 64;
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Private Members">
+
+   private GazeTrace mTrace;
+   private Filter mFilter;
+   private final GazeSample mSample = new GazeSample();
+   private int mTraceIndex = 0;
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Working Functions">
+
+   /**
+    * Loads the trace. Subclasses call this from their trial setup.
+    */
+   protected void loadTrace() throws IOException
+   {
+      mTrace = GazeTrace.load(TRACE_SAMPLES);
+      mTraceIndex = 0;
+   }
+
+   /**
+    * Installs a freshly constructed filter, switched to the non-blocking
+    * output buffer.
+    */
+   protected void useFilter(Filter filter)
+   {
+      filter.setOutputBuffer(new GazeSampleRingBuffer(OUTPUT_BUFFER_CAPACITY,
+                                                      GazeSampleRingBuffer.OverflowPolicy.DROP_OLDEST));
+      mFilter = filter;
+   }
+
+   /**
+    * Pushes the next trace sample through the filter, wrapping around at the
+    * end of the trace.
+    *
+    * @return The X coordinate of the most recent filtered sample, to be
+    * returned from the benchmark so the work cannot be optimised away.
+    */
+   protected int filterNextSample()
+   {
+      int index = mTraceIndex;
+      mSample.set(mTrace.getX(index), mTrace.getY(index));
+      mTraceIndex = (index + 1 == mTrace.size()) ? 0 : index + 1;
+
+      mFilter.filter(mSample);
+      return mFilter.getLastFilteredSample().getX();
+   }
+
+   // </editor-fold>
+}
@@ -0,0 +1,52 @@
+package rit.eyeTrackingAPI.benchmarks;
+
+import java.awt.Rectangle;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import rit.eyeTrackingAPI.SmoothingFilters.BlinkGapFillStage;
+import rit.eyeTrackingAPI.SmoothingFilters.FilterChain;
+import rit.eyeTrackingAPI.SmoothingFilters.OneEuroStage;
+import rit.eyeTrackingAPI.SmoothingFilters.OutlierRejectionStage;
+import rit.eyeTrackingAPI.SmoothingFilters.ScreenClampStage;
+
+/**
+ * Per-sample cost of a four stage chain: outlier rejection, blink gap fill,
+ * One Euro smoothing and a screen clamp. Compare with
+ * {@link OneEuroFilterBenchmark} for the cost of the extra stages.
+ *
+ * @author Mark Hazlewood
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FilterChainBenchmark extends FilterBenchmarkState
+{
+   @Setup
+   public void setUp() throws IOException
+   {
+      loadTrace();
+      useFilter(new FilterChain(new OutlierRejectionStage(),
+                                new BlinkGapFillStage(),
+                                new OneEuroStage(),
+                                new ScreenClampStage(new Rectangle(0, 0, GazeTrace.SCREEN_WIDTH, GazeTrace.SCREEN_HEIGHT))));
+   }
+
+   @Benchmark
+   public int filterSample()
+   {
+      return filterNextSample();
+   }
+}
@@ -0,0 +1,303 @@
+package rit.eyeTrackingAPI.benchmarks;
+
+import java.awt.Rectangle;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import rit.eyeTrackingAPI.DataConstructs.GazeSample;
+import rit.eyeTrackingAPI.DataConstructs.GazeSampleRingBuffer;
+import rit.eyeTrackingAPI.EventDetection.DispersionThresholdDetector;
+import rit.eyeTrackingAPI.EventDetection.GazeEvent;
+import rit.eyeTrackingAPI.EventDetection.GazeEventListener;
+import rit.eyeTrackingAPI.SmoothingFilters.BlinkGapFillStage;
+import rit.eyeTrackingAPI.SmoothingFilters.Filter;
+import rit.eyeTrackingAPI.SmoothingFilters.FilterChain;
+import rit.eyeTrackingAPI.SmoothingFilters.FixationAndLeastSquaresFilter;
+import rit.eyeTrackingAPI.SmoothingFilters.KalmanFilter;
+import rit.eyeTrackingAPI.SmoothingFilters.OneEuroFilter;
+import rit.eyeTrackingAPI.SmoothingFilters.OneEuroStage;
+import rit.eyeTrackingAPI.SmoothingFilters.OutlierRejectionStage;
+import rit.eyeTrackingAPI.SmoothingFilters.PassthroughFilter;
+import rit.eyeTrackingAPI.SmoothingFilters.ScreenClampStage;
+import rit.eyeTrackingAPI.SmoothingFilters.SlidingWindowAverageFilter;
+
+/**
+ * Compares the smoothing filters on a gaze trace by how well they smooth, not
+ * just how fast they run. Each filter is fed the whole trace, with receive
+ * stamps spaced at the trace's sample period, and its latest output is
+ * recorded after every sample. The fixations in the raw trace are found with
+ * a {@link DispersionThresholdDetector} and the outputs are scored against
+ * them:
+ *
+ *    cost     nanoseconds per sample (best of several passes)
+ *    settle   time after a fixation starts until the output is within
+ *             {@value #SETTLE_RADIUS} pixels of it (mean and 95th percentile);
+ *             the lag the user sees at the end of every saccade
+ *    jitter   RMS movement of the output between samples once settled
+ *    lag      time shift that best lines the output up with the raw trace
+ *
+ * Run it from the benchmark jar, using the same trace properties as the
+ * benchmarks:
+ *
+ *    java -cp target/benchmarks.jar -Dgaze.rate=250 rit.eyeTrackingAPI.benchmarks.FilterComparison
+ *
+ * @author Mark Hazlewood
+ */
+public class FilterComparison
+{
+   // <editor-fold defaultstate="expanded" desc="Constants">
+
+   private static final String[] FILTERS =
+   {
+      "Passthrough",
+      "SlidingWindowAverage(5)",
+      "SlidingWindowAverage(20)",
+      "FixationAndLeastSquares(5)",
+      "OneEuro",
+      "Kalman",
+      "Chain(Outlier,GapFill,OneEuro,Clamp)"
+   };
+
+   private static final int SETTLE_RADIUS = 25;
+   private static final int WARMUP_PASSES = 3;
+   private static final int TIMED_PASSES = 5;
+   private static final int MAX_LAG_MILLIS = 250;
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Private Members">
+
+   private final GazeTrace mTrace;
+   private final long mPeriodNanos;
+   private final double mSampleRate;
+   private final int[] mOutputX;
+   private final int[] mOutputY;
+
+   // Fixations in the raw trace, as sample index ranges and centroids
+   private final List<int[]> mFixationRanges = new ArrayList<>();
+   private final List<double[]> mFixationCentroids = new ArrayList<>();
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Constructor(s)">
+
+   public FilterComparison(GazeTrace trace)
+   {
+      mTrace = trace;
+      mPeriodNanos = TimeUnit.MILLISECONDS.toNanos(trace.getSamplePeriodMillis());
+      mSampleRate = 1000.0 / trace.getSamplePeriodMillis();
+      mOutputX = new int[trace.size()];
+      mOutputY = new int[trace.size()];
+
+      findFixations();
+   }
+
+   // </editor-fold>
+
+   public static void main(String[] args) throws IOException
+   {
+      GazeTrace trace = GazeTrace.load(FilterBenchmarkState.TRACE_SAMPLES);
+      FilterComparison comparison = new FilterComparison(trace);
+
+      System.out.printf("%d samples at %.0f Hz, %d fixations%n%n",
+                        trace.size(), comparison.mSampleRate, comparison.mFixationRanges.size());
+      System.out.printf("%-37s %10s %12s %12s %11s %8s%n",
+                        "filter", "cost ns", "settle ms", "settle p95", "jitter px", "lag ms");
+
+      for (String name : FILTERS)
+      {
+         comparison.compare(name);
+      }
+   }
+
+   // <editor-fold defaultstate="expanded" desc="Working Functions">
+
+   private Filter createFilter(String name)
+   {
+      switch (name)
+      {
+         case "Passthrough":
+            return new PassthroughFilter();
+         case "SlidingWindowAverage(5)":
+            return new SlidingWindowAverageFilter(5);
+         case "SlidingWindowAverage(20)":
+            return new SlidingWindowAverageFilter(20);
+         case "FixationAndLeastSquares(5)":
+            return new FixationAndLeastSquaresFilter(5);
+         case "OneEuro":
+            return new OneEuroFilter(OneEuroFilter.DEFAULT_MIN_CUTOFF,
+                                     OneEuroFilter.DEFAULT_BETA,
+                                     OneEuroFilter.DEFAULT_DERIVATIVE_CUTOFF,
+                                     mSampleRate);
+         case "Kalman":
+            return new KalmanFilter(KalmanFilter.DEFAULT_PROCESS_NOISE,
+                                    KalmanFilter.DEFAULT_MEASUREMENT_NOISE,
+                                    KalmanFilter.DEFAULT_SACCADE_GATE,
+                                    mSampleRate);
+         case "Chain(Outlier,GapFill,OneEuro,Clamp)":
+            return new FilterChain(
+                  new OutlierRejectionStage(OutlierRejectionStage.DEFAULT_MAX_VELOCITY, mSampleRate),
+                  new BlinkGapFillStage(BlinkGapFillStage.DEFAULT_MAX_GAP_MILLIS, mSampleRate),
+                  new OneEuroStage(OneEuroFilter.DEFAULT_MIN_CUTOFF,
+                                   OneEuroFilter.DEFAULT_BETA,
+                                   OneEuroFilter.DEFAULT_DERIVATIVE_CUTOFF,
+                                   mSampleRate),
+                  new ScreenClampStage(new Rectangle(0, 0, GazeTrace.SCREEN_WIDTH, GazeTrace.SCREEN_HEIGHT)));
+         default:
+            throw new IllegalArgumentException("Unknown filter " + name);
+      }
+   }
+
+   private void compare(String name)
+   {
+      long bestNanos = Long.MAX_VALUE;
+      for (int pass = 0; pass < WARMUP_PASSES + TIMED_PASSES; pass++)
+      {
+         long nanos = runPass(createFilter(name));
+         if (pass >= WARMUP_PASSES)
+         {
+            bestNanos = Math.min(bestNanos, nanos);
+         }
+      }
+
+      double[] settleMillis = new double[Math.max(0, mFixationRanges.size() - 1)];
+      double jitterSquares = 0;
+      long jitterSamples = 0;
+
+      // The first fixation has no saccade leading into it
+      for (int f = 1; f < mFixationRanges.size(); f++)
+      {
+         int start = mFixationRanges.get(f)[0];
+         int end = mFixationRanges.get(f)[1];
+         double[] centroid = mFixationCentroids.get(f);
+
+         int settled = end + 1;
+         for (int i = start; i <= end; i++)
+         {
+            double dx = mOutputX[i] - centroid[0];
+            double dy = mOutputY[i] - centroid[1];
+            if (dx * dx + dy * dy <= SETTLE_RADIUS * SETTLE_RADIUS)
+            {
+               settled = i;
+               break;
+            }
+         }
+         settleMillis[f - 1] = (settled - start) * mPeriodNanos / 1.0e6;
+
+         for (int i = settled + 1; i <= end; i++)
+         {
+            double dx = mOutputX[i] - mOutputX[i - 1];
+            double dy = mOutputY[i] - mOutputY[i - 1];
+            jitterSquares += dx * dx + dy * dy;
+            jitterSamples++;
+         }
+      }
+
+      Arrays.sort(settleMillis);
+      double meanSettle = 0;
+      for (double settle : settleMillis)
+      {
+         meanSettle += settle;
+      }
+      meanSettle /= Math.max(1, settleMillis.length);
+      double p95Settle = settleMillis.length == 0 ? 0
+                         : settleMillis[(int) Math.min(settleMillis.length - 1, Math.ceil(0.95 * settleMillis.length) - 1)];
+
+      System.out.printf("%-37s %10.1f %12.1f %12.1f %11.2f %8.1f%n",
+                        name,
+                        (double) bestNanos / mTrace.size(),
+                        meanSettle,
+                        p95Settle,
+                        Math.sqrt(jitterSquares / Math.max(1, jitterSamples)),
+                        bestLagMillis());
+   }
+
+   /*
+    * Feeds the whole trace through the filter, recording its latest output
+    * after each sample, and returns the time taken.
+    */
+   private long runPass(Filter filter)
+   {
+      filter.setOutputBuffer(new GazeSampleRingBuffer(64, GazeSampleRingBuffer.OverflowPolicy.DROP_OLDEST));
+      GazeSample sample = new GazeSample();
+      GazeSample output = filter.getLastFilteredSample();
+
+      long start = System.nanoTime();
+      for (int i = 0; i < mTrace.size(); i++)
+      {
+         sample.set(mTrace.getX(i), mTrace.getY(i));
+         sample.setReceiveNanos((i + 1) * mPeriodNanos);
+         filter.filter(sample);
+
+         // Until a filter publishes its first point, treat it as passing through
+         boolean published = output.getFilteredNanos() != 0;
+         mOutputX[i] = published ? output.getX() : sample.getX();
+         mOutputY[i] = published ? output.getY() : sample.getY();
+      }
+      return System.nanoTime() - start;
+   }
+
+   /*
+    * Shift, in milliseconds, of the raw trace that best matches the output.
+    */
+   private double bestLagMillis()
+   {
+      int maxShift = (int) Math.min(mTrace.size() / 2,
+                                    TimeUnit.MILLISECONDS.toNanos(MAX_LAG_MILLIS) / mPeriodNanos);
+      int bestShift = 0;
+      double bestError = Double.MAX_VALUE;
+
+      for (int shift = 0; shift <= maxShift; shift++)
+      {
+         double error = 0;
+         for (int i = maxShift; i < mTrace.size(); i++)
+         {
+            double dx = mOutputX[i] - mTrace.getX(i - shift);
+            double dy = mOutputY[i] - mTrace.getY(i - shift);
+            error += dx * dx + dy * dy;
+         }
+
+         if (error < bestError)
+         {
+            bestError = error;
+            bestShift = shift;
+         }
+      }
+
+      return bestShift * mPeriodNanos / 1.0e6;
+   }
+
+   private void findFixations()
+   {
+      DispersionThresholdDetector detector = new DispersionThresholdDetector();
+      detector.addGazeEventListener(new GazeEventListener()
+      {
+         @Override
+         public void gazeEventDetected(GazeEvent event)
+         {
+            if (event.getType() == GazeEvent.Type.FIXATION_END)
+            {
+               mFixationRanges.add(new int[]
+               {
+                  (int) (event.getStartNanos() / mPeriodNanos) - 1,
+                  (int) (event.getEndNanos() / mPeriodNanos) - 1
+               });
+               mFixationCentroids.add(new double[]
+               {
+                  event.getX(), event.getY()
+               });
+            }
+         }
+      });
+
+      for (int i = 0; i < mTrace.size(); i++)
+      {
+         detector.addSample(mTrace.getX(i), mTrace.getY(i), (i + 1) * mPeriodNanos);
+      }
+      detector.reset();
+   }
+
+   // </editor-fold>
+}
@@ -0,0 +1,52 @@
+package rit.eyeTrackingAPI.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import rit.eyeTrackingAPI.SmoothingFilters.FixationAndLeastSquaresFilter;
+
+/**
+ * Per-sample cost of the fixation and least squares filter at a range of
+ * intensities (the number of raw points fitted per regression).
+ *
+ * The filter keeps the fixations it has seen, up to the fixation index's
+ * retention limit, so it is rebuilt at the start of each iteration; otherwise
+ * later iterations would measure a fuller index than earlier ones.
+ *
+ * @author Mark Hazlewood
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FixationAndLeastSquaresFilterBenchmark extends FilterBenchmarkState
+{
+   @Param({"3", "5", "10", "20"})
+   public int filterIntensity;
+
+   @Setup(Level.Iteration)
+   public void setUp() throws IOException
+   {
+      loadTrace();
+      useFilter(new FixationAndLeastSquaresFilter(filterIntensity));
+   }
+
+   @Benchmark
+   public int filterSample()
+   {
+      return filterNextSample();
+   }
+}
@@ -0,0 +1,211 @@
+package rit.eyeTrackingAPI.benchmarks;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * A gaze trace replayed by the benchmarks, held as primitive arrays so that
+ * stepping through it costs nothing compared to the code under test.
+ *
+ * If the system property {@value #TRACE_FILE_PROPERTY} names a file, the trace
+ * is read from it. The file uses the same "x, y, duration" lines as
+ * {@link rit.eyeTrackingAPI.EyeTrackerUtilities.eyeTrackerClients.EyeTrackerClientSimulator},
+ * so traces captured with the MousePositionRecorder app can be used directly.
+ * Otherwise a repeatable trace is generated: fixations of 150 to 450 ms with a
+ * few pixels of tracker noise, joined by short saccades, sampled at 60 Hz or
+ * the rate given by {@value #SAMPLE_RATE_PROPERTY}.
+ *
+ * @author Mark Hazlewood
+ */
+public class GazeTrace
+{
+   // <editor-fold defaultstate="expanded" desc="Constants">
+
+   /**
+    * System property naming a trace file to replay instead of a generated one.
+    */
+   public static final String TRACE_FILE_PROPERTY = "gaze.trace";
+
+   /**
+    * System property giving the tracker rate, in Hz, to sample traces at.
+    */
+   public static final String SAMPLE_RATE_PROPERTY = "gaze.rate";
+
+   private static final int DEFAULT_SAMPLE_RATE = 60;
+
+   static final int SCREEN_WIDTH = 1920;
+   static final int SCREEN_HEIGHT = 1080;
+   private static final int MIN_FIXATION_MILLIS = 150;
+   private static final int MAX_FIXATION_MILLIS = 450;
+   private static final int SACCADE_MILLIS = 50;
+   private static final double FIXATION_NOISE_PIXELS = 6.0;
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Private Members">
+
+   private final int[] mX;
+   private final int[] mY;
+   private final int mSamplePeriodMillis;
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Constructor(s)">
+
+   private GazeTrace(int[] x, int[] y, int samplePeriodMillis)
+   {
+      mX = x;
+      mY = y;
+      mSamplePeriodMillis = samplePeriodMillis;
+   }
+
+   /**
+    * Loads the trace named by {@value #TRACE_FILE_PROPERTY}, or generates one
+    * with the given number of samples if the property is not set.
+    */
+   public static GazeTrace load(int generatedSampleCount) throws IOException
+   {
+      String traceFile = System.getProperty(TRACE_FILE_PROPERTY);
+      if (traceFile != null && !traceFile.isEmpty())
+      {
+         return fromFile(traceFile);
+      }
+
+      return generate(generatedSampleCount, 1);
+   }
+
+   /**
+    * Reads a trace in the simulator's "x, y, duration" format. Each point is
+    * repeated once per sample period it lasts, as a tracker would report it.
+    */
+   public static GazeTrace fromFile(String path) throws IOException
+   {
+      int samplePeriodMillis = samplePeriodMillis();
+      int[] x = new int[1024];
+      int[] y = new int[1024];
+      int count = 0;
+
+      try (BufferedReader reader = Files.newBufferedReader(Paths.get(path), StandardCharsets.UTF_8))
+      {
+         String line;
+         while ((line = reader.readLine()) != null)
+         {
+            String[] values = line.split(",");
+            if (values.length < 2)
+            {
+               continue;
+            }
+
+            int pointX = Integer.parseInt(values[0].trim());
+            int pointY = Integer.parseInt(values[1].trim());
+            int duration = values.length > 2 ? Integer.parseInt(values[2].trim()) : samplePeriodMillis;
+            int repeats = Math.max(1, duration / samplePeriodMillis);
+
+            for (int i = 0; i < repeats; i++)
+            {
+               if (count == x.length)
+               {
+                  x = Arrays.copyOf(x, count * 2);
+                  y = Arrays.copyOf(y, count * 2);
+               }
+               x[count] = pointX;
+               y[count] = pointY;
+               count++;
+            }
+         }
+      }
+
+      if (count == 0)
+      {
+         throw new IOException("No gaze points in " + path);
+      }
+
+      return new GazeTrace(Arrays.copyOf(x, count), Arrays.copyOf(y, count), samplePeriodMillis);
+   }
+
+   /**
+    * Generates a fixation and saccade trace.
+    *
+    * @param sampleCount Number of samples in the trace.
+    * @param seed Random seed, so runs are repeatable.
+    */
+   public static GazeTrace generate(int sampleCount, long seed)
+   {
+      int samplePeriodMillis = samplePeriodMillis();
+      int saccadeSamples = Math.max(1, SACCADE_MILLIS / samplePeriodMillis);
+      Random random = new Random(seed);
+      int[] x = new int[sampleCount];
+      int[] y = new int[sampleCount];
+
+      double centerX = SCREEN_WIDTH / 2;
+      double centerY = SCREEN_HEIGHT / 2;
+      int i = 0;
+
+      while (i < sampleCount)
+      {
+         // Fixation: noisy samples around one spot
+         int fixationMillis = MIN_FIXATION_MILLIS
+                 + random.nextInt(MAX_FIXATION_MILLIS - MIN_FIXATION_MILLIS + 1);
+         for (int n = fixationMillis / samplePeriodMillis; n > 0 && i < sampleCount; n--, i++)
+         {
+            x[i] = (int) Math.round(centerX + random.nextGaussian() * FIXATION_NOISE_PIXELS);
+            y[i] = (int) Math.round(centerY + random.nextGaussian() * FIXATION_NOISE_PIXELS);
+         }
+
+         // Saccade: a few samples in flight towards the next fixation
+         double nextX = random.nextInt(SCREEN_WIDTH);
+         double nextY = random.nextInt(SCREEN_HEIGHT);
+         for (int n = 1; n <= saccadeSamples && i < sampleCount; n++, i++)
+         {
+            double t = (double) n / (saccadeSamples + 1);
+            x[i] = (int) Math.round(centerX + (nextX - centerX) * t);
+            y[i] = (int) Math.round(centerY + (nextY - centerY) * t);
+         }
+
+         centerX = nextX;
+         centerY = nextY;
+      }
+
+      return new GazeTrace(x, y, samplePeriodMillis);
+   }
+
+   private static int samplePeriodMillis()
+   {
+      int rate = Integer.getInteger(SAMPLE_RATE_PROPERTY, DEFAULT_SAMPLE_RATE);
+      return Math.max(1, 1000 / Math.max(1, rate));
+   }
+
+   // </editor-fold>
+
+   // <editor-fold defaultstate="expanded" desc="Properties">
+
+   public int size()
+   {
+      return mX.length;
+   }
+
+   public int getX(int index)
+   {
+      return mX[index];
+   }
+
+   public int getY(int index)
+   {
+      return mY[index];
+   }
+
+   /**
+    * @return Time between consecutive samples, in milliseconds.
+    */
+   public int getSamplePeriodMillis()
+   {
+      return mSamplePeriodMillis;
+   }
+
+   // </editor-fold>
+}
@@ -0,0 +1,43 @@
+package rit.eyeTrackingAPI.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import rit.eyeTrackingAPI.SmoothingFilters.KalmanFilter;
+
+/**
+ * Per-sample cost of the constant-velocity Kalman filter, including the
+ * re-seeding that happens on every saccade in the trace.
+ *
+ * @author Mark Hazlewood
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KalmanFilterBenchmark extends FilterBenchmarkState
+{
+   @Setup
+   public void setUp() throws IOException
+   {
+      loadTrace();
+      useFilter(new KalmanFilter());
+   }
+
+   @Benchmark
+   public int filterSample()
+   {
+      return filterNextSample();
+   }
+}
@@ -0,0 +1,91 @@
+package rit.eyeTrackingAPI.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import rit.eyeTrackingAPI.SmoothingFilters.Regression;
+import rit.eyeTrackingAPI.SmoothingFilters.StreamingRegression;
+
+/**
+ * Cost of one {@link Regression#linear_equation(double[][], int)} fit at
+ * orders 1 to 4, over windows of gaze data cut from the trace the same way
+ * the fixation filter builds them (x against y of consecutive samples).
+ *
+ * {@link #streamingFit()} measures the same work done the way the fixation
+ * filter now does it: one sample slid into a {@link StreamingRegression}
+ * window, one fit and one evaluation.
+ *
+ * @author Mark Hazlewood
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RegressionBenchmark
+{
+   private static final int WINDOW_COUNT = 256;
+
+   @Param({"1", "2", "3", "4"})
+   public int order;
+
+   @Param({"5", "20"})
+   public int points;
+
+   private double[][][] mWindows;
+   private int mWindowIndex = 0;
+
+   private GazeTrace mTrace;
+   private StreamingRegression mStreaming;
+   private int mTraceIndex = 0;
+
+   @Setup
+   public void setUp() throws IOException
+   {
+      GazeTrace trace = GazeTrace.load(FilterBenchmarkState.TRACE_SAMPLES);
+      mTrace = trace;
+      mStreaming = new StreamingRegression(order, points);
+      mWindows = new double[WINDOW_COUNT][points][2];
+
+      for (int w = 0; w < WINDOW_COUNT; w++)
+      {
+         int start = (w * points) % Math.max(1, trace.size() - points);
+         for (int p = 0; p < points; p++)
+         {
+            mWindows[w][p][0] = trace.getX(start + p);
+            mWindows[w][p][1] = trace.getY(start + p);
+         }
+      }
+   }
+
+   @Benchmark
+   public double[] fit()
+   {
+      double[][] window = mWindows[mWindowIndex];
+      mWindowIndex = (mWindowIndex + 1) & (WINDOW_COUNT - 1);
+
+      return Regression.linear_equation(window, order);
+   }
+
+   @Benchmark
+   public double streamingFit()
+   {
+      int x = mTrace.getX(mTraceIndex);
+      mStreaming.add(x, mTrace.getY(mTraceIndex));
+      mTraceIndex = (mTraceIndex + 1) % mTrace.size();
+
+      mStreaming.fit();
+      return mStreaming.evaluate(x);
+   }
+}